@@ -0,0 +1,96 @@
+package digital.alf.cells.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import digital.alf.cells.acl.GroupIndex;
+import digital.alf.cells.load.SyntheticDataset;
+import digital.alf.cells.physicalacesscontrol.PolicyToAclStrategy;
+import digital.alf.cells.physicalacesscontrol.generator.AclGenerator;
+import digital.alf.cells.physicalacesscontrol.model.EmployeeInfo;
+import digital.alf.cells.physicalacesscontrol.model.KyvernoPolicyData;
+import digital.alf.cells.physicalacesscontrol.parser.EmployeeInfoParser;
+import digital.alf.cells.physicalacesscontrol.parser.KyvernoPolicyParser;
+import digital.alf.cells.physicalacesscontrolopa.OpaPolicyToAclStrategy;
+import digital.alf.cells.physicalacesscontrolopa.generator.OpaAclGenerator;
+import digital.alf.cells.physicalacesscontrolopa.model.OpaEmployeeInfo;
+import digital.alf.cells.physicalacesscontrolopa.model.OpaPolicyData;
+import digital.alf.cells.physicalacesscontrolopa.parser.OpaEmployeeInfoParser;
+import digital.alf.cells.physicalacesscontrolopa.parser.OpaPolicyParser;
+import digital.alf.cells.physicalacesscontrolopa.parser.RegoParser;
+import digital.alf.cells.physicalacesscontrolopa.service.OpaPolicyService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Static ACL generation from the shipped policies over synthetic employee directories:
+ * OpaAclGenerator and AclGenerator on the group index (the path the ACL snapshots take), and
+ * formatAclOutput of both strategies on the generated entries.
+ *
+ * Parsing and indexing happen in setup; see EmployeeParserBenchmark for their cost.
+ */
+@State(Scope.Benchmark)
+public class AclGenerationBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    private int employees;
+
+    private final OpaAclGenerator opaAclGenerator = new OpaAclGenerator(null);
+    private final AclGenerator aclGenerator = new AclGenerator(null);
+    private final OpaPolicyToAclStrategy opaStrategy = new OpaPolicyToAclStrategy(null, null, null);
+    private final PolicyToAclStrategy kyvernoStrategy = new PolicyToAclStrategy(null, null, null);
+
+    private OpaPolicyData opaPolicy;
+    private GroupIndex<OpaEmployeeInfo> opaEmployees;
+    private List<digital.alf.cells.physicalacesscontrolopa.model.AclEntry> opaAcl;
+
+    private KyvernoPolicyData kyvernoPolicy;
+    private GroupIndex<EmployeeInfo> kyvernoEmployees;
+    private List<digital.alf.cells.physicalacesscontrol.model.AclEntry> kyvernoAcl;
+
+    @Setup
+    public void setUp() throws IOException {
+        RegoParser regoParser = new RegoParser();
+        opaPolicy = new OpaPolicyService(regoParser, new OpaPolicyParser(regoParser)).load("physical-access-control-opa/policy.rego");
+        try (InputStream inputStream = new ClassPathResource("physical-access-control/pip-abac-policy1.yml").getInputStream()) {
+            kyvernoPolicy = new KyvernoPolicyParser().parse(inputStream);
+        }
+
+        List<OpaEmployeeInfo> opaList = new OpaEmployeeInfoParser(new ObjectMapper())
+                .parse(new ByteArrayInputStream(SyntheticDataset.ofSize(employees).employeesJson()));
+        opaEmployees = GroupIndex.of(opaList, OpaEmployeeInfo::getGroups);
+        List<EmployeeInfo> kyvernoList = new EmployeeInfoParser()
+                .parse(new ByteArrayInputStream(SyntheticDataset.ofSize(employees).employeesYaml()));
+        kyvernoEmployees = GroupIndex.of(kyvernoList, EmployeeInfo::getGroups);
+
+        opaAcl = opaAclGenerator.generateAcl(opaPolicy, opaEmployees);
+        kyvernoAcl = aclGenerator.generateAcl(kyvernoPolicy, kyvernoEmployees);
+    }
+
+    @Benchmark
+    public List<digital.alf.cells.physicalacesscontrolopa.model.AclEntry> opaAclGenerator() {
+        return opaAclGenerator.generateAcl(opaPolicy, opaEmployees);
+    }
+
+    @Benchmark
+    public List<digital.alf.cells.physicalacesscontrol.model.AclEntry> aclGenerator() {
+        return aclGenerator.generateAcl(kyvernoPolicy, kyvernoEmployees);
+    }
+
+    @Benchmark
+    public String opaFormatAclOutput() {
+        return opaStrategy.formatAclOutput(opaAcl);
+    }
+
+    @Benchmark
+    public String kyvernoFormatAclOutput() {
+        return kyvernoStrategy.formatAclOutput(kyvernoAcl);
+    }
+}
@@ -0,0 +1,50 @@
+package digital.alf.cells.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import digital.alf.cells.load.SyntheticDataset;
+import digital.alf.cells.physicalacesscontrol.model.EmployeeInfo;
+import digital.alf.cells.physicalacesscontrol.parser.EmployeeInfoParser;
+import digital.alf.cells.physicalacesscontrolopa.model.OpaEmployeeInfo;
+import digital.alf.cells.physicalacesscontrolopa.parser.OpaEmployeeInfoParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Parsing of the employee directories: OpaEmployeeInfoParser (JSON, token streaming) and
+ * EmployeeInfoParser (YAML, SnakeYAML) over synthetic directories held in memory.
+ */
+@State(Scope.Benchmark)
+public class EmployeeParserBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    private int employees;
+
+    private final OpaEmployeeInfoParser opaEmployeeInfoParser = new OpaEmployeeInfoParser(new ObjectMapper());
+    private final EmployeeInfoParser employeeInfoParser = new EmployeeInfoParser();
+
+    private byte[] json;
+    private byte[] yaml;
+
+    @Setup
+    public void setUp() {
+        json = SyntheticDataset.ofSize(employees).employeesJson();
+        yaml = SyntheticDataset.ofSize(employees).employeesYaml();
+    }
+
+    @Benchmark
+    public List<OpaEmployeeInfo> opaEmployeeInfoParser() throws IOException {
+        return opaEmployeeInfoParser.parse(new ByteArrayInputStream(json));
+    }
+
+    @Benchmark
+    public List<EmployeeInfo> employeeInfoParser() {
+        return employeeInfoParser.parse(new ByteArrayInputStream(yaml));
+    }
+}
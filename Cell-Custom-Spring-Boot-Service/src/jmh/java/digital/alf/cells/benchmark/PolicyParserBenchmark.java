@@ -0,0 +1,64 @@
+package digital.alf.cells.benchmark;
+
+import digital.alf.cells.physicalacesscontrol.model.KyvernoPolicyData;
+import digital.alf.cells.physicalacesscontrol.parser.KyvernoPolicyParser;
+import digital.alf.cells.physicalacesscontrolopa.model.OpaPolicyData;
+import digital.alf.cells.physicalacesscontrolopa.parser.OpaPolicyParser;
+import digital.alf.cells.physicalacesscontrolopa.parser.RegoParser;
+import digital.alf.cells.physicalacesscontrolopa.service.OpaPolicyService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parsing of the shipped policies. Independent of the employee count, so not parameterized.
+ *
+ * OpaPolicyService caches policies per path by content hash: opaPolicyParser measures the
+ * cached path a request takes, opaPolicyParserUncached a new policy version.
+ */
+@State(Scope.Benchmark)
+public class PolicyParserBenchmark {
+
+    private static final String OPA_POLICY = "physical-access-control-opa/policy.rego";
+
+    private final RegoParser regoParser = new RegoParser();
+    private final OpaPolicyService opaPolicyService = new OpaPolicyService(regoParser, new OpaPolicyParser(regoParser));
+    private final KyvernoPolicyParser kyvernoPolicyParser = new KyvernoPolicyParser();
+
+    private String rego;
+    private byte[] kyvernoPolicy;
+
+    @Setup
+    public void setUp() throws IOException {
+        rego = new String(read(OPA_POLICY), StandardCharsets.UTF_8);
+        kyvernoPolicy = read("physical-access-control/pip-abac-policy1.yml");
+    }
+
+    private static byte[] read(String resource) throws IOException {
+        try (InputStream inputStream = new ClassPathResource(resource).getInputStream()) {
+            return inputStream.readAllBytes();
+        }
+    }
+
+    @Benchmark
+    public OpaPolicyData opaPolicyParser() throws IOException {
+        return opaPolicyService.load(OPA_POLICY);
+    }
+
+    @Benchmark
+    public OpaPolicyData opaPolicyParserUncached() throws IOException {
+        return opaPolicyService.parse(rego);
+    }
+
+    @Benchmark
+    public KyvernoPolicyData kyvernoPolicyParser() {
+        return kyvernoPolicyParser.parse(new ByteArrayInputStream(kyvernoPolicy));
+    }
+}
@@ -0,0 +1,293 @@
+package digital.alf.cells.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import digital.alf.cells.CellsApplication;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Starts the application in this JVM and hits every /api/acl/** endpoint of both engines.
+ *
+ * Each endpoint is measured on its own (requests calls from concurrency clients), then all of
+ * them together, round robin ("mixed"). Per phase it reports p50/p95/p99/max latency,
+ * throughput, errors (status &gt;= 400 or I/O failure) and the heap high-water mark: the most
+ * heap in use seen by a sampler every 5 ms, after a System.gc() at the start of the phase.
+ * Since server and clients share the JVM, the heap includes the clients' response buffers.
+ *
+ * The first request is sent once /actuator/health/readiness is UP, i.e. the ACL snapshots
+ * exist. Run with a dataset from {@link SyntheticDataset} in front of the classpath to load
+ * the dynamic path at scale (see the loadTest task).
+ *
+ * Usage: LoadDriver [requests=200] [concurrency=32] [principal=EMP-0000000]
+ *        [report=load-report.json] [readiness-timeout=PT5M]
+ */
+public class LoadDriver {
+
+    private static final String ADMISSION_TIME = "2025-10-20T08:30:00Z";
+    private static final int BULK_DECISIONS = 100;
+
+    private record Target(String name, HttpRequest request) {
+    }
+
+    /**
+     * Measurements of one phase; latencies in milliseconds, throughput in requests per second.
+     */
+    public record Result(String endpoint, int requests, int errors, double p50, double p95, double p99, double max,
+                         double throughput, long heapHighWaterBytes) {
+    }
+
+    // HTTP/1.1: Tomcat does not serve h2c, and the upgrade attempt would be part of every measurement
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+    private final int requests;
+    private final int concurrency;
+
+    public LoadDriver(int requests, int concurrency) {
+        this.requests = requests;
+        this.concurrency = concurrency;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = Options.parse(args, 0);
+        LoadDriver driver = new LoadDriver(
+                Integer.parseInt(options.getOrDefault("requests", "200")),
+                Integer.parseInt(options.getOrDefault("concurrency", "32")));
+        String principal = options.getOrDefault("principal", SyntheticDataset.id(0));
+        Duration readinessTimeout = Duration.parse(options.getOrDefault("readiness-timeout", "PT5M"));
+        Path report = Path.of(options.getOrDefault("report", "load-report.json"));
+
+        int exitCode;
+        try (ConfigurableApplicationContext context = SpringApplication.run(CellsApplication.class, "--server.port=0")) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            String credentials = context.getEnvironment().getProperty("spring.security.user.name") + ":"
+                    + context.getEnvironment().getProperty("spring.security.user.password");
+            URI base = URI.create("http://localhost:" + port);
+
+            long readyMs = driver.awaitReady(base, readinessTimeout);
+            System.out.printf("Application ready after %d ms%n", readyMs);
+
+            List<Result> results = driver.run(targets(base, credentials, principal));
+            print(results);
+            write(report, driver, readyMs, results);
+            exitCode = results.stream().anyMatch(result -> result.errors() > 0) ? 1 : 0;
+        }
+        System.exit(exitCode);
+    }
+
+    /**
+     * Measures every target alone, then all of them together.
+     */
+    List<Result> run(List<Target> targets) throws InterruptedException {
+        List<Result> results = new ArrayList<>();
+        for (Target target : targets) {
+            results.add(measure(target.name(), List.of(target), requests));
+        }
+        results.add(measure("mixed (all endpoints)", targets, requests * targets.size()));
+        return results;
+    }
+
+    private Result measure(String name, List<Target> targets, int count) throws InterruptedException {
+        System.gc();
+        HeapSampler sampler = new HeapSampler(memory);
+        sampler.start();
+
+        long[] latencies = new long[count];
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        long start = System.nanoTime();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < concurrency; c++) {
+                clients.execute(() -> {
+                    int i;
+                    while ((i = next.getAndIncrement()) < count) {
+                        HttpRequest request = targets.get(i % targets.size()).request();
+                        long sent = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() >= 400) {
+                                errors.incrementAndGet();
+                            }
+                        } catch (IOException e) {
+                            errors.incrementAndGet();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                        latencies[i] = System.nanoTime() - sent;
+                    }
+                });
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        long heapHighWater = sampler.finish();
+
+        Arrays.sort(latencies);
+        Result result = new Result(name, count, errors.get(),
+                percentile(latencies, 0.50), percentile(latencies, 0.95), percentile(latencies, 0.99),
+                latencies[count - 1] / 1e6, count / (elapsed / 1e9), heapHighWater);
+        System.out.printf("%-50s done (%d errors)%n", name, result.errors());
+        return result;
+    }
+
+    /**
+     * Nearest-rank percentile of sorted nanosecond latencies, in milliseconds.
+     */
+    static double percentile(long[] sorted, double p) {
+        int rank = (int) Math.ceil(p * sorted.length);
+        return sorted[Math.max(0, rank - 1)] / 1e6;
+    }
+
+    private long awaitReady(URI base, Duration timeout) throws IOException, InterruptedException {
+        HttpRequest readiness = HttpRequest.newBuilder(base.resolve("/actuator/health/readiness")).build();
+        long start = System.nanoTime();
+        while (client.send(readiness, HttpResponse.BodyHandlers.discarding()).statusCode() != 200) {
+            if (System.nanoTime() - start > timeout.toNanos()) {
+                throw new IOException("Application not ready after " + timeout);
+            }
+            Thread.sleep(500);
+        }
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    private static List<Target> targets(URI base, String credentials, String principal) {
+        String authorization = "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8));
+        String bulk = bulkDecisions();
+        List<Target> targets = new ArrayList<>();
+        for (String engine : List.of("/api/acl", "/api/acl/opa")) {
+            targets.add(get(base, authorization, engine + "/generate", "application/json"));
+            targets.add(get(base, authorization, engine + "/generate/formatted", "text/plain"));
+            targets.add(get(base, authorization, engine + "/generate/dynamic", "application/json"));
+            targets.add(get(base, authorization, engine + "/generate/dynamic/formatted", "text/plain"));
+            targets.add(get(base, authorization, engine + "/generate/stream", "application/x-ndjson"));
+            targets.add(get(base, authorization, engine + "/generate/stream", "application/json"));
+            targets.add(get(base, authorization, engine + "/generate/dynamic/stream", "application/x-ndjson"));
+            targets.add(get(base, authorization, engine + "/generate/dynamic/stream", "application/json"));
+            targets.add(get(base, authorization, engine + "/decision?principal=" + principal
+                    + "&action=ENTER&resource=Facility&at=" + ADMISSION_TIME, "application/json"));
+            targets.add(post(base, authorization, engine + "/decisions", "application/x-ndjson", bulk));
+            targets.add(post(base, authorization, engine + "/decisions", "application/json", bulk));
+        }
+        targets.add(get(base, authorization, "/api/acl/opa/changes?since=0", "application/json"));
+        return targets;
+    }
+
+    private static Target get(URI base, String authorization, String path, String accept) {
+        HttpRequest request = HttpRequest.newBuilder(base.resolve(path))
+                .header("Authorization", authorization)
+                .header("Accept", accept)
+                .timeout(Duration.ofMinutes(5))
+                .build();
+        String name = path.contains("?") ? path.substring(0, path.indexOf('?')) : path;
+        return new Target("GET " + name + " [" + accept + "]", request);
+    }
+
+    private static Target post(URI base, String authorization, String path, String accept, String body) {
+        HttpRequest request = HttpRequest.newBuilder(base.resolve(path))
+                .header("Authorization", authorization)
+                .header("Accept", accept)
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofMinutes(5))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return new Target("POST " + path + " [" + accept + "]", request);
+    }
+
+    /**
+     * A JSON array of decision requests for the first employees of a synthetic dataset.
+     */
+    private static String bulkDecisions() {
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < BULK_DECISIONS; i++) {
+            body.append(i == 0 ? "" : ",")
+                    .append("{\"principal\":\"").append(SyntheticDataset.id(i))
+                    .append("\",\"action\":\"ENTER\",\"resource\":\"Facility\",\"at\":\"").append(ADMISSION_TIME).append("\"}");
+        }
+        return body.append(']').toString();
+    }
+
+    private static void print(List<Result> results) {
+        System.out.printf("%n%-62s %8s %7s %9s %9s %9s %9s %10s %10s%n",
+                "Endpoint", "Requests", "Errors", "p50 ms", "p95 ms", "p99 ms", "max ms", "req/s", "heap MB");
+        for (Result r : results) {
+            System.out.printf("%-62s %8d %7d %9.2f %9.2f %9.2f %9.2f %10.1f %10.1f%n",
+                    r.endpoint(), r.requests(), r.errors(), r.p50(), r.p95(), r.p99(), r.max(), r.throughput(),
+                    r.heapHighWaterBytes() / (1024.0 * 1024.0));
+        }
+    }
+
+    private static void write(Path report, LoadDriver driver, long readyMs, List<Result> results) throws IOException {
+        Map<String, Object> content = new LinkedHashMap<>();
+        content.put("requests", driver.requests);
+        content.put("concurrency", driver.concurrency);
+        content.put("readyAfterMs", readyMs);
+        content.put("maxHeapBytes", driver.memory.getHeapMemoryUsage().getMax());
+        content.put("results", results);
+        if (report.getParent() != null) {
+            Files.createDirectories(report.getParent());
+        }
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(report.toFile(), content);
+        System.out.printf("%nReport written to %s%n", report.toAbsolutePath());
+    }
+
+    /**
+     * Tracks the most heap in use while a phase runs.
+     */
+    private static final class HeapSampler extends Thread {
+
+        private final MemoryMXBean memory;
+        private volatile boolean sampling = true;
+        private long highWater;
+
+        HeapSampler(MemoryMXBean memory) {
+            super("load-heap-sampler");
+            this.memory = memory;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (sampling) {
+                highWater = Math.max(highWater, memory.getHeapMemoryUsage().getUsed());
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        long finish() throws InterruptedException {
+            sampling = false;
+            join();
+            return Math.max(highWater, memory.getHeapMemoryUsage().getUsed());
+        }
+    }
+}
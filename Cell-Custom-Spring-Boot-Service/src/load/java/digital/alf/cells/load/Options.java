@@ -0,0 +1,25 @@
+package digital.alf.cells.load;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * key=value command line options of the load tools.
+ */
+final class Options {
+
+    private Options() {
+    }
+
+    static Map<String, String> parse(String[] args, int from) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = from; i < args.length; i++) {
+            int separator = args[i].indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Expected key=value, got " + args[i]);
+            }
+            options.put(args[i].substring(0, separator), args[i].substring(separator + 1));
+        }
+        return options;
+    }
+}
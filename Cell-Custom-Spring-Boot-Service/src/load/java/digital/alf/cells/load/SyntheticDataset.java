@@ -0,0 +1,303 @@
+package digital.alf.cells.load;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Synthetic inputs of any size for both engines, in the layout of src/main/resources:
+ *
+ *   physical-access-control-opa/pip-info-employee-vde-trainings.json   employee directory (OPA)
+ *   physical-access-control-opa/pip-users/pip-userinfo-*.json          OPA input files
+ *   physical-access-control/pip-info-employee-vde-trainings.yml        employee directory (Kyverno)
+ *   physical-access-control/pip-users/pip-userinfo-*.yml               Kyverno userinfo files
+ *
+ * Put the output directory in front of the classpath and the application generates its ACLs
+ * from it instead of the committed files (see the loadTest task).
+ *
+ * Employee i has id EMP-&lt;i&gt; and holds each group of the distribution with the group's
+ * share as probability; the user files are the first {@code users} employees. The seed is
+ * fixed per dataset, so equal settings always yield equal files.
+ *
+ * Usage: SyntheticDataset &lt;output directory&gt; [employees=10000] [users=1000]
+ *        [groups=employee-group:1.0,training-vde-available-group:0.5] [seed=42]
+ *        [admission-time=2025-10-20T08:30:00Z]
+ */
+public class SyntheticDataset {
+
+    public static final Map<String, Double> DEFAULT_GROUPS = defaultGroups();
+
+    private final int employees;
+    private final int users;
+    private final Map<String, Double> groups;
+    private final long seed;
+    private final String admissionTime;
+
+    /**
+     * @param employees     Size of the employee directories
+     * @param users         Number of user files per engine (at most employees)
+     * @param groups        Group name to the share of employees holding it (0..1), in output order
+     * @param seed          Seed of the group assignment
+     * @param admissionTime request.admissionTime of the OPA input files
+     */
+    public SyntheticDataset(int employees, int users, Map<String, Double> groups, long seed, String admissionTime) {
+        if (employees < 0 || users < 0) {
+            throw new IllegalArgumentException("employees and users must not be negative");
+        }
+        groups.forEach((group, share) -> {
+            if (share < 0 || share > 1) {
+                throw new IllegalArgumentException("Share of " + group + " must be between 0 and 1: " + share);
+            }
+        });
+        this.employees = employees;
+        this.users = Math.min(users, employees);
+        this.groups = new LinkedHashMap<>(groups);
+        this.seed = seed;
+        this.admissionTime = admissionTime;
+    }
+
+    /**
+     * Dataset with the default group distribution (everyone in employee-group, half of them
+     * trained, like the committed 10k directory) and user files for up to 1000 employees.
+     */
+    public static SyntheticDataset ofSize(int employees) {
+        return new SyntheticDataset(employees, Math.min(employees, 1000), DEFAULT_GROUPS, 42, "2025-10-20T08:30:00Z");
+    }
+
+    public static String id(int employee) {
+        return String.format("EMP-%07d", employee);
+    }
+
+    public static String name(int employee) {
+        return "Employee " + employee;
+    }
+
+    /**
+     * Group memberships of every employee; the same for every call.
+     */
+    private List<Map<String, Boolean>> memberships() {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<Map<String, Boolean>> memberships = new ArrayList<>(employees);
+        for (int i = 0; i < employees; i++) {
+            Map<String, Boolean> held = new LinkedHashMap<>();
+            groups.forEach((group, share) -> held.put(group, random.nextDouble() < share));
+            memberships.add(held);
+        }
+        return memberships;
+    }
+
+    /**
+     * Writes the OPA employee directory (JSON).
+     */
+    public void writeEmployeesJson(OutputStream out) throws IOException {
+        List<Map<String, Boolean>> memberships = memberships();
+        try (JsonGenerator json = new JsonFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            json.writeStartObject();
+            json.writeArrayFieldStart("employees");
+            for (int i = 0; i < employees; i++) {
+                json.writeStartObject();
+                json.writeStringField("name", name(i));
+                json.writeStringField("id", id(i));
+                json.writeObjectFieldStart("groups");
+                for (Map.Entry<String, Boolean> group : memberships.get(i).entrySet()) {
+                    json.writeBooleanField(group.getKey(), group.getValue());
+                }
+                json.writeEndObject();
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+        }
+    }
+
+    /**
+     * Writes the Kyverno employee directory (YAML).
+     */
+    public void writeEmployeesYaml(OutputStream out) throws IOException {
+        List<Map<String, Boolean>> memberships = memberships();
+        try (Writer yaml = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+            yaml.write("employees:\n");
+            for (int i = 0; i < employees; i++) {
+                yaml.write("  - name: " + name(i) + "\n");
+                yaml.write("    id: " + id(i) + "\n");
+                yaml.write("    groups:\n");
+                for (Map.Entry<String, Boolean> group : memberships.get(i).entrySet()) {
+                    yaml.write("      " + group.getKey() + ": " + group.getValue() + "\n");
+                }
+            }
+        }
+    }
+
+    public byte[] employeesJson() {
+        return toBytes(this::writeEmployeesJson);
+    }
+
+    public byte[] employeesYaml() {
+        return toBytes(this::writeEmployeesYaml);
+    }
+
+    /**
+     * Writes all files below the root directory.
+     */
+    public void writeTo(Path root) throws IOException {
+        Path opa = Files.createDirectories(root.resolve("physical-access-control-opa"));
+        Path kyverno = Files.createDirectories(root.resolve("physical-access-control"));
+        Path opaUsers = recreate(opa.resolve("pip-users"));
+        Path kyvernoUsers = recreate(kyverno.resolve("pip-users"));
+
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(opa.resolve("pip-info-employee-vde-trainings.json")))) {
+            writeEmployeesJson(out);
+        }
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(kyverno.resolve("pip-info-employee-vde-trainings.yml")))) {
+            writeEmployeesYaml(out);
+        }
+
+        List<Map<String, Boolean>> memberships = memberships();
+        for (int i = 0; i < users; i++) {
+            List<String> held = memberships.get(i).entrySet().stream()
+                    .filter(Map.Entry::getValue).map(Map.Entry::getKey).toList();
+            String file = "pip-userinfo-" + id(i).toLowerCase();
+            Files.writeString(opaUsers.resolve(file + ".json"), opaUser(i, held));
+            Files.writeString(kyvernoUsers.resolve(file + ".yml"), kyvernoUser(i, held));
+        }
+    }
+
+    private String opaUser(int employee, List<String> held) {
+        StringBuilder groupList = new StringBuilder();
+        for (String group : held) {
+            groupList.append(groupList.isEmpty() ? "" : ", ").append('"').append(group).append('"');
+        }
+        return """
+                {
+                  "request": {
+                    "admissionTime": "%s",
+                    "operation": "ENTER",
+                    "resource": {
+                      "apiVersion": "v1",
+                      "kind": "Facility",
+                      "metadata": {
+                        "name": "main-entrance-door",
+                        "labels": {
+                          "location": "production-room"
+                        }
+                      }
+                    },
+                    "userInfo": {
+                      "username": "%s",
+                      "uid": "%s",
+                      "groups": [%s]
+                    }
+                  }
+                }
+                """.formatted(admissionTime, name(employee), id(employee), groupList);
+    }
+
+    private static String kyvernoUser(int employee, List<String> held) {
+        StringBuilder yaml = new StringBuilder()
+                .append("apiVersion: cli.kyverno.io/v1alpha1\n")
+                .append("kind: UserInfo\n")
+                .append("metadata:\n")
+                .append("  name: ").append(id(employee).toLowerCase()).append('\n')
+                .append("userInfo:\n")
+                .append("  username: ").append(name(employee)).append('\n')
+                .append("  uid: ").append(id(employee)).append('\n')
+                .append("  groups:");
+        if (held.isEmpty()) {
+            yaml.append(" []");
+        }
+        yaml.append('\n');
+        for (String group : held) {
+            yaml.append("    - ").append(group).append('\n');
+        }
+        return yaml.toString();
+    }
+
+    /**
+     * Empties a user directory, so a smaller dataset does not leave files of a bigger one behind.
+     */
+    private static Path recreate(Path directory) throws IOException {
+        if (Files.isDirectory(directory)) {
+            try (var files = Files.list(directory)) {
+                for (Path file : files.toList()) {
+                    Files.delete(file);
+                }
+            }
+        }
+        return Files.createDirectories(directory);
+    }
+
+    private interface Writing {
+
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private static byte[] toBytes(Writing writing) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            writing.writeTo(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static Map<String, Double> defaultGroups() {
+        Map<String, Double> groups = new LinkedHashMap<>();
+        groups.put("employee-group", 1.0);
+        groups.put("training-vde-available-group", 0.5);
+        return Collections.unmodifiableMap(groups);
+    }
+
+    /**
+     * Parses "group:share,group:share" in the given order.
+     */
+    static Map<String, Double> parseGroups(String spec) {
+        Map<String, Double> groups = new LinkedHashMap<>();
+        for (String entry : spec.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected group:share, got " + entry);
+            }
+            groups.put(parts[0].trim(), Double.parseDouble(parts[1].trim()));
+        }
+        return groups;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: SyntheticDataset <output directory> [employees=N] [users=N] "
+                    + "[groups=group:share,...] [seed=N] [admission-time=ISO-8601]");
+            System.exit(2);
+        }
+        Map<String, String> options = Options.parse(args, 1);
+        SyntheticDataset dataset = new SyntheticDataset(
+                Integer.parseInt(options.getOrDefault("employees", "10000")),
+                Integer.parseInt(options.getOrDefault("users", "1000")),
+                options.containsKey("groups") ? parseGroups(options.get("groups")) : DEFAULT_GROUPS,
+                Long.parseLong(options.getOrDefault("seed", "42")),
+                options.getOrDefault("admission-time", "2025-10-20T08:30:00Z"));
+
+        Path root = Path.of(args[0]);
+        long start = System.nanoTime();
+        dataset.writeTo(root);
+        System.out.printf("Wrote %d employees and %d user files per engine to %s in %d ms%n",
+                dataset.employees, dataset.users, root.toAbsolutePath(), (System.nanoTime() - start) / 1_000_000);
+    }
+}
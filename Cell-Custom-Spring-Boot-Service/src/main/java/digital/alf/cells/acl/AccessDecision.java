@@ -0,0 +1,24 @@
+package digital.alf.cells.acl;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Answer to "may this principal perform this action on this resource at this time?".
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccessDecision {
+    private String principal;
+    private String action;
+    private String resource;
+    private Instant at;
+    private boolean allow;
+    private String message;    // Why access is denied; null when allowed
+}
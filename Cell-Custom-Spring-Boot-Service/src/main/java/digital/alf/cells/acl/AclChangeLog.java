@@ -0,0 +1,137 @@
+package digital.alf.cells.acl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Versioned set of ACL entries that records every change as a delta.
+ *
+ * Each change that adds or removes at least one entry increments the version. The deltas of the
+ * last retainedVersions versions are kept, so a client that synced at version v receives only
+ * the entries added and removed since v ({@link #changesSince(long)}). A client whose version is
+ * older than the retained history gets a reset: the full current set, to replace its own.
+ *
+ * Entries are compared with equals/hashCode; the set holds each entry once.
+ *
+ * @param <E> ACL entry type
+ */
+public class AclChangeLog<E> {
+
+    /**
+     * Net changes between two versions.
+     *
+     * @param since   Version the client had
+     * @param version Current version; the client's next since
+     * @param reset   True if the history no longer reaches since: added is the full current set
+     *                and the client must drop the entries it holds
+     * @param added   Entries to add, in the order they were added
+     * @param removed Entries to remove
+     */
+    public record Changes<E>(long since, long version, boolean reset, List<E> added, List<E> removed) {
+    }
+
+    private record Change<E>(long version, List<E> added, List<E> removed) {
+    }
+
+    private final int retainedVersions;
+    private final Set<E> entries = new LinkedHashSet<>();
+    private final Deque<Change<E>> history = new ArrayDeque<>();
+    private long version;
+
+    public AclChangeLog(int retainedVersions) {
+        this.retainedVersions = Math.max(1, retainedVersions);
+    }
+
+    public synchronized long version() {
+        return version;
+    }
+
+    public synchronized List<E> entries() {
+        return List.copyOf(entries);
+    }
+
+    /**
+     * Removes and adds entries; an entry in both collections is left as it is.
+     *
+     * @return The version after the change (unchanged if nothing was added or removed)
+     */
+    public synchronized long apply(Collection<E> removed, Collection<E> added) {
+        Set<E> addedSet = new LinkedHashSet<>(added);
+        List<E> actuallyRemoved = new ArrayList<>();
+        for (E entry : new LinkedHashSet<>(removed)) {
+            if (!addedSet.contains(entry) && entries.remove(entry)) {
+                actuallyRemoved.add(entry);
+            }
+        }
+        List<E> actuallyAdded = new ArrayList<>();
+        for (E entry : addedSet) {
+            if (entries.add(entry)) {
+                actuallyAdded.add(entry);
+            }
+        }
+
+        if (actuallyAdded.isEmpty() && actuallyRemoved.isEmpty()) {
+            return version;
+        }
+        version++;
+        history.addLast(new Change<>(version, List.copyOf(actuallyAdded), List.copyOf(actuallyRemoved)));
+        while (history.size() > retainedVersions) {
+            history.removeFirst();
+        }
+        return version;
+    }
+
+    /**
+     * Replaces the set with the given entries, recording the difference as one change.
+     *
+     * @return The version after the change
+     */
+    public synchronized long replaceAll(Collection<E> newEntries) {
+        Set<E> target = new LinkedHashSet<>(newEntries);
+        List<E> removed = entries.stream().filter(entry -> !target.contains(entry)).toList();
+        return apply(removed, target);
+    }
+
+    /**
+     * Net changes since the given version.
+     *
+     * @throws IllegalArgumentException if since is negative or newer than the current version
+     */
+    public synchronized Changes<E> changesSince(long since) {
+        if (since < 0 || since > version) {
+            throw new IllegalArgumentException("Version " + since + " is not between 0 and " + version);
+        }
+        if (since == version) {
+            return new Changes<>(since, version, false, List.of(), List.of());
+        }
+        if (history.isEmpty() || since < history.getFirst().version() - 1) {
+            return new Changes<>(since, version, true, List.copyOf(entries), List.of());
+        }
+
+        Set<E> added = new LinkedHashSet<>();
+        Set<E> removed = new LinkedHashSet<>();
+        for (Change<E> change : history) {
+            if (change.version() <= since) {
+                continue;
+            }
+            for (E entry : change.removed()) {
+                // Added after since and removed again: the client never saw it
+                if (!added.remove(entry)) {
+                    removed.add(entry);
+                }
+            }
+            for (E entry : change.added()) {
+                // Removed after since and added again: the client still has it
+                if (!removed.remove(entry)) {
+                    added.add(entry);
+                }
+            }
+        }
+        return new Changes<>(since, version, false, List.copyOf(added), List.copyOf(removed));
+    }
+}
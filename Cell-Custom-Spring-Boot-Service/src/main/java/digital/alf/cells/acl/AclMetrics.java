@@ -0,0 +1,177 @@
+package digital.alf.cells.acl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Micrometer meters of the ACL pipeline, published on /actuator/prometheus.
+ *
+ * Shared by the OPA and Kyverno paths; meters carry an engine tag ("opa" or "kyverno"), except
+ * acl.serialization and acl.snapshot.age, whose format and snapshot tags imply it.
+ * Timers (with percentile histograms):
+ *   acl.policy.parse      policy file to policy data
+ *   acl.employees.parse   employee file to employee list
+ *   acl.evaluation        dynamic evaluation of all users of the pip-users directory
+ *   acl.generation        ACL entries from parsed inputs; kind = static | dynamic (includes evaluation)
+ *   acl.serialization     ACL entries to a response body; format = text | json | ndjson
+ * Counters:
+ *   acl.cli.spawns        CLI processes started (opa eval / build / run, kyverno apply)
+ *   acl.cli.exits         CLI processes finished, by exit code
+ *   acl.cli.parse.failures CLI output (or OPA server responses) that could not be parsed
+ *   acl.evaluation.outcomes user decisions of dynamic evaluations; outcome = allow | deny | error
+ * Gauges:
+ *   acl.snapshot.age      seconds since the snapshot was computed (NaN before the first one)
+ *   acl.employees         employees of the current static snapshot
+ *
+ * Meters are registered on Micrometer's global registry, to which Spring Boot adds its
+ * registries (management.metrics.use-global-registry), so parsers and executors constructed
+ * outside the application context, as in unit tests and benchmarks, need no registry and
+ * record nothing. Gauges hold their state weakly; it is owned by the strategy beans.
+ */
+public final class AclMetrics {
+
+    public static final String OPA = "opa";
+    public static final String KYVERNO = "kyverno";
+
+    public static final String STATIC = "static";
+    public static final String DYNAMIC = "dynamic";
+
+    private static final MeterRegistry REGISTRY = Metrics.globalRegistry;
+
+    private AclMetrics() {
+    }
+
+    /**
+     * A timed call that may fail with a checked exception.
+     */
+    @FunctionalInterface
+    public interface Call<T, X extends Exception> {
+
+        T call() throws X;
+    }
+
+    /**
+     * A timed call without result that may fail with a checked exception.
+     */
+    @FunctionalInterface
+    public interface Run<X extends Exception> {
+
+        void run() throws X;
+    }
+
+    public static <T, X extends Exception> T timePolicyParse(String engine, Call<T, X> call) throws X {
+        return time(timer("acl.policy.parse", "Policy parsing", "engine", engine), call);
+    }
+
+    public static <T, X extends Exception> T timeEmployeesParse(String engine, Call<T, X> call) throws X {
+        return time(timer("acl.employees.parse", "Employee file parsing", "engine", engine), call);
+    }
+
+    public static <T, X extends Exception> T timeEvaluation(String engine, Call<T, X> call) throws X {
+        return time(timer("acl.evaluation", "Dynamic evaluation of all users", "engine", engine), call);
+    }
+
+    public static <T, X extends Exception> T timeGeneration(String engine, String kind, Call<T, X> call) throws X {
+        return time(timer("acl.generation", "ACL generation", "engine", engine, "kind", kind), call);
+    }
+
+    public static <T, X extends Exception> T timeSerialization(String format, Call<T, X> call) throws X {
+        return time(timer("acl.serialization", "ACL serialization", "format", format), call);
+    }
+
+    public static <X extends Exception> void timeSerialization(String format, Run<X> run) throws X {
+        timeSerialization(format, () -> {
+            run.run();
+            return null;
+        });
+    }
+
+    public static void cliSpawned(String engine) {
+        counter("acl.cli.spawns", "CLI processes started", "engine", engine).increment();
+    }
+
+    public static void cliExited(String engine, int exitCode) {
+        counter("acl.cli.exits", "CLI processes finished", "engine", engine, "code", String.valueOf(exitCode)).increment();
+    }
+
+    public static void cliParseFailed(String engine) {
+        counter("acl.cli.parse.failures", "CLI outputs that could not be parsed", "engine", engine).increment();
+    }
+
+    /**
+     * Counts the decisions of one dynamic evaluation.
+     */
+    public static void evaluationOutcomes(String engine, long allowed, long denied, long failed) {
+        outcomes(engine, "allow").increment(allowed);
+        outcomes(engine, "deny").increment(denied);
+        outcomes(engine, "error").increment(failed);
+    }
+
+    /**
+     * Publishes the age of the published snapshot as acl.snapshot.age{snapshot=name}.
+     */
+    public static void snapshotAge(AclSnapshots<?, ?> snapshots, Clock clock) {
+        Gauge.builder("acl.snapshot.age", snapshots, s -> ageSeconds(s, clock))
+                .description("Time since the ACL snapshot was computed")
+                .baseUnit("seconds")
+                .tag("snapshot", snapshots.name())
+                .register(REGISTRY);
+    }
+
+    /**
+     * Publishes the count as acl.employees{engine}; the caller sets it on every static snapshot.
+     *
+     * @return the count
+     */
+    public static AtomicInteger employeeCount(String engine, AtomicInteger count) {
+        Gauge.builder("acl.employees", count, AtomicInteger::get)
+                .description("Employees of the current static ACL snapshot")
+                .tag("engine", engine)
+                .register(REGISTRY);
+        return count;
+    }
+
+    static double ageSeconds(AclSnapshots<?, ?> snapshots, Clock clock) {
+        try {
+            return Duration.between(snapshots.published().computedAt(), clock.instant()).toMillis() / 1000.0;
+        } catch (AclNotReadyException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static <T, X extends Exception> T time(Timer timer, Call<T, X> call) throws X {
+        long start = System.nanoTime();
+        try {
+            return call.call();
+        } finally {
+            timer.record(Duration.ofNanos(System.nanoTime() - start));
+        }
+    }
+
+    private static Timer timer(String name, String description, String... tags) {
+        return Timer.builder(name)
+                .description(description)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(REGISTRY);
+    }
+
+    private static Counter counter(String name, String description, String... tags) {
+        return Counter.builder(name)
+                .description(description)
+                .tags(tags)
+                .register(REGISTRY);
+    }
+
+    private static Counter outcomes(String engine, String outcome) {
+        return counter("acl.evaluation.outcomes", "User decisions of dynamic evaluations",
+                "engine", engine, "outcome", outcome);
+    }
+}
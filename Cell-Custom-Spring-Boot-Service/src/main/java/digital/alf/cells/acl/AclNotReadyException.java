@@ -0,0 +1,14 @@
+package digital.alf.cells.acl;
+
+import java.io.IOException;
+
+/**
+ * Thrown when an ACL is served from background snapshots and the first one has not been
+ * computed yet. Controllers answer it with 503 rather than computing the ACL inline.
+ */
+public class AclNotReadyException extends IOException {
+
+    public AclNotReadyException(String name) {
+        super(name + " ACL snapshot not computed yet");
+    }
+}
@@ -0,0 +1,37 @@
+package digital.alf.cells.acl;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * OUT_OF_SERVICE until every precomputed ACL snapshot exists, then UP with the time each one
+ * was computed at.
+ *
+ * Part of the readiness group (management.endpoint.health.group.readiness.include), so
+ * traffic is only routed to an instance that can answer /generate* from memory.
+ */
+@Component
+@RequiredArgsConstructor
+public class AclPrecomputeHealthIndicator implements HealthIndicator {
+
+    private final AclPrecomputeScheduler scheduler;
+
+    @Override
+    public Health health() {
+        Health.Builder health = scheduler.isReady() ? Health.up() : Health.outOfService();
+        for (AclSnapshots<?, ?> acl : scheduler.snapshots()) {
+            health.withDetail(acl.name(), computedAt(acl));
+        }
+        return health.build();
+    }
+
+    private static String computedAt(AclSnapshots<?, ?> acl) {
+        try {
+            return acl.published().computedAt().toString();
+        } catch (AclNotReadyException e) {
+            return "pending";
+        }
+    }
+}
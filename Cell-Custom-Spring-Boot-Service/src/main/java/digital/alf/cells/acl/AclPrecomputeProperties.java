@@ -0,0 +1,35 @@
+package digital.alf.cells.acl;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Configuration for background ACL precomputation (prefix "acl.precompute").
+ *
+ * Example (application.properties):
+ *   acl.precompute.enabled=true
+ *   acl.precompute.check-interval=5s
+ *   acl.precompute.refresh-interval=10m
+ */
+@Data
+@ConfigurationProperties(prefix = "acl.precompute")
+public class AclPrecomputeProperties {
+
+    /**
+     * Whether the /generate* endpoints are served from background snapshots only. When
+     * disabled, a stale snapshot is recomputed by the request that finds it.
+     */
+    private boolean enabled = true;
+
+    /**
+     * How often the inputs (policy, employee snapshot, time bounds) are checked for changes.
+     */
+    private Duration checkInterval = Duration.ofSeconds(5);
+
+    /**
+     * How often every ACL is regenerated even when no tracked input changed; 0 = never.
+     */
+    private Duration refreshInterval = Duration.ofMinutes(10);
+}
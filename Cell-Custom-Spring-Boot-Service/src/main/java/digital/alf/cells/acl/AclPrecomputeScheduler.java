@@ -0,0 +1,120 @@
+package digital.alf.cells.acl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Computes the ACL snapshots of both engines in the background, so that no request pays for
+ * an evaluation.
+ *
+ * On start every snapshot is switched to {@link AclSnapshots#publishInBackground()} and the
+ * first ones are computed right away. Then, on one background thread:
+ *
+ *   every acl.precompute.check-interval    -> snapshots whose inputs changed are recomputed
+ *   every acl.precompute.refresh-interval  -> every snapshot is recomputed
+ *
+ * Policy time bounds are still handled by the snapshots themselves. A failed computation is
+ * logged and retried on the next check, keeping the previous snapshot. Until every snapshot
+ * exists the application reports itself not ready (see {@link AclPrecomputeHealthIndicator}).
+ */
+@Component
+@Slf4j
+public class AclPrecomputeScheduler implements SmartLifecycle, DisposableBean {
+
+    private final AclPrecomputeProperties properties;
+    private final List<AclSnapshots<?, ?>> snapshots;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "acl-precompute");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final List<Future<?>> tasks = new ArrayList<>();
+    private volatile boolean running;
+
+    public AclPrecomputeScheduler(AclPrecomputeProperties properties, List<PrecomputedAcls> sources) {
+        this.properties = properties;
+        this.snapshots = sources.stream().flatMap(source -> source.precomputedAcls().stream()).toList();
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        if (properties.isEnabled()) {
+            snapshots.forEach(AclSnapshots::publishInBackground);
+            tasks.add(scheduler.submit(() -> refreshAll(true)));
+
+            long check = properties.getCheckInterval().toMillis();
+            if (check > 0) {
+                tasks.add(scheduler.scheduleWithFixedDelay(() -> refreshAll(false), check, check, TimeUnit.MILLISECONDS));
+            }
+            long refresh = properties.getRefreshInterval().toMillis();
+            if (refresh > 0) {
+                tasks.add(scheduler.scheduleWithFixedDelay(() -> refreshAll(true), refresh, refresh, TimeUnit.MILLISECONDS));
+            }
+            log.info("Precomputing {} ACL snapshots in background", snapshots.size());
+        }
+        running = true;
+    }
+
+    /**
+     * Cancels the background computations. The scheduler thread lives until the bean is
+     * destroyed, so a later {@link #start()} schedules them again.
+     */
+    @Override
+    public synchronized void stop() {
+        running = false;
+        tasks.forEach(task -> task.cancel(false));
+        tasks.clear();
+    }
+
+    @Override
+    public void destroy() {
+        stop();
+        scheduler.shutdownNow();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Whether every snapshot has been computed; always true when precomputation is disabled.
+     */
+    public boolean isReady() {
+        return !properties.isEnabled() || snapshots.stream().allMatch(AclSnapshots::isReady);
+    }
+
+    /**
+     * The snapshots being precomputed.
+     */
+    public List<AclSnapshots<?, ?>> snapshots() {
+        return snapshots;
+    }
+
+    /**
+     * Recomputes stale snapshots, or all of them when forced.
+     */
+    void refreshAll(boolean force) {
+        for (AclSnapshots<?, ?> acl : snapshots) {
+            try {
+                acl.refresh(force || !acl.isReady());
+            } catch (Exception e) {
+                // Not fatal: the previous snapshot (if any) is served and the next check retries
+                log.warn("Precomputing {} ACL snapshot failed", acl.name(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package digital.alf.cells.acl;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.config.annotation.web.builders.HttpSecurity;
+import org.springframework.security.web.SecurityFilterChain;
+
+import static org.springframework.security.config.Customizer.withDefaults;
+
+/**
+ * Spring Boot's default security (every request authenticated, form login and HTTP basic),
+ * with CSRF protection lifted for the bulk decision endpoints.
+ *
+ * Those are POSTs from machine clients (door controllers) authenticating with HTTP basic,
+ * which have no session to carry a CSRF token. They only evaluate the policy and change no
+ * state, so there is nothing for a forged request to abuse.
+ *
+ * The health endpoints (liveness and readiness probes) are open: they only report a status.
+ */
+@Configuration
+public class AclSecurityConfig {
+
+    @Bean
+    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
+        http.authorizeHttpRequests(requests -> requests
+                        .requestMatchers("/actuator/health", "/actuator/health/**").permitAll()
+                        .anyRequest().authenticated())
+                .formLogin(withDefaults())
+                .httpBasic(withDefaults())
+                .csrf(csrf -> csrf.ignoringRequestMatchers("/api/acl/decisions", "/api/acl/opa/decisions"));
+        return http.build();
+    }
+}
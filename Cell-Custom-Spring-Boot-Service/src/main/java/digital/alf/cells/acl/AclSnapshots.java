@@ -0,0 +1,264 @@
+package digital.alf.cells.acl;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The current ACL of a policy, computed once and served from memory until it may have changed.
+ *
+ * Shared by the OPA and Kyverno static generation. A snapshot is stale when
+ * - its source (e.g. the employee directory snapshot it was generated from) is no longer the
+ *   current one; the check is a reference comparison, falling back to equals, or
+ * - the clock reached the first policy time boundary after the instant it was computed at.
+ *
+ * A time bound t of the policy flips a comparison at t (>=, <) or just after it (>, <=), so
+ * both instants count as boundaries. When a snapshot is taken, its recomputation is scheduled
+ * for its boundary, so the first request after a window opens or closes normally finds the new
+ * snapshot ready. Between boundaries a request costs a source lookup and a clock read.
+ *
+ * Once {@link #publishInBackground()} is called (by {@link AclPrecomputeScheduler}), requests
+ * never compute: {@link #entries()} returns the published snapshot, or fails with
+ * {@link AclNotReadyException} before the first one, and the scheduler {@link #refresh}es it.
+ * Either way a new snapshot is published by a single reference swap, so readers see the old
+ * or the new one, never a partial one.
+ *
+ * The age of the published snapshot is published as the acl.snapshot.age gauge (see
+ * {@link AclMetrics}).
+ *
+ * @param <S> Source the entries are generated from
+ * @param <E> ACL entry type
+ */
+@Slf4j
+public class AclSnapshots<S, E> {
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "acl-snapshots");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Returns the current source; called on every request (every refresh check when published
+     * in background), so it must be cheap.
+     */
+    @FunctionalInterface
+    public interface Source<S> {
+
+        S current() throws IOException;
+    }
+
+    /**
+     * Generates the entries from a source at an instant.
+     */
+    @FunctionalInterface
+    public interface Generator<S, E> {
+
+        Generated<E> generate(S source, Instant at) throws IOException;
+    }
+
+    /**
+     * Generated entries plus the policy time bounds they depend on.
+     */
+    public record Generated<E>(List<E> entries, Collection<Instant> timeBounds) {
+    }
+
+    /**
+     * Entries valid for a source from computedAt until validUntil (exclusive; null = no boundary).
+     */
+    public record Snapshot<S, E>(S source, List<E> entries, Instant computedAt, Instant validUntil) {
+
+        boolean isValid(S currentSource, Instant now) {
+            return (source == currentSource || Objects.equals(source, currentSource))
+                    && (validUntil == null || now.isBefore(validUntil));
+        }
+    }
+
+    private final String name;
+    private final Source<S> source;
+    private final Generator<S, E> generator;
+    private final Clock clock;
+    private final ScheduledExecutorService scheduler;
+
+    private volatile Snapshot<S, E> snapshot;
+    private volatile boolean background;
+    private ScheduledFuture<?> scheduled;
+
+    private AclSnapshots(String name, Source<S> source, Generator<S, E> generator, Clock clock,
+                         ScheduledExecutorService scheduler) {
+        this.name = name;
+        this.source = source;
+        this.generator = generator;
+        this.clock = clock;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Creates the snapshots of a policy and registers their acl.snapshot.age gauge.
+     */
+    public static <S, E> AclSnapshots<S, E> create(String name, Source<S> source, Generator<S, E> generator,
+                                                   Clock clock) {
+        return create(name, source, generator, clock, SCHEDULER);
+    }
+
+    static <S, E> AclSnapshots<S, E> create(String name, Source<S> source, Generator<S, E> generator, Clock clock,
+                                            ScheduledExecutorService scheduler) {
+        AclSnapshots<S, E> snapshots = new AclSnapshots<>(name, source, generator, clock, scheduler);
+        AclMetrics.snapshotAge(snapshots, clock);
+        return snapshots;
+    }
+
+    /**
+     * Name used in logs and health details, e.g. "OPA".
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Entries of the current snapshot, recomputed first if it is stale. When published in
+     * background, the entries of the published snapshot as they are.
+     *
+     * @throws AclNotReadyException if published in background and no snapshot exists yet
+     * @throws IOException          if the source or the generation fails
+     */
+    public List<E> entries() throws IOException {
+        if (background) {
+            return published().entries();
+        }
+        return snapshot().entries();
+    }
+
+    /**
+     * The published snapshot, without checking whether it is stale.
+     *
+     * @throws AclNotReadyException if no snapshot has been computed yet
+     */
+    public Snapshot<S, E> published() throws AclNotReadyException {
+        Snapshot<S, E> current = snapshot;
+        if (current == null) {
+            throw new AclNotReadyException(name);
+        }
+        return current;
+    }
+
+    /**
+     * Whether a snapshot has been computed.
+     */
+    public boolean isReady() {
+        return snapshot != null;
+    }
+
+    /**
+     * Stops computing on request: from now on only {@link #refresh} computes snapshots.
+     */
+    public void publishInBackground() {
+        background = true;
+    }
+
+    /**
+     * Whether snapshots are computed in background only.
+     */
+    public boolean isPublishedInBackground() {
+        return background;
+    }
+
+    /**
+     * Recomputes the snapshot if it is stale, or unconditionally when forced (e.g. for inputs
+     * the source does not track, such as the clock in a dynamically evaluated policy).
+     *
+     * @return whether a new snapshot was published
+     * @throws IOException if the source or the generation fails; the previous snapshot stays
+     */
+    public boolean refresh(boolean force) throws IOException {
+        S currentSource = source.current();
+        synchronized (this) {
+            Snapshot<S, E> current = snapshot;
+            if (!force && current != null && current.isValid(currentSource, clock.instant())) {
+                return false;
+            }
+            recompute(currentSource);
+            return true;
+        }
+    }
+
+    /**
+     * The current snapshot, recomputed first if it is stale.
+     *
+     * @throws IOException if the source or the generation fails
+     */
+    public Snapshot<S, E> snapshot() throws IOException {
+        S currentSource = source.current();
+        Snapshot<S, E> current = snapshot;
+        if (current != null && current.isValid(currentSource, clock.instant())) {
+            return current;
+        }
+        synchronized (this) {
+            current = snapshot;
+            if (current == null || !current.isValid(currentSource, clock.instant())) {
+                current = recompute(currentSource);
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Generates a new snapshot and schedules its recomputation; called holding the lock.
+     */
+    private Snapshot<S, E> recompute(S currentSource) throws IOException {
+        Instant at = clock.instant();
+        Generated<E> generated = generator.generate(currentSource, at);
+        Instant validUntil = nextBoundary(generated.timeBounds(), at);
+        Snapshot<S, E> computed = new Snapshot<>(currentSource, List.copyOf(generated.entries()), at, validUntil);
+        snapshot = computed;
+        log.info("{} ACL snapshot computed ({} entries, valid until {})",
+                name, computed.entries().size(), validUntil != null ? validUntil : "source change");
+
+        if (scheduled != null) {
+            scheduled.cancel(false);
+            scheduled = null;
+        }
+        if (validUntil != null) {
+            long delayNanos = Math.max(0, Duration.between(at, validUntil).toNanos());
+            scheduled = scheduler.schedule(this::recomputeAtBoundary, delayNanos, TimeUnit.NANOSECONDS);
+        }
+        return computed;
+    }
+
+    private void recomputeAtBoundary() {
+        try {
+            // Unconditionally: the timer may fire a little before the snapshot clock reaches the boundary
+            synchronized (this) {
+                recompute(source.current());
+            }
+        } catch (Exception e) {
+            // Not fatal: the next request (or background refresh) recomputes the stale snapshot
+            log.warn("Recomputing {} ACL snapshot at time boundary failed", name, e);
+        }
+    }
+
+    /**
+     * First instant after {@code at} at which a comparison with one of the bounds can flip, or null.
+     */
+    public static Instant nextBoundary(Collection<Instant> timeBounds, Instant at) {
+        Instant next = null;
+        for (Instant bound : timeBounds) {
+            for (Instant boundary : List.of(bound, bound.plusNanos(1))) {
+                if (boundary.isAfter(at) && (next == null || boundary.isBefore(next))) {
+                    next = boundary;
+                }
+            }
+        }
+        return next;
+    }
+}
@@ -0,0 +1,33 @@
+package digital.alf.cells.acl;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * ACL entries produced on demand, one at a time.
+ *
+ * Returned by the policy-to-ACL strategies for the streaming endpoints: inputs that can fail
+ * cheaply (policy and employee files) are resolved when the stream is created, so errors still
+ * become a 500; the entries themselves are generated only when {@link #forEach} runs, while the
+ * response is being written.
+ *
+ * @param <T> ACL entry type
+ */
+@FunctionalInterface
+public interface AclStream<T> {
+
+    /**
+     * Generates the entries in order and hands each one to the sink.
+     *
+     * @throws IOException if generation fails (e.g. dynamic evaluation passes its deadline)
+     */
+    void forEach(Consumer<? super T> sink) throws IOException;
+
+    /**
+     * Stream over entries that already exist, e.g. a precomputed snapshot.
+     */
+    static <T> AclStream<T> of(List<T> entries) {
+        return entries::forEach;
+    }
+}
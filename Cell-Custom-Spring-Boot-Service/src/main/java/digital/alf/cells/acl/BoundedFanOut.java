@@ -0,0 +1,117 @@
+package digital.alf.cells.acl;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs independent evaluation tasks on virtual threads with a concurrency limit.
+ *
+ * Shared by the OPA and Kyverno dynamic evaluation paths:
+ * - at most {@code concurrency} tasks run at once (a semaphore guards the virtual threads)
+ * - a task exceeding {@code taskTimeout} is cancelled and yields null
+ * - when {@code deadline} passes, every unfinished task is cancelled and an IOException is thrown
+ * - results are returned in task order, regardless of completion order
+ *
+ * With a concurrency of 1 (or a single task) the tasks run one after another on the calling
+ * thread, without timeouts.
+ */
+@Slf4j
+public final class BoundedFanOut {
+
+    private BoundedFanOut() {
+    }
+
+    /**
+     * @param tasks       Tasks to run; a task that throws yields null
+     * @param concurrency Maximum number of tasks running at once
+     * @param taskTimeout Time allowed for a single task once it has started
+     * @param deadline    Time allowed for all tasks together
+     * @return Task results in task order
+     * @throws IOException if the deadline passes or the calling thread is interrupted
+     */
+    public static <T> List<T> runAll(List<Callable<T>> tasks, int concurrency, Duration taskTimeout, Duration deadline)
+            throws IOException {
+        List<T> results = new ArrayList<>(tasks.size());
+
+        if (concurrency <= 1 || tasks.size() <= 1) {
+            for (Callable<T> task : tasks) {
+                try {
+                    results.add(task.call());
+                } catch (Exception e) {
+                    log.error("Error during evaluation", e);
+                    results.add(null);
+                }
+            }
+            return results;
+        }
+
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        Semaphore permits = new Semaphore(concurrency);
+        AtomicBoolean aborted = new AtomicBoolean();
+        List<Future<T>> futures = new ArrayList<>(tasks.size());
+        long deadlineNanos = System.nanoTime() + deadline.toNanos();
+
+        try {
+            for (Callable<T> task : tasks) {
+                futures.add(executor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        // A permit freed by cancellation must not start queued work
+                        return aborted.get() ? null : runWithTimeout(executor, task, taskTimeout);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+
+            for (Future<T> future : futures) {
+                results.add(future.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS));
+            }
+            return results;
+
+        } catch (TimeoutException e) {
+            long outstanding = futures.stream().filter(f -> !f.isDone()).count();
+            log.error("Evaluation exceeded {}; cancelling {} outstanding of {} tasks",
+                    deadline, outstanding, tasks.size());
+            throw new IOException("Evaluation exceeded " + deadline, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Evaluation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Evaluation failed", e.getCause());
+        } finally {
+            aborted.set(true);
+            futures.forEach(f -> f.cancel(true));
+            executor.shutdownNow();
+        }
+    }
+
+    private static <T> T runWithTimeout(ExecutorService executor, Callable<T> task, Duration taskTimeout)
+            throws InterruptedException {
+        Future<T> future = executor.submit(task);
+        try {
+            return future.get(taskTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.error("Evaluation exceeded task timeout of {}; skipping", taskTimeout);
+            return null;
+        } catch (ExecutionException e) {
+            log.error("Error during evaluation", e.getCause());
+            return null;
+        } finally {
+            future.cancel(true);
+        }
+    }
+}
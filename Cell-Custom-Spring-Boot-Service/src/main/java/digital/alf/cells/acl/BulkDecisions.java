@@ -0,0 +1,149 @@
+package digital.alf.cells.acl;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.function.Consumer;
+
+/**
+ * Evaluates a stream of {@link DecisionRequest}s against one {@link DecisionIndex}.
+ *
+ * The request body may be a JSON array or newline-delimited JSON (one object per line):
+ *
+ *   [{"principal":"ES-4902","action":"ENTER","resource":"Facility"}, ...]
+ *
+ *   {"principal":"ES-4902","action":"ENTER","resource":"Facility"}
+ *   {"principal":"BC-3115","action":"ENTER","resource":"Facility","at":"2025-10-20T08:30:00Z"}
+ *
+ * Requests are read one at a time and every decision is handed on before the next request is
+ * read, so neither side is held in memory and results come out in input order. The index is
+ * fetched once per bulk request, which is where HTTP, authentication and policy lookup costs
+ * are amortised.
+ *
+ * The start of the body, up to and including the first request, is read by {@link #decide}
+ * itself, before the response is committed, so a body that is not JSON or not a sequence of
+ * objects is rejected with a {@link JsonProcessingException} the controllers turn into a 400.
+ * A malformed request further down can only end the already streaming response early.
+ */
+public final class BulkDecisions {
+
+    private BulkDecisions() {
+    }
+
+    /**
+     * Decisions for the requests in the body, in input order.
+     *
+     * @param defaultAt time used for requests without "at"
+     * @throws JsonProcessingException if the start of the body is malformed
+     * @throws IOException if the body cannot be read
+     */
+    public static AclStream<AccessDecision> decide(
+            DecisionIndex index,
+            InputStream body,
+            ObjectMapper objectMapper,
+            Instant defaultAt) throws IOException {
+        Requests requests = Requests.open(body, objectMapper);
+        return sink -> {
+            try (requests) {
+                for (DecisionRequest request = requests.next(); request != null; request = requests.next()) {
+                    sink.accept(index.decide(
+                            request.getPrincipal(),
+                            request.getAction(),
+                            request.getResource(),
+                            request.getAt() != null ? request.getAt() : defaultAt));
+                }
+            }
+        };
+    }
+
+    /**
+     * Reads the requests of a JSON array or NDJSON body and hands them to the consumer.
+     *
+     * @return number of requests read
+     * @throws IOException if the body is not an array or a sequence of JSON objects
+     */
+    public static long read(InputStream body, ObjectMapper objectMapper, Consumer<DecisionRequest> consumer) throws IOException {
+        long count = 0;
+        try (Requests requests = Requests.open(body, objectMapper)) {
+            for (DecisionRequest request = requests.next(); request != null; request = requests.next()) {
+                consumer.accept(request);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Pull reader over the requests of a body, one request ahead of the caller.
+     */
+    private static final class Requests implements Closeable {
+
+        private final JsonParser parser;
+        private final ObjectReader reader;
+        private boolean array;
+        private DecisionRequest ahead;
+
+        private Requests(JsonParser parser, ObjectReader reader) {
+            this.parser = parser;
+            this.reader = reader;
+        }
+
+        /**
+         * Opens the body and reads its first request.
+         */
+        static Requests open(InputStream body, ObjectMapper objectMapper) throws IOException {
+            Requests requests = new Requests(
+                    objectMapper.getFactory().createParser(body),
+                    objectMapper.readerFor(DecisionRequest.class));
+            try {
+                JsonToken token = requests.parser.nextToken();
+                requests.array = token == JsonToken.START_ARRAY;
+                if (requests.array) {
+                    token = requests.parser.nextToken();
+                }
+                requests.ahead = requests.readAt(token);
+                return requests;
+            } catch (IOException | RuntimeException e) {
+                requests.close();
+                throw e;
+            }
+        }
+
+        /**
+         * @return the next request, or null at the end of the body
+         */
+        DecisionRequest next() throws IOException {
+            DecisionRequest request = ahead;
+            if (request != null) {
+                ahead = readAt(parser.nextToken());
+            }
+            return request;
+        }
+
+        private DecisionRequest readAt(JsonToken token) throws IOException {
+            if (token == null || array && token == JsonToken.END_ARRAY) {
+                if (array && token != JsonToken.END_ARRAY) {
+                    throw new JsonParseException(parser, "Unterminated decision request array");
+                }
+                return null;
+            }
+            if (token != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Decision requests must be JSON objects");
+            }
+            return reader.readValue(parser);
+        }
+
+        @Override
+        public void close() throws IOException {
+            parser.close();
+        }
+    }
+}
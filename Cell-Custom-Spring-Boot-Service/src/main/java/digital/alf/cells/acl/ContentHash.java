@@ -0,0 +1,39 @@
+package digital.alf.cells.acl;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Hex SHA-256 content hashes, used wherever a policy or data file version is identified by its
+ * content (parsed policy and Wasm module caches, employee directory snapshots, decision cache keys).
+ */
+public final class ContentHash {
+
+    private ContentHash() {
+    }
+
+    /**
+     * Hex SHA-256 of the parts, digested in order.
+     */
+    public static String sha256(byte[]... parts) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        for (byte[] part : parts) {
+            digest.update(part);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Hex SHA-256 of the UTF-8 encoding of a text.
+     */
+    public static String sha256(String text) {
+        return sha256(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,200 @@
+package digital.alf.cells.acl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Dynamic evaluation decisions shared across requests.
+ *
+ * Shared by the OPA and Kyverno dynamic evaluation paths. A decision is keyed by
+ * (policy content hash, normalized input hash, operation, admission time bucket):
+ * - the policy hash changes with the policy file, so an edited policy never sees old decisions;
+ *   entries of the superseded version are dropped as soon as the new hash is seen
+ * - the input is hashed as canonical JSON (sorted keys), so field order does not matter
+ * - entries expire after acl.decision-cache.ttl and the cache holds at most
+ *   acl.decision-cache.maximum-size entries, evicted by Caffeine's W-TinyLFU policy
+ *
+ * Only completed evaluations are cached: an input whose evaluation failed or timed out
+ * (null result) is evaluated again next time. Hit, miss and eviction counts are published
+ * as the "acl.decisions" cache metrics (cache.gets, cache.evictions, ...).
+ */
+@Slf4j
+@Component
+public class DecisionCache implements MeterBinder {
+
+    private static final String CACHE_NAME = "acl.decisions";
+
+    private static final ObjectMapper CANONICAL_JSON = JsonMapper.builder()
+            .enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+            .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+            .build();
+
+    private final DecisionCacheProperties properties;
+    private final Cache<Key, Boolean> decisions;
+    private final Map<String, String> policyVersions = new ConcurrentHashMap<>();
+
+    public DecisionCache(DecisionCacheProperties properties) {
+        this.properties = properties;
+        this.decisions = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getTtl())
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Decision-relevant input of one evaluation.
+     *
+     * @param document      Everything the policy may read apart from the operation and the
+     *                      admission time; hashed as canonical JSON
+     * @param operation     Requested operation
+     * @param admissionTime Admission time (RFC 3339), bucketed per acl.decision-cache.admission-time-bucket
+     */
+    public record Input(Object document, String operation, String admissionTime) {
+    }
+
+    private record Key(String policyVersion, String inputHash, String operation, Object timeBucket) {
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, decisions, CACHE_NAME);
+    }
+
+    /**
+     * Content hash of a policy on the classpath. When it differs from the hash last seen for
+     * the path, the decisions of the previous version are invalidated.
+     *
+     * @throws IOException if the policy cannot be read
+     */
+    String policyVersion(String policyPath) throws IOException {
+        String version = contentHash(policyPath);
+        String previous = policyVersions.put(policyPath, version);
+        if (previous != null && !previous.equals(version)) {
+            decisions.asMap().keySet().removeIf(key -> key.policyVersion().equals(previous));
+            log.info("Policy {} changed; invalidated its cached decisions", policyPath);
+        }
+        return version;
+    }
+
+    /**
+     * Hex SHA-256 of a classpath resource.
+     */
+    public String contentHash(String classpathResource) throws IOException {
+        try (InputStream inputStream = new ClassPathResource(classpathResource).getInputStream()) {
+            return ContentHash.sha256(inputStream.readAllBytes());
+        }
+    }
+
+    /**
+     * Hex SHA-256 of the canonical JSON form of an input (object keys sorted).
+     */
+    String inputHash(Object input) {
+        try {
+            return ContentHash.sha256(CANONICAL_JSON.writeValueAsBytes(input));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Admission time bucket: the time itself when the bucket is 0 or the time is not RFC 3339,
+     * else the number of the bucket it falls into.
+     */
+    public static Object timeBucket(String admissionTime, Duration bucket) {
+        long bucketMillis = bucket.toMillis();
+        if (admissionTime == null || bucketMillis <= 0) {
+            return admissionTime;
+        }
+        try {
+            return Math.floorDiv(Instant.parse(admissionTime).toEpochMilli(), bucketMillis);
+        } catch (DateTimeParseException e) {
+            return admissionTime;
+        }
+    }
+
+    /**
+     * Returns the decision of every input, evaluating only the inputs without a cached decision.
+     *
+     * @param policyPath Classpath path of the policy the inputs are evaluated against
+     * @param inputs     Inputs to decide
+     * @param inputOf    Decision-relevant input of an input
+     * @param evaluator  Evaluates the uncached inputs, in order; a null result is not cached
+     * @return One decision per input, in input order (null where the evaluation failed)
+     * @throws IOException if the policy cannot be read or the evaluator fails
+     */
+    public <T> List<Boolean> evaluate(String policyPath, List<T> inputs, Function<? super T, Input> inputOf,
+                                      EquivalenceClasses.Evaluator<T, Boolean> evaluator) throws IOException {
+        if (!properties.isEnabled() || inputs.isEmpty()) {
+            return evaluator.evaluate(inputs);
+        }
+
+        String policyVersion = policyVersion(policyPath);
+        List<Boolean> results = new ArrayList<>(inputs.size());
+        List<Key> missingKeys = new ArrayList<>();
+        List<T> missing = new ArrayList<>();
+        List<Integer> missingIndexes = new ArrayList<>();
+        for (int i = 0; i < inputs.size(); i++) {
+            Input input = inputOf.apply(inputs.get(i));
+            Key key = new Key(policyVersion, inputHash(input.document()), input.operation(),
+                    timeBucket(input.admissionTime(), properties.getAdmissionTimeBucket()));
+            Boolean cached = decisions.getIfPresent(key);
+            results.add(cached);
+            if (cached == null) {
+                missingKeys.add(key);
+                missing.add(inputs.get(i));
+                missingIndexes.add(i);
+            }
+        }
+
+        log.info("Decision cache: {} of {} decisions cached", inputs.size() - missing.size(), inputs.size());
+        if (missing.isEmpty()) {
+            return results;
+        }
+
+        List<Boolean> evaluated = evaluator.evaluate(missing);
+        for (int m = 0; m < missing.size(); m++) {
+            Boolean decision = evaluated.get(m);
+            results.set(missingIndexes.get(m), decision);
+            if (decision != null) {
+                decisions.put(missingKeys.get(m), decision);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Hit, miss and eviction counts since startup.
+     */
+    public CacheStats stats() {
+        return decisions.stats();
+    }
+
+    public long size() {
+        return decisions.estimatedSize();
+    }
+}
@@ -0,0 +1,41 @@
+package digital.alf.cells.acl;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Configuration for the cross-request decision cache (prefix "acl.decision-cache").
+ *
+ * Example (application.properties):
+ *   acl.decision-cache.enabled=true
+ *   acl.decision-cache.maximum-size=100000
+ *   acl.decision-cache.ttl=10m
+ *   acl.decision-cache.admission-time-bucket=1m
+ */
+@Data
+@ConfigurationProperties(prefix = "acl.decision-cache")
+public class DecisionCacheProperties {
+
+    /**
+     * Whether dynamic evaluation reuses decisions of earlier requests.
+     */
+    private boolean enabled = true;
+
+    /**
+     * Maximum number of cached decisions; the least valuable are evicted first (W-TinyLFU).
+     */
+    private long maximumSize = 100_000;
+
+    /**
+     * Time a decision stays cached after it was computed.
+     */
+    private Duration ttl = Duration.ofMinutes(10);
+
+    /**
+     * Admission times in the same bucket share cached decisions; 0 keys on the exact time.
+     * A bucket is only safe when no policy time bound falls inside one.
+     */
+    private Duration admissionTimeBucket = Duration.ZERO;
+}
@@ -0,0 +1,214 @@
+package digital.alf.cells.acl;
+
+import lombok.Builder;
+import lombok.Singular;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Precomputed answer table for point decisions.
+ *
+ * Holds what the policy decides, not what the ACL lists: the policy's time bounds cut the
+ * timeline into intervals (before the first bound, at it, between it and the next, ...,
+ * after the last), and for every scope (operation and resource kind) the index keeps one
+ * {@link Grant} per interval. A decision is then a binary search over the bounds and a hash
+ * lookup, with no parsing or policy evaluation:
+ *
+ *   allow  <=>  grant of (scope of action and resource, interval containing at) admits the principal
+ *
+ * For policy.rego (allow if not deny, deny only for Facility inside the window without
+ * training) the Facility grant is "trained employees" inside the window and "everyone"
+ * before and after it, and every other resource kind is "everyone" throughout.
+ *
+ * Scopes name the operations and resource kinds the policy tells apart; a null operation
+ * or kind stands for all the others. The builder of the index supplies every combination.
+ * Immutable; rebuilt by its owner when the inputs change.
+ */
+public final class DecisionIndex {
+
+    /**
+     * Operation and resource kind a set of grants applies to; null stands for any value the
+     * policy does not name.
+     */
+    public record Scope(String operation, String resourceKind) {
+    }
+
+    /**
+     * Who the policy admits in one scope and interval: everyone, or the listed employees.
+     */
+    public record Grant(boolean everyone, Set<String> employeeIds) {
+
+        public static final Grant EVERYONE = new Grant(true, Set.of());
+        public static final Grant NOBODY = new Grant(false, Set.of());
+
+        public Grant {
+            employeeIds = Set.copyOf(employeeIds);
+        }
+
+        public static Grant of(Collection<String> employeeIds) {
+            return employeeIds.isEmpty() ? NOBODY : new Grant(false, Set.copyOf(employeeIds));
+        }
+
+        boolean admits(String employeeId) {
+            return everyone || employeeId != null && employeeIds.contains(employeeId);
+        }
+    }
+
+    private final String resourceKind;
+    private final String resourceDescription;
+    private final String validationMessage;
+    private final Instant[] timeBounds;
+    private final Map<Scope, List<Grant>> scopes;
+    private final Set<String> operations = new HashSet<>();
+    private final Set<String> resourceKinds = new HashSet<>();
+    private final int grantedEmployees;
+
+    /**
+     * @param resourceKind        kind of the policy's resource, which the ACL resource text stands for
+     * @param resourceDescription resource text of the policy's ACL entries
+     * @param validationMessage   the policy's violation message, reported on deny
+     * @param timeBounds          instants at which the policy's decision may change
+     * @param scopes              per scope, one grant per interval of the time bounds (see {@link #intervals})
+     */
+    @Builder
+    private DecisionIndex(
+            String resourceKind,
+            String resourceDescription,
+            String validationMessage,
+            @Singular Collection<Instant> timeBounds,
+            Map<Scope, List<Grant>> scopes) {
+        this.resourceKind = resourceKind;
+        this.resourceDescription = resourceDescription;
+        this.validationMessage = validationMessage;
+        this.timeBounds = new TreeSet<>(timeBounds).toArray(new Instant[0]);
+        this.scopes = Map.copyOf(scopes);
+
+        Set<String> granted = new HashSet<>();
+        this.scopes.forEach((scope, grants) -> {
+            if (grants.size() != 2 * this.timeBounds.length + 1) {
+                throw new IllegalArgumentException("Scope " + scope + " has " + grants.size()
+                        + " grants for " + this.timeBounds.length + " time bounds");
+            }
+            if (scope.operation() != null) {
+                operations.add(scope.operation());
+            }
+            if (scope.resourceKind() != null) {
+                resourceKinds.add(scope.resourceKind());
+            }
+            grants.forEach(grant -> granted.addAll(grant.employeeIds()));
+        });
+        this.grantedEmployees = granted.size();
+    }
+
+    public static class DecisionIndexBuilder {
+
+        private Map<Scope, List<Grant>> scopes = new HashMap<>();
+
+        /**
+         * Adds the grants of a scope, one per interval of the time bounds.
+         */
+        public DecisionIndexBuilder scope(Scope scope, List<Grant> grants) {
+            scopes.put(scope, grants);
+            return this;
+        }
+    }
+
+    /**
+     * One instant inside each interval of the time bounds, in order: before the first bound,
+     * the first bound, between it and the next, ..., the last bound, after it. Evaluating the
+     * policy at these instants gives the grants of a scope.
+     */
+    public static List<Instant> intervals(Collection<Instant> timeBounds) {
+        List<Instant> bounds = new ArrayList<>(new TreeSet<>(timeBounds));
+        List<Instant> instants = new ArrayList<>();
+        if (bounds.isEmpty()) {
+            instants.add(Instant.EPOCH);
+            return instants;
+        }
+        instants.add(bounds.get(0).minusNanos(1));
+        for (int i = 0; i < bounds.size(); i++) {
+            instants.add(bounds.get(i));
+            instants.add(i + 1 < bounds.size()
+                    ? bounds.get(i).plus(Duration.between(bounds.get(i), bounds.get(i + 1)).dividedBy(2))
+                    : bounds.get(i).plusNanos(1));
+        }
+        return instants;
+    }
+
+    /**
+     * Decides a single request.
+     *
+     * @param principal employee id ("ES-4902") or ACL principal ("&lt;ES-4902:Anya Sharma&gt;")
+     * @param action    operation, e.g. ENTER
+     * @param resource  resource kind ("Facility"), "kind/name" or the resource text of an ACL entry
+     * @param at        time of access
+     */
+    public AccessDecision decide(String principal, String action, String resource, Instant at) {
+        Grant grant = grant(action, resource, at);
+        boolean allow = grant.admits(principal != null ? employeeId(principal) : null);
+
+        return AccessDecision.builder()
+                .principal(principal)
+                .action(action)
+                .resource(resource)
+                .at(at)
+                .allow(allow)
+                .message(allow ? null : validationMessage != null ? validationMessage : "Principal is not granted access by the policy")
+                .build();
+    }
+
+    /**
+     * Number of employees the policy grants access to in at least one scope and interval.
+     */
+    public int grantedEmployees() {
+        return grantedEmployees;
+    }
+
+    /**
+     * Employee id of a principal; "&lt;ES-4902:Anya Sharma&gt;" -&gt; "ES-4902".
+     */
+    static String employeeId(String principal) {
+        if (principal.length() > 1 && principal.charAt(0) == '<' && principal.charAt(principal.length() - 1) == '>') {
+            int colon = principal.indexOf(':');
+            return principal.substring(1, colon > 0 ? colon : principal.length() - 1);
+        }
+        return principal;
+    }
+
+    private Grant grant(String action, String resource, Instant at) {
+        String kind = kindOf(resource);
+        List<Grant> grants = scopes.get(new Scope(
+                operations.contains(action) ? action : null,
+                resourceKinds.contains(kind) ? kind : null));
+        if (grants == null || at == null) {
+            return Grant.NOBODY;
+        }
+        int found = Arrays.binarySearch(timeBounds, at);
+        return grants.get(found >= 0 ? 2 * found + 1 : 2 * (-found - 1));
+    }
+
+    /**
+     * Resource kind of a request: the policy's kind for its ACL resource text, "Facility" for
+     * "Facility/production-room", the resource itself otherwise.
+     */
+    private String kindOf(String resource) {
+        if (resource == null) {
+            return null;
+        }
+        if (resource.equals(resourceDescription)) {
+            return resourceKind;
+        }
+        int slash = resource.indexOf('/');
+        return slash > 0 ? resource.substring(0, slash) : resource;
+    }
+}
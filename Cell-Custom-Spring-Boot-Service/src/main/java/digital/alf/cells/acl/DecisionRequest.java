@@ -0,0 +1,23 @@
+package digital.alf.cells.acl;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * One query of a bulk decision request; the fields mirror the parameters of the point
+ * decision endpoints.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DecisionRequest {
+    private String principal;
+    private String action;
+    private String resource;
+    private Instant at;        // Optional; the time the bulk request was received when absent
+}
@@ -0,0 +1,87 @@
+package digital.alf.cells.acl;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Evaluates one representative per class of equivalent inputs and fans its result out.
+ *
+ * Shared by the OPA and Kyverno dynamic evaluation paths. Inputs are equivalent when their
+ * signature (the decision-relevant attributes: groups, operation, resource, time bucket)
+ * is equal; a null signature puts the input in a class of its own. In real directories
+ * thousands of employees share a group set, so the evaluator runs once per distinct
+ * signature instead of once per input.
+ *
+ * The first input of each class is its representative; representatives keep input order.
+ */
+@Slf4j
+public final class EquivalenceClasses {
+
+    private EquivalenceClasses() {
+    }
+
+    /**
+     * Evaluates a list of representatives, returning one result per representative, in order.
+     */
+    @FunctionalInterface
+    public interface Evaluator<T, R> {
+
+        List<R> evaluate(List<T> representatives) throws IOException;
+    }
+
+    /**
+     * @param inputs    Inputs to decide
+     * @param signature Decision-relevant attributes of an input (equals/hashCode), or null
+     * @param evaluator Evaluates the representatives
+     * @return One result per input, in input order: the result of the input's representative
+     * @throws IOException if the evaluator fails
+     */
+    public static <T, R> List<R> evaluate(List<T> inputs, Function<? super T, ?> signature, Evaluator<T, R> evaluator)
+            throws IOException {
+        Map<Object, Integer> classBySignature = new HashMap<>();
+        List<T> representatives = new ArrayList<>();
+        int[] classOfInput = new int[inputs.size()];
+
+        for (int i = 0; i < inputs.size(); i++) {
+            T input = inputs.get(i);
+            Object key = signature.apply(input);
+            Integer existing = key == null ? null : classBySignature.putIfAbsent(key, representatives.size());
+            if (existing == null) {
+                existing = representatives.size();
+                representatives.add(input);
+            }
+            classOfInput[i] = existing;
+        }
+
+        log.info("{} inputs fall into {} equivalence classes", inputs.size(), representatives.size());
+        List<R> classResults = evaluator.evaluate(representatives);
+        if (classResults.size() != representatives.size()) {
+            throw new IllegalStateException("Expected " + representatives.size() + " results, got " + classResults.size());
+        }
+
+        List<R> results = new ArrayList<>(inputs.size());
+        for (int classIndex : classOfInput) {
+            results.add(classResults.get(classIndex));
+        }
+        return results;
+    }
+
+    /**
+     * Order-insensitive form of a list attribute such as groups or roles (null as empty).
+     */
+    public static List<String> sorted(List<String> values) {
+        if (values == null) {
+            return List.of();
+        }
+        List<String> sorted = new ArrayList<>(values);
+        sorted.sort(Comparator.nullsFirst(Comparator.naturalOrder()));
+        return sorted;
+    }
+}
@@ -0,0 +1,110 @@
+package digital.alf.cells.acl;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Interns group names to small, dense integer ids for {@link GroupMask}.
+ *
+ * Ids are assigned in first-seen order and never change, so masks built at different times
+ * (employee files, policy requirements) can be compared directly. Lookups of known names are
+ * lock-free; only a new name takes the lock.
+ *
+ * The shared instance is used by the employee models and both ACL generators. Group names are
+ * few (tens, not thousands), so the dictionary stays small for the lifetime of the process.
+ */
+public final class GroupDictionary {
+
+    private static final GroupDictionary SHARED = new GroupDictionary();
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final List<String> names = new CopyOnWriteArrayList<>();
+
+    public static GroupDictionary shared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the id of the group, assigning the next free id on first use.
+     */
+    public int intern(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            return ids.computeIfAbsent(name, n -> {
+                names.add(n);
+                return names.size() - 1;
+            });
+        }
+    }
+
+    /**
+     * Id of an already interned group.
+     */
+    public OptionalInt idOf(String name) {
+        Integer id = name != null ? ids.get(name) : null;
+        return id != null ? OptionalInt.of(id) : OptionalInt.empty();
+    }
+
+    public String nameOf(int id) {
+        return names.get(id);
+    }
+
+    public int size() {
+        return names.size();
+    }
+
+    /**
+     * Mask of the groups mapped to true, e.g. {"employee-group": true, "training-vde-available-group": false}
+     * gives the mask of employee-group only.
+     */
+    public GroupMask maskOf(Map<String, Boolean> memberships) {
+        if (memberships == null || memberships.isEmpty()) {
+            return GroupMask.EMPTY;
+        }
+        GroupMask.Builder builder = GroupMask.builder();
+        memberships.forEach((name, member) -> {
+            if (name != null && Boolean.TRUE.equals(member)) {
+                builder.add(intern(name));
+            }
+        });
+        return builder.build();
+    }
+
+    /**
+     * Mask of the named groups; null names are skipped.
+     */
+    public GroupMask maskOfNames(Collection<String> groupNames) {
+        GroupMask.Builder builder = GroupMask.builder();
+        for (String name : groupNames) {
+            if (name != null) {
+                builder.add(intern(name));
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Compiles a requirement "member of all these groups" into a mask.
+     *
+     * @return the mask, or empty when a name is null: a missing requirement can never be met,
+     *         which is how the employee models' hasGroup(null) behaves
+     */
+    public Optional<GroupMask> requireAll(String... names) {
+        GroupMask.Builder builder = GroupMask.builder();
+        for (String name : names) {
+            if (name == null) {
+                return Optional.empty();
+            }
+            builder.add(intern(name));
+        }
+        return Optional.of(builder.build());
+    }
+}
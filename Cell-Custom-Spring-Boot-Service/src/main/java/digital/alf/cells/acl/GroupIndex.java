@@ -0,0 +1,161 @@
+package digital.alf.cells.acl;
+
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Inverted index from group name to the employees holding it.
+ *
+ * Every employee gets an ordinal (its position in the source list) and every group a
+ * compressed bitmap of ordinals (RoaringBitmap: sorted arrays for sparse chunks, bitsets
+ * for dense ones, runs for contiguous ranges). Group requirements then become set algebra
+ * on the bitmaps instead of a scan over all employees:
+ *
+ *   allOf [employee-group, training-vde-available-group]  ->  employee-group AND training-vde-available-group
+ *   noneOf [suspended-group]                              ->  ... AND NOT suspended-group
+ *
+ * Only memberships mapped to true are indexed. The index is immutable and safe to share
+ * between threads; selections are fresh bitmaps owned by the caller.
+ *
+ * @param <E> employee type
+ */
+public final class GroupIndex<E> {
+
+    private final List<E> employees;
+    private final Map<String, RoaringBitmap> members;
+    private final RoaringBitmap all;
+
+    private GroupIndex(List<E> employees, Map<String, RoaringBitmap> members) {
+        this.employees = employees;
+        this.members = members;
+        this.all = RoaringBitmap.bitmapOfRange(0, employees.size());
+    }
+
+    /**
+     * Indexes the employees; ordinals follow the list order.
+     *
+     * @param groups extracts the group memberships of an employee (may return null)
+     */
+    public static <E> GroupIndex<E> of(List<E> employees, Function<? super E, Map<String, Boolean>> groups) {
+        List<E> ordered = List.copyOf(employees);
+        Map<String, RoaringBitmap> members = new HashMap<>();
+
+        for (int ordinal = 0; ordinal < ordered.size(); ordinal++) {
+            Map<String, Boolean> memberships = groups.apply(ordered.get(ordinal));
+            if (memberships == null) {
+                continue;
+            }
+            for (Map.Entry<String, Boolean> membership : memberships.entrySet()) {
+                if (membership.getKey() != null && Boolean.TRUE.equals(membership.getValue())) {
+                    members.computeIfAbsent(membership.getKey(), g -> new RoaringBitmap()).add(ordinal);
+                }
+            }
+        }
+        members.values().forEach(RoaringBitmap::runOptimize);
+
+        return new GroupIndex<>(ordered, Map.copyOf(members));
+    }
+
+    /**
+     * Number of indexed employees.
+     */
+    public int size() {
+        return employees.size();
+    }
+
+    public E get(int ordinal) {
+        return employees.get(ordinal);
+    }
+
+    /**
+     * Number of employees holding the group.
+     */
+    public int cardinality(String group) {
+        RoaringBitmap bitmap = group != null ? members.get(group) : null;
+        return bitmap != null ? bitmap.getCardinality() : 0;
+    }
+
+    /**
+     * Ordinals of the employees that hold every group of {@code allOf} and none of {@code noneOf}.
+     *
+     * An empty {@code allOf} selects everybody; a null name in {@code allOf} is a requirement
+     * nobody can meet and selects nobody.
+     */
+    public RoaringBitmap select(Collection<String> allOf, Collection<String> noneOf) {
+        RoaringBitmap selection = intersection(allOf);
+        for (String group : noneOf) {
+            RoaringBitmap excluded = group != null ? members.get(group) : null;
+            if (excluded != null && !selection.isEmpty()) {
+                selection.andNot(excluded);
+            }
+        }
+        return selection;
+    }
+
+    /**
+     * Size of {@link #select}; plain intersections of one or two groups are counted without building them.
+     */
+    public int count(Collection<String> allOf, Collection<String> noneOf) {
+        if (noneOf.isEmpty() && allOf.stream().noneMatch(Objects::isNull)) {
+            if (allOf.isEmpty()) {
+                return size();
+            }
+            if (allOf.size() == 1) {
+                return cardinality(allOf.iterator().next());
+            }
+            if (allOf.size() == 2) {
+                List<RoaringBitmap> bitmaps = bitmaps(allOf);
+                return bitmaps == null ? 0 : RoaringBitmap.andCardinality(bitmaps.get(0), bitmaps.get(1));
+            }
+        }
+        return select(allOf, noneOf).getCardinality();
+    }
+
+    /**
+     * Hands the selected employees to the consumer in ordinal (source list) order.
+     */
+    public void forEach(RoaringBitmap selection, Consumer<? super E> consumer) {
+        selection.forEach((int ordinal) -> consumer.accept(employees.get(ordinal)));
+    }
+
+    private RoaringBitmap intersection(Collection<String> allOf) {
+        if (allOf.isEmpty()) {
+            return all.clone();
+        }
+        List<RoaringBitmap> bitmaps = bitmaps(allOf);
+        if (bitmaps == null) {
+            return new RoaringBitmap();
+        }
+        if (bitmaps.size() == 1) {
+            return bitmaps.get(0).clone();
+        }
+        // Smallest first, so the intermediate results shrink as early as possible
+        bitmaps.sort(Comparator.comparingLong(RoaringBitmap::getLongCardinality));
+        return FastAggregation.and(bitmaps.iterator());
+    }
+
+    /**
+     * The member bitmaps of the groups, or null when any group is null or has no members.
+     */
+    private List<RoaringBitmap> bitmaps(Collection<String> groups) {
+        List<RoaringBitmap> bitmaps = new ArrayList<>(groups.size());
+        for (String group : groups) {
+            RoaringBitmap bitmap = group != null ? members.get(group) : null;
+            if (bitmap == null) {
+                return null;
+            }
+            bitmaps.add(bitmap);
+        }
+        return bitmaps;
+    }
+}
@@ -0,0 +1,148 @@
+package digital.alf.cells.acl;
+
+import java.util.BitSet;
+
+/**
+ * Immutable set of group ids (see {@link GroupDictionary}).
+ *
+ * Ids 0..63 live in a single long, so with up to 64 distinct groups a membership test
+ * is one AND:
+ *
+ *   employee.containsAll(required)  ==  (employee.bits & required.bits) == required.bits
+ *
+ * Ids from 64 upwards go into a BitSet that is only allocated when such an id is present.
+ * Neither {@link #containsAll} nor {@link #contains} allocates.
+ */
+public final class GroupMask {
+
+    public static final GroupMask EMPTY = new GroupMask(0L, null);
+
+    private final long bits;
+    private final BitSet overflow; // ids >= 64, offset by 64; null when there are none
+
+    private GroupMask(long bits, BitSet overflow) {
+        this.bits = bits;
+        this.overflow = overflow;
+    }
+
+    public static GroupMask of(int... ids) {
+        Builder builder = builder();
+        for (int id : ids) {
+            builder.add(id);
+        }
+        return builder.build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * True when every group of {@code required} is also in this mask.
+     */
+    public boolean containsAll(GroupMask required) {
+        if ((bits & required.bits) != required.bits) {
+            return false;
+        }
+        if (required.overflow == null) {
+            return true;
+        }
+        if (overflow == null) {
+            return false;
+        }
+        for (int i = required.overflow.nextSetBit(0); i >= 0; i = required.overflow.nextSetBit(i + 1)) {
+            if (!overflow.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * True when the masks share at least one group.
+     */
+    public boolean intersects(GroupMask other) {
+        if ((bits & other.bits) != 0) {
+            return true;
+        }
+        return overflow != null && other.overflow != null && overflow.intersects(other.overflow);
+    }
+
+    public boolean contains(int id) {
+        if (id < Long.SIZE) {
+            return id >= 0 && (bits & (1L << id)) != 0;
+        }
+        return overflow != null && overflow.get(id - Long.SIZE);
+    }
+
+    public boolean isEmpty() {
+        return bits == 0 && overflow == null;
+    }
+
+    /**
+     * Number of groups in the mask.
+     */
+    public int cardinality() {
+        return Long.bitCount(bits) + (overflow != null ? overflow.cardinality() : 0);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof GroupMask other)) {
+            return false;
+        }
+        return bits == other.bits
+                && (overflow == null ? other.overflow == null : overflow.equals(other.overflow));
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(bits) * 31 + (overflow != null ? overflow.hashCode() : 0);
+    }
+
+    @Override
+    public String toString() {
+        BitSet ids = BitSet.valueOf(new long[]{bits});
+        if (overflow != null) {
+            overflow.stream().forEach(i -> ids.set(i + Long.SIZE));
+        }
+        return "GroupMask" + ids;
+    }
+
+    /**
+     * Accumulates ids; the BitSet is created only for the first id >= 64.
+     */
+    public static final class Builder {
+
+        private long bits;
+        private BitSet overflow;
+
+        private Builder() {
+        }
+
+        public Builder add(int id) {
+            if (id < 0) {
+                throw new IllegalArgumentException("Negative group id: " + id);
+            }
+            if (id < Long.SIZE) {
+                bits |= 1L << id;
+            } else {
+                if (overflow == null) {
+                    overflow = new BitSet();
+                }
+                overflow.set(id - Long.SIZE);
+            }
+            return this;
+        }
+
+        public GroupMask build() {
+            if (bits == 0 && overflow == null) {
+                return EMPTY;
+            }
+            return new GroupMask(bits, overflow != null ? (BitSet) overflow.clone() : null);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package digital.alf.cells.acl;
+
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Values derived from a classpath policy or resource file (compiled engines, analyses, parsed
+ * resources), keyed by the content hash of the file like the {@link DecisionCache}.
+ *
+ * Every lookup reads and hashes the file. The value is reused while the hash is unchanged and
+ * derived again from the new content when the file changes, so nothing derived from an old
+ * version of a policy outlives it. One value is kept per path.
+ *
+ * @param <V> Derived value
+ */
+public final class PolicyCache<V> {
+
+    /**
+     * Derives the value from the content of the policy file.
+     */
+    @FunctionalInterface
+    public interface Loader<V> {
+        V load(byte[] content) throws IOException;
+    }
+
+    private record Entry<V>(String contentHash, V value) {
+    }
+
+    private final Map<String, Entry<V>> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the value for the current content of the policy, deriving it when the content
+     * changed since the last lookup. Concurrent lookups of a new version may derive it more
+     * than once; all of them return the value that was stored first.
+     *
+     * @param policyPath Classpath path of the policy
+     * @param loader     Derives the value from the policy content
+     * @throws IOException if the policy cannot be read or the loader fails
+     */
+    public V get(String policyPath, Loader<V> loader) throws IOException {
+        byte[] content;
+        try (InputStream inputStream = new ClassPathResource(policyPath).getInputStream()) {
+            content = inputStream.readAllBytes();
+        }
+        String contentHash = ContentHash.sha256(content);
+
+        Entry<V> cached = entries.get(policyPath);
+        if (cached != null && cached.contentHash().equals(contentHash)) {
+            return cached.value();
+        }
+
+        Entry<V> loaded = new Entry<>(contentHash, loader.load(content));
+        return entries.merge(policyPath, loaded,
+                (existing, replacement) -> existing.contentHash().equals(contentHash) ? existing : replacement).value();
+    }
+}
@@ -0,0 +1,12 @@
+package digital.alf.cells.acl;
+
+import java.util.List;
+
+/**
+ * Implemented by the policy-to-ACL strategies to hand their snapshots (static and dynamic ACL
+ * of the default files) to {@link AclPrecomputeScheduler}.
+ */
+public interface PrecomputedAcls {
+
+    List<AclSnapshots<?, ?>> precomputedAcls();
+}
@@ -0,0 +1,92 @@
+package digital.alf.cells.acl;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Coalesces concurrent identical computations: while one is in flight for a key, callers with
+ * an equal key wait for it and share its result instead of starting their own.
+ *
+ * Shared by the OPA and Kyverno dynamic evaluation paths, where ten simultaneous requests would
+ * otherwise run ten full evaluations. Nothing is cached: the key is released as soon as the
+ * computation finishes, so the next caller computes afresh. A failure is reported to every
+ * caller attached to the computation.
+ *
+ * The result object is shared, so it should be immutable.
+ *
+ * @param <K> Key; equal keys must describe identical computations (inputs and their versions)
+ * @param <V> Result
+ */
+@Slf4j
+public class SingleFlight<K, V> {
+
+    /**
+     * A computation that may fail with an IOException.
+     */
+    @FunctionalInterface
+    public interface Computation<V> {
+
+        V compute() throws IOException;
+    }
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Runs the computation, or waits for the one in flight for an equal key.
+     *
+     * @throws IOException if the computation fails, or the wait is interrupted
+     */
+    public V run(K key, Computation<V> computation) throws IOException {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            log.debug("Joining in-flight computation for {}", key);
+            return await(existing);
+        }
+
+        try {
+            V result = computation.compute();
+            flight.complete(result);
+            return result;
+        } catch (IOException | RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * Number of computations currently in flight.
+     */
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    private static <V> V await(CompletableFuture<V> flight) throws IOException {
+        try {
+            return flight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for an in-flight computation");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw new IOException(ioException.getMessage(), ioException);
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
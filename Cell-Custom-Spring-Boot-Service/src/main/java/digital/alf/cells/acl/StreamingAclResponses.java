@@ -0,0 +1,100 @@
+package digital.alf.cells.acl;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Writes an {@link AclStream} to the response body as it is generated.
+ *
+ * Two formats are supported:
+ *   application/x-ndjson  -> one JSON object per line
+ *   application/json      -> a single JSON array, written element by element (chunked transfer)
+ *
+ * Neither the entry list nor the serialized body is held in memory: every entry is serialized
+ * into Jackson's output buffer as soon as the generator produces it. The first entry is flushed
+ * right away so clients see the first byte early; after that the buffers flush when full.
+ *
+ * When generation fails after the first byte has been sent the status can no longer change;
+ * the error is logged and the body is cut off, which clients see as truncated JSON.
+ *
+ * Writing a body is timed as acl.serialization (see {@link AclMetrics}); entries generated
+ * while written are included.
+ */
+@Slf4j
+public final class StreamingAclResponses {
+
+    private StreamingAclResponses() {
+    }
+
+    /**
+     * Newline-delimited JSON: one entry per line.
+     */
+    public static <T> StreamingResponseBody ndjson(AclStream<T> entries, ObjectMapper objectMapper) {
+        return outputStream -> AclMetrics.timeSerialization("ndjson",
+                () -> write(entries, objectMapper, outputStream, false));
+    }
+
+    /**
+     * A JSON array, written incrementally.
+     */
+    public static <T> StreamingResponseBody jsonArray(AclStream<T> entries, ObjectMapper objectMapper) {
+        return outputStream -> AclMetrics.timeSerialization("json",
+                () -> write(entries, objectMapper, outputStream, true));
+    }
+
+    private static <T> void write(
+            AclStream<T> entries,
+            ObjectMapper objectMapper,
+            OutputStream outputStream,
+            boolean array) throws IOException {
+
+        // Flushing after every entry would defeat the buffers; flushes are done explicitly
+        ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        long[] written = {0};
+
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // A failed stream must not be completed into a valid-looking (shorter) array
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT);
+            generator.setRootValueSeparator(null);
+            if (array) {
+                generator.writeStartArray();
+            }
+
+            try {
+                entries.forEach(entry -> {
+                    try {
+                        writer.writeValue(generator, entry);
+                        if (!array) {
+                            generator.writeRaw('\n');
+                        }
+                        if (++written[0] == 1) {
+                            generator.flush();
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            if (array) {
+                generator.writeEndArray();
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Streaming ACL response failed after {} entries", written[0], e);
+            throw e;
+        }
+
+        log.debug("Streamed {} ACL entries", written[0]);
+    }
+}
@@ -1,5 +1,13 @@
 package digital.alf.cells.physicalacesscontrol;
 
+import digital.alf.cells.acl.AclMetrics;
+import digital.alf.cells.acl.AclSnapshots;
+import digital.alf.cells.acl.AclPrecomputeScheduler;
+import digital.alf.cells.acl.AclStream;
+import digital.alf.cells.acl.PolicyCache;
+import digital.alf.cells.acl.PrecomputedAcls;
+import digital.alf.cells.acl.SingleFlight;
+import digital.alf.cells.acl.GroupIndex;
 import digital.alf.cells.physicalacesscontrol.generator.AclGenerator;
 import digital.alf.cells.physicalacesscontrol.model.AclEntry;
 import digital.alf.cells.physicalacesscontrol.model.EmployeeInfo;
@@ -10,9 +18,14 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Service;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Main strategy class for converting Kyverno ABAC policies to ACL format.
@@ -51,43 +64,167 @@ import java.util.List;
  *      - Action
  *      - Resource
  *      - Condition
+ *
+ * 5. SNAPSHOT
+ *    The ACL of the default files is kept as a snapshot (see {@link AclSnapshots}) and only
+ *    regenerated when the parsed policy changes or a policy time bound passes. Policies are
+ *    parsed again only when their content hash changes (see {@link PolicyCache}). Static ACLs
+ *    of custom files are generated for the current time as well.
+ *
+ * 6. COALESCING
+ *    Concurrent dynamic evaluations with the same policy version, resource and admission time
+ *    share one run (see {@link SingleFlight}).
+ *
+ * 7. PRECOMPUTATION
+ *    The static and the dynamic ACL of the default files are snapshots computed in background
+ *    by {@link AclPrecomputeScheduler}; the default-file methods behind the /generate*
+ *    endpoints (currentAcl, currentDynamicAcl, the stream methods) then only read them.
+ *
+ * 8. METRICS
+ *    Generation and text formatting are timed, and the employee count of the static snapshot
+ *    is a gauge (see {@link AclMetrics}). Streamed entries generated while written count as
+ *    serialization.
  */
 @Service
 @RequiredArgsConstructor
-public class PolicyToAclStrategy {
+public class PolicyToAclStrategy implements PrecomputedAcls {
+
+    private static final String DEFAULT_POLICY_PATH = "physical-access-control/pip-abac-policy1.yml";
+    private static final String DEFAULT_EMPLOYEE_INFO_PATH = "physical-access-control/pip-info-employee-vde-trainings.yml";
+    private static final String DEFAULT_RESOURCE_PATH = "physical-access-control/pip-resources/pip-resource-room.yml";
+    private static final String DEFAULT_ADMISSION_TIME = "2025-10-20T08:30:00Z";
 
     private final KyvernoPolicyParser policyParser;
     private final EmployeeInfoParser employeeParser;
     private final AclGenerator aclGenerator;
 
+    private final Clock clock = Clock.systemUTC();
+
+    private final PolicyCache<KyvernoPolicyData> policies = new PolicyCache<>();
+
+    private final AclSnapshots<KyvernoPolicyData, AclEntry> snapshots = AclSnapshots.create("Kyverno",
+            () -> parseKyvernoPolicy(DEFAULT_POLICY_PATH), this::generateSnapshot, clock);
+
+    private final AclSnapshots<DynamicEvaluation, AclEntry> dynamicSnapshots = AclSnapshots.create("Kyverno dynamic",
+            this::defaultDynamicEvaluation, this::generateDynamicSnapshot, clock);
+
+    private final SingleFlight<DynamicEvaluation, List<AclEntry>> dynamicEvaluations = new SingleFlight<>();
+
+    private final AtomicInteger snapshotEmployees = AclMetrics.employeeCount(AclMetrics.KYVERNO, new AtomicInteger());
+
+    /**
+     * Identity of a dynamic evaluation; the parsed policy stands for its version.
+     */
+    private record DynamicEvaluation(String policyPath, KyvernoPolicyData policy, String resourcePath, String admissionTime) {
+    }
+
+    /**
+     * Static ACL of the default files, served from the current snapshot.
+     *
+     * @throws IOException if not precomputed yet, or the snapshot is stale and cannot be regenerated
+     */
+    public List<AclEntry> currentAcl() throws IOException {
+        return snapshots.entries();
+    }
+
+    /**
+     * Dynamic ACL of the default files: the published snapshot when precomputed in background,
+     * otherwise evaluated now.
+     *
+     * @throws IOException if not precomputed yet, or the evaluation fails
+     */
+    public List<AclEntry> currentDynamicAcl() throws IOException {
+        if (dynamicSnapshots.isPublishedInBackground()) {
+            return dynamicSnapshots.entries();
+        }
+        return convertPolicyToAclWithDynamicEvaluation();
+    }
+
+    @Override
+    public List<AclSnapshots<?, ?>> precomputedAcls() {
+        return List.of(snapshots, dynamicSnapshots);
+    }
+
+    private AclSnapshots.Generated<AclEntry> generateSnapshot(KyvernoPolicyData policyData, Instant at) throws IOException {
+        List<Instant> timeBounds = new ArrayList<>();
+        if (policyData.getTimeWindowStart() != null) {
+            timeBounds.add(policyData.getTimeWindowStart());
+        }
+        if (policyData.getTimeWindowEnd() != null) {
+            timeBounds.add(policyData.getTimeWindowEnd());
+        }
+        GroupIndex<EmployeeInfo> employees = parseEmployeeInfo(DEFAULT_EMPLOYEE_INFO_PATH);
+        List<AclEntry> entries = AclMetrics.timeGeneration(AclMetrics.KYVERNO, AclMetrics.STATIC,
+                () -> aclGenerator.generateAcl(policyData, employees, at));
+        snapshotEmployees.set(employees.size());
+        return new AclSnapshots.Generated<>(entries, timeBounds);
+    }
+
+    private DynamicEvaluation defaultDynamicEvaluation() throws IOException {
+        return new DynamicEvaluation(DEFAULT_POLICY_PATH, parseKyvernoPolicy(DEFAULT_POLICY_PATH),
+                DEFAULT_RESOURCE_PATH, DEFAULT_ADMISSION_TIME);
+    }
+
+    /**
+     * The admission time is fixed, so the policy time bounds do not matter here; anything else
+     * is picked up by the periodic refresh.
+     */
+    private AclSnapshots.Generated<AclEntry> generateDynamicSnapshot(DynamicEvaluation evaluation, Instant at)
+            throws IOException {
+        return new AclSnapshots.Generated<>(evaluate(evaluation), List.of());
+    }
+
     /**
      * Main entry point for the policy-to-ACL conversion algorithm.
      *
-     * @return List of ACL entries for all employees with granted access
+     * @return List of ACL entries for all employees granted access now
      * @throws IOException if policy or employee files cannot be read
      */
     public List<AclEntry> convertPolicyToAcl() throws IOException {
+        return convertPolicyToAcl(Instant.now(clock));
+    }
+
+    /**
+     * Policy-to-ACL conversion of the default files for the grants in force at a given time.
+     */
+    public List<AclEntry> convertPolicyToAcl(Instant at) throws IOException {
+        return convertPolicyToAcl(DEFAULT_POLICY_PATH, DEFAULT_EMPLOYEE_INFO_PATH, at);
+    }
+
+    /**
+     * Convenience method with custom file paths, for the grants in force now.
+     */
+    public List<AclEntry> convertPolicyToAcl(String policyPath, String employeeInfoPath) throws IOException {
+        return convertPolicyToAcl(policyPath, employeeInfoPath, Instant.now(clock));
+    }
+
+    private List<AclEntry> convertPolicyToAcl(String policyPath, String employeeInfoPath, Instant at) throws IOException {
         // Step 1: Parse Kyverno policy
-        KyvernoPolicyData policyData = parseKyvernoPolicy(
-                "physical-access-control/pip-abac-policy1.yml"
-        );
+        KyvernoPolicyData policyData = parseKyvernoPolicy(policyPath);
 
-        // Step 2: Parse employee VDE training information
-        List<EmployeeInfo> employees = parseEmployeeInfo(
-                "physical-access-control/pip-info-employee-vde-trainings.yml"
-        );
+        // Step 2: Parse employee VDE training information and index it by group
+        GroupIndex<EmployeeInfo> employees = parseEmployeeInfo(employeeInfoPath);
 
         // Step 3 & 4: Generate ACL entries based on policy rules and employee data
-        return aclGenerator.generateAcl(policyData, employees);
+        return AclMetrics.timeGeneration(AclMetrics.KYVERNO, AclMetrics.STATIC,
+                () -> aclGenerator.generateAcl(policyData, employees, at));
     }
 
     /**
-     * Convenience method with custom file paths.
+     * Streaming variant of {@link #convertPolicyToAcl()}.
+     *
+     * When precomputed in background, streams the published snapshot. Otherwise policy and
+     * employee files are parsed now (so failures surface before any output), and entries are
+     * generated while the returned stream is consumed.
      */
-    public List<AclEntry> convertPolicyToAcl(String policyPath, String employeeInfoPath) throws IOException {
-        KyvernoPolicyData policyData = parseKyvernoPolicy(policyPath);
-        List<EmployeeInfo> employees = parseEmployeeInfo(employeeInfoPath);
-        return aclGenerator.generateAcl(policyData, employees);
+    public AclStream<AclEntry> streamPolicyToAcl() throws IOException {
+        if (snapshots.isPublishedInBackground()) {
+            return AclStream.of(snapshots.entries());
+        }
+        KyvernoPolicyData policyData = parseKyvernoPolicy(DEFAULT_POLICY_PATH);
+        GroupIndex<EmployeeInfo> employees = parseEmployeeInfo(DEFAULT_EMPLOYEE_INFO_PATH);
+        Instant at = Instant.now(clock);
+        return sink -> aclGenerator.generateAcl(policyData, employees, at, sink);
     }
 
     /**
@@ -107,7 +244,7 @@ public class PolicyToAclStrategy {
      * @param policyPath Path to policy YAML (e.g., "physical-access-control/pip-abac-policy1.yml")
      * @param resourcePath Path to resource YAML (e.g., "physical-access-control/pip-resources/pip-resource-room.yml")
      * @param admissionTime Time for evaluation (e.g., "2025-10-20T08:30:00Z")
-     * @return List of ACL entries for users who passed kyverno evaluation
+     * @return Unmodifiable list of ACL entries for users who passed kyverno evaluation
      * @throws IOException if execution fails
      */
     public List<AclEntry> convertPolicyToAclWithDynamicEvaluation(
@@ -118,23 +255,44 @@ public class PolicyToAclStrategy {
         // Parse policy to extract operations and metadata
         KyvernoPolicyData policyData = parseKyvernoPolicy(policyPath);
 
-        // Use dynamic evaluation with kyverno-cli
-        return aclGenerator.generateAclWithDynamicEvaluation(
-                policyData,
-                policyPath,
-                resourcePath,
-                admissionTime
-        );
+        // Use dynamic evaluation with kyverno-cli, joining an identical evaluation in flight
+        return evaluate(new DynamicEvaluation(policyPath, policyData, resourcePath, admissionTime));
+    }
+
+    private List<AclEntry> evaluate(DynamicEvaluation evaluation) throws IOException {
+        return dynamicEvaluations.run(evaluation, () -> AclMetrics.timeGeneration(AclMetrics.KYVERNO, AclMetrics.DYNAMIC,
+                () -> List.copyOf(aclGenerator.generateAclWithDynamicEvaluation(
+                        evaluation.policy(),
+                        evaluation.policyPath(),
+                        evaluation.resourcePath(),
+                        evaluation.admissionTime()
+                ))));
     }
 
     /**
      * Default dynamic evaluation with standard paths.
      */
     public List<AclEntry> convertPolicyToAclWithDynamicEvaluation() throws IOException {
-        return convertPolicyToAclWithDynamicEvaluation(
-                "physical-access-control/pip-abac-policy1.yml",
+        return convertPolicyToAclWithDynamicEvaluation(DEFAULT_POLICY_PATH, DEFAULT_RESOURCE_PATH, DEFAULT_ADMISSION_TIME);
+    }
+
+    /**
+     * Streaming variant of {@link #convertPolicyToAclWithDynamicEvaluation()}: the published
+     * snapshot when precomputed in background, otherwise users are evaluated while the
+     * returned stream is consumed.
+     */
+    public AclStream<AclEntry> streamPolicyToAclWithDynamicEvaluation() throws IOException {
+        if (dynamicSnapshots.isPublishedInBackground()) {
+            return AclStream.of(dynamicSnapshots.entries());
+        }
+        String policyPath = "physical-access-control/pip-abac-policy1.yml";
+        KyvernoPolicyData policyData = parseKyvernoPolicy(policyPath);
+        return sink -> aclGenerator.generateAclWithDynamicEvaluation(
+                policyData,
+                policyPath,
                 "physical-access-control/pip-resources/pip-resource-room.yml",
-                "2025-10-20T08:30:00Z"
+                "2025-10-20T08:30:00Z",
+                sink
         );
     }
 
@@ -142,6 +300,10 @@ public class PolicyToAclStrategy {
      * Formats the ACL entries as a string output.
      */
     public String formatAclOutput(List<AclEntry> aclEntries) {
+        return AclMetrics.timeSerialization("text", () -> format(aclEntries));
+    }
+
+    private String format(List<AclEntry> aclEntries) {
         StringBuilder output = new StringBuilder();
         output.append("=".repeat(80)).append("\n");
         output.append("ACCESS CONTROL LIST (ACL)\n");
@@ -165,14 +327,12 @@ public class PolicyToAclStrategy {
     }
 
     private KyvernoPolicyData parseKyvernoPolicy(String resourcePath) throws IOException {
-        try (InputStream inputStream = new ClassPathResource(resourcePath).getInputStream()) {
-            return policyParser.parse(inputStream);
-        }
+        return policies.get(resourcePath, content -> policyParser.parse(new ByteArrayInputStream(content)));
     }
 
-    private List<EmployeeInfo> parseEmployeeInfo(String resourcePath) throws IOException {
+    private GroupIndex<EmployeeInfo> parseEmployeeInfo(String resourcePath) throws IOException {
         try (InputStream inputStream = new ClassPathResource(resourcePath).getInputStream()) {
-            return employeeParser.parse(inputStream);
+            return GroupIndex.of(employeeParser.parse(inputStream), EmployeeInfo::getGroups);
         }
     }
 }
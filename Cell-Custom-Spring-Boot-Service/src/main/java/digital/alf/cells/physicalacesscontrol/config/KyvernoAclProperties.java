@@ -0,0 +1,62 @@
+package digital.alf.cells.physicalacesscontrol.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Configuration for the Kyverno ACL pipeline (prefix "acl.kyverno").
+ *
+ * Example (application.properties):
+ *   acl.kyverno.engine=native
+ *   acl.kyverno.concurrency=16
+ *   acl.kyverno.decision-timeout=30s
+ */
+@Data
+@ConfigurationProperties(prefix = "acl.kyverno")
+public class KyvernoAclProperties {
+
+    /**
+     * How dynamic evaluation decides a (user, operation) pair.
+     */
+    private Engine engine = Engine.NATIVE;
+
+    /**
+     * Maximum number of (user, operation) decisions evaluated at the same time.
+     * 0 uses the number of available processors; 1 evaluates sequentially.
+     */
+    private int concurrency = 0;
+
+    /**
+     * Time allowed for a single decision; the pair counts as denied when exceeded.
+     */
+    private Duration decisionTimeout = Duration.ofSeconds(30);
+
+    /**
+     * Deadline for a whole dynamic evaluation; outstanding decisions are cancelled
+     * and the evaluation fails when exceeded.
+     */
+    private Duration requestTimeout = Duration.ofMinutes(2);
+
+    /**
+     * Evaluate one user per class of identical groups, roles and cluster roles and copy the
+     * decisions to the others. Only applied to policies that do not match on user identity
+     * (subjects, username or uid).
+     */
+    private boolean memoize = true;
+
+    /**
+     * Effective concurrency limit: {@link #concurrency}, or the processor count when 0.
+     */
+    public int effectiveConcurrency() {
+        return concurrency > 0 ? concurrency : Runtime.getRuntime().availableProcessors();
+    }
+
+    public enum Engine {
+        /** In-process condition engine; the policy is compiled once and cached. */
+        NATIVE,
+        /** One 'kyverno apply' per decision. Requires the kyverno binary on the PATH. */
+        CLI
+    }
+}
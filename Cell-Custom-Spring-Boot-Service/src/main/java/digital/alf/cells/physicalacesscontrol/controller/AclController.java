@@ -1,14 +1,31 @@
 package digital.alf.cells.physicalacesscontrol.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import digital.alf.cells.acl.AccessDecision;
+import digital.alf.cells.acl.AclNotReadyException;
+import digital.alf.cells.acl.AclStream;
+import digital.alf.cells.acl.BulkDecisions;
+import digital.alf.cells.acl.DecisionIndex;
+import digital.alf.cells.acl.StreamingAclResponses;
 import digital.alf.cells.physicalacesscontrol.PolicyToAclStrategy;
 import digital.alf.cells.physicalacesscontrol.model.AclEntry;
+import digital.alf.cells.physicalacesscontrol.service.KyvernoDecisionService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
 import java.util.List;
 
 @RestController
@@ -17,17 +34,22 @@ import java.util.List;
 public class AclController {
 
     private final PolicyToAclStrategy policyToAclStrategy;
+    private final ObjectMapper objectMapper;
+    private final KyvernoDecisionService decisionService;
 
     /**
      * Endpoint to generate ACL from Kyverno policy and employee data.
+     * Served from the current ACL snapshot; see PolicyToAclStrategy#currentAcl().
      *
      * @return ACL entries in JSON format
      */
     @GetMapping("/generate")
     public ResponseEntity<List<AclEntry>> generateAcl() {
         try {
-            List<AclEntry> aclEntries = policyToAclStrategy.convertPolicyToAcl();
+            List<AclEntry> aclEntries = policyToAclStrategy.currentAcl();
             return ResponseEntity.ok(aclEntries);
+        } catch (AclNotReadyException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
         } catch (IOException e) {
             return ResponseEntity.internalServerError().build();
         }
@@ -41,9 +63,11 @@ public class AclController {
     @GetMapping("/generate/formatted")
     public ResponseEntity<String> generateFormattedAcl() {
         try {
-            List<AclEntry> aclEntries = policyToAclStrategy.convertPolicyToAcl();
+            List<AclEntry> aclEntries = policyToAclStrategy.currentAcl();
             String formatted = policyToAclStrategy.formatAclOutput(aclEntries);
             return ResponseEntity.ok(formatted);
+        } catch (AclNotReadyException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
         } catch (IOException e) {
             return ResponseEntity.internalServerError().build();
         }
@@ -52,14 +76,17 @@ public class AclController {
     /**
      * NEW: Endpoint to generate ACL using dynamic kyverno-cli evaluation.
      * Evaluates users from pip-users/ directory against the policy.
+     * Served from the current dynamic ACL snapshot; see PolicyToAclStrategy#currentDynamicAcl().
      *
      * @return ACL entries in JSON format
      */
     @GetMapping("/generate/dynamic")
     public ResponseEntity<List<AclEntry>> generateAclDynamic() {
         try {
-            List<AclEntry> aclEntries = policyToAclStrategy.convertPolicyToAclWithDynamicEvaluation();
+            List<AclEntry> aclEntries = policyToAclStrategy.currentDynamicAcl();
             return ResponseEntity.ok(aclEntries);
+        } catch (AclNotReadyException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
         } catch (IOException e) {
             return ResponseEntity.internalServerError().build();
         }
@@ -73,9 +100,162 @@ public class AclController {
     @GetMapping("/generate/dynamic/formatted")
     public ResponseEntity<String> generateFormattedAclDynamic() {
         try {
-            List<AclEntry> aclEntries = policyToAclStrategy.convertPolicyToAclWithDynamicEvaluation();
+            List<AclEntry> aclEntries = policyToAclStrategy.currentDynamicAcl();
             String formatted = policyToAclStrategy.formatAclOutput(aclEntries);
             return ResponseEntity.ok(formatted);
+        } catch (AclNotReadyException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Streams ACL entries as newline-delimited JSON (static evaluation).
+     * Written from the current snapshot (generated while written if acl.precompute.enabled=false).
+     *
+     * @return One JSON ACL entry per line
+     */
+    @GetMapping(value = "/generate/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAclNdjson() {
+        try {
+            AclStream<AclEntry> entries = policyToAclStrategy.streamPolicyToAcl();
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_NDJSON)
+                    .body(StreamingAclResponses.ndjson(entries, objectMapper));
+        } catch (AclNotReadyException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Streams ACL entries as a chunked JSON array (static evaluation).
+     * Same body as /api/acl/generate, written element by element.
+     *
+     * @return ACL entries in JSON format
+     */
+    @GetMapping(value = "/generate/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAclJsonArray() {
+        try {
+            AclStream<AclEntry> entries = policyToAclStrategy.streamPolicyToAcl();
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(StreamingAclResponses.jsonArray(entries, objectMapper));
+        } catch (AclNotReadyException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Streams ACL entries as newline-delimited JSON (dynamic evaluation).
+     * Written from the current snapshot (generated while written if acl.precompute.enabled=false).
+     *
+     * @return One JSON ACL entry per line
+     */
+    @GetMapping(value = "/generate/dynamic/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAclDynamicNdjson() {
+        try {
+            AclStream<AclEntry> entries = policyToAclStrategy.streamPolicyToAclWithDynamicEvaluation();
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_NDJSON)
+                    .body(StreamingAclResponses.ndjson(entries, objectMapper));
+        } catch (AclNotReadyException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Streams ACL entries as a chunked JSON array (dynamic evaluation).
+     * Same body as /api/acl/generate/dynamic, written element by element.
+     *
+     * @return ACL entries in JSON format
+     */
+    @GetMapping(value = "/generate/dynamic/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAclDynamicJsonArray() {
+        try {
+            AclStream<AclEntry> entries = policyToAclStrategy.streamPolicyToAclWithDynamicEvaluation();
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(StreamingAclResponses.jsonArray(entries, objectMapper));
+        } catch (AclNotReadyException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Point decision: may the principal perform the action on the resource at the given time?
+     * Answered from the precomputed decision index, without generating the ACL.
+     *
+     * Example: /api/acl/decision?principal=ES-4902&action=ENTER&resource=Facility&at=2025-10-20T08:30:00Z
+     *
+     * @param principal Employee id or ACL principal (&lt;ES-4902:Anya Sharma&gt;)
+     * @param action    Operation, e.g. ENTER
+     * @param resource  Resource kind, kind/name or the resource text of an ACL entry
+     * @param at        Time of access (ISO-8601); defaults to now
+     * @return allow/deny plus the policy's violation message when denied
+     */
+    @GetMapping("/decision")
+    public ResponseEntity<AccessDecision> decide(
+            @RequestParam String principal,
+            @RequestParam String action,
+            @RequestParam String resource,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant at) {
+        try {
+            return ResponseEntity.ok(decisionService.decide(principal, action, resource, at != null ? at : Instant.now()));
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Bulk decisions, streamed back as newline-delimited JSON in input order.
+     * The body is a JSON array or NDJSON of {principal, action, resource, at?} objects;
+     * requests without "at" are decided for the time the request was received.
+     *
+     * @return One decision per line; 400 if the body does not start with a request
+     */
+    @PostMapping(value = "/decisions", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> decideAllNdjson(InputStream body) {
+        try {
+            DecisionIndex index = decisionService.index();
+            try {
+                AclStream<AccessDecision> decisions = BulkDecisions.decide(index, body, objectMapper, Instant.now());
+                return ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .body(StreamingAclResponses.ndjson(decisions, objectMapper));
+            } catch (JsonProcessingException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Bulk decisions, streamed back as a chunked JSON array in input order.
+     *
+     * @return Decisions in JSON format
+     */
+    @PostMapping(value = "/decisions", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> decideAllJsonArray(InputStream body) {
+        try {
+            DecisionIndex index = decisionService.index();
+            try {
+                AclStream<AccessDecision> decisions = BulkDecisions.decide(index, body, objectMapper, Instant.now());
+                return ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(StreamingAclResponses.jsonArray(decisions, objectMapper));
+            } catch (JsonProcessingException e) {
+                return ResponseEntity.badRequest().build();
+            }
         } catch (IOException e) {
             return ResponseEntity.internalServerError().build();
         }
@@ -1,23 +1,32 @@
 package digital.alf.cells.physicalacesscontrol.generator;
 
+import digital.alf.cells.acl.GroupDictionary;
+import digital.alf.cells.acl.GroupIndex;
+import digital.alf.cells.acl.GroupMask;
 import digital.alf.cells.physicalacesscontrol.model.AclEntry;
+import digital.alf.cells.physicalacesscontrol.model.DecisionMatrix;
 import digital.alf.cells.physicalacesscontrol.model.EmployeeInfo;
 import digital.alf.cells.physicalacesscontrol.model.KyvernoPolicyData;
 import digital.alf.cells.physicalacesscontrol.model.KyvernoUserInfo;
-import digital.alf.cells.physicalacesscontrol.service.UserEvaluationService;
+import digital.alf.cells.physicalacesscontrol.service.UserOperationMatrixEvaluator;
 import lombok.RequiredArgsConstructor;
+import org.roaringbitmap.RoaringBitmap;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Component
 @RequiredArgsConstructor
 public class AclGenerator {
 
-    private final UserEvaluationService userEvaluationService;
+    private final UserOperationMatrixEvaluator matrixEvaluator;
 
     /**
      * Generates ACL entries based on the Kyverno policy and employee information.
@@ -34,37 +43,138 @@ public class AclGenerator {
      */
     public List<AclEntry> generateAcl(KyvernoPolicyData policyData, List<EmployeeInfo> employees) {
         List<AclEntry> aclEntries = new ArrayList<>();
+        generateAcl(policyData, employees, aclEntries::add);
+        return aclEntries;
+    }
 
-        // Filter employees who meet the policy requirements
-        // The policy DENIES access to those without training, so we generate ACL for those WITH training
-        List<EmployeeInfo> qualifiedEmployees = employees.stream()
-                .filter(emp -> emp.hasGroup(policyData.getMatchGroup()))  // Must be in employee-group
-                .filter(emp -> emp.hasGroup(policyData.getRequiredGroup())) // Must have training-vde-available-group
-                .collect(Collectors.toList());
-
+    /**
+     * Streaming variant of {@link #generateAcl(KyvernoPolicyData, List)}: every entry is handed
+     * to the sink as soon as it is built, in the same order, without collecting a list.
+     */
+    public void generateAcl(KyvernoPolicyData policyData, Iterable<EmployeeInfo> employees, Consumer<? super AclEntry> sink) {
         // Build resource string from policy
         String resourceDescription = buildResourceDescription(policyData);
 
         // Build condition string from policy
         String conditionDescription = buildConditionDescription(policyData);
 
-        // Generate ACL entry for each qualified employee and each operation
-        for (EmployeeInfo employee : qualifiedEmployees) {
-            for (String operation : policyData.getOperations()) {
-                AclEntry entry = AclEntry.builder()
-                        .principal(formatPrincipal(employee))
-                        .action(operation)
-                        .resource(resourceDescription)
-                        .condition(conditionDescription)
-                        .build();
+        // The policy DENIES access to those without training, so we generate ACL for those WITH training:
+        // members of employee-group that also hold training-vde-available-group
+        Optional<GroupMask> required = GroupDictionary.shared()
+                .requireAll(policyData.getMatchGroup(), policyData.getRequiredGroup());
+        if (required.isEmpty()) {
+            return;
+        }
+        GroupMask requiredGroups = required.get();
+        GroupMask deniedGroups = GroupDictionary.shared().maskOfNames(deniedGroups(policyData));
 
-                aclEntries.add(entry);
+        for (EmployeeInfo employee : employees) {
+            GroupMask groups = employee.getGroupMask();
+            if (!groups.containsAll(requiredGroups) || groups.intersects(deniedGroups)) {
+                continue;
             }
+            emitEntries(policyData, employee, resourceDescription, conditionDescription, sink);
         }
+    }
 
+    /**
+     * Generates the ACL from a group index: the granted employees are the intersection of the
+     * employee-group and training-vde-available-group bitmaps, minus the bitmaps of denied groups.
+     * Entries come in the same order as from {@link #generateAcl(KyvernoPolicyData, List)} for the
+     * list the index was built from.
+     */
+    public List<AclEntry> generateAcl(KyvernoPolicyData policyData, GroupIndex<EmployeeInfo> index) {
+        List<AclEntry> aclEntries = new ArrayList<>();
+        generateAcl(policyData, index, aclEntries::add);
         return aclEntries;
     }
 
+    /**
+     * Streaming variant of {@link #generateAcl(KyvernoPolicyData, GroupIndex)}.
+     */
+    public void generateAcl(KyvernoPolicyData policyData, GroupIndex<EmployeeInfo> index, Consumer<? super AclEntry> sink) {
+        String resourceDescription = buildResourceDescription(policyData);
+        String conditionDescription = buildConditionDescription(policyData);
+
+        forEachGrantedEmployee(policyData, index,
+                employee -> emitEntries(policyData, employee, resourceDescription, conditionDescription, sink));
+    }
+
+    /**
+     * ACL of the grants in force at a given time. The rule runs only strictly inside its
+     * time_between window; outside it nothing is denied and every employee is granted.
+     *
+     * @param at time the ACL applies to
+     */
+    public List<AclEntry> generateAcl(KyvernoPolicyData policyData, GroupIndex<EmployeeInfo> index, Instant at) {
+        List<AclEntry> aclEntries = new ArrayList<>();
+        generateAcl(policyData, index, at, aclEntries::add);
+        return aclEntries;
+    }
+
+    /**
+     * Streaming variant of {@link #generateAcl(KyvernoPolicyData, GroupIndex, Instant)}.
+     */
+    public void generateAcl(KyvernoPolicyData policyData, GroupIndex<EmployeeInfo> index, Instant at, Consumer<? super AclEntry> sink) {
+        if (isRuleInForce(policyData, at)) {
+            generateAcl(policyData, index, sink);
+            return;
+        }
+        String resourceDescription = buildResourceDescription(policyData);
+        String conditionDescription = "Any subject" + timeWindowDescription(policyData);
+        index.forEach(index.select(List.of(), List.of()),
+                employee -> emitEntries(policyData, employee, resourceDescription, conditionDescription, sink));
+    }
+
+    private static boolean isRuleInForce(KyvernoPolicyData policyData, Instant at) {
+        if (policyData.getTimeWindowStart() == null || policyData.getTimeWindowEnd() == null) {
+            return true;
+        }
+        return at.isAfter(policyData.getTimeWindowStart()) && at.isBefore(policyData.getTimeWindowEnd());
+    }
+
+    /**
+     * Hands every employee the policy grants access to to the consumer, in index order.
+     * This is the grant rule behind {@link #generateAcl(KyvernoPolicyData, GroupIndex)}.
+     */
+    public void forEachGrantedEmployee(KyvernoPolicyData policyData, GroupIndex<EmployeeInfo> index, Consumer<? super EmployeeInfo> consumer) {
+        RoaringBitmap granted = index.select(requiredGroups(policyData), deniedGroups(policyData));
+        index.forEach(granted, consumer);
+    }
+
+    /**
+     * Number of employees the policy grants access to, computed on the index bitmaps alone.
+     */
+    public int countGrantedEmployees(KyvernoPolicyData policyData, GroupIndex<EmployeeInfo> index) {
+        return index.count(requiredGroups(policyData), deniedGroups(policyData));
+    }
+
+    private void emitEntries(
+            KyvernoPolicyData policyData,
+            EmployeeInfo employee,
+            String resourceDescription,
+            String conditionDescription,
+            Consumer<? super AclEntry> sink) {
+        for (String operation : policyData.getOperations()) {
+            AclEntry entry = AclEntry.builder()
+                    .principal(formatPrincipal(employee))
+                    .action(operation)
+                    .resource(resourceDescription)
+                    .condition(conditionDescription)
+                    .build();
+
+            sink.accept(entry);
+        }
+    }
+
+    private static List<String> requiredGroups(KyvernoPolicyData policyData) {
+        return Arrays.asList(policyData.getMatchGroup(), policyData.getRequiredGroup());
+    }
+
+    private static List<String> deniedGroups(KyvernoPolicyData policyData) {
+        return policyData.getDeniedGroups() != null ? policyData.getDeniedGroups() : List.of();
+    }
+
     /**
      * Formats the principal according to target format: <UserId:name>
      */
@@ -73,9 +183,10 @@ public class AclGenerator {
     }
 
     /**
-     * Builds a human-readable resource description from policy data.
+     * Builds a human-readable resource description from policy data; this is the resource
+     * text of every ACL entry generated for the policy.
      */
-    private String buildResourceDescription(KyvernoPolicyData policyData) {
+    public String buildResourceDescription(KyvernoPolicyData policyData) {
         StringBuilder sb = new StringBuilder();
         sb.append(policyData.getResourceKind());
 
@@ -102,27 +213,33 @@ public class AclGenerator {
           .append(policyData.getRequiredGroup())
           .append("'");
 
-        // Add time window if present
-        if (policyData.getTimeWindowStart() != null && policyData.getTimeWindowEnd() != null) {
-            sb.append("; Time window: ")
-              .append(policyData.getTimeWindowStart())
-              .append(" to ")
-              .append(policyData.getTimeWindowEnd());
+        for (String deniedGroup : deniedGroups(policyData)) {
+            sb.append(" AND NOT '").append(deniedGroup).append("'");
         }
 
+        // Add time window if present
+        sb.append(timeWindowDescription(policyData));
+
         return sb.toString();
     }
 
+    private static String timeWindowDescription(KyvernoPolicyData policyData) {
+        if (policyData.getTimeWindowStart() == null || policyData.getTimeWindowEnd() == null) {
+            return "";
+        }
+        return "; Time window: " + policyData.getTimeWindowStart() + " to " + policyData.getTimeWindowEnd();
+    }
+
     /**
      * Generates ACL entries by dynamically evaluating users against Kyverno policy using kyverno-cli.
      *
      * NEW Algorithm:
      * 1. Read all user files from resources/physical-access-control/pip-users/
-     * 2. For each user file and each operation:
+     * 2. Evaluate every (user, operation) pair concurrently (see UserOperationMatrixEvaluator):
      *    - Execute kyverno-cli to evaluate policy
      *    - Parse the ClusterReport JSON output
-     *    - If results.result != "fail", user has access
-     * 3. Generate ACL entries for qualified users
+     *    - If results.result != "fail", the pair's bit is set in the decision matrix
+     * 3. Generate ACL entries from the matrix, operation by operation
      *
      * @param policyData Parsed Kyverno policy data
      * @param policyPath Path to policy YAML file
@@ -137,23 +254,36 @@ public class AclGenerator {
             String admissionTime) throws IOException {
 
         List<AclEntry> aclEntries = new ArrayList<>();
+        generateAclWithDynamicEvaluation(policyData, policyPath, resourcePath, admissionTime, aclEntries::add);
+        return aclEntries;
+    }
 
-        // Evaluate each operation separately
-        for (String operation : policyData.getOperations()) {
-            // Get users who pass evaluation for this operation
-            List<KyvernoUserInfo> qualifiedUsers = userEvaluationService.evaluateUsersForAccess(
-                    policyPath,
-                    resourcePath,
-                    operation,
-                    admissionTime
-            );
-
-            // Build resource and condition descriptions
-            String resourceDescription = buildResourceDescription(policyData);
-            String conditionDescription = buildConditionDescriptionForDynamicEval(policyData, admissionTime);
-
-            // Generate ACL entries for qualified users
-            for (KyvernoUserInfo userInfo : qualifiedUsers) {
+    /**
+     * Streaming variant of {@link #generateAclWithDynamicEvaluation(KyvernoPolicyData, String, String, String)}:
+     * entries are handed to the sink in order once the decision matrix is complete.
+     */
+    public void generateAclWithDynamicEvaluation(
+            KyvernoPolicyData policyData,
+            String policyPath,
+            String resourcePath,
+            String admissionTime,
+            Consumer<? super AclEntry> sink) throws IOException {
+
+        DecisionMatrix matrix = matrixEvaluator.evaluate(
+                policyPath,
+                resourcePath,
+                policyData.getOperations(),
+                admissionTime
+        );
+
+        // Build resource and condition descriptions
+        String resourceDescription = buildResourceDescription(policyData);
+        String conditionDescription = buildConditionDescriptionForDynamicEval(policyData, admissionTime);
+
+        // Generate ACL entries for qualified users of each operation
+        for (int o = 0; o < matrix.getOperations().size(); o++) {
+            String operation = matrix.getOperations().get(o);
+            for (KyvernoUserInfo userInfo : matrix.allowedUsers(o)) {
                 AclEntry entry = AclEntry.builder()
                         .principal(formatPrincipalFromUserInfo(userInfo))
                         .action(operation)
@@ -161,11 +291,9 @@ public class AclGenerator {
                         .condition(conditionDescription)
                         .build();
 
-                aclEntries.add(entry);
+                sink.accept(entry);
             }
         }
-
-        return aclEntries;
     }
 
     /**
@@ -173,9 +301,15 @@ public class AclGenerator {
      */
     private String formatPrincipalFromUserInfo(KyvernoUserInfo userInfo) {
         String userId = userInfo.getUserId();
-        // Extract name from username if available, otherwise use username
-        String displayName = userId != null ? userId : "unknown";
-        return String.format("<%s>", displayName);
+        String username = userInfo.getUsername();
+        if (userId == null) {
+            return "<unknown>";
+        }
+        // Files without a uid use the username as id; avoid repeating it
+        if (username == null || username.equals(userId)) {
+            return String.format("<%s>", userId);
+        }
+        return String.format("<%s:%s>", userId, username);
     }
 
     /**
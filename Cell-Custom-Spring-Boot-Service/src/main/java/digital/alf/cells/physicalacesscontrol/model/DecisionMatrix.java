@@ -0,0 +1,95 @@
+package digital.alf.cells.physicalacesscontrol.model;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * User x operation decision bitmap produced by dynamic evaluation.
+ *
+ * Bit (user * operations.size() + operation) is set when the user passed evaluation
+ * for that operation. Users and operations keep the order they were evaluated in.
+ *
+ * Example (3 users, operations [ENTER, UPDATE]):
+ *             ENTER UPDATE
+ *   Anya        1     1
+ *   Ben         0     0
+ *   David       1     0
+ */
+public class DecisionMatrix {
+
+    private final List<KyvernoUserInfo> users;
+    private final List<String> operations;
+    private final BitSet decisions;
+
+    public DecisionMatrix(List<KyvernoUserInfo> users, List<String> operations) {
+        this.users = List.copyOf(users);
+        this.operations = List.copyOf(operations);
+        this.decisions = new BitSet(users.size() * operations.size());
+    }
+
+    public List<KyvernoUserInfo> getUsers() {
+        return users;
+    }
+
+    public List<String> getOperations() {
+        return operations;
+    }
+
+    public void allow(int userIndex, int operationIndex) {
+        decisions.set(bit(userIndex, operationIndex));
+    }
+
+    public boolean isAllowed(int userIndex, int operationIndex) {
+        return decisions.get(bit(userIndex, operationIndex));
+    }
+
+    /**
+     * Users allowed for the operation, in user order.
+     */
+    public List<KyvernoUserInfo> allowedUsers(int operationIndex) {
+        List<KyvernoUserInfo> allowed = new ArrayList<>();
+        for (int u = 0; u < users.size(); u++) {
+            if (isAllowed(u, operationIndex)) {
+                allowed.add(users.get(u));
+            }
+        }
+        return allowed;
+    }
+
+    /**
+     * Users allowed for at least one operation, de-duplicated by user id.
+     *
+     * Rows are merged through a hash map keyed by user id, so the first row of a user
+     * wins and the result keeps first-seen order (operation by operation, then user order).
+     */
+    public List<KyvernoUserInfo> usersAllowedForAnyOperation() {
+        Map<String, KyvernoUserInfo> merged = new LinkedHashMap<>();
+        for (int o = 0; o < operations.size(); o++) {
+            for (int u = 0; u < users.size(); u++) {
+                if (isAllowed(u, o)) {
+                    KyvernoUserInfo user = users.get(u);
+                    merged.putIfAbsent(String.valueOf(user.getUserId()), user);
+                }
+            }
+        }
+        return new ArrayList<>(merged.values());
+    }
+
+    /**
+     * Number of allowed (user, operation) pairs.
+     */
+    public int countAllowed() {
+        return decisions.cardinality();
+    }
+
+    private int bit(int userIndex, int operationIndex) {
+        if (userIndex < 0 || userIndex >= users.size() || operationIndex < 0 || operationIndex >= operations.size()) {
+            throw new IndexOutOfBoundsException("(" + userIndex + ", " + operationIndex + ") outside "
+                    + users.size() + " x " + operations.size() + " matrix");
+        }
+        return userIndex * operations.size() + operationIndex;
+    }
+}
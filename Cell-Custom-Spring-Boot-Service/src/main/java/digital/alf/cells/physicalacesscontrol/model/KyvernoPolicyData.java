@@ -20,7 +20,11 @@ public class KyvernoPolicyData {
     private Map<String, String> resourceLabels;
     private String matchGroup;
     private String requiredGroup;
+    /** Groups whose members are denied outright (deny.any condition "key: group, operator: In/AnyIn"). */
+    private List<String> deniedGroups;
     private Instant timeWindowStart;
     private Instant timeWindowEnd;
     private String validationMessage;
+    /** All rules of the policy, for the native condition engine. */
+    private List<KyvernoPolicyRule> rules;
 }
@@ -0,0 +1,66 @@
+package digital.alf.cells.physicalacesscontrol.model;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One rule of a Kyverno ClusterPolicy, as read by KyvernoPolicyParser.
+ *
+ * Keeps the parts the native condition engine evaluates:
+ *   match / exclude        -> resource filters (kinds, names, operations, labels, subjects)
+ *   preconditions          -> any/all conditions; the rule is skipped when they do not hold
+ *   validate.deny          -> any/all conditions; the request fails when they hold
+ *   validate.message       -> message reported on failure
+ *
+ * Condition keys and values are kept as written in the YAML, including {{ ... }} templates.
+ */
+public record KyvernoPolicyRule(
+        String name,
+        Match match,
+        Match exclude,
+        Conditions preconditions,
+        Conditions deny,
+        String message) {
+
+    /**
+     * match/exclude block. Filters listed directly under the block are treated as one more
+     * entry of {@code all}, like Kyverno does.
+     */
+    public record Match(List<ResourceFilter> any, List<ResourceFilter> all) {
+
+        public boolean isEmpty() {
+            return any.isEmpty() && all.isEmpty();
+        }
+    }
+
+    /**
+     * Resource description plus subjects. Empty lists match everything.
+     */
+    public record ResourceFilter(
+            List<String> kinds,
+            List<String> names,
+            List<String> operations,
+            Map<String, String> matchLabels,
+            List<Subject> subjects) {
+    }
+
+    /** {@code kind} is Group or User. */
+    public record Subject(String kind, String name) {
+    }
+
+    /**
+     * Kyverno condition block: true when any of {@code any} holds (or it is empty)
+     * and all of {@code all} hold.
+     */
+    public record Conditions(List<Condition> any, List<Condition> all) {
+
+        public static final Conditions NONE = new Conditions(List.of(), List.of());
+
+        public boolean isEmpty() {
+            return any.isEmpty() && all.isEmpty();
+        }
+    }
+
+    public record Condition(Object key, String operator, Object value) {
+    }
+}
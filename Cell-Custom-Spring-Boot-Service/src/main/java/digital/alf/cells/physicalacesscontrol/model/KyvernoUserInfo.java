@@ -57,10 +57,21 @@ public class KyvernoUserInfo {
     @AllArgsConstructor
     public static class UserInfo {
         private String username;
+        private String uid;
         private List<String> groups;
     }
 
+    /**
+     * Returns request.userInfo.uid, falling back to the username for files without a uid.
+     */
     public String getUserId() {
+        if (requestInfo != null && requestInfo.userInfo != null) {
+            return requestInfo.userInfo.uid != null ? requestInfo.userInfo.uid : requestInfo.userInfo.username;
+        }
+        return null;
+    }
+
+    public String getUsername() {
         if (requestInfo != null && requestInfo.userInfo != null) {
             return requestInfo.userInfo.username;
         }
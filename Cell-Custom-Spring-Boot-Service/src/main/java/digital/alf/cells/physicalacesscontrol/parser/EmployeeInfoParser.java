@@ -1,7 +1,9 @@
 package digital.alf.cells.physicalacesscontrol.parser;
 
+import digital.alf.cells.acl.AclMetrics;
 import digital.alf.cells.physicalacesscontrol.model.EmployeeInfo;
 import org.springframework.stereotype.Component;
+import org.yaml.snakeyaml.LoaderOptions;
 import org.yaml.snakeyaml.Yaml;
 
 import java.io.InputStream;
@@ -15,11 +17,20 @@ public class EmployeeInfoParser {
     /**
      * Parses the employee VDE training YAML file and returns a list of EmployeeInfo objects.
      *
+     * The file is trusted configuration, so SnakeYAML's 3 MB document limit (about 30k
+     * employees) is lifted.
+     *
      * @param inputStream InputStream of the YAML file
      * @return List of EmployeeInfo objects
      */
     public List<EmployeeInfo> parse(InputStream inputStream) {
-        Yaml yaml = new Yaml();
+        return AclMetrics.timeEmployeesParse(AclMetrics.KYVERNO, () -> parseYaml(inputStream));
+    }
+
+    private List<EmployeeInfo> parseYaml(InputStream inputStream) {
+        LoaderOptions options = new LoaderOptions();
+        options.setCodePointLimit(Integer.MAX_VALUE);
+        Yaml yaml = new Yaml(options);
         Map<String, Object> data = yaml.load(inputStream);
 
         List<EmployeeInfo> employees = new ArrayList<>();
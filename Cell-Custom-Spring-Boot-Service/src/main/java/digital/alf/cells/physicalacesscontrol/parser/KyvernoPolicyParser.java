@@ -1,6 +1,8 @@
 package digital.alf.cells.physicalacesscontrol.parser;
 
+import digital.alf.cells.acl.AclMetrics;
 import digital.alf.cells.physicalacesscontrol.model.KyvernoPolicyData;
+import digital.alf.cells.physicalacesscontrol.model.KyvernoPolicyRule;
 import org.springframework.stereotype.Component;
 import org.yaml.snakeyaml.Yaml;
 
@@ -23,6 +25,10 @@ public class KyvernoPolicyParser {
      * @return KyvernoPolicyData object containing parsed policy information
      */
     public KyvernoPolicyData parse(InputStream inputStream) {
+        return AclMetrics.timePolicyParse(AclMetrics.KYVERNO, () -> parseYaml(inputStream));
+    }
+
+    private KyvernoPolicyData parseYaml(InputStream inputStream) {
         Yaml yaml = new Yaml();
         Map<String, Object> data = yaml.load(inputStream);
 
@@ -42,6 +48,8 @@ public class KyvernoPolicyParser {
             @SuppressWarnings("unchecked")
             List<Map<String, Object>> rules = (List<Map<String, Object>>) spec.get("rules");
 
+            builder.rules(parseRules(rules));
+
             if (rules != null && !rules.isEmpty()) {
                 Map<String, Object> rule = rules.get(0); // Process first rule
 
@@ -131,6 +139,134 @@ public class KyvernoPolicyParser {
         return builder.build();
     }
 
+    /**
+     * Parses all rules into KyvernoPolicyRule, keeping condition keys and values as written.
+     */
+    private List<KyvernoPolicyRule> parseRules(List<Map<String, Object>> rules) {
+        List<KyvernoPolicyRule> parsed = new ArrayList<>();
+        if (rules == null) {
+            return parsed;
+        }
+
+        for (Map<String, Object> rule : rules) {
+            KyvernoPolicyRule.Conditions deny = KyvernoPolicyRule.Conditions.NONE;
+            String message = null;
+
+            @SuppressWarnings("unchecked")
+            Map<String, Object> validate = (Map<String, Object>) rule.get("validate");
+            if (validate != null) {
+                message = (String) validate.get("message");
+                @SuppressWarnings("unchecked")
+                Map<String, Object> validateDeny = (Map<String, Object>) validate.get("deny");
+                if (validateDeny != null) {
+                    deny = parseConditions(validateDeny.get("conditions"));
+                }
+            }
+
+            // Old structure (deny at rule level)
+            @SuppressWarnings("unchecked")
+            Map<String, Object> ruleDeny = (Map<String, Object>) rule.get("deny");
+            if (ruleDeny != null && deny.isEmpty()) {
+                deny = parseConditions(ruleDeny.get("conditions"));
+            }
+
+            parsed.add(new KyvernoPolicyRule(
+                    (String) rule.get("name"),
+                    parseMatch(rule.get("match")),
+                    parseMatch(rule.get("exclude")),
+                    parseConditions(rule.get("preconditions")),
+                    deny,
+                    message));
+        }
+        return parsed;
+    }
+
+    @SuppressWarnings("unchecked")
+    private KyvernoPolicyRule.Match parseMatch(Object matchData) {
+        if (!(matchData instanceof Map<?, ?> match)) {
+            return new KyvernoPolicyRule.Match(List.of(), List.of());
+        }
+
+        List<KyvernoPolicyRule.ResourceFilter> any = new ArrayList<>();
+        List<KyvernoPolicyRule.ResourceFilter> all = new ArrayList<>();
+
+        if (match.get("any") instanceof List<?> anyFilters) {
+            anyFilters.forEach(f -> any.add(parseResourceFilter((Map<String, Object>) f)));
+        }
+        if (match.get("all") instanceof List<?> allFilters) {
+            allFilters.forEach(f -> all.add(parseResourceFilter((Map<String, Object>) f)));
+        }
+        // resources/subjects directly under match
+        if (match.get("resources") != null || match.get("subjects") != null) {
+            all.add(parseResourceFilter((Map<String, Object>) match));
+        }
+
+        return new KyvernoPolicyRule.Match(any, all);
+    }
+
+    @SuppressWarnings("unchecked")
+    private KyvernoPolicyRule.ResourceFilter parseResourceFilter(Map<String, Object> filter) {
+        Map<String, Object> resources = filter.get("resources") instanceof Map<?, ?> r
+                ? (Map<String, Object>) r : Map.of();
+
+        Map<String, String> matchLabels = new HashMap<>();
+        if (resources.get("selector") instanceof Map<?, ?> selector
+                && selector.get("matchLabels") instanceof Map<?, ?> labels) {
+            labels.forEach((k, v) -> matchLabels.put(String.valueOf(k), String.valueOf(v)));
+        }
+
+        List<KyvernoPolicyRule.Subject> subjects = new ArrayList<>();
+        if (filter.get("subjects") instanceof List<?> subjectList) {
+            for (Object subject : subjectList) {
+                Map<String, Object> s = (Map<String, Object>) subject;
+                subjects.add(new KyvernoPolicyRule.Subject((String) s.get("kind"), (String) s.get("name")));
+            }
+        }
+
+        return new KyvernoPolicyRule.ResourceFilter(
+                stringList(resources.get("kinds")),
+                stringList(resources.get("names")),
+                stringList(resources.get("operations")),
+                matchLabels,
+                subjects);
+    }
+
+    /**
+     * Parses an any/all condition block. A plain list is treated as {@code all}.
+     */
+    @SuppressWarnings("unchecked")
+    private KyvernoPolicyRule.Conditions parseConditions(Object conditionsData) {
+        if (conditionsData instanceof List<?> list) {
+            return new KyvernoPolicyRule.Conditions(List.of(), parseConditionList(list));
+        }
+        if (conditionsData instanceof Map<?, ?> conditions) {
+            return new KyvernoPolicyRule.Conditions(
+                    parseConditionList((List<?>) conditions.get("any")),
+                    parseConditionList((List<?>) conditions.get("all")));
+        }
+        return KyvernoPolicyRule.Conditions.NONE;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<KyvernoPolicyRule.Condition> parseConditionList(List<?> conditions) {
+        List<KyvernoPolicyRule.Condition> parsed = new ArrayList<>();
+        if (conditions != null) {
+            for (Object condition : conditions) {
+                Map<String, Object> c = (Map<String, Object>) condition;
+                parsed.add(new KyvernoPolicyRule.Condition(c.get("key"), (String) c.get("operator"), c.get("value")));
+            }
+        }
+        return parsed;
+    }
+
+    private List<String> stringList(Object value) {
+        List<String> strings = new ArrayList<>();
+        if (value instanceof List<?> list) {
+            list.forEach(v -> strings.add(String.valueOf(v)));
+        }
+        return strings;
+    }
+
     /**
      * Extract required group from deny conditions structure.
      */
@@ -150,6 +286,7 @@ public class KyvernoPolicyParser {
             List<Map<String, Object>> anyDenyConditions = (List<Map<String, Object>>) conditions.get("any");
             if (anyDenyConditions != null) {
                 extractGroupFromConditionList(anyDenyConditions, builder);
+                extractDeniedGroupsFromConditionList(anyDenyConditions, builder);
             }
         }
     }
@@ -170,6 +307,28 @@ public class KyvernoPolicyParser {
         }
     }
 
+    /**
+     * Extract groups that deny on their own: in a deny.any list every condition denies by itself,
+     * so "key: suspended-group, operator: In, value: {{ request.userInfo.groups }}" means
+     * members of suspended-group never get access.
+     */
+    private void extractDeniedGroupsFromConditionList(List<Map<String, Object>> conditions, KyvernoPolicyData.KyvernoPolicyDataBuilder builder) {
+        List<String> deniedGroups = new ArrayList<>();
+        for (Map<String, Object> condition : conditions) {
+            String operator = (String) condition.get("operator");
+            Object key = condition.get("key");
+            Object value = condition.get("value");
+            if (("AnyIn".equals(operator) || "In".equals(operator))
+                    && key instanceof String group && !group.isEmpty() && !group.contains("{{")
+                    && value instanceof String reference && reference.contains("request.userInfo.groups")) {
+                deniedGroups.add(group);
+            }
+        }
+        if (!deniedGroups.isEmpty()) {
+            builder.deniedGroups(deniedGroups);
+        }
+    }
+
     /**
      * Extract operations from policy annotations/description if not explicitly stated.
      */
@@ -41,6 +41,17 @@ public class KyvernoUserInfoParser {
             if (requestInfo != null) {
                 userInfo.setRequestInfo(parseRequestInfo(requestInfo));
             }
+
+            // cli.kyverno.io/v1alpha1 UserInfo files put userInfo at the top level
+            @SuppressWarnings("unchecked")
+            Map<String, Object> topLevelUserInfo = (Map<String, Object>) data.get("userInfo");
+            if (topLevelUserInfo != null && userInfo.getRequestInfo() == null) {
+                KyvernoUserInfo.RequestInfo wrapper = new KyvernoUserInfo.RequestInfo();
+                wrapper.setRoles(new ArrayList<>());
+                wrapper.setClusterRoles(new ArrayList<>());
+                wrapper.setUserInfo(parseUserInfo(topLevelUserInfo));
+                userInfo.setRequestInfo(wrapper);
+            }
         }
 
         return userInfo;
@@ -90,16 +101,21 @@ public class KyvernoUserInfoParser {
         @SuppressWarnings("unchecked")
         Map<String, Object> userInfoData = (Map<String, Object>) data.get("userInfo");
         if (userInfoData != null) {
-            KyvernoUserInfo.UserInfo userInfo = new KyvernoUserInfo.UserInfo();
-            userInfo.setUsername((String) userInfoData.get("username"));
-
-            @SuppressWarnings("unchecked")
-            List<String> groups = (List<String>) userInfoData.get("groups");
-            userInfo.setGroups(groups != null ? groups : new ArrayList<>());
-
-            requestInfo.setUserInfo(userInfo);
+            requestInfo.setUserInfo(parseUserInfo(userInfoData));
         }
 
         return requestInfo;
     }
+
+    private KyvernoUserInfo.UserInfo parseUserInfo(Map<String, Object> userInfoData) {
+        KyvernoUserInfo.UserInfo userInfo = new KyvernoUserInfo.UserInfo();
+        userInfo.setUsername((String) userInfoData.get("username"));
+        userInfo.setUid(userInfoData.get("uid") != null ? String.valueOf(userInfoData.get("uid")) : null);
+
+        @SuppressWarnings("unchecked")
+        List<String> groups = (List<String>) userInfoData.get("groups");
+        userInfo.setGroups(groups != null ? groups : new ArrayList<>());
+
+        return userInfo;
+    }
 }
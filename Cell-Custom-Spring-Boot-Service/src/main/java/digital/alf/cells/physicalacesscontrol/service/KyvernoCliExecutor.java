@@ -1,6 +1,7 @@
 package digital.alf.cells.physicalacesscontrol.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import digital.alf.cells.acl.AclMetrics;
 import digital.alf.cells.physicalacesscontrol.model.KyvernoClusterReport;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -12,6 +13,8 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 /**
  * Service to execute Kyverno CLI commands and parse results.
@@ -59,32 +62,44 @@ public class KyvernoCliExecutor {
         ProcessBuilder processBuilder = new ProcessBuilder(command);
         processBuilder.redirectErrorStream(true);
         Process process = processBuilder.start();
-
-        // Read output
-        StringBuilder output = new StringBuilder();
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                output.append(line).append("\n");
+        AclMetrics.cliSpawned(AclMetrics.KYVERNO);
+
+        // Read output on a separate virtual thread so that this thread blocks only in the
+        // interruptible waitFor(); a cancelled evaluation kills the kyverno process
+        FutureTask<String> output = new FutureTask<>(() -> {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                StringBuilder lines = new StringBuilder();
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lines.append(line).append("\n");
+                }
+                return lines.toString();
             }
-        }
+        });
+        Thread.ofVirtual().name("kyverno-output").start(output);
 
         // Wait for process to complete
+        String jsonOutput;
         try {
             int exitCode = process.waitFor();
+            AclMetrics.cliExited(AclMetrics.KYVERNO, exitCode);
             log.debug("Kyverno CLI exit code: {}", exitCode);
+            jsonOutput = output.get();
         } catch (InterruptedException e) {
+            process.destroyForcibly();
             Thread.currentThread().interrupt();
             throw new IOException("Process interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to read Kyverno output", e.getCause());
         }
 
-        String jsonOutput = output.toString();
         log.debug("Kyverno CLI output: {}", jsonOutput);
 
         // Parse JSON output
         try {
             return objectMapper.readValue(jsonOutput, KyvernoClusterReport.class);
         } catch (Exception e) {
+            AclMetrics.cliParseFailed(AclMetrics.KYVERNO);
             log.error("Failed to parse kyverno output: {}", jsonOutput, e);
             throw new IOException("Failed to parse kyverno output", e);
         }
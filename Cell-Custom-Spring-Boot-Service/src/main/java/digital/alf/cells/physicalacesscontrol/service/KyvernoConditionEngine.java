@@ -0,0 +1,372 @@
+package digital.alf.cells.physicalacesscontrol.service;
+
+import digital.alf.cells.physicalacesscontrol.model.KyvernoClusterReport;
+import digital.alf.cells.physicalacesscontrol.model.KyvernoPolicyData;
+import digital.alf.cells.physicalacesscontrol.model.KyvernoPolicyRule;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * In-JVM evaluator for the validate rules of a Kyverno policy.
+ *
+ * Each rule from KyvernoPolicyParser is compiled once into a predicate tree:
+ *   match / exclude   -> resource filters over request.object and request.userInfo
+ *   preconditions     -> any/all conditions (e.g. time_between on request.time.admissionTime)
+ *   validate.deny     -> any/all conditions with In, NotIn, AnyIn, AllIn, AnyNotIn, AllNotIn,
+ *                        Equals, NotEquals
+ * {{ request.* }} variables are resolved against the request context map (see KyvernoExpression).
+ *
+ * The outcome is reported like 'kyverno apply --policy-report':
+ *   rule not matched        -> no result
+ *   preconditions not met   -> "skip"
+ *   deny conditions hold    -> "fail" with the validate message
+ *   otherwise               -> "pass"
+ * so KyvernoClusterReport.hasPassed() gives the same decision as the CLI.
+ */
+public final class KyvernoConditionEngine {
+
+    /** Request attributes that are the same for every user of an evaluation. */
+    private static final List<String> SHARED_PATHS = List.of("request.operation", "request.object", "request.time");
+
+    /** List attributes of a user that memoization compares as sorted sets. */
+    private static final Set<String> SIGNATURE_PATHS =
+            Set.of("request.userInfo.groups", "request.roles", "request.clusterRoles");
+
+    /** Operators that compare lists as sets, so list order does not matter. */
+    private static final Set<String> SET_OPERATORS = Set.of("In", "AllIn", "NotIn", "AnyIn", "AnyNotIn", "AllNotIn");
+
+    private final String policyName;
+    private final List<CompiledRule> rules;
+    private final Set<String> references = new HashSet<>();
+    private boolean readsUserIdentity;
+
+    private record CompiledRule(
+            String name,
+            Predicate<Map<String, Object>> match,
+            Predicate<Map<String, Object>> exclude,
+            Predicate<Map<String, Object>> preconditions,
+            Predicate<Map<String, Object>> deny,
+            String message) {
+    }
+
+    /**
+     * Compiles all rules of the policy.
+     *
+     * @throws IOException on an unsupported operator, function or expression
+     */
+    public KyvernoConditionEngine(KyvernoPolicyData policyData) throws IOException {
+        this.policyName = policyData.getPolicyName();
+        this.rules = new ArrayList<>();
+        if (policyData.getRules() != null) {
+            for (KyvernoPolicyRule rule : policyData.getRules()) {
+                rules.add(new CompiledRule(
+                        rule.name(),
+                        compileMatch(rule.match(), true),
+                        compileMatch(rule.exclude(), false),
+                        compileConditions(rule.preconditions()),
+                        compileConditions(rule.deny()),
+                        rule.message()));
+            }
+        }
+    }
+
+    public String getPolicyName() {
+        return policyName;
+    }
+
+    /**
+     * Whether a condition calls time_now_utc, so decisions change without the request changing.
+     */
+    public boolean readsClock() {
+        return references.contains("time_now_utc()");
+    }
+
+    /**
+     * Whether decisions may depend on who the user is beyond the sorted sets of their groups,
+     * roles and cluster roles: a User or ServiceAccount subject in match or exclude, a
+     * condition reading any other user attribute (username, uid, the userInfo as a whole,
+     * service account variables), or a condition comparing groups, roles or cluster roles
+     * with an order-sensitive operator such as Equals.
+     */
+    public boolean readsUserIdentity() {
+        return readsUserIdentity;
+    }
+
+    /**
+     * Evaluates all rules against the request context.
+     *
+     * @param context Variable root, e.g. {"request": {"operation": ..., "userInfo": ..., "object": ...}}
+     * @return report equivalent to the kyverno CLI policy report
+     */
+    public KyvernoClusterReport evaluate(Map<String, Object> context) {
+        List<KyvernoClusterReport.Result> results = new ArrayList<>();
+        KyvernoClusterReport.Summary summary = new KyvernoClusterReport.Summary();
+        KyvernoClusterReport.Resource resource = describeResource(context);
+        Instant now = Instant.now();
+
+        for (CompiledRule rule : rules) {
+            if (!rule.match().test(context) || rule.exclude().test(context)) {
+                continue;
+            }
+
+            String outcome;
+            String message;
+            if (!rule.preconditions().test(context)) {
+                outcome = "skip";
+                message = "preconditions not met";
+                summary.setSkip(summary.getSkip() + 1);
+            } else if (rule.deny().test(context)) {
+                outcome = "fail";
+                message = rule.message();
+                summary.setFail(summary.getFail() + 1);
+            } else {
+                outcome = "pass";
+                message = "validation rule '" + rule.name() + "' passed.";
+                summary.setPass(summary.getPass() + 1);
+            }
+
+            results.add(new KyvernoClusterReport.Result(
+                    "kyverno",
+                    policyName,
+                    rule.name(),
+                    new KyvernoClusterReport.Timestamp(now.getEpochSecond(), 0),
+                    outcome,
+                    true,
+                    List.of(resource),
+                    message,
+                    new KyvernoClusterReport.Properties("admission review")));
+        }
+
+        return new KyvernoClusterReport(
+                "ClusterReport",
+                "openreports.io/v1alpha1",
+                new KyvernoClusterReport.Metadata("merged"),
+                "",
+                summary,
+                results);
+    }
+
+    // ---- match / exclude ----
+
+    /**
+     * Compiles a match or exclude block. An empty block matches everything for match
+     * and nothing for exclude.
+     */
+    private Predicate<Map<String, Object>> compileMatch(KyvernoPolicyRule.Match match, boolean emptyResult) {
+        if (match == null || match.isEmpty()) {
+            return context -> emptyResult;
+        }
+        List<Predicate<Map<String, Object>>> any = match.any().stream().map(this::compileFilter).toList();
+        List<Predicate<Map<String, Object>>> all = match.all().stream().map(this::compileFilter).toList();
+
+        return context -> (any.isEmpty() || any.stream().anyMatch(p -> p.test(context)))
+                && all.stream().allMatch(p -> p.test(context));
+    }
+
+    private Predicate<Map<String, Object>> compileFilter(KyvernoPolicyRule.ResourceFilter filter) {
+        Set<String> kinds = new HashSet<>();
+        for (String kind : filter.kinds()) {
+            // "v1/Facility" and "Facility" both match kind Facility
+            kinds.add(kind.substring(kind.lastIndexOf('/') + 1));
+        }
+        List<Pattern> names = filter.names().stream().map(KyvernoConditionEngine::glob).toList();
+        Set<String> operations = new HashSet<>(filter.operations());
+        Map<String, String> labels = filter.matchLabels();
+        List<KyvernoPolicyRule.Subject> subjects = filter.subjects();
+        readsUserIdentity |= subjects.stream().anyMatch(subject -> !"Group".equals(subject.kind()));
+
+        return context -> {
+            Map<String, Object> request = map(context.get("request"));
+            Map<String, Object> object = map(request.get("object"));
+            Map<String, Object> metadata = map(object.get("metadata"));
+
+            if (!kinds.isEmpty() && !kinds.contains(String.valueOf(object.get("kind")))) {
+                return false;
+            }
+            if (!names.isEmpty()) {
+                String name = String.valueOf(metadata.get("name"));
+                if (names.stream().noneMatch(p -> p.matcher(name).matches())) {
+                    return false;
+                }
+            }
+            if (!operations.isEmpty() && !operations.contains(String.valueOf(request.get("operation")))) {
+                return false;
+            }
+            if (!labels.isEmpty()) {
+                Map<String, Object> resourceLabels = map(metadata.get("labels"));
+                for (Map.Entry<String, String> label : labels.entrySet()) {
+                    if (!label.getValue().equals(String.valueOf(resourceLabels.get(label.getKey())))) {
+                        return false;
+                    }
+                }
+            }
+            if (!subjects.isEmpty()) {
+                Map<String, Object> userInfo = map(request.get("userInfo"));
+                Collection<?> groups = userInfo.get("groups") instanceof Collection<?> g ? g : List.of();
+                boolean subjectMatched = subjects.stream().anyMatch(subject -> switch (String.valueOf(subject.kind())) {
+                    case "Group" -> groups.contains(subject.name());
+                    case "User" -> subject.name().equals(userInfo.get("username"));
+                    default -> false;
+                });
+                if (!subjectMatched) {
+                    return false;
+                }
+            }
+            return true;
+        };
+    }
+
+    // ---- conditions ----
+
+    private Predicate<Map<String, Object>> compileConditions(KyvernoPolicyRule.Conditions conditions) throws IOException {
+        if (conditions == null || conditions.isEmpty()) {
+            return context -> true;
+        }
+        List<Predicate<Map<String, Object>>> any = new ArrayList<>();
+        for (KyvernoPolicyRule.Condition condition : conditions.any()) {
+            any.add(compileCondition(condition));
+        }
+        List<Predicate<Map<String, Object>>> all = new ArrayList<>();
+        for (KyvernoPolicyRule.Condition condition : conditions.all()) {
+            all.add(compileCondition(condition));
+        }
+
+        return context -> (any.isEmpty() || any.stream().anyMatch(p -> p.test(context)))
+                && all.stream().allMatch(p -> p.test(context));
+    }
+
+    private Predicate<Map<String, Object>> compileCondition(KyvernoPolicyRule.Condition condition) throws IOException {
+        Set<String> read = new HashSet<>();
+        KyvernoExpression.Node key = KyvernoExpression.compile(condition.key(), read);
+        KyvernoExpression.Node value = KyvernoExpression.compile(condition.value(), read);
+        String operator = condition.operator() == null ? "" : condition.operator();
+        references.addAll(read);
+        readsUserIdentity |= read.stream().anyMatch(reference -> readsUserIdentity(reference, operator));
+
+        return switch (operator) {
+            case "Equals" -> context -> valueEquals(key.evaluate(context), value.evaluate(context));
+            case "NotEquals" -> context -> !valueEquals(key.evaluate(context), value.evaluate(context));
+            // In/NotIn: every key (a scalar key is a one-element list) is / is not in the value
+            case "In", "AllIn" -> context -> allIn(key.evaluate(context), value.evaluate(context));
+            case "NotIn" -> context -> !allIn(key.evaluate(context), value.evaluate(context));
+            case "AnyIn" -> context -> anyIn(key.evaluate(context), value.evaluate(context));
+            case "AnyNotIn" -> context -> !allIn(key.evaluate(context), value.evaluate(context));
+            case "AllNotIn" -> context -> !anyIn(key.evaluate(context), value.evaluate(context));
+            default -> throw new IOException("Unsupported Kyverno operator: " + condition.operator());
+        };
+    }
+
+    /**
+     * Whether a variable path or function call read by a condition with the given operator
+     * depends on the user beyond their signature; see {@link #readsUserIdentity()}.
+     */
+    private static boolean readsUserIdentity(String reference, String operator) {
+        if (reference.endsWith("()")) {
+            return false;
+        }
+        if (SIGNATURE_PATHS.contains(reference)) {
+            return !SET_OPERATORS.contains(operator);
+        }
+        return SHARED_PATHS.stream().noneMatch(path -> reference.equals(path) || reference.startsWith(path + "."));
+    }
+
+    private static boolean allIn(Object key, Object value) {
+        List<String> keys = toStrings(key);
+        List<String> values = toStrings(value);
+        return !keys.isEmpty() && keys.stream().allMatch(k -> contains(values, k));
+    }
+
+    private static boolean anyIn(Object key, Object value) {
+        List<String> values = toStrings(value);
+        return toStrings(key).stream().anyMatch(k -> contains(values, k));
+    }
+
+    /**
+     * Membership with Kyverno's wildcard support ('*' and '?') on the value side.
+     */
+    private static boolean contains(List<String> values, String key) {
+        for (String value : values) {
+            if (value.equals(key)) {
+                return true;
+            }
+            if ((value.contains("*") || value.contains("?")) && glob(value).matcher(key).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<String> toStrings(Object value) {
+        List<String> strings = new ArrayList<>();
+        if (value instanceof Collection<?> collection) {
+            collection.forEach(v -> strings.add(KyvernoExpression.stringify(v)));
+        } else if (value != null) {
+            strings.add(KyvernoExpression.stringify(value));
+        }
+        return strings;
+    }
+
+    /**
+     * Equality that tolerates the type differences YAML and templates introduce:
+     * true equals "true", 1 equals 1.0, and lists compare element-wise.
+     */
+    private static boolean valueEquals(Object a, Object b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        if (a instanceof Collection<?> ca && b instanceof Collection<?> cb) {
+            return toStrings(ca).equals(toStrings(cb));
+        }
+        if (a instanceof Map<?, ?> || b instanceof Map<?, ?>) {
+            return a.equals(b);
+        }
+        if (a instanceof Number || b instanceof Number) {
+            try {
+                return new BigDecimal(a.toString()).compareTo(new BigDecimal(b.toString())) == 0;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+        return a.toString().equals(b.toString());
+    }
+
+    // ---- helpers ----
+
+    private static KyvernoClusterReport.Resource describeResource(Map<String, Object> context) {
+        Map<String, Object> object = map(map(context.get("request")).get("object"));
+        Map<String, Object> metadata = map(object.get("metadata"));
+        Object namespace = metadata.get("namespace");
+        return new KyvernoClusterReport.Resource(
+                (String) object.get("kind"),
+                namespace != null ? namespace.toString() : "default",
+                (String) metadata.get("name"),
+                (String) object.get("apiVersion"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> map(Object value) {
+        return value instanceof Map<?, ?> m ? (Map<String, Object>) m : Map.of();
+    }
+
+    private static Pattern glob(String pattern) {
+        StringBuilder regex = new StringBuilder();
+        for (char c : pattern.toCharArray()) {
+            switch (c) {
+                case '*' -> regex.append(".*");
+                case '?' -> regex.append('.');
+                default -> regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString());
+    }
+}
@@ -0,0 +1,170 @@
+package digital.alf.cells.physicalacesscontrol.service;
+
+import digital.alf.cells.acl.AccessDecision;
+import digital.alf.cells.acl.DecisionIndex;
+import digital.alf.cells.acl.GroupIndex;
+import digital.alf.cells.physicalacesscontrol.generator.AclGenerator;
+import digital.alf.cells.physicalacesscontrol.model.EmployeeInfo;
+import digital.alf.cells.physicalacesscontrol.model.KyvernoPolicyData;
+import digital.alf.cells.physicalacesscontrol.model.KyvernoPolicyRule;
+import digital.alf.cells.physicalacesscontrol.parser.EmployeeInfoParser;
+import digital.alf.cells.physicalacesscontrol.parser.KyvernoPolicyParser;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Point decisions for the Kyverno policy: "may ES-4902 ENTER the Facility at 2025-10-20T08:30:00Z?".
+ *
+ * Answers come from a {@link DecisionIndex} built once from the policy and the employee YAML,
+ * with Kyverno semantics: the rule applies to the matched resource kind and operations strictly
+ * inside the time_between window, where it denies users without training-vde-available-group
+ * (or with a denied group); every other request is allowed. Both files are classpath resources
+ * and do not change while the application runs.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class KyvernoDecisionService {
+
+    private static final String DEFAULT_POLICY_PATH = "physical-access-control/pip-abac-policy1.yml";
+    private static final String DEFAULT_EMPLOYEE_INFO_PATH = "physical-access-control/pip-info-employee-vde-trainings.yml";
+
+    private final KyvernoPolicyParser policyParser;
+    private final EmployeeInfoParser employeeParser;
+    private final AclGenerator aclGenerator;
+
+    private volatile DecisionIndex index;
+
+    /**
+     * Decides a single request against the default policy and employee file.
+     *
+     * @throws IOException if the policy or employee file cannot be read on first use
+     */
+    public AccessDecision decide(String principal, String action, String resource, Instant at) throws IOException {
+        return index().decide(principal, action, resource, at);
+    }
+
+    /**
+     * The decision index, built on first use.
+     */
+    public DecisionIndex index() throws IOException {
+        DecisionIndex current = index;
+        if (current != null) {
+            return current;
+        }
+
+        synchronized (this) {
+            if (index == null) {
+                index = buildIndex();
+                log.info("Kyverno decision index built ({} granted employees)", index.grantedEmployees());
+            }
+            return index;
+        }
+    }
+
+    private DecisionIndex buildIndex() throws IOException {
+        KyvernoPolicyData policy;
+        try (InputStream inputStream = new ClassPathResource(DEFAULT_POLICY_PATH).getInputStream()) {
+            policy = policyParser.parse(inputStream);
+        }
+        GroupIndex<EmployeeInfo> employees;
+        try (InputStream inputStream = new ClassPathResource(DEFAULT_EMPLOYEE_INFO_PATH).getInputStream()) {
+            employees = GroupIndex.of(employeeParser.parse(inputStream), EmployeeInfo::getGroups);
+        }
+
+        List<Instant> timeBounds = policy.getTimeWindowStart() != null && policy.getTimeWindowEnd() != null
+                ? List.of(policy.getTimeWindowStart(), policy.getTimeWindowEnd())
+                : List.of();
+        List<Instant> intervals = DecisionIndex.intervals(timeBounds);
+        List<KyvernoPolicyRule.ResourceFilter> filters = matchFilters(policy);
+        List<String> ruleOperations = filters.stream().flatMap(filter -> filter.operations().stream()).distinct().toList();
+        DecisionIndex.Grant enforced = enforcedGrant(policy, filters, employees);
+
+        List<String> operations = new ArrayList<>(ruleOperations);
+        operations.add(null);
+        List<String> kinds = new ArrayList<>();
+        if (policy.getResourceKind() != null) {
+            kinds.add(policy.getResourceKind());
+        }
+        kinds.add(null);
+
+        DecisionIndex.DecisionIndexBuilder builder = DecisionIndex.builder()
+                .resourceKind(policy.getResourceKind())
+                .resourceDescription(aclGenerator.buildResourceDescription(policy))
+                .validationMessage(policy.getValidationMessage())
+                .timeBounds(timeBounds);
+        for (String operation : operations) {
+            for (String kind : kinds) {
+                boolean matched = (ruleOperations.isEmpty() || operation != null)
+                        && (policy.getResourceKind() == null || kind != null);
+                builder.scope(new DecisionIndex.Scope(operation, kind), intervals.stream()
+                        .map(at -> matched && inWindow(policy, at) ? enforced : DecisionIndex.Grant.EVERYONE)
+                        .toList());
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * time_between excludes both bounds: the rule runs only strictly inside the window.
+     */
+    private static boolean inWindow(KyvernoPolicyData policy, Instant at) {
+        if (policy.getTimeWindowStart() == null || policy.getTimeWindowEnd() == null) {
+            return true;
+        }
+        return at.isAfter(policy.getTimeWindowStart()) && at.isBefore(policy.getTimeWindowEnd());
+    }
+
+    /**
+     * Resource filters of the first rule's match block.
+     */
+    private static List<KyvernoPolicyRule.ResourceFilter> matchFilters(KyvernoPolicyData policy) {
+        if (policy.getRules() == null || policy.getRules().isEmpty() || policy.getRules().get(0).match() == null) {
+            return List.of();
+        }
+        KyvernoPolicyRule.Match match = policy.getRules().get(0).match();
+        List<KyvernoPolicyRule.ResourceFilter> filters = new ArrayList<>(match.any());
+        filters.addAll(match.all());
+        return filters;
+    }
+
+    /**
+     * Who passes the rule where it applies: holders of the required group without a denied
+     * group, plus, when the match names subject groups, everyone outside them.
+     */
+    private static DecisionIndex.Grant enforcedGrant(
+            KyvernoPolicyData policy,
+            List<KyvernoPolicyRule.ResourceFilter> filters,
+            GroupIndex<EmployeeInfo> employees) {
+        List<String> deniedGroups = policy.getDeniedGroups() != null ? policy.getDeniedGroups() : List.of();
+        RoaringBitmap admitted = employees.select(
+                policy.getRequiredGroup() != null ? List.of(policy.getRequiredGroup()) : List.of(),
+                deniedGroups);
+
+        List<String> subjectGroups = filters.stream()
+                .flatMap(filter -> filter.subjects().stream())
+                .filter(subject -> "Group".equals(subject.kind()))
+                .map(KyvernoPolicyRule.Subject::name)
+                .toList();
+        if (!subjectGroups.isEmpty()) {
+            admitted.or(employees.select(List.of(), subjectGroups));
+        }
+
+        List<String> employeeIds = new ArrayList<>();
+        employees.forEach(admitted, employee -> {
+            if (employee.getId() != null) {
+                employeeIds.add(employee.getId());
+            }
+        });
+        return DecisionIndex.Grant.of(employeeIds);
+    }
+}
@@ -0,0 +1,256 @@
+package digital.alf.cells.physicalacesscontrol.service;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compiled Kyverno variable template, e.g. a condition key or value.
+ *
+ * Supported syntax:
+ *   plain value                 -> constant ("training-vde-available-group", true, 3)
+ *   {{ request.userInfo.groups }}     -> variable lookup, keeps its type (here a list)
+ *   "prefix-{{ request.operation }}"  -> string interpolation
+ *   {{ time_between('{{ request.time.admissionTime }}', '2024-10-20T08:00:00Z', '2026-10-20T19:00:00Z') }}
+ *                               -> function call; quoted arguments may contain nested templates
+ *
+ * Functions: time_between, time_before, time_after, time_now_utc.
+ * Templates are parsed once; evaluation only walks the compiled tree. Compiling also reports
+ * what the template reads: variable paths ("request.userInfo.groups") and function calls
+ * ("time_now_utc()").
+ */
+final class KyvernoExpression {
+
+    private static final Pattern CALL = Pattern.compile("^([a-z_][a-z0-9_]*)\\s*\\((.*)\\)$", Pattern.DOTALL);
+    private static final Pattern NUMBER = Pattern.compile("^-?\\d+(\\.\\d+)?$");
+    private static final Pattern PATH = Pattern.compile("^[A-Za-z_][A-Za-z0-9_]*(\\.[A-Za-z_][A-Za-z0-9_-]*)*$");
+
+    /**
+     * A node of the compiled template tree.
+     */
+    @FunctionalInterface
+    interface Node {
+        Object evaluate(Map<String, Object> context);
+    }
+
+    private KyvernoExpression() {
+    }
+
+    /**
+     * Compiles a condition key or value as written in the policy.
+     *
+     * @param references Receives the variable paths and function calls the template reads
+     * @throws IOException on unbalanced braces, an unknown function or an unsupported expression
+     */
+    static Node compile(Object raw, Set<String> references) throws IOException {
+        if (raw instanceof String text && text.contains("{{")) {
+            return compileTemplate(text, references);
+        }
+        Object constant = raw;
+        return context -> constant;
+    }
+
+    private static Node compileTemplate(String text, Set<String> references) throws IOException {
+        List<Object> segments = new ArrayList<>(); // String literal text or Node
+        int pos = 0;
+        while (pos < text.length()) {
+            int open = text.indexOf("{{", pos);
+            if (open < 0) {
+                segments.add(text.substring(pos));
+                break;
+            }
+            if (open > pos) {
+                segments.add(text.substring(pos, open));
+            }
+            int close = findClosing(text, open);
+            segments.add(compileExpression(text.substring(open + 2, close - 2).trim(), references));
+            pos = close;
+        }
+
+        List<Node> nodes = segments.stream().filter(Node.class::isInstance).map(Node.class::cast).toList();
+        boolean onlyWhitespaceText = segments.stream()
+                .filter(String.class::isInstance)
+                .allMatch(s -> ((String) s).isBlank());
+
+        // A template that is exactly one expression keeps the expression's type
+        if (nodes.size() == 1 && onlyWhitespaceText) {
+            return nodes.get(0);
+        }
+
+        return context -> {
+            StringBuilder sb = new StringBuilder();
+            for (Object segment : segments) {
+                sb.append(segment instanceof Node node ? stringify(node.evaluate(context)) : segment);
+            }
+            return sb.toString();
+        };
+    }
+
+    /**
+     * Returns the index just after the "}}" matching the "{{" at {@code open}.
+     */
+    private static int findClosing(String text, int open) throws IOException {
+        int depth = 0;
+        int i = open;
+        while (i < text.length() - 1) {
+            if (text.startsWith("{{", i)) {
+                depth++;
+                i += 2;
+            } else if (text.startsWith("}}", i)) {
+                depth--;
+                i += 2;
+                if (depth == 0) {
+                    return i;
+                }
+            } else {
+                i++;
+            }
+        }
+        throw new IOException("Unbalanced '{{' in: " + text);
+    }
+
+    private static Node compileExpression(String expression, Set<String> references) throws IOException {
+        Matcher call = CALL.matcher(expression);
+        if (call.matches()) {
+            String function = call.group(1);
+            List<Node> args = new ArrayList<>();
+            for (String arg : splitArguments(call.group(2))) {
+                args.add(compileExpression(arg, references));
+            }
+            references.add(function + "()");
+            return compileCall(function, args);
+        }
+
+        if (expression.length() >= 2 && expression.startsWith("'") && expression.endsWith("'")) {
+            Node inner = compile(expression.substring(1, expression.length() - 1), references);
+            return context -> stringify(inner.evaluate(context));
+        }
+        if (expression.equals("true") || expression.equals("false")) {
+            Boolean value = Boolean.valueOf(expression);
+            return context -> value;
+        }
+        if (expression.equals("null")) {
+            return context -> null;
+        }
+        if (NUMBER.matcher(expression).matches()) {
+            BigDecimal value = new BigDecimal(expression);
+            return context -> value;
+        }
+        if (PATH.matcher(expression).matches()) {
+            references.add(expression);
+            String[] path = expression.split("\\.");
+            return context -> lookup(context, path);
+        }
+
+        throw new IOException("Unsupported Kyverno expression: " + expression);
+    }
+
+    private static Node compileCall(String function, List<Node> args) throws IOException {
+        return switch (function) {
+            case "time_between" -> {
+                requireArgs(function, args, 3);
+                yield context -> {
+                    Instant time = parseTime(args.get(0).evaluate(context));
+                    Instant start = parseTime(args.get(1).evaluate(context));
+                    Instant end = parseTime(args.get(2).evaluate(context));
+                    return time != null && start != null && end != null && time.isAfter(start) && time.isBefore(end);
+                };
+            }
+            case "time_before" -> {
+                requireArgs(function, args, 2);
+                yield context -> {
+                    Instant a = parseTime(args.get(0).evaluate(context));
+                    Instant b = parseTime(args.get(1).evaluate(context));
+                    return a != null && b != null && a.isBefore(b);
+                };
+            }
+            case "time_after" -> {
+                requireArgs(function, args, 2);
+                yield context -> {
+                    Instant a = parseTime(args.get(0).evaluate(context));
+                    Instant b = parseTime(args.get(1).evaluate(context));
+                    return a != null && b != null && a.isAfter(b);
+                };
+            }
+            case "time_now_utc" -> {
+                requireArgs(function, args, 0);
+                yield context -> Instant.now().toString();
+            }
+            default -> throw new IOException("Unsupported Kyverno function: " + function);
+        };
+    }
+
+    private static void requireArgs(String function, List<Node> args, int expected) throws IOException {
+        if (args.size() != expected) {
+            throw new IOException(function + " expects " + expected + " arguments, got " + args.size());
+        }
+    }
+
+    /**
+     * Splits call arguments at top-level commas, ignoring commas inside quotes,
+     * parentheses and nested templates.
+     */
+    private static List<String> splitArguments(String arguments) {
+        List<String> result = new ArrayList<>();
+        if (arguments.isBlank()) {
+            return result;
+        }
+        int depth = 0;
+        boolean quoted = false;
+        int start = 0;
+        for (int i = 0; i < arguments.length(); i++) {
+            char c = arguments.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (!quoted && (c == '(' || c == '{')) {
+                depth++;
+            } else if (!quoted && (c == ')' || c == '}')) {
+                depth--;
+            } else if (!quoted && depth == 0 && c == ',') {
+                result.add(arguments.substring(start, i).trim());
+                start = i + 1;
+            }
+        }
+        result.add(arguments.substring(start).trim());
+        return result;
+    }
+
+    private static Object lookup(Map<String, Object> context, String[] path) {
+        Object current = context;
+        for (String segment : path) {
+            if (!(current instanceof Map<?, ?> map)) {
+                return null;
+            }
+            current = map.get(segment);
+        }
+        return current;
+    }
+
+    private static Instant parseTime(Object value) {
+        if (value == null) {
+            return null;
+        }
+        String text = value.toString();
+        try {
+            return Instant.parse(text);
+        } catch (DateTimeParseException e) {
+            try {
+                return OffsetDateTime.parse(text).toInstant();
+            } catch (DateTimeParseException ignored) {
+                return null;
+            }
+        }
+    }
+
+    static String stringify(Object value) {
+        return value == null ? "" : value.toString();
+    }
+}
@@ -0,0 +1,108 @@
+package digital.alf.cells.physicalacesscontrol.service;
+
+import digital.alf.cells.acl.PolicyCache;
+import digital.alf.cells.physicalacesscontrol.model.KyvernoClusterReport;
+import digital.alf.cells.physicalacesscontrol.model.KyvernoUserInfo;
+import digital.alf.cells.physicalacesscontrol.parser.KyvernoPolicyParser;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Evaluates Kyverno policies inside the JVM instead of spawning 'kyverno apply'.
+ *
+ * Each policy is parsed and compiled once into a {@link KyvernoConditionEngine} and cached
+ * by content hash (see {@link PolicyCache}); resource YAMLs are cached the same way. Evaluation
+ * builds the request context the CLI would build from --resource, --userinfo and --set:
+ *
+ *   request.operation, request.time.admissionTime, request.userInfo.{username,uid,groups},
+ *   request.roles, request.clusterRoles, request.object
+ *
+ * The result is a KyvernoClusterReport shaped like the CLI policy report, so callers can
+ * switch engines without changing how decisions are read.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class KyvernoNativeEvaluator {
+
+    private final KyvernoPolicyParser policyParser;
+
+    private final PolicyCache<KyvernoConditionEngine> compiledPolicies = new PolicyCache<>();
+    private final PolicyCache<Map<String, Object>> resources = new PolicyCache<>();
+
+    /**
+     * Evaluates a user against a policy and resource.
+     *
+     * @param policyPath    Path to policy YAML (relative to the classpath)
+     * @param resourcePath  Path to resource YAML (relative to the classpath)
+     * @param userInfo      Parsed user info
+     * @param operation     The operation to evaluate (e.g., "ENTER", "EXIT", "UPDATE")
+     * @param admissionTime The admission time for evaluation
+     * @return KyvernoClusterReport equivalent to the CLI policy report
+     * @throws IOException if the policy or resource cannot be read or compiled
+     */
+    public KyvernoClusterReport evaluate(
+            String policyPath,
+            String resourcePath,
+            KyvernoUserInfo userInfo,
+            String operation,
+            String admissionTime) throws IOException {
+
+        KyvernoConditionEngine engine = compile(policyPath);
+        return engine.evaluate(buildContext(loadResource(resourcePath), userInfo, operation, admissionTime));
+    }
+
+    /**
+     * Returns the compiled policy, parsing it on first use of its current content.
+     */
+    public KyvernoConditionEngine compile(String policyPath) throws IOException {
+        return compiledPolicies.get(policyPath, content -> {
+            KyvernoConditionEngine compiled = new KyvernoConditionEngine(policyParser.parse(new ByteArrayInputStream(content)));
+            log.info("Compiled kyverno policy {} ({})", policyPath, compiled.getPolicyName());
+            return compiled;
+        });
+    }
+
+    static Map<String, Object> buildContext(
+            Map<String, Object> resource,
+            KyvernoUserInfo userInfo,
+            String operation,
+            String admissionTime) {
+
+        Map<String, Object> user = new HashMap<>();
+        user.put("username", userInfo.getUsername());
+        user.put("uid", userInfo.getUserId());
+        user.put("groups", userInfo.getUserGroups() != null ? userInfo.getUserGroups() : List.of());
+
+        KyvernoUserInfo.RequestInfo requestInfo = userInfo.getRequestInfo();
+        Map<String, Object> request = new HashMap<>();
+        request.put("operation", operation);
+        request.put("time", Map.of("admissionTime", admissionTime));
+        request.put("userInfo", user);
+        request.put("roles", requestInfo != null && requestInfo.getRoles() != null ? requestInfo.getRoles() : List.of());
+        request.put("clusterRoles", requestInfo != null && requestInfo.getClusterRoles() != null
+                ? requestInfo.getClusterRoles() : List.of());
+        request.put("object", resource);
+
+        return Map.of("request", request);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> loadResource(String resourcePath) throws IOException {
+        return resources.get(resourcePath, content -> {
+            Object loaded = new Yaml().load(new ByteArrayInputStream(content));
+            if (!(loaded instanceof Map<?, ?>)) {
+                throw new IOException("Resource is not a YAML mapping: " + resourcePath);
+            }
+            return (Map<String, Object>) loaded;
+        });
+    }
+}
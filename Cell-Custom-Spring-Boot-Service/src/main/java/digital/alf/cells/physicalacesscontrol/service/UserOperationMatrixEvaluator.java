@@ -0,0 +1,285 @@
+package digital.alf.cells.physicalacesscontrol.service;
+
+import digital.alf.cells.acl.AclMetrics;
+import digital.alf.cells.acl.BoundedFanOut;
+import digital.alf.cells.acl.DecisionCache;
+import digital.alf.cells.acl.EquivalenceClasses;
+import digital.alf.cells.acl.PolicyCache;
+import digital.alf.cells.physicalacesscontrol.config.KyvernoAclProperties;
+import digital.alf.cells.physicalacesscontrol.model.DecisionMatrix;
+import digital.alf.cells.physicalacesscontrol.model.KyvernoClusterReport;
+import digital.alf.cells.physicalacesscontrol.model.KyvernoUserInfo;
+import digital.alf.cells.physicalacesscontrol.parser.KyvernoPolicyParser;
+import digital.alf.cells.physicalacesscontrol.parser.KyvernoUserInfoParser;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * Evaluates every (user, operation) pair of the pip-users directory in one go.
+ *
+ * User files are parsed once; each pair is one decision of acl.kyverno.engine (the in-process
+ * KyvernoNativeEvaluator or one 'kyverno apply') scheduled on virtual threads,
+ * at most acl.kyverno.concurrency at a time (see {@link BoundedFanOut}). The outcomes are
+ * collected into a {@link DecisionMatrix}. A pair that fails or exceeds
+ * acl.kyverno.decision-timeout counts as denied, like a failing user in UserEvaluationService.
+ *
+ * With acl.kyverno.memoize (default) users with the same sorted groups, roles and cluster
+ * roles form one class; only the first user of each class is evaluated and its row of
+ * decisions is copied to the others (see {@link EquivalenceClasses}). Pair decisions are kept
+ * across requests in the {@link DecisionCache}, keyed by the policy, resource and user content,
+ * unless the policy reads the clock (time_now_utc).
+ *
+ * Each evaluation is timed as acl.evaluation and its pair decisions counted as
+ * acl.evaluation.outcomes (see {@link AclMetrics}).
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class UserOperationMatrixEvaluator {
+
+    static final String USERS_DIRECTORY = "physical-access-control/pip-users/";
+
+    private final KyvernoUserInfoParser userInfoParser;
+    private final KyvernoCliExecutor cliExecutor;
+    private final KyvernoNativeEvaluator nativeEvaluator;
+    private final KyvernoAclProperties properties;
+    private final DecisionCache decisionCache;
+    private final KyvernoPolicyParser policyParser;
+
+    private final PolicyCache<PolicyAnalysis> policyAnalyses = new PolicyCache<>();
+
+    /**
+     * @param policyPath    Path to policy YAML (relative to resources)
+     * @param resourcePath  Path to resource YAML (relative to resources)
+     * @param operations    Operations to evaluate
+     * @param admissionTime Admission time for evaluation
+     * @return Decision matrix over all parseable user files and the given operations
+     * @throws IOException if the user files cannot be listed or the request deadline passes
+     */
+    public DecisionMatrix evaluate(
+            String policyPath,
+            String resourcePath,
+            List<String> operations,
+            String admissionTime) throws IOException {
+        return AclMetrics.timeEvaluation(AclMetrics.KYVERNO,
+                () -> evaluateMatrix(policyPath, resourcePath, operations, admissionTime));
+    }
+
+    private DecisionMatrix evaluateMatrix(
+            String policyPath,
+            String resourcePath,
+            List<String> operations,
+            String admissionTime) throws IOException {
+
+        PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+        Resource[] userResources = resolver.getResources("classpath:" + USERS_DIRECTORY + "*.yml");
+
+        List<KyvernoUserInfo> users = new ArrayList<>();
+        List<String> userFiles = new ArrayList<>();
+        for (Resource userResource : userResources) {
+            try {
+                users.add(userInfoParser.parse(userResource.getInputStream()));
+                userFiles.add(USERS_DIRECTORY + userResource.getFilename());
+            } catch (Exception e) {
+                log.error("Error parsing user file: {}", userResource.getFilename(), e);
+            }
+        }
+
+        DecisionMatrix matrix = new DecisionMatrix(users, operations);
+        log.info("Evaluating {} users x {} operations (engine {}, concurrency {})",
+                users.size(), operations.size(), properties.getEngine(), properties.effectiveConcurrency());
+
+        PolicyAnalysis analysis = analyze(policyPath);
+        List<Integer> userIndexes = IntStream.range(0, users.size()).boxed().toList();
+        Function<Integer, Object> signature = properties.isMemoize() && analysis.ignoresUserIdentity()
+                ? u -> signature(users.get(u))
+                : u -> null;
+        List<List<Boolean>> rows = EquivalenceClasses.evaluate(userIndexes, signature, representatives ->
+                evaluateRows(policyPath, resourcePath, operations, admissionTime, users, userFiles, representatives,
+                        !analysis.readsClock()));
+
+        long failed = 0;
+        for (int u = 0; u < rows.size(); u++) {
+            for (int o = 0; o < operations.size(); o++) {
+                Boolean outcome = rows.get(u).get(o);
+                if (Boolean.TRUE.equals(outcome)) {
+                    matrix.allow(u, o);
+                } else if (outcome == null) {
+                    failed++;
+                }
+            }
+        }
+        int allowed = matrix.countAllowed();
+        long pairs = (long) users.size() * operations.size();
+        AclMetrics.evaluationOutcomes(AclMetrics.KYVERNO, allowed, pairs - allowed - failed, failed);
+
+        log.info("Decision matrix: {} of {} pairs allowed", allowed, pairs);
+        return matrix;
+    }
+
+    /**
+     * Evaluates every operation for the given users, returning one row of outcomes per user.
+     */
+    private List<List<Boolean>> evaluateRows(
+            String policyPath,
+            String resourcePath,
+            List<String> operations,
+            String admissionTime,
+            List<KyvernoUserInfo> users,
+            List<String> userFiles,
+            List<Integer> userIndexes,
+            boolean cacheable) throws IOException {
+
+        List<Pair> pairs = new ArrayList<>(userIndexes.size() * operations.size());
+        for (int u : userIndexes) {
+            for (String operation : operations) {
+                pairs.add(new Pair(u, operation));
+            }
+        }
+
+        EquivalenceClasses.Evaluator<Pair, Boolean> engine = uncached -> {
+            List<Callable<Boolean>> tasks = new ArrayList<>(uncached.size());
+            for (Pair pair : uncached) {
+                String userFile = userFiles.get(pair.user());
+                KyvernoUserInfo user = users.get(pair.user());
+                tasks.add(() -> evaluatePair(policyPath, resourcePath, userFile, user, pair.operation(), admissionTime));
+            }
+            return BoundedFanOut.runAll(tasks, properties.effectiveConcurrency(),
+                    properties.getDecisionTimeout(), properties.getRequestTimeout());
+        };
+
+        List<Boolean> outcomes;
+        if (cacheable) {
+            String resource = contentHash(resourcePath);
+            outcomes = decisionCache.evaluate(policyPath, pairs,
+                    pair -> new DecisionCache.Input(
+                            List.of(resource, users.get(pair.user()), userFileContent(userFiles.get(pair.user()))),
+                            pair.operation(), admissionTime),
+                    engine);
+        } else {
+            outcomes = engine.evaluate(pairs);
+        }
+
+        List<List<Boolean>> rows = new ArrayList<>(userIndexes.size());
+        for (int from = 0; from < outcomes.size(); from += operations.size()) {
+            rows.add(outcomes.subList(from, from + operations.size()));
+        }
+        return rows;
+    }
+
+    /**
+     * One (user index, operation) decision.
+     */
+    private record Pair(int user, String operation) {
+    }
+
+    /**
+     * Content hash of a classpath file for the decision cache key; the path itself if unreadable
+     * (the engine then fails on it, and failed decisions are not cached).
+     */
+    private String contentHash(String path) {
+        try {
+            return decisionCache.contentHash(path);
+        } catch (IOException e) {
+            return path;
+        }
+    }
+
+    /**
+     * The cli engine reads the raw user file, so its content is part of the cache input.
+     */
+    private String userFileContent(String userFile) {
+        return properties.getEngine() == KyvernoAclProperties.Engine.CLI ? contentHash(userFile) : "";
+    }
+
+    /**
+     * Decision-relevant attributes of a user for policies accepted by
+     * {@link PolicyAnalysis#ignoresUserIdentity()}; the operation, resource and time are shared by all.
+     */
+    private record Signature(List<String> groups, List<String> roles, List<String> clusterRoles) {
+    }
+
+    private static Signature signature(KyvernoUserInfo user) {
+        KyvernoUserInfo.RequestInfo requestInfo = user.getRequestInfo();
+        return new Signature(
+                EquivalenceClasses.sorted(user.getUserGroups()),
+                EquivalenceClasses.sorted(requestInfo != null ? requestInfo.getRoles() : null),
+                EquivalenceClasses.sorted(requestInfo != null ? requestInfo.getClusterRoles() : null));
+    }
+
+    /**
+     * What the memoization and the decision cache need to know about a policy.
+     *
+     * @param ignoresUserIdentity whether decisions depend on the user only through the sorted
+     *                            groups, roles and cluster roles, so users with equal signatures
+     *                            get equal decisions (see {@link KyvernoConditionEngine#readsUserIdentity()})
+     * @param readsClock          whether a condition calls time_now_utc
+     */
+    private record PolicyAnalysis(boolean ignoresUserIdentity, boolean readsClock) {
+    }
+
+    /**
+     * Analyzes the compiled policy, once per version of its content. A policy that cannot be
+     * compiled in-process is evaluated for every user without the decision cache.
+     */
+    private PolicyAnalysis analyze(String policyPath) {
+        try {
+            return policyAnalyses.get(policyPath, content -> {
+                KyvernoConditionEngine engine = new KyvernoConditionEngine(policyParser.parse(new ByteArrayInputStream(content)));
+                PolicyAnalysis analysis = new PolicyAnalysis(!engine.readsUserIdentity(), engine.readsClock());
+                if (!analysis.ignoresUserIdentity()) {
+                    log.info("Policy {} matches on user identity; evaluating every user", policyPath);
+                }
+                if (analysis.readsClock()) {
+                    log.info("Policy {} reads the clock; not caching its decisions", policyPath);
+                }
+                return analysis;
+            });
+        } catch (IOException e) {
+            log.warn("Cannot analyze policy {} for memoization, evaluating every user: {}", policyPath, e.getMessage());
+            return new PolicyAnalysis(false, true);
+        }
+    }
+
+    /**
+     * @return whether the pair passed; null if it could not be evaluated (denied, not cached)
+     */
+    private Boolean evaluatePair(
+            String policyPath,
+            String resourcePath,
+            String userFile,
+            KyvernoUserInfo user,
+            String operation,
+            String admissionTime) {
+        try {
+            KyvernoClusterReport report = switch (properties.getEngine()) {
+                case NATIVE -> nativeEvaluator.evaluate(policyPath, resourcePath, user, operation, admissionTime);
+                case CLI -> cliExecutor.evaluate(policyPath, resourcePath, userFile, operation, admissionTime);
+            };
+
+            if (report.hasPassed()) {
+                log.info("User {} PASSED evaluation for operation {}", user.getUserId(), operation);
+                return true;
+            }
+            log.info("User {} FAILED evaluation for operation {}", user.getUserId(), operation);
+            if (report.getResults() != null && !report.getResults().isEmpty()) {
+                log.debug("Failure reason: {}", report.getResults().get(0).getMessage());
+            }
+        } catch (Exception e) {
+            log.error("Error evaluating user file {} for operation {}", userFile, operation, e);
+            return null;
+        }
+        return false;
+    }
+}
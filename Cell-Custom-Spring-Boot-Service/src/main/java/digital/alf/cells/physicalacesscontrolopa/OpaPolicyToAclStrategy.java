@@ -1,18 +1,26 @@
 package digital.alf.cells.physicalacesscontrolopa;
 
+import digital.alf.cells.acl.AclMetrics;
+import digital.alf.cells.acl.AclSnapshots;
+import digital.alf.cells.acl.AclPrecomputeScheduler;
+import digital.alf.cells.acl.AclStream;
+import digital.alf.cells.acl.PrecomputedAcls;
+import digital.alf.cells.acl.SingleFlight;
+import digital.alf.cells.acl.GroupIndex;
 import digital.alf.cells.physicalacesscontrolopa.generator.OpaAclGenerator;
 import digital.alf.cells.physicalacesscontrolopa.model.AclEntry;
 import digital.alf.cells.physicalacesscontrolopa.model.OpaEmployeeInfo;
 import digital.alf.cells.physicalacesscontrolopa.model.OpaPolicyData;
-import digital.alf.cells.physicalacesscontrolopa.parser.OpaEmployeeInfoParser;
-import digital.alf.cells.physicalacesscontrolopa.parser.OpaPolicyParser;
+import digital.alf.cells.physicalacesscontrolopa.service.OpaEmployeeDirectory;
+import digital.alf.cells.physicalacesscontrolopa.service.OpaPolicyService;
 import lombok.RequiredArgsConstructor;
-import org.springframework.core.io.ClassPathResource;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
-import java.io.InputStream;
+import java.time.Clock;
+import java.time.Instant;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Main strategy class for converting OPA rego policies to ACL format.
@@ -21,14 +29,17 @@ import java.util.List;
  * ==================
  *
  * 1. PARSE INPUTS
- *    - Load and parse OPA rego policy (policy.rego) using text/regex extraction
+ *    - Load and parse OPA rego policy (policy.rego)
+ *      * Partially evaluate data.<package>.allow with the input unknown; the residual is
+ *        an access predicate over group membership, request attributes and request time
  *      * Extract: operations (ENTER, EXIT, ...)
  *      * Extract: resource kind (Facility)
  *      * Extract: required group (training-vde-available-group)
  *      * Extract: temporal conditions (time window)
  *      * Extract: OPA package name (physical_access_control)
  *
- *    - Load and parse employee VDE training JSON (pip-info-employee-vde-trainings.json)
+ *    - Take the employee VDE training JSON (pip-info-employee-vde-trainings.json) from
+ *      OpaEmployeeDirectory, which parses it once and reloads it when the file changes
  *      * Extract: employee ID, name, group memberships
  *
  * 2. EVALUATE POLICY LOGIC
@@ -36,8 +47,12 @@ import java.util.List;
  *      deny IF: resource.kind == "Facility" AND time_within_window AND user NOT IN training-vde-available-group
  *      allow IF: not deny
  *
- *    Static ACL grant logic:
+ *    Partial evaluation turns allow into:
+ *      kind != "Facility" OR time < start OR time > end OR user IN training-vde-available-group
+ *
+ *    Static ACL grant logic (resource kind and a time inside the window substituted):
  *      ALLOW IF: user IN training-vde-available-group
+ *    applied once to the employee group index rather than evaluated per employee.
  *
  * 3. GENERATE ACL ENTRIES
  *    For each employee meeting the requirements:
@@ -53,20 +68,116 @@ import java.util.List;
  *      - Resource
  *      - Condition
  *
+ * 5. SNAPSHOT
+ *    The ACL of the default files is kept as a snapshot (see {@link AclSnapshots}) and only
+ *    regenerated when the parsed policy changes, the employee directory swaps its snapshot or
+ *    a policy time bound passes. Static ACLs of custom files are generated for the current
+ *    time as well.
+ *
+ * 6. COALESCING
+ *    Concurrent dynamic evaluations of the same policy version share one run (see
+ *    {@link SingleFlight}); the user files are classpath resources, fixed at runtime.
+ *
+ * 7. PRECOMPUTATION
+ *    The static and the dynamic ACL of the default files are snapshots computed in background
+ *    by {@link AclPrecomputeScheduler}; the default-file methods behind the /generate*
+ *    endpoints (currentAcl, currentDynamicAcl, the stream methods) then only read them.
+ *
+ * 8. METRICS
+ *    Generation and text formatting are timed, and the employee count of the static snapshot
+ *    is a gauge (see {@link AclMetrics}). Streamed entries generated while written count as
+ *    serialization.
+ *
  * Equivalent of PolicyToAclStrategy for the OPA engine.
  * Reads from: src/main/resources/physical-access-control-opa/
  */
 @Service
 @RequiredArgsConstructor
-public class OpaPolicyToAclStrategy {
+public class OpaPolicyToAclStrategy implements PrecomputedAcls {
 
     private static final String DEFAULT_POLICY_PATH = "physical-access-control-opa/policy.rego";
     private static final String DEFAULT_EMPLOYEE_INFO_PATH = "physical-access-control-opa/pip-info-employee-vde-trainings.json";
 
-    private final OpaPolicyParser policyParser;
-    private final OpaEmployeeInfoParser employeeParser;
+    private final OpaPolicyService policyService;
+    private final OpaEmployeeDirectory employeeDirectory;
     private final OpaAclGenerator aclGenerator;
 
+    private final Clock clock = Clock.systemUTC();
+
+    private final AclSnapshots<StaticSource, AclEntry> snapshots = AclSnapshots.create("OPA",
+            this::defaultStaticSource, this::generateSnapshot, clock);
+
+    private final AclSnapshots<DynamicEvaluation, AclEntry> dynamicSnapshots = AclSnapshots.create("OPA dynamic",
+            this::defaultDynamicEvaluation, this::generateDynamicSnapshot, clock);
+
+    private final SingleFlight<DynamicEvaluation, List<AclEntry>> dynamicEvaluations = new SingleFlight<>();
+
+    private final AtomicInteger snapshotEmployees = AclMetrics.employeeCount(AclMetrics.OPA, new AtomicInteger());
+
+    /**
+     * Source of the static snapshot: the parsed policy as its version and the employee snapshot.
+     */
+    private record StaticSource(OpaPolicyData policy, OpaEmployeeDirectory.Snapshot employees) {
+    }
+
+    /**
+     * Identity of a dynamic evaluation: the policy path and the parsed policy as its version.
+     */
+    private record DynamicEvaluation(String policyPath, OpaPolicyData policy) {
+    }
+
+    /**
+     * Static ACL of the default files, served from the current snapshot.
+     *
+     * @throws IOException if not precomputed yet, or the snapshot is stale and cannot be regenerated
+     */
+    public List<AclEntry> currentAcl() throws IOException {
+        return snapshots.entries();
+    }
+
+    /**
+     * Dynamic ACL of the default files: the published snapshot when precomputed in background,
+     * otherwise evaluated now.
+     *
+     * @throws IOException if not precomputed yet, or the evaluation fails
+     */
+    public List<AclEntry> currentDynamicAcl() throws IOException {
+        if (dynamicSnapshots.isPublishedInBackground()) {
+            return dynamicSnapshots.entries();
+        }
+        return convertPolicyToAclWithDynamicEvaluation();
+    }
+
+    @Override
+    public List<AclSnapshots<?, ?>> precomputedAcls() {
+        return List.of(snapshots, dynamicSnapshots);
+    }
+
+    private StaticSource defaultStaticSource() throws IOException {
+        return new StaticSource(parseOpaPolicy(DEFAULT_POLICY_PATH), employeeDirectory.snapshot(DEFAULT_EMPLOYEE_INFO_PATH));
+    }
+
+    private AclSnapshots.Generated<AclEntry> generateSnapshot(StaticSource source, Instant at) throws IOException {
+        OpaPolicyData policyData = source.policy();
+        List<AclEntry> entries = AclMetrics.timeGeneration(AclMetrics.OPA, AclMetrics.STATIC,
+                () -> aclGenerator.generateAcl(policyData, source.employees().groupIndex(), at));
+        snapshotEmployees.set(source.employees().employees().size());
+        return new AclSnapshots.Generated<>(entries, policyData.timeBounds());
+    }
+
+    private DynamicEvaluation defaultDynamicEvaluation() throws IOException {
+        return new DynamicEvaluation(DEFAULT_POLICY_PATH, parseOpaPolicy(DEFAULT_POLICY_PATH));
+    }
+
+    /**
+     * Dynamic snapshots carry no time bounds: admission times come from the user files, and
+     * anything else is picked up by the periodic refresh.
+     */
+    private AclSnapshots.Generated<AclEntry> generateDynamicSnapshot(DynamicEvaluation evaluation, Instant at)
+            throws IOException {
+        return new AclSnapshots.Generated<>(evaluate(evaluation), List.of());
+    }
+
     /**
      * Main entry point: static policy-to-ACL conversion using default files.
      */
@@ -75,37 +186,86 @@ public class OpaPolicyToAclStrategy {
     }
 
     /**
-     * Static policy-to-ACL conversion with custom file paths.
+     * Static policy-to-ACL conversion with custom file paths, for the grants in force now.
      */
     public List<AclEntry> convertPolicyToAcl(String policyPath, String employeeInfoPath) throws IOException {
         OpaPolicyData policyData = parseOpaPolicy(policyPath);
-        List<OpaEmployeeInfo> employees = parseEmployeeInfo(employeeInfoPath);
-        return aclGenerator.generateAcl(policyData, employees);
+        GroupIndex<OpaEmployeeInfo> employees = employeeDirectory.getGroupIndex(employeeInfoPath);
+        Instant at = Instant.now(clock);
+        return AclMetrics.timeGeneration(AclMetrics.OPA, AclMetrics.STATIC,
+                () -> aclGenerator.generateAcl(policyData, employees, at));
     }
 
     /**
-     * Dynamic evaluation using the OPA CLI with default files.
+     * Streaming static conversion using default files.
      *
-     * For each user file in physical-access-control-opa/pip-users/ runs:
-     *   opa eval -d policy.rego --input <userinfo.json> 'data.<packageName>.allow'
-     * and includes users where allow == true in the resulting ACL.
+     * When precomputed in background, streams the published snapshot. Otherwise the policy is
+     * parsed and the employee snapshot taken now (so failures surface before any output), and
+     * entries are generated while the returned stream is consumed.
+     */
+    public AclStream<AclEntry> streamPolicyToAcl() throws IOException {
+        if (snapshots.isPublishedInBackground()) {
+            return AclStream.of(snapshots.entries());
+        }
+        return streamPolicyToAcl(DEFAULT_POLICY_PATH, DEFAULT_EMPLOYEE_INFO_PATH);
+    }
+
+    /**
+     * Streaming static conversion with custom file paths, for the grants in force now.
+     */
+    public AclStream<AclEntry> streamPolicyToAcl(String policyPath, String employeeInfoPath) throws IOException {
+        OpaPolicyData policyData = parseOpaPolicy(policyPath);
+        GroupIndex<OpaEmployeeInfo> employees = employeeDirectory.getGroupIndex(employeeInfoPath);
+        Instant at = Instant.now(clock);
+        return sink -> aclGenerator.generateAcl(policyData, employees, at, sink);
+    }
+
+    /**
+     * Dynamic evaluation with default files.
+     *
+     * Each user file in physical-access-control-opa/pip-users/ is evaluated against
+     * data.<packageName>.allow by the engine selected with acl.opa.engine: in-process on the
+     * compiled policy (embedded, the default, or wasm) or by the opa binary (cli, cli-batch);
+     * see OpaUserEvaluationService. Users where allow == true are included in the ACL.
      */
     public List<AclEntry> convertPolicyToAclWithDynamicEvaluation() throws IOException {
         return convertPolicyToAclWithDynamicEvaluation(DEFAULT_POLICY_PATH);
     }
 
     /**
-     * Dynamic evaluation using the OPA CLI with a custom policy path.
+     * Dynamic evaluation with a custom policy path. Joins an evaluation of the
+     * same policy version that is already running; the returned list is unmodifiable.
      */
     public List<AclEntry> convertPolicyToAclWithDynamicEvaluation(String policyPath) throws IOException {
-        OpaPolicyData policyData = parseOpaPolicy(policyPath);
-        return aclGenerator.generateAclWithDynamicEvaluation(policyData, policyPath);
+        return evaluate(new DynamicEvaluation(policyPath, parseOpaPolicy(policyPath)));
+    }
+
+    private List<AclEntry> evaluate(DynamicEvaluation evaluation) throws IOException {
+        return dynamicEvaluations.run(evaluation, () -> AclMetrics.timeGeneration(AclMetrics.OPA, AclMetrics.DYNAMIC,
+                () -> List.copyOf(aclGenerator.generateAclWithDynamicEvaluation(evaluation.policy(), evaluation.policyPath()))));
+    }
+
+    /**
+     * Streaming dynamic evaluation with the default policy: the published snapshot when
+     * precomputed in background, otherwise users are evaluated while the returned stream is
+     * consumed.
+     */
+    public AclStream<AclEntry> streamPolicyToAclWithDynamicEvaluation() throws IOException {
+        if (dynamicSnapshots.isPublishedInBackground()) {
+            return AclStream.of(dynamicSnapshots.entries());
+        }
+        OpaPolicyData policyData = parseOpaPolicy(DEFAULT_POLICY_PATH);
+        return sink -> aclGenerator.generateAclWithDynamicEvaluation(policyData, DEFAULT_POLICY_PATH, sink);
     }
 
     /**
      * Formats ACL entries as a human-readable string.
      */
     public String formatAclOutput(List<AclEntry> aclEntries) {
+        return AclMetrics.timeSerialization("text", () -> format(aclEntries));
+    }
+
+    private String format(List<AclEntry> aclEntries) {
         StringBuilder output = new StringBuilder();
         output.append("=".repeat(80)).append("\n");
         output.append("ACCESS CONTROL LIST (ACL)\n");
@@ -129,14 +289,6 @@ public class OpaPolicyToAclStrategy {
     }
 
     private OpaPolicyData parseOpaPolicy(String resourcePath) throws IOException {
-        try (InputStream inputStream = new ClassPathResource(resourcePath).getInputStream()) {
-            return policyParser.parse(inputStream);
-        }
-    }
-
-    private List<OpaEmployeeInfo> parseEmployeeInfo(String resourcePath) throws IOException {
-        try (InputStream inputStream = new ClassPathResource(resourcePath).getInputStream()) {
-            return employeeParser.parse(inputStream);
-        }
+        return policyService.load(resourcePath);
     }
 }
@@ -0,0 +1,187 @@
+package digital.alf.cells.physicalacesscontrolopa.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuration for the OPA ACL pipeline (prefix "acl.opa").
+ *
+ * Example (application.properties):
+ *   acl.opa.engine=embedded
+ *   acl.opa.batch-size=1000
+ *   acl.opa.concurrency=16
+ *   acl.opa.user-timeout=30s
+ *   acl.opa.executor=server
+ *   acl.opa.server.port=8181
+ *   acl.opa.employee-directory.reload-interval=5s
+ *   acl.opa.wasm.pool-size=8
+ *   acl.opa.changes.retained-versions=1000
+ */
+@Data
+@ConfigurationProperties(prefix = "acl.opa")
+public class OpaAclProperties {
+
+    /**
+     * Engine used for dynamic evaluation of user files.
+     */
+    private Engine engine = Engine.EMBEDDED;
+
+    /**
+     * Number of users sent to a single 'opa eval' invocation when engine is cli-batch.
+     */
+    private int batchSize = 1000;
+
+    /**
+     * Maximum number of user files (or cli-batch chunks) evaluated at the same time on
+     * virtual threads. 0 uses the number of available processors; 1 evaluates sequentially.
+     */
+    private int concurrency = 0;
+
+    /**
+     * Time allowed for a single user (or chunk) in concurrent mode; the user is skipped when exceeded.
+     */
+    private Duration userTimeout = Duration.ofSeconds(30);
+
+    /**
+     * Deadline for a whole dynamic evaluation in concurrent mode; outstanding work is cancelled
+     * and the evaluation fails when exceeded.
+     */
+    private Duration requestTimeout = Duration.ofMinutes(2);
+
+    /**
+     * Evaluate one user per class of identical decision-relevant input (groups, operation,
+     * resource, admission time bucket) and copy the decision to the others. Only applied to
+     * policies that read nothing else from the input, e.g. not the username or uid.
+     */
+    private boolean memoize = true;
+
+    /**
+     * Admission times in the same bucket count as equal when memoizing; 0 compares them exactly.
+     * A bucket is only safe when no policy time bound falls inside one.
+     */
+    private Duration admissionTimeBucket = Duration.ZERO;
+
+    /**
+     * How the cli and cli-batch engines run opa: process (default) or server.
+     * Read through @ConditionalOnProperty on the OpaCliExecutor implementations.
+     */
+    private Executor executor = Executor.PROCESS;
+
+    /**
+     * Settings for the long-lived 'opa run --server' executor.
+     */
+    private Server server = new Server();
+
+    /**
+     * Settings for the cached employee directory used by static ACL generation.
+     */
+    private EmployeeDirectory employeeDirectory = new EmployeeDirectory();
+
+    /**
+     * Settings for the wasm engine.
+     */
+    private Wasm wasm = new Wasm();
+
+    /**
+     * Settings for the versioned ACL change log behind /api/acl/opa/changes.
+     */
+    private Changes changes = new Changes();
+
+    /**
+     * Effective concurrency limit: {@link #concurrency}, or the processor count when 0.
+     */
+    public int effectiveConcurrency() {
+        return concurrency > 0 ? concurrency : Runtime.getRuntime().availableProcessors();
+    }
+
+    public enum Engine {
+        /** In-process rego evaluation; the policy is compiled once and cached. */
+        EMBEDDED,
+        /** One opa evaluation per user file. Requires the opa binary on the PATH. */
+        CLI,
+        /** One opa evaluation per chunk of batch-size users, using a generated wrapper module. */
+        CLI_BATCH,
+        /**
+         * Policy compiled once with 'opa build -t wasm' and evaluated in-process on a pool of
+         * Wasm instances. Requires the opa binary only to compile a policy version not yet cached.
+         */
+        WASM
+    }
+
+    public enum Executor {
+        /** One 'opa eval' process per call. */
+        PROCESS,
+        /** A single 'opa run --server' child queried over the REST data API. */
+        SERVER
+    }
+
+    @Data
+    public static class Server {
+
+        /** Address the child listens on and the executor connects to. */
+        private String host = "localhost";
+        private int port = 8181;
+
+        /**
+         * Start and supervise the child process. Set to false to use an OPA server
+         * that is managed elsewhere (e.g. a sidecar or a test stand-in).
+         */
+        private boolean launch = true;
+
+        /** opa binary, looked up on the PATH unless absolute. */
+        private String binary = "opa";
+
+        /** Policies pushed once at startup and again after every restart (classpath paths). */
+        private List<String> policies = new ArrayList<>(List.of("physical-access-control-opa/policy.rego"));
+
+        /** Optional classpath JSON pushed as data.employees; empty to skip. */
+        private String employeeData = "";
+
+        /** How long to wait for /health after (re)starting the child. */
+        private Duration startupTimeout = Duration.ofSeconds(10);
+
+        /** Delay before restarting a crashed child. */
+        private Duration restartDelay = Duration.ofSeconds(1);
+
+        /** Timeout of a single REST call. */
+        private Duration requestTimeout = Duration.ofSeconds(5);
+    }
+
+    @Data
+    public static class EmployeeDirectory {
+
+        /** Employee files parsed at startup (classpath paths, or file: URLs). */
+        private List<String> preload = new ArrayList<>(
+                List.of("physical-access-control-opa/pip-info-employee-vde-trainings.json"));
+
+        /** How often loaded files are checked for changes; 0 disables reloading. */
+        private Duration reloadInterval = Duration.ofSeconds(5);
+    }
+
+    @Data
+    public static class Wasm {
+
+        /** opa binary used by 'opa build', looked up on the PATH unless absolute. */
+        private String binary = "opa";
+
+        /** Directory of compiled modules, named by policy hash; empty for ${java.io.tmpdir}/opa-wasm. */
+        private String cacheDirectory = "";
+
+        /** Instances per compiled policy, created on demand; 0 uses the effective concurrency. */
+        private int poolSize = 0;
+
+        /** Time allowed for a single 'opa build'. */
+        private Duration compileTimeout = Duration.ofSeconds(60);
+    }
+
+    @Data
+    public static class Changes {
+
+        /** Versions whose deltas are kept; clients further behind receive the full ACL. */
+        private int retainedVersions = 1000;
+    }
+}
@@ -1,16 +1,33 @@
 package digital.alf.cells.physicalacesscontrolopa.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import digital.alf.cells.acl.AccessDecision;
+import digital.alf.cells.acl.AclChangeLog;
+import digital.alf.cells.acl.AclNotReadyException;
+import digital.alf.cells.acl.AclStream;
+import digital.alf.cells.acl.BulkDecisions;
+import digital.alf.cells.acl.DecisionIndex;
+import digital.alf.cells.acl.StreamingAclResponses;
 import digital.alf.cells.physicalacesscontrolopa.OpaPolicyToAclStrategy;
 import digital.alf.cells.physicalacesscontrolopa.model.AclEntry;
+import digital.alf.cells.physicalacesscontrolopa.service.OpaAclChangeService;
+import digital.alf.cells.physicalacesscontrolopa.service.OpaDecisionService;
 import lombok.RequiredArgsConstructor;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
 import java.util.List;
 
 /**
@@ -18,35 +35,35 @@ import java.util.List;
  *
  * Equivalent of AclController for the OPA engine.
  * Exposes endpoints under /api/acl/opa instead of /api/acl.
+ *
+ * Request latency is the http.server.requests timer and the pipeline stages behind it are the
+ * acl.* meters (see AclMetrics), all on /actuator/prometheus.
  */
 @RestController
 @RequestMapping("/api/acl/opa")
 @RequiredArgsConstructor
 public class OpaAclController {
 
-    private static final Logger log = LoggerFactory.getLogger(OpaAclController.class);
-
     private final OpaPolicyToAclStrategy opaPolicyToAclStrategy;
+    private final ObjectMapper objectMapper;
+    private final OpaDecisionService decisionService;
+    private final OpaAclChangeService changeService;
 
     /**
      * Generates ACL from OPA rego policy and employee JSON data (static evaluation).
+     * Served from the current ACL snapshot; see OpaPolicyToAclStrategy#currentAcl().
      *
      * @return ACL entries in JSON format
      */
     @GetMapping("/generate")
     public ResponseEntity<List<AclEntry>> generateAcl() {
-        long startMs = System.currentTimeMillis();
         try {
-            List<AclEntry> aclEntries = opaPolicyToAclStrategy.convertPolicyToAcl();
+            List<AclEntry> aclEntries = opaPolicyToAclStrategy.currentAcl();
             return ResponseEntity.ok(aclEntries);
+        } catch (AclNotReadyException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
         } catch (IOException e) {
             return ResponseEntity.internalServerError().build();
-        } finally {
-            long elapsedMs = System.currentTimeMillis() - startMs;
-            long minutes = elapsedMs / 60_000;
-            long seconds = (elapsedMs % 60_000) / 1_000;
-            long millis  = elapsedMs % 1_000;
-            log.info("generateAcl() completed in {}m {}s {}ms", minutes, seconds, millis);
         }
     }
 
@@ -58,9 +75,11 @@ public class OpaAclController {
     @GetMapping("/generate/formatted")
     public ResponseEntity<String> generateFormattedAcl() {
         try {
-            List<AclEntry> aclEntries = opaPolicyToAclStrategy.convertPolicyToAcl();
+            List<AclEntry> aclEntries = opaPolicyToAclStrategy.currentAcl();
             String formatted = opaPolicyToAclStrategy.formatAclOutput(aclEntries);
             return ResponseEntity.ok(formatted);
+        } catch (AclNotReadyException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
         } catch (IOException e) {
             return ResponseEntity.internalServerError().build();
         }
@@ -70,14 +89,17 @@ public class OpaAclController {
      * Generates ACL using dynamic OPA CLI evaluation.
      * Evaluates each user file under pip-users/ via 'opa eval' and includes
      * only those for whom allow == true.
+     * Served from the current dynamic ACL snapshot; see OpaPolicyToAclStrategy#currentDynamicAcl().
      *
      * @return ACL entries in JSON format
      */
     @GetMapping("/generate/dynamic")
     public ResponseEntity<List<AclEntry>> generateAclDynamic() {
         try {
-            List<AclEntry> aclEntries = opaPolicyToAclStrategy.convertPolicyToAclWithDynamicEvaluation();
+            List<AclEntry> aclEntries = opaPolicyToAclStrategy.currentDynamicAcl();
             return ResponseEntity.ok(aclEntries);
+        } catch (AclNotReadyException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
         } catch (IOException e) {
             return ResponseEntity.internalServerError().build();
         }
@@ -91,9 +113,184 @@ public class OpaAclController {
     @GetMapping("/generate/dynamic/formatted")
     public ResponseEntity<String> generateFormattedAclDynamic() {
         try {
-            List<AclEntry> aclEntries = opaPolicyToAclStrategy.convertPolicyToAclWithDynamicEvaluation();
+            List<AclEntry> aclEntries = opaPolicyToAclStrategy.currentDynamicAcl();
             String formatted = opaPolicyToAclStrategy.formatAclOutput(aclEntries);
             return ResponseEntity.ok(formatted);
+        } catch (AclNotReadyException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Streams ACL entries as newline-delimited JSON (static evaluation).
+     * Written from the current snapshot (generated while written if acl.precompute.enabled=false).
+     *
+     * @return One JSON ACL entry per line
+     */
+    @GetMapping(value = "/generate/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAclNdjson() {
+        try {
+            AclStream<AclEntry> entries = opaPolicyToAclStrategy.streamPolicyToAcl();
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_NDJSON)
+                    .body(StreamingAclResponses.ndjson(entries, objectMapper));
+        } catch (AclNotReadyException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Streams ACL entries as a chunked JSON array (static evaluation).
+     * Same body as /api/acl/opa/generate, written element by element.
+     *
+     * @return ACL entries in JSON format
+     */
+    @GetMapping(value = "/generate/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAclJsonArray() {
+        try {
+            AclStream<AclEntry> entries = opaPolicyToAclStrategy.streamPolicyToAcl();
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(StreamingAclResponses.jsonArray(entries, objectMapper));
+        } catch (AclNotReadyException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Streams ACL entries as newline-delimited JSON (dynamic evaluation).
+     * Written from the current snapshot (generated while written if acl.precompute.enabled=false).
+     *
+     * @return One JSON ACL entry per line
+     */
+    @GetMapping(value = "/generate/dynamic/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAclDynamicNdjson() {
+        try {
+            AclStream<AclEntry> entries = opaPolicyToAclStrategy.streamPolicyToAclWithDynamicEvaluation();
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_NDJSON)
+                    .body(StreamingAclResponses.ndjson(entries, objectMapper));
+        } catch (AclNotReadyException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Streams ACL entries as a chunked JSON array (dynamic evaluation).
+     * Same body as /api/acl/opa/generate/dynamic, written element by element.
+     *
+     * @return ACL entries in JSON format
+     */
+    @GetMapping(value = "/generate/dynamic/stream", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAclDynamicJsonArray() {
+        try {
+            AclStream<AclEntry> entries = opaPolicyToAclStrategy.streamPolicyToAclWithDynamicEvaluation();
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(StreamingAclResponses.jsonArray(entries, objectMapper));
+        } catch (AclNotReadyException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * ACL entries added and removed since a version (static evaluation).
+     * Start with since=0 (the full ACL as additions) and pass the returned version next time.
+     * When reset is true the client's version is older than the kept history, and added is the
+     * full ACL to replace the client's copy.
+     *
+     * Example: /api/acl/opa/changes?since=42
+     *
+     * @param since Version the client synced last
+     * @return Added and removed entries plus the current version; 400 if since is unknown
+     */
+    @GetMapping("/changes")
+    public ResponseEntity<AclChangeLog.Changes<AclEntry>> changes(@RequestParam(defaultValue = "0") long since) {
+        try {
+            return ResponseEntity.ok(changeService.changesSince(since));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Point decision: may the principal perform the action on the resource at the given time?
+     * Answered from the precomputed decision index, without generating the ACL.
+     *
+     * Example: /api/acl/opa/decision?principal=ES-4902&action=ENTER&resource=Facility&at=2025-10-20T08:30:00Z
+     *
+     * @param principal Employee id or ACL principal (&lt;ES-4902:Anya Sharma&gt;)
+     * @param action    Operation, e.g. ENTER
+     * @param resource  Resource kind, kind/name or the resource text of an ACL entry
+     * @param at        Time of access (ISO-8601); defaults to now
+     * @return allow/deny plus the policy's violation message when denied
+     */
+    @GetMapping("/decision")
+    public ResponseEntity<AccessDecision> decide(
+            @RequestParam String principal,
+            @RequestParam String action,
+            @RequestParam String resource,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant at) {
+        try {
+            return ResponseEntity.ok(decisionService.decide(principal, action, resource, at != null ? at : Instant.now()));
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Bulk decisions, streamed back as newline-delimited JSON in input order.
+     * The body is a JSON array or NDJSON of {principal, action, resource, at?} objects;
+     * requests without "at" are decided for the time the request was received.
+     *
+     * @return One decision per line; 400 if the body does not start with a request
+     */
+    @PostMapping(value = "/decisions", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> decideAllNdjson(InputStream body) {
+        try {
+            DecisionIndex index = decisionService.index();
+            try {
+                AclStream<AccessDecision> decisions = BulkDecisions.decide(index, body, objectMapper, Instant.now());
+                return ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .body(StreamingAclResponses.ndjson(decisions, objectMapper));
+            } catch (JsonProcessingException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Bulk decisions, streamed back as a chunked JSON array in input order.
+     *
+     * @return Decisions in JSON format
+     */
+    @PostMapping(value = "/decisions", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> decideAllJsonArray(InputStream body) {
+        try {
+            DecisionIndex index = decisionService.index();
+            try {
+                AclStream<AccessDecision> decisions = BulkDecisions.decide(index, body, objectMapper, Instant.now());
+                return ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(StreamingAclResponses.jsonArray(decisions, objectMapper));
+            } catch (JsonProcessingException e) {
+                return ResponseEntity.badRequest().build();
+            }
         } catch (IOException e) {
             return ResponseEntity.internalServerError().build();
         }
@@ -1,24 +1,32 @@
 package digital.alf.cells.physicalacesscontrolopa.generator;
 
+import digital.alf.cells.acl.GroupDictionary;
+import digital.alf.cells.acl.GroupIndex;
+import digital.alf.cells.acl.GroupMask;
+import digital.alf.cells.physicalacesscontrolopa.model.AccessPredicate;
+import digital.alf.cells.physicalacesscontrolopa.model.AccessPredicate.Clause;
 import digital.alf.cells.physicalacesscontrolopa.model.AclEntry;
 import digital.alf.cells.physicalacesscontrolopa.model.OpaEmployeeInfo;
 import digital.alf.cells.physicalacesscontrolopa.model.OpaPolicyData;
 import digital.alf.cells.physicalacesscontrolopa.model.OpaUserInfo;
 import digital.alf.cells.physicalacesscontrolopa.service.OpaUserEvaluationService;
 import lombok.RequiredArgsConstructor;
+import org.roaringbitmap.RoaringBitmap;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 /**
  * Generates ACL entries from OPA policy data and employee/user information.
  *
  * Equivalent of AclGenerator for the OPA engine.
  * Supports two modes:
- * 1. Static: filters employees from JSON employee file based on policy group requirements.
+ * 1. Static: filters employees from JSON employee file by the policy's grant predicate
+ *    (see {@link OpaPolicyData#grantPredicate(String)}).
  * 2. Dynamic: evaluates users via opa eval CLI and uses the allow decision.
  */
 @Component
@@ -39,30 +47,166 @@ public class OpaAclGenerator {
      */
     public List<AclEntry> generateAcl(OpaPolicyData policyData, List<OpaEmployeeInfo> employees) {
         List<AclEntry> aclEntries = new ArrayList<>();
+        generateAcl(policyData, employees, aclEntries::add);
+        return aclEntries;
+    }
 
-        List<OpaEmployeeInfo> qualifiedEmployees = employees.stream()
-                .filter(emp -> emp.hasGroup(policyData.getRequiredGroup()))
-                .collect(Collectors.toList());
-
+    /**
+     * Streaming variant of {@link #generateAcl(OpaPolicyData, List)}: every entry is handed to
+     * the sink as soon as it is built, in the same order, without collecting a list.
+     */
+    public void generateAcl(OpaPolicyData policyData, Iterable<OpaEmployeeInfo> employees, Consumer<? super AclEntry> sink) {
         String resourceDescription = buildResourceDescription(policyData);
-        String conditionDescription = buildConditionDescription(policyData);
-
-        for (OpaEmployeeInfo employee : qualifiedEmployees) {
-            for (String operation : policyData.getOperations()) {
-                AclEntry entry = AclEntry.builder()
-                        .principal(formatPrincipal(employee))
-                        .action(operation)
-                        .resource(resourceDescription)
-                        .condition(conditionDescription)
-                        .build();
-
-                aclEntries.add(entry);
+        List<OperationGrant> grants = operationGrants(policyData, null);
+        List<List<MaskClause>> masks = grants.stream().map(grant -> maskClauses(grant.predicate())).toList();
+
+        for (OpaEmployeeInfo employee : employees) {
+            GroupMask groups = employee.getGroupMask();
+            for (int i = 0; i < grants.size(); i++) {
+                if (masks.get(i).stream().anyMatch(clause -> clause.matches(groups))) {
+                    sink.accept(buildEntry(employee, grants.get(i), resourceDescription));
+                }
             }
         }
+    }
+
+    /**
+     * Generates the ACL from a group index: the employees granted an operation are the union,
+     * over the clauses of its grant predicate, of group bitmap selections read straight from
+     * the index. Entries come in the same order as from {@link #generateAcl(OpaPolicyData, List)}
+     * for the list the index was built from.
+     */
+    public List<AclEntry> generateAcl(OpaPolicyData policyData, GroupIndex<OpaEmployeeInfo> index) {
+        List<AclEntry> aclEntries = new ArrayList<>();
+        generateAcl(policyData, index, aclEntries::add);
+        return aclEntries;
+    }
+
+    /**
+     * Streaming variant of {@link #generateAcl(OpaPolicyData, GroupIndex)}.
+     */
+    public void generateAcl(OpaPolicyData policyData, GroupIndex<OpaEmployeeInfo> index, Consumer<? super AclEntry> sink) {
+        generateAcl(policyData, index, null, sink);
+    }
 
+    /**
+     * ACL of the grants in force at a given time (see {@link OpaPolicyData#grantPredicate(String, Instant)});
+     * e.g. outside the time window of policy.rego every employee is granted.
+     *
+     * @param at time the ACL applies to; null for an instant inside the time window
+     */
+    public List<AclEntry> generateAcl(OpaPolicyData policyData, GroupIndex<OpaEmployeeInfo> index, Instant at) {
+        List<AclEntry> aclEntries = new ArrayList<>();
+        generateAcl(policyData, index, at, aclEntries::add);
         return aclEntries;
     }
 
+    /**
+     * Streaming variant of {@link #generateAcl(OpaPolicyData, GroupIndex, Instant)}.
+     */
+    public void generateAcl(OpaPolicyData policyData, GroupIndex<OpaEmployeeInfo> index, Instant at, Consumer<? super AclEntry> sink) {
+        String resourceDescription = buildResourceDescription(policyData);
+        List<OperationGrant> grants = operationGrants(policyData, at);
+        List<RoaringBitmap> granted = grants.stream().map(grant -> select(index, grant.predicate())).toList();
+
+        RoaringBitmap.or(granted.iterator()).forEach((int ordinal) -> {
+            OpaEmployeeInfo employee = index.get(ordinal);
+            for (int i = 0; i < grants.size(); i++) {
+                if (granted.get(i).contains(ordinal)) {
+                    sink.accept(buildEntry(employee, grants.get(i), resourceDescription));
+                }
+            }
+        });
+    }
+
+    /**
+     * Hands every employee the policy grants at least one of its operations to the consumer,
+     * in index order. This is the grant rule behind {@link #generateAcl(OpaPolicyData, GroupIndex)}.
+     */
+    public void forEachGrantedEmployee(OpaPolicyData policyData, GroupIndex<OpaEmployeeInfo> index, Consumer<? super OpaEmployeeInfo> consumer) {
+        index.forEach(grantedEmployees(policyData, index), consumer);
+    }
+
+    /**
+     * Hands every employee a restricted predicate (group constraints only, see
+     * {@link AccessPredicate#restrict}) selects to the consumer, in index order.
+     */
+    public void forEachGrantedEmployee(AccessPredicate grant, GroupIndex<OpaEmployeeInfo> index, Consumer<? super OpaEmployeeInfo> consumer) {
+        index.forEach(select(index, grant), consumer);
+    }
+
+    /**
+     * Number of employees the policy grants at least one operation to, computed on the index
+     * bitmaps alone.
+     */
+    public int countGrantedEmployees(OpaPolicyData policyData, GroupIndex<OpaEmployeeInfo> index) {
+        List<OperationGrant> grants = operationGrants(policyData, null);
+        if (grants.size() == 1 && grants.get(0).predicate().clauses().size() == 1) {
+            Clause clause = grants.get(0).predicate().clauses().get(0);
+            return index.count(clause.allOf(), clause.noneOf());
+        }
+        return grantedEmployees(policyData, index).getCardinality();
+    }
+
+    private RoaringBitmap grantedEmployees(OpaPolicyData policyData, GroupIndex<OpaEmployeeInfo> index) {
+        RoaringBitmap granted = new RoaringBitmap();
+        for (OperationGrant grant : operationGrants(policyData, null)) {
+            granted.or(select(index, grant.predicate()));
+        }
+        return granted;
+    }
+
+    private static RoaringBitmap select(GroupIndex<OpaEmployeeInfo> index, AccessPredicate predicate) {
+        RoaringBitmap selected = new RoaringBitmap();
+        for (Clause clause : predicate.clauses()) {
+            selected.or(index.select(clause.allOf(), clause.noneOf()));
+        }
+        return selected;
+    }
+
+    /**
+     * One operation of the policy with the predicate granting it and the condition text of its entries.
+     */
+    private record OperationGrant(String operation, AccessPredicate predicate, String condition) {
+    }
+
+    private List<OperationGrant> operationGrants(OpaPolicyData policyData, Instant at) {
+        List<OperationGrant> grants = new ArrayList<>();
+        for (String operation : policyData.getOperations()) {
+            AccessPredicate predicate = policyData.grantPredicate(operation, at);
+            grants.add(new OperationGrant(operation, predicate, buildConditionDescription(policyData, predicate)));
+        }
+        return grants;
+    }
+
+    private AclEntry buildEntry(OpaEmployeeInfo employee, OperationGrant grant, String resourceDescription) {
+        return AclEntry.builder()
+                .principal(formatPrincipal(employee))
+                .action(grant.operation())
+                .resource(resourceDescription)
+                .condition(grant.condition())
+                .build();
+    }
+
+    /**
+     * A clause of a grant predicate compiled to group masks.
+     */
+    private record MaskClause(GroupMask allOf, GroupMask noneOf) {
+
+        boolean matches(GroupMask groups) {
+            return groups.containsAll(allOf) && !groups.intersects(noneOf);
+        }
+    }
+
+    private static List<MaskClause> maskClauses(AccessPredicate predicate) {
+        GroupDictionary dictionary = GroupDictionary.shared();
+        List<MaskClause> clauses = new ArrayList<>();
+        for (Clause clause : predicate.clauses()) {
+            clauses.add(new MaskClause(dictionary.maskOfNames(clause.allOf()), dictionary.maskOfNames(clause.noneOf())));
+        }
+        return clauses;
+    }
+
     /**
      * Generates ACL entries by dynamically evaluating users via the OPA CLI.
      *
@@ -80,6 +224,18 @@ public class OpaAclGenerator {
             String policyPath) throws IOException {
 
         List<AclEntry> aclEntries = new ArrayList<>();
+        generateAclWithDynamicEvaluation(policyData, policyPath, aclEntries::add);
+        return aclEntries;
+    }
+
+    /**
+     * Streaming variant of {@link #generateAclWithDynamicEvaluation(OpaPolicyData, String)}:
+     * entries are handed to the sink in order once the users have been evaluated.
+     */
+    public void generateAclWithDynamicEvaluation(
+            OpaPolicyData policyData,
+            String policyPath,
+            Consumer<? super AclEntry> sink) throws IOException {
 
         List<OpaUserInfo> qualifiedUsers = userEvaluationService.evaluateUsersForAccess(
                 policyPath,
@@ -103,10 +259,8 @@ public class OpaAclGenerator {
                     .condition(conditionDescription)
                     .build();
 
-            aclEntries.add(entry);
+            sink.accept(entry);
         }
-
-        return aclEntries;
     }
 
     private String formatPrincipal(OpaEmployeeInfo employee) {
@@ -122,13 +276,23 @@ public class OpaAclGenerator {
         return String.format("<%s>", uid != null ? uid : username);
     }
 
-    private String buildResourceDescription(OpaPolicyData policyData) {
+    /**
+     * Resource text of every ACL entry generated for the policy.
+     */
+    public String buildResourceDescription(OpaPolicyData policyData) {
         return policyData.getResourceKind() != null ? policyData.getResourceKind() : "Unknown";
     }
 
-    private String buildConditionDescription(OpaPolicyData policyData) {
+    private String buildConditionDescription(OpaPolicyData policyData, AccessPredicate grant) {
         StringBuilder sb = new StringBuilder();
-        sb.append("Subject must hold group '").append(policyData.getRequiredGroup()).append("'");
+        if (policyData.getAccessPredicate() == null) {
+            sb.append("Subject must hold group '").append(policyData.getRequiredGroup()).append("'");
+        } else {
+            List<String> clauses = grant.clauses().stream()
+                    .map(OpaAclGenerator::describeClause)
+                    .toList();
+            sb.append(String.join(" OR ", clauses));
+        }
 
         if (policyData.getTimeWindowStart() != null && policyData.getTimeWindowEnd() != null) {
             sb.append("; Time window: ")
@@ -140,6 +304,16 @@ public class OpaAclGenerator {
         return sb.toString();
     }
 
+    /**
+     * "Subject must hold group 'a' AND 'b' AND NOT 'c'", or "Any subject" for an empty clause.
+     */
+    private static String describeClause(Clause clause) {
+        List<String> parts = new ArrayList<>();
+        clause.allOf().forEach(group -> parts.add("'" + group + "'"));
+        clause.noneOf().forEach(group -> parts.add("NOT '" + group + "'"));
+        return parts.isEmpty() ? "Any subject" : "Subject must hold group " + String.join(" AND ", parts);
+    }
+
     private String buildConditionDescriptionForDynamicEval(OpaPolicyData policyData) {
         StringBuilder sb = new StringBuilder();
         sb.append("Evaluated via OPA CLI");
@@ -0,0 +1,193 @@
+package digital.alf.cells.physicalacesscontrolopa.model;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Condition under which a policy grants access, in disjunctive normal form: access is granted
+ * when any clause holds, and a clause holds when all of its constraints hold.
+ *
+ * Produced by partially evaluating the allow rule with the input unknown. Example (policy.rego,
+ * allow if { not deny }):
+ *   request.resource.kind != "Facility"
+ *   OR admissionTime < 2024-10-20T08:00:00Z
+ *   OR admissionTime > 2026-10-20T19:00:00Z
+ *   OR "training-vde-available-group" in groups
+ *
+ * {@link #restrict(Map, Instant)} substitutes known request attributes and a time, leaving
+ * constraints on group membership only; each remaining clause is one group index selection.
+ */
+public record AccessPredicate(List<Clause> clauses) {
+
+    /** Input path of the kind of the requested resource. */
+    public static final String RESOURCE_KIND = "request.resource.kind";
+
+    /** Input path of the requested operation. */
+    public static final String OPERATION = "request.operation";
+
+    /** No clause: access is never granted. */
+    public static final AccessPredicate FALSE = new AccessPredicate(List.of());
+
+    /** One empty clause: access is always granted. */
+    public static final AccessPredicate TRUE = new AccessPredicate(List.of(new Clause(List.of())));
+
+    public AccessPredicate {
+        clauses = List.copyOf(clauses);
+    }
+
+    public sealed interface Constraint permits GroupMember, AttributeEquals, TimeBound {
+
+        Constraint negate();
+    }
+
+    /** {@code group in input.request.userInfo.groups} (held) or its negation. */
+    public record GroupMember(String group, boolean held) implements Constraint {
+
+        @Override
+        public GroupMember negate() {
+            return new GroupMember(group, !held);
+        }
+    }
+
+    /** {@code input.<path> == value} (equal) or {@code !=}; path is dotted below input, e.g. "request.resource.kind". */
+    public record AttributeEquals(String path, Object value, boolean equal) implements Constraint {
+
+        @Override
+        public AttributeEquals negate() {
+            return new AttributeEquals(path, value, !equal);
+        }
+    }
+
+    /** {@code time.parse_rfc3339_ns(input.<path>) <operator> instant} with ==, !=, <, <=, > or >=. */
+    public record TimeBound(String path, String operator, Instant instant) implements Constraint {
+
+        @Override
+        public TimeBound negate() {
+            String negated = switch (operator) {
+                case "==" -> "!=";
+                case "!=" -> "==";
+                case "<" -> ">=";
+                case "<=" -> ">";
+                case ">" -> "<=";
+                default -> "<";
+            };
+            return new TimeBound(path, negated, instant);
+        }
+
+        public boolean test(Instant at) {
+            int cmp = at.compareTo(instant);
+            return switch (operator) {
+                case "==" -> cmp == 0;
+                case "!=" -> cmp != 0;
+                case "<" -> cmp < 0;
+                case "<=" -> cmp <= 0;
+                case ">" -> cmp > 0;
+                default -> cmp >= 0;
+            };
+        }
+    }
+
+    public record Clause(List<Constraint> constraints) {
+
+        public Clause {
+            constraints = List.copyOf(constraints);
+        }
+
+        /** Groups a subject must hold for this clause. */
+        public List<String> allOf() {
+            return groups(true);
+        }
+
+        /** Groups a subject must not hold for this clause. */
+        public List<String> noneOf() {
+            return groups(false);
+        }
+
+        private List<String> groups(boolean held) {
+            return constraints.stream()
+                    .filter(c -> c instanceof GroupMember member && member.held() == held)
+                    .map(c -> ((GroupMember) c).group())
+                    .toList();
+        }
+    }
+
+    /**
+     * Predicate of a policy that grants access to holders of a single group (nobody if null).
+     */
+    public static AccessPredicate requiring(String group) {
+        return group == null ? FALSE : new AccessPredicate(List.of(new Clause(List.of(new GroupMember(group, true)))));
+    }
+
+    public boolean isFalse() {
+        return clauses.isEmpty();
+    }
+
+    /**
+     * Substitutes request attributes and the request time, leaving group constraints only.
+     *
+     * A clause constraining an attribute missing from the map, or the time when {@code at} is
+     * null, is dropped: the request could not be shown to satisfy it, so it grants nothing.
+     *
+     * @param attributes values by dotted input path, e.g. "request.resource.kind" -> "Facility"
+     * @param at         request time, or null if unknown
+     */
+    public AccessPredicate restrict(Map<String, Object> attributes, Instant at) {
+        Set<Clause> restricted = new LinkedHashSet<>();
+        for (Clause clause : clauses) {
+            List<Constraint> groups = new ArrayList<>();
+            boolean holds = true;
+            for (Constraint constraint : clause.constraints()) {
+                holds = switch (constraint) {
+                    case GroupMember member -> groups.add(member);
+                    case AttributeEquals equals -> attributes.containsKey(equals.path())
+                            && Objects.equals(attributes.get(equals.path()), equals.value()) == equals.equal();
+                    case TimeBound bound -> at != null && bound.test(at);
+                };
+                if (!holds) {
+                    break;
+                }
+            }
+            if (holds) {
+                if (groups.isEmpty()) {
+                    return TRUE;
+                }
+                restricted.add(new Clause(groups));
+            }
+        }
+        return new AccessPredicate(new ArrayList<>(restricted));
+    }
+
+    /**
+     * Values the predicate compares the attribute at the given path with for equality, in order.
+     */
+    public List<Object> attributeValues(String path) {
+        return clauses.stream()
+                .flatMap(clause -> clause.constraints().stream())
+                .filter(c -> c instanceof AttributeEquals equals && equals.path().equals(path))
+                .map(c -> ((AttributeEquals) c).value())
+                .distinct()
+                .toList();
+    }
+
+    /**
+     * Every instant the predicate compares the request time with, in ascending order.
+     */
+    public SortedSet<Instant> timeBounds() {
+        SortedSet<Instant> bounds = new TreeSet<>();
+        for (Clause clause : clauses) {
+            for (Constraint constraint : clause.constraints()) {
+                if (constraint instanceof TimeBound bound) {
+                    bounds.add(bound.instant());
+                }
+            }
+        }
+        return bounds;
+    }
+}
@@ -1,19 +1,51 @@
 package digital.alf.cells.physicalacesscontrolopa.model;
 
-import lombok.AllArgsConstructor;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import digital.alf.cells.acl.GroupDictionary;
+import digital.alf.cells.acl.GroupMask;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 @Data
 @NoArgsConstructor
-@AllArgsConstructor
 public class OpaEmployeeInfo {
     private String id;
     private String name;
     private Map<String, Boolean> groups;
 
+    /**
+     * The groups mapped to true, as ids of the shared {@link GroupDictionary}. Derived from
+     * {@link #groups} whenever it is set, so generators can filter with
+     * {@code getGroupMask().containsAll(required)} instead of a map lookup per group.
+     */
+    @JsonIgnore
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private GroupMask groupMask = GroupMask.EMPTY;
+
+    public OpaEmployeeInfo(String id, String name, Map<String, Boolean> groups) {
+        this.id = id;
+        this.name = name;
+        setGroups(groups);
+    }
+
+    /**
+     * Stores an unmodifiable copy, so the group mask cannot go stale through {@link #getGroups()}.
+     */
+    public void setGroups(Map<String, Boolean> groups) {
+        this.groups = groups != null ? Collections.unmodifiableMap(new LinkedHashMap<>(groups)) : null;
+        this.groupMask = GroupDictionary.shared().maskOf(groups);
+    }
+
     public boolean hasGroup(String groupName) {
         return groups != null && groups.getOrDefault(groupName, false);
     }
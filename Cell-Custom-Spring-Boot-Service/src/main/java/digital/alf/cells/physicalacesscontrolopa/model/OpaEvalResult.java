@@ -5,7 +5,9 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Represents the JSON output of the OPA CLI eval command.
@@ -69,4 +71,23 @@ public class OpaEvalResult {
         if (firstResult.expressions == null || firstResult.expressions.isEmpty()) return false;
         return Boolean.TRUE.equals(firstResult.expressions.get(0).value);
     }
+
+    /**
+     * Returns the per-user decisions of a batched evaluation (data.acl_batch.decisions).
+     *
+     * Example value of the first expression:
+     *   { "0": true, "1": false }
+     *
+     * Non-boolean values count as false. Returns an empty map if the result is undefined.
+     */
+    public Map<String, Boolean> getDecisions() {
+        Map<String, Boolean> decisions = new LinkedHashMap<>();
+        if (result == null || result.isEmpty()) return decisions;
+        ResultItem firstResult = result.get(0);
+        if (firstResult.expressions == null || firstResult.expressions.isEmpty()) return decisions;
+        if (firstResult.expressions.get(0).value instanceof Map<?, ?> values) {
+            values.forEach((key, value) -> decisions.put(String.valueOf(key), Boolean.TRUE.equals(value)));
+        }
+        return decisions;
+    }
 }
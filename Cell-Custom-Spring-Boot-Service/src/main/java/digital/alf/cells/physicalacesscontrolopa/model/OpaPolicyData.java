@@ -5,8 +5,12 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Data
 @Builder
@@ -21,4 +25,58 @@ public class OpaPolicyData {
     private Instant timeWindowStart;
     private Instant timeWindowEnd;
     private String validationMessage;
+    private AccessPredicate accessPredicate;   // Residual of the allow rule; null if the policy could not be partially evaluated
+
+    /**
+     * Who the policy grants an operation to inside its time window; see {@link #grantPredicate(String, Instant)}.
+     */
+    public AccessPredicate grantPredicate(String operation) {
+        return grantPredicate(operation, null);
+    }
+
+    /**
+     * Who the policy grants an operation to at a given time: the access predicate with the
+     * operation, the resource kind and the time substituted, or holders of the required group
+     * for policies without a predicate.
+     *
+     * @param at time of access; null for an instant inside the time window
+     */
+    public AccessPredicate grantPredicate(String operation, Instant at) {
+        if (accessPredicate == null) {
+            return AccessPredicate.requiring(requiredGroup);
+        }
+        Map<String, Object> attributes = new HashMap<>();
+        if (operation != null) {
+            attributes.put(AccessPredicate.OPERATION, operation);
+        }
+        if (resourceKind != null) {
+            attributes.put(AccessPredicate.RESOURCE_KIND, resourceKind);
+        }
+        return accessPredicate.restrict(attributes, at != null ? at : insideTimeWindow());
+    }
+
+    /**
+     * Instants at which the grants of the policy can change: the ends of the time window and the
+     * time bounds of the access predicate.
+     */
+    public List<Instant> timeBounds() {
+        List<Instant> timeBounds = new ArrayList<>();
+        if (timeWindowStart != null) {
+            timeBounds.add(timeWindowStart);
+        }
+        if (timeWindowEnd != null) {
+            timeBounds.add(timeWindowEnd);
+        }
+        if (accessPredicate != null) {
+            timeBounds.addAll(accessPredicate.timeBounds());
+        }
+        return timeBounds;
+    }
+
+    private Instant insideTimeWindow() {
+        if (timeWindowStart == null || timeWindowEnd == null) {
+            return timeWindowStart != null ? timeWindowStart : timeWindowEnd;
+        }
+        return timeWindowStart.plus(Duration.between(timeWindowStart, timeWindowEnd).dividedBy(2));
+    }
 }
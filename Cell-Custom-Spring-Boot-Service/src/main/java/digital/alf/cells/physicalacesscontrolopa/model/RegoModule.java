@@ -0,0 +1,139 @@
+package digital.alf.cells.physicalacesscontrolopa.model;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Abstract syntax tree of a parsed rego module.
+ *
+ * Example (policy.rego):
+ *   package physical_access_control        -> packageName
+ *   default allow := false                 -> Rule(DEFAULT, "allow", value=false)
+ *   allow if { not deny }                  -> Rule(COMPLETE, "allow", value=true, body=[not deny])
+ *   violation contains msg if { ... }      -> Rule(PARTIAL_SET, "violation", key=msg, body=[...])
+ *   # Policy: abac-enroll-...              -> Comment("Policy: abac-enroll-...", line)
+ */
+public record RegoModule(String packageName, List<String> imports, List<Rule> rules, List<Comment> comments) {
+
+    public enum RuleKind {
+        /** {@code default name := value} */
+        DEFAULT,
+        /** {@code name if { ... }} or {@code name := value if { ... }} */
+        COMPLETE,
+        /** {@code name contains key if { ... }} */
+        PARTIAL_SET
+    }
+
+    public record Rule(RuleKind kind, String name, Term key, Term value, List<Literal> body, int line) {
+    }
+
+    /**
+     * Text of a "# ..." comment, without the '#'. Comments carry annotations only and never
+     * contribute to rules.
+     */
+    public record Comment(String text, int line) {
+    }
+
+    /**
+     * A single expression in a rule body, optionally negated with {@code not}.
+     */
+    public record Literal(boolean negated, Term expr) {
+    }
+
+    public sealed interface Term permits Scalar, Var, Ref, ArrayTerm, SetTerm, ObjectTerm, Call, BinaryOp, SomeIn, SomeDecl {
+    }
+
+    /** String, BigDecimal, Boolean or null (JSON null). */
+    public record Scalar(Object value) implements Term {
+    }
+
+    public record Var(String name) implements Term {
+    }
+
+    /** {@code head.a.b} or {@code head["a"][0]}; path elements are terms (dot access yields string scalars). */
+    public record Ref(Term head, List<Term> path) implements Term {
+    }
+
+    public record ArrayTerm(List<Term> items) implements Term {
+    }
+
+    public record SetTerm(List<Term> items) implements Term {
+    }
+
+    public record ObjectTerm(List<Map.Entry<Term, Term>> entries) implements Term {
+    }
+
+    /** Builtin function call such as {@code time.parse_rfc3339_ns("...")}. */
+    public record Call(String function, List<Term> args) implements Term {
+    }
+
+    /** Infix operator: ==, !=, <, <=, >, >=, :=, =, in, +, -, *, /, %, |, &. */
+    public record BinaryOp(String operator, Term left, Term right) implements Term {
+    }
+
+    /** {@code some value in collection} or {@code some key, value in collection}. */
+    public record SomeIn(Term key, Term value, Term collection) implements Term {
+    }
+
+    /** {@code some x, y} variable declaration; always succeeds. */
+    public record SomeDecl(List<String> names) implements Term {
+    }
+
+    /**
+     * Returns all rules with the given name, in source order.
+     */
+    public List<Rule> rulesNamed(String name) {
+        return rules.stream().filter(r -> r.name().equals(name)).toList();
+    }
+
+    public boolean hasRule(String name) {
+        return rules.stream().anyMatch(r -> r.name().equals(name));
+    }
+
+    /**
+     * Visits every term of a rule (key, value and body), parents before their subterms.
+     */
+    public static void forEachTerm(Rule rule, Consumer<Term> action) {
+        forEachTerm(rule.key(), action);
+        forEachTerm(rule.value(), action);
+        for (Literal literal : rule.body()) {
+            forEachTerm(literal.expr(), action);
+        }
+    }
+
+    /**
+     * Visits a term and all of its subterms, parents first; null terms are skipped.
+     */
+    public static void forEachTerm(Term term, Consumer<Term> action) {
+        if (term == null) {
+            return;
+        }
+        action.accept(term);
+        switch (term) {
+            case Ref ref -> {
+                forEachTerm(ref.head(), action);
+                ref.path().forEach(element -> forEachTerm(element, action));
+            }
+            case ArrayTerm array -> array.items().forEach(item -> forEachTerm(item, action));
+            case SetTerm set -> set.items().forEach(item -> forEachTerm(item, action));
+            case ObjectTerm object -> object.entries().forEach(entry -> {
+                forEachTerm(entry.getKey(), action);
+                forEachTerm(entry.getValue(), action);
+            });
+            case Call call -> call.args().forEach(arg -> forEachTerm(arg, action));
+            case BinaryOp op -> {
+                forEachTerm(op.left(), action);
+                forEachTerm(op.right(), action);
+            }
+            case SomeIn some -> {
+                forEachTerm(some.key(), action);
+                forEachTerm(some.value(), action);
+                forEachTerm(some.collection(), action);
+            }
+            case Scalar scalar -> { }
+            case Var var -> { }
+            case SomeDecl declaration -> { }
+        }
+    }
+}
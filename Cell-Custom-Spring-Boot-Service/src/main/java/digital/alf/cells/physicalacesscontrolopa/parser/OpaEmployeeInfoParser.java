@@ -1,6 +1,10 @@
 package digital.alf.cells.physicalacesscontrolopa.parser;
 
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import digital.alf.cells.acl.AclMetrics;
 import digital.alf.cells.physicalacesscontrolopa.model.OpaEmployeeInfo;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
@@ -8,11 +12,13 @@ import org.springframework.stereotype.Component;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
- * Parses the OPA employee VDE training JSON file into a list of OpaEmployeeInfo objects.
+ * Parses the OPA employee VDE training JSON file into OpaEmployeeInfo objects.
  *
  * Expected JSON format:
  * {
@@ -20,6 +26,10 @@ import java.util.Map;
  *     { "id": "ES-4902", "name": "Anya Sharma", "groups": { "employee-group": true, "training-vde-available-group": true } }
  *   ]
  * }
+ *
+ * The file is read with Jackson's token API: no intermediate tree is built and every
+ * employee is handed to the consumer as soon as its closing brace is read, so memory use
+ * is constant apart from what the consumer keeps. Unknown fields are skipped.
  */
 @Component
 @RequiredArgsConstructor
@@ -27,29 +37,108 @@ public class OpaEmployeeInfoParser {
 
     private final ObjectMapper objectMapper;
 
+    /**
+     * Parses all employees into a list.
+     */
     public List<OpaEmployeeInfo> parse(InputStream inputStream) throws IOException {
-        @SuppressWarnings("unchecked")
-        Map<String, Object> data = objectMapper.readValue(inputStream, Map.class);
-
         List<OpaEmployeeInfo> employees = new ArrayList<>();
+        parse(inputStream, employees::add);
+        return employees;
+    }
+
+    /**
+     * Streams the employees to the consumer one at a time, in file order.
+     *
+     * @return number of employees emitted
+     * @throws IOException if the input is not valid JSON or not shaped like the expected format
+     */
+    public long parse(InputStream inputStream, Consumer<OpaEmployeeInfo> consumer) throws IOException {
+        return AclMetrics.timeEmployeesParse(AclMetrics.OPA, () -> readEmployees(inputStream, consumer));
+    }
 
-        if (data != null && data.containsKey("employees")) {
-            @SuppressWarnings("unchecked")
-            List<Map<String, Object>> employeeList = (List<Map<String, Object>>) data.get("employees");
+    private long readEmployees(InputStream inputStream, Consumer<OpaEmployeeInfo> consumer) throws IOException {
+        long count = 0;
 
-            for (Map<String, Object> empData : employeeList) {
-                OpaEmployeeInfo employee = new OpaEmployeeInfo();
-                employee.setId((String) empData.get("id"));
-                employee.setName((String) empData.get("name"));
+        try (JsonParser parser = objectMapper.getFactory().createParser(inputStream)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected a JSON object with an 'employees' array");
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
 
-                @SuppressWarnings("unchecked")
-                Map<String, Boolean> groups = (Map<String, Boolean>) empData.get("groups");
-                employee.setGroups(groups);
+                if (!"employees".equals(field) || value == JsonToken.VALUE_NULL) {
+                    parser.skipChildren();
+                    continue;
+                }
+                if (value != JsonToken.START_ARRAY) {
+                    throw new JsonParseException(parser, "'employees' must be an array");
+                }
 
-                employees.add(employee);
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    consumer.accept(readEmployee(parser));
+                    count++;
+                }
             }
         }
 
-        return employees;
+        return count;
+    }
+
+    /**
+     * Reads one employee object; the parser is positioned on its START_OBJECT.
+     */
+    private OpaEmployeeInfo readEmployee(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Employee entries must be objects");
+        }
+
+        OpaEmployeeInfo employee = new OpaEmployeeInfo();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+
+            switch (field) {
+                case "id" -> employee.setId(readText(parser, value));
+                case "name" -> employee.setName(readText(parser, value));
+                case "groups" -> {
+                    if (value == JsonToken.START_OBJECT) {
+                        employee.setGroups(readGroups(parser));
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                default -> parser.skipChildren();
+            }
+        }
+        return employee;
+    }
+
+    private static String readText(JsonParser parser, JsonToken value) throws IOException {
+        if (value.isStructStart()) {
+            parser.skipChildren();
+            return null;
+        }
+        return value == JsonToken.VALUE_NULL ? null : parser.getValueAsString();
+    }
+
+    /**
+     * Reads a groups object ({"group": true, ...}); the parser is positioned on its START_OBJECT.
+     * Field names come from Jackson's canonicalized symbol table, so group name strings are
+     * shared between employees.
+     */
+    private Map<String, Boolean> readGroups(JsonParser parser) throws IOException {
+        Map<String, Boolean> groups = new LinkedHashMap<>(4);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String group = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (value.isStructStart()) {
+                parser.skipChildren();
+            } else if (value != JsonToken.VALUE_NULL) {
+                groups.put(group, parser.getValueAsBoolean());
+            }
+        }
+        return groups;
     }
 }
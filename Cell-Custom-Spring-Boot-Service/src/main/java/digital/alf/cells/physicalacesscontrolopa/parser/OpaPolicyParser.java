@@ -1,124 +1,216 @@
 package digital.alf.cells.physicalacesscontrolopa.parser;
 
+import digital.alf.cells.acl.AclMetrics;
 import digital.alf.cells.physicalacesscontrolopa.model.OpaPolicyData;
+import digital.alf.cells.physicalacesscontrolopa.model.RegoModule;
+import digital.alf.cells.physicalacesscontrolopa.model.RegoModule.*;
+import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 /**
  * Parses an OPA rego policy file and extracts relevant ABAC metadata.
  *
- * Extracts from the rego source text using regex:
- * - package name (e.g. "physical_access_control")
- * - policy name from comment "# Policy: <name>"
- * - operations from comment "# Restricts the ENTER operation" or similar
- * - resource kind from rule body: input.request.resource.kind == "Facility"
- * - required group from rule body: not "group-name" in input.request.userInfo.groups
- * - time window from: time.parse_rfc3339_ns("2024-...")
- * - violation message from: msg := "..."
+ * The source is parsed once into a rego AST ({@link RegoParser}) and everything is read from
+ * the AST, so text in comments or strings never masquerades as policy:
+ * - package name from the package declaration
+ * - policy name from the annotation comment "# Policy: <name>" (the only use of comments)
+ * - operations compared with input.request.operation (==, or in a constant collection)
+ * - resource kind compared with input.request.resource.kind
+ * - required group: the first group a rule requires absence of, e.g.
+ *   not "group-name" in input.request.userInfo.groups, else the first one it requires
+ * - time window: earliest and latest time.parse_rfc3339_ns("...") constant
+ * - violation message: string a partial set rule collects, e.g. msg := "..."
+ *
+ * These values are the fallback for policies the partial evaluator cannot handle; the access
+ * predicate is attached by OpaPolicyService, which also caches parsed policies.
  */
 @Component
+@RequiredArgsConstructor
 public class OpaPolicyParser {
 
-    private static final Pattern PACKAGE_PATTERN =
-            Pattern.compile("^package\\s+(\\S+)", Pattern.MULTILINE);
-
-    private static final Pattern POLICY_NAME_PATTERN =
-            Pattern.compile("#\\s*Policy:\\s*(.+)$", Pattern.MULTILINE);
-
-    private static final Pattern OPERATION_PATTERN =
-            Pattern.compile("#.*?\\b(ENTER|EXIT|UPDATE|CREATE|DELETE)\\b", Pattern.MULTILINE);
-
-    private static final Pattern RESOURCE_KIND_PATTERN =
-            Pattern.compile("input\\.request\\.resource\\.kind\\s*==\\s*\"(\\w+)\"");
-
-    private static final Pattern REQUIRED_GROUP_PATTERN =
-            Pattern.compile("not\\s+\"([^\"]+)\"\\s+in\\s+input\\.request\\.userInfo\\.groups");
+    private static final String DEFAULT_OPERATION = "ENTER";
+    private static final List<String> OPERATION_PATH = List.of("input", "request", "operation");
+    private static final List<String> RESOURCE_KIND_PATH = List.of("input", "request", "resource", "kind");
+    private static final List<String> GROUPS_PATH = List.of("input", "request", "userInfo", "groups");
 
-    private static final Pattern TIME_PATTERN =
-            Pattern.compile("time\\.parse_rfc3339_ns\\(\"(\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}Z)\"\\)");
+    private static final Pattern POLICY_NAME_PATTERN = Pattern.compile("^Policy:\\s*(.+)$");
 
-    private static final Pattern VIOLATION_MSG_PATTERN =
-            Pattern.compile("msg\\s*:=\\s*\"([^\"]+)\"");
+    private final RegoParser regoParser;
 
     /**
      * Parses a rego policy file from the given InputStream.
      *
      * @param inputStream InputStream of the .rego file
      * @return OpaPolicyData with extracted metadata
+     * @throws IOException if the stream cannot be read or is not valid rego
      */
     public OpaPolicyData parse(InputStream inputStream) throws IOException {
-        String regoText;
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream))) {
-            regoText = reader.lines().collect(Collectors.joining("\n"));
-        }
-
-        OpaPolicyData.OpaPolicyDataBuilder builder = OpaPolicyData.builder();
+        return AclMetrics.timePolicyParse(AclMetrics.OPA, () -> extract(regoParser.parse(inputStream)));
+    }
 
-        // Package name
-        Matcher m = PACKAGE_PATTERN.matcher(regoText);
-        if (m.find()) {
-            builder.packageName(m.group(1));
+    /**
+     * Extracts the metadata from a parsed policy.
+     *
+     * @param module AST of the .rego file
+     * @return OpaPolicyData with extracted metadata and no access predicate
+     */
+    public OpaPolicyData extract(RegoModule module) {
+        Set<String> operations = new LinkedHashSet<>();
+        List<String> resourceKinds = new ArrayList<>();
+        List<String> excludedGroups = new ArrayList<>();
+        List<String> includedGroups = new ArrayList<>();
+        SortedSet<Instant> timestamps = new TreeSet<>();
+        String validationMessage = null;
+
+        for (Rule rule : module.rules()) {
+            for (Literal literal : rule.body()) {
+                String group = groupTested(literal.expr());
+                if (group != null) {
+                    (literal.negated() ? excludedGroups : includedGroups).add(group);
+                }
+            }
+            RegoModule.forEachTerm(rule, term -> {
+                if (term instanceof BinaryOp op) {
+                    operations.addAll(comparedStrings(module, op, OPERATION_PATH));
+                    resourceKinds.addAll(comparedStrings(module, op, RESOURCE_KIND_PATH));
+                } else if (term instanceof Call call && call.function().equals("time.parse_rfc3339_ns")
+                        && call.args().size() == 1 && call.args().get(0) instanceof Scalar(String text)) {
+                    try {
+                        timestamps.add(Instant.parse(text));
+                    } catch (DateTimeParseException ignored) {
+                        // not a constant window bound
+                    }
+                }
+            });
+            if (validationMessage == null && rule.kind() == RuleKind.PARTIAL_SET) {
+                validationMessage = collectedString(rule);
+            }
         }
 
-        // Policy name from comment
-        m = POLICY_NAME_PATTERN.matcher(regoText);
-        if (m.find()) {
-            builder.policyName(m.group(1).trim());
+        OpaPolicyData.OpaPolicyDataBuilder builder = OpaPolicyData.builder()
+                .packageName(module.packageName())
+                .policyName(policyName(module))
+                .operations(operations.isEmpty() ? List.of(DEFAULT_OPERATION) : List.copyOf(operations))
+                .resourceKind(resourceKinds.isEmpty() ? null : resourceKinds.get(0))
+                .requiredGroup(!excludedGroups.isEmpty() ? excludedGroups.get(0)
+                        : includedGroups.isEmpty() ? null : includedGroups.get(0))
+                .validationMessage(validationMessage);
+        if (timestamps.size() >= 2) {
+            builder.timeWindowStart(timestamps.first()).timeWindowEnd(timestamps.last());
         }
+        return builder.build();
+    }
 
-        // Operations from comments
-        List<String> operations = new ArrayList<>();
-        m = OPERATION_PATTERN.matcher(regoText);
-        while (m.find()) {
-            String op = m.group(1);
-            if (!operations.contains(op)) {
-                operations.add(op);
+    private static String policyName(RegoModule module) {
+        for (Comment comment : module.comments()) {
+            Matcher m = POLICY_NAME_PATTERN.matcher(comment.text());
+            if (m.matches()) {
+                return m.group(1).trim();
             }
         }
-        if (operations.isEmpty()) {
-            operations.add("ENTER");
+        return null;
+    }
+
+    /**
+     * Group of a {@code "group" in input.request.userInfo.groups} expression, or null.
+     */
+    private static String groupTested(Term expr) {
+        if (expr instanceof BinaryOp(String operator, Scalar(String group), Term right)
+                && operator.equals("in") && isPath(right, GROUPS_PATH)) {
+            return group;
         }
-        builder.operations(operations);
+        return null;
+    }
 
-        // Resource kind
-        m = RESOURCE_KIND_PATTERN.matcher(regoText);
-        if (m.find()) {
-            builder.resourceKind(m.group(1));
+    /**
+     * Strings an input path is required to equal: {@code path == "x"} (either side), or
+     * {@code path in c} with c a literal collection or a rule defined as one.
+     */
+    private static List<String> comparedStrings(RegoModule module, BinaryOp op, List<String> path) {
+        if (op.operator().equals("==")) {
+            if (isPath(op.left(), path) && op.right() instanceof Scalar(String value)) {
+                return List.of(value);
+            }
+            if (isPath(op.right(), path) && op.left() instanceof Scalar(String value)) {
+                return List.of(value);
+            }
+        } else if (op.operator().equals("in") && isPath(op.left(), path)) {
+            return constantStrings(module, op.right());
         }
+        return List.of();
+    }
+
+    private static List<String> constantStrings(RegoModule module, Term term) {
+        List<Term> items = switch (term) {
+            case ArrayTerm array -> array.items();
+            case SetTerm set -> set.items();
+            case Var var -> constantRuleValue(module, var.name());
+            default -> List.of();
+        };
+        return items.stream()
+                .filter(item -> item instanceof Scalar(String value))
+                .map(item -> (String) ((Scalar) item).value())
+                .toList();
+    }
 
-        // Required group
-        m = REQUIRED_GROUP_PATTERN.matcher(regoText);
-        if (m.find()) {
-            builder.requiredGroup(m.group(1));
+    /**
+     * Items of a rule defined exactly once, without a body, as a literal collection.
+     */
+    private static List<Term> constantRuleValue(RegoModule module, String name) {
+        List<Rule> rules = module.rulesNamed(name);
+        if (rules.size() != 1 || !rules.get(0).body().isEmpty()) {
+            return List.of();
         }
+        return switch (rules.get(0).value()) {
+            case ArrayTerm array -> array.items();
+            case SetTerm set -> set.items();
+            case null, default -> List.of();
+        };
+    }
 
-        // Time window — first match is window_start, second is window_end
-        m = TIME_PATTERN.matcher(regoText);
-        List<String> timestamps = new ArrayList<>();
-        while (m.find()) {
-            timestamps.add(m.group(1));
+    /**
+     * String a partial set rule collects: a constant key, or the constant its key variable is
+     * assigned in the body (violation contains msg if { ...; msg := "..." }).
+     */
+    private static String collectedString(Rule rule) {
+        if (rule.key() instanceof Scalar(String value)) {
+            return value;
         }
-        if (timestamps.size() >= 2) {
-            builder.timeWindowStart(Instant.parse(timestamps.get(0)));
-            builder.timeWindowEnd(Instant.parse(timestamps.get(1)));
+        if (rule.key() instanceof Var(String name)) {
+            for (Literal literal : rule.body()) {
+                if (!literal.negated()
+                        && literal.expr() instanceof BinaryOp(String operator, Var(String target), Scalar(String value))
+                        && (operator.equals(":=") || operator.equals("=")) && target.equals(name)) {
+                    return value;
+                }
+            }
         }
+        return null;
+    }
 
-        // Violation message
-        m = VIOLATION_MSG_PATTERN.matcher(regoText);
-        if (m.find()) {
-            builder.validationMessage(m.group(1));
+    private static boolean isPath(Term term, List<String> path) {
+        if (!(term instanceof Ref(Var(String head), List<Term> elements))
+                || !head.equals(path.get(0)) || elements.size() != path.size() - 1) {
+            return false;
         }
-
-        return builder.build();
+        for (int i = 0; i < elements.size(); i++) {
+            if (!(elements.get(i) instanceof Scalar(String element)) || !element.equals(path.get(i + 1))) {
+                return false;
+            }
+        }
+        return true;
     }
 }
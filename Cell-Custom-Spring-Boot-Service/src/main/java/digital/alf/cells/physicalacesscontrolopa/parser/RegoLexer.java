@@ -0,0 +1,224 @@
+package digital.alf.cells.physicalacesscontrolopa.parser;
+
+import digital.alf.cells.physicalacesscontrolopa.model.RegoModule;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Single-pass tokenizer for the Rego subset used by our policies.
+ *
+ * Produces identifiers, string/number literals, operators and NEWLINE tokens.
+ * Newlines separate body literals in Rego, so they are emitted as tokens
+ * except inside parentheses and brackets where expressions may wrap.
+ * Comments ("# ...") never become tokens; their text is collected separately
+ * (see {@link #comments()}) for annotations such as "# Policy: name".
+ */
+public class RegoLexer {
+
+    public enum TokenType {
+        IDENT, STRING, NUMBER,
+        LBRACE, RBRACE, LBRACKET, RBRACKET, LPAREN, RPAREN,
+        COMMA, SEMICOLON, DOT, COLON,
+        ASSIGN, UNIFY, EQ, NEQ, LT, LTE, GT, GTE,
+        PLUS, MINUS, STAR, SLASH, PERCENT, PIPE, AMPERSAND,
+        NEWLINE, EOF
+    }
+
+    public record Token(TokenType type, String text, int line) {
+
+        public boolean is(TokenType expected) {
+            return type == expected;
+        }
+
+        public boolean isKeyword(String keyword) {
+            return type == TokenType.IDENT && text.equals(keyword);
+        }
+    }
+
+    private final String source;
+    private final List<Token> tokens = new ArrayList<>();
+    private final List<RegoModule.Comment> comments = new ArrayList<>();
+    private int pos;
+    private int line = 1;
+    private int nesting;
+
+    public RegoLexer(String source) {
+        this.source = source;
+    }
+
+    /**
+     * Tokenizes the whole source. The returned list always ends with an EOF token.
+     *
+     * @throws IOException on an unterminated string or unexpected character
+     */
+    public List<Token> tokenize() throws IOException {
+        while (pos < source.length()) {
+            char c = source.charAt(pos);
+
+            if (c == '\n') {
+                if (nesting == 0) {
+                    add(TokenType.NEWLINE, "\n");
+                }
+                line++;
+                pos++;
+            } else if (Character.isWhitespace(c)) {
+                pos++;
+            } else if (c == '#') {
+                int start = ++pos;
+                while (pos < source.length() && source.charAt(pos) != '\n') {
+                    pos++;
+                }
+                comments.add(new RegoModule.Comment(source.substring(start, pos).strip(), line));
+            } else if (c == '"') {
+                readString();
+            } else if (c == '`') {
+                readRawString();
+            } else if (Character.isDigit(c)) {
+                readNumber();
+            } else if (Character.isLetter(c) || c == '_') {
+                int start = pos;
+                while (pos < source.length()
+                        && (Character.isLetterOrDigit(source.charAt(pos)) || source.charAt(pos) == '_')) {
+                    pos++;
+                }
+                add(TokenType.IDENT, source.substring(start, pos));
+            } else {
+                readOperator(c);
+            }
+        }
+        add(TokenType.EOF, "");
+        return tokens;
+    }
+
+    /**
+     * Comments seen by {@link #tokenize()}, without the leading '#', in source order.
+     */
+    public List<RegoModule.Comment> comments() {
+        return List.copyOf(comments);
+    }
+
+    private void readOperator(char c) throws IOException {
+        char next = pos + 1 < source.length() ? source.charAt(pos + 1) : '\0';
+        switch (c) {
+            case '{' -> single(TokenType.LBRACE);
+            case '}' -> single(TokenType.RBRACE);
+            case '[' -> { nesting++; single(TokenType.LBRACKET); }
+            case ']' -> { nesting = Math.max(0, nesting - 1); single(TokenType.RBRACKET); }
+            case '(' -> { nesting++; single(TokenType.LPAREN); }
+            case ')' -> { nesting = Math.max(0, nesting - 1); single(TokenType.RPAREN); }
+            case ',' -> single(TokenType.COMMA);
+            case ';' -> single(TokenType.SEMICOLON);
+            case '.' -> single(TokenType.DOT);
+            case '+' -> single(TokenType.PLUS);
+            case '-' -> single(TokenType.MINUS);
+            case '*' -> single(TokenType.STAR);
+            case '/' -> single(TokenType.SLASH);
+            case '%' -> single(TokenType.PERCENT);
+            case '|' -> single(TokenType.PIPE);
+            case '&' -> single(TokenType.AMPERSAND);
+            case ':' -> {
+                if (next == '=') pair(TokenType.ASSIGN, ":=");
+                else single(TokenType.COLON);
+            }
+            case '=' -> {
+                if (next == '=') pair(TokenType.EQ, "==");
+                else single(TokenType.UNIFY);
+            }
+            case '!' -> {
+                if (next == '=') pair(TokenType.NEQ, "!=");
+                else throw error("Unexpected character '!'");
+            }
+            case '<' -> {
+                if (next == '=') pair(TokenType.LTE, "<=");
+                else single(TokenType.LT);
+            }
+            case '>' -> {
+                if (next == '=') pair(TokenType.GTE, ">=");
+                else single(TokenType.GT);
+            }
+            default -> throw error("Unexpected character '" + c + "'");
+        }
+    }
+
+    private void readString() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        pos++; // opening quote
+        while (true) {
+            if (pos >= source.length() || source.charAt(pos) == '\n') {
+                throw error("Unterminated string literal");
+            }
+            char c = source.charAt(pos++);
+            if (c == '"') {
+                break;
+            }
+            if (c == '\\' && pos < source.length()) {
+                char escaped = source.charAt(pos++);
+                switch (escaped) {
+                    case 'n' -> sb.append('\n');
+                    case 't' -> sb.append('\t');
+                    case 'r' -> sb.append('\r');
+                    case 'u' -> {
+                        if (pos + 4 > source.length() || !source.substring(pos, pos + 4).chars().allMatch(RegoLexer::isHexDigit)) {
+                            throw error("Invalid \\u escape in string literal");
+                        }
+                        sb.append((char) Integer.parseInt(source.substring(pos, pos + 4), 16));
+                        pos += 4;
+                    }
+                    default -> sb.append(escaped);
+                }
+            } else {
+                sb.append(c);
+            }
+        }
+        add(TokenType.STRING, sb.toString());
+    }
+
+    private static boolean isHexDigit(int c) {
+        return Character.digit(c, 16) >= 0;
+    }
+
+    private void readRawString() throws IOException {
+        int start = ++pos;
+        while (pos < source.length() && source.charAt(pos) != '`') {
+            if (source.charAt(pos) == '\n') {
+                line++;
+            }
+            pos++;
+        }
+        if (pos >= source.length()) {
+            throw error("Unterminated raw string literal");
+        }
+        add(TokenType.STRING, source.substring(start, pos));
+        pos++;
+    }
+
+    private void readNumber() {
+        int start = pos;
+        while (pos < source.length()
+                && (Character.isDigit(source.charAt(pos)) || source.charAt(pos) == '.'
+                    || source.charAt(pos) == 'e' || source.charAt(pos) == 'E')) {
+            pos++;
+        }
+        add(TokenType.NUMBER, source.substring(start, pos));
+    }
+
+    private void single(TokenType type) {
+        add(type, String.valueOf(source.charAt(pos)));
+        pos++;
+    }
+
+    private void pair(TokenType type, String text) {
+        add(type, text);
+        pos += 2;
+    }
+
+    private void add(TokenType type, String text) {
+        tokens.add(new Token(type, text, line));
+    }
+
+    private IOException error(String message) {
+        return new IOException(message + " at line " + line);
+    }
+}
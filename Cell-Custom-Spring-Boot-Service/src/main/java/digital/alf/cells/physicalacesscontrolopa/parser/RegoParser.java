@@ -0,0 +1,450 @@
+package digital.alf.cells.physicalacesscontrolopa.parser;
+
+import digital.alf.cells.physicalacesscontrolopa.model.RegoModule;
+import digital.alf.cells.physicalacesscontrolopa.model.RegoModule.*;
+import digital.alf.cells.physicalacesscontrolopa.parser.RegoLexer.Token;
+import digital.alf.cells.physicalacesscontrolopa.parser.RegoLexer.TokenType;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Recursive-descent parser turning rego source into a {@link RegoModule} AST.
+ *
+ * Supported subset (rego.v1 syntax):
+ * - package / import declarations
+ * - default rules:      default allow := false
+ * - complete rules:     allow if { ... }, allow := value if { ... }, allow if expr
+ * - partial set rules:  violation contains msg if { ... }
+ * - body literals:      not expr, some x in xs, some k, v in xs, assignments and comparisons
+ * - terms:              scalars, refs (input.a.b, x["k"]), arrays, sets, objects, builtin calls
+ */
+@Component
+public class RegoParser {
+
+    private static final Set<String> COMPARISON_OPERATORS = Set.of("==", "!=", "<", "<=", ">", ">=");
+
+    public RegoModule parse(InputStream inputStream) throws IOException {
+        return parse(new String(inputStream.readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    public RegoModule parse(String source) throws IOException {
+        RegoLexer lexer = new RegoLexer(source);
+        return new Parser(lexer.tokenize(), lexer.comments()).parseModule();
+    }
+
+    /**
+     * Parser state for a single source; not shared between threads.
+     */
+    private static final class Parser {
+
+        private final List<Token> tokens;
+        private final List<RegoModule.Comment> comments;
+        private int pos;
+
+        Parser(List<Token> tokens, List<RegoModule.Comment> comments) {
+            this.tokens = tokens;
+            this.comments = comments;
+        }
+
+        RegoModule parseModule() throws IOException {
+            skipSeparators();
+            expectKeyword("package");
+            String packageName = parseDottedName();
+
+            List<String> imports = new ArrayList<>();
+            List<Rule> rules = new ArrayList<>();
+
+            skipSeparators();
+            while (!peek().is(TokenType.EOF)) {
+                if (peek().isKeyword("import")) {
+                    next();
+                    imports.add(parseDottedName());
+                    if (peek().isKeyword("as")) {
+                        next();
+                        expect(TokenType.IDENT);
+                    }
+                } else {
+                    rules.add(parseRule());
+                }
+                skipSeparators();
+            }
+
+            return new RegoModule(packageName, List.copyOf(imports), List.copyOf(rules), comments);
+        }
+
+        private Rule parseRule() throws IOException {
+            int line = peek().line();
+
+            if (peek().isKeyword("default")) {
+                next();
+                String name = expect(TokenType.IDENT).text();
+                expectAssignment();
+                return new Rule(RuleKind.DEFAULT, name, null, parseExpression(), List.of(), line);
+            }
+
+            String name = expect(TokenType.IDENT).text();
+
+            if (peek().isKeyword("contains")) {
+                next();
+                Term key = parseExpression();
+                List<Literal> body = parseOptionalBody();
+                return new Rule(RuleKind.PARTIAL_SET, name, key, null, body, line);
+            }
+
+            Term value = new Scalar(Boolean.TRUE);
+            if (peek().is(TokenType.ASSIGN) || peek().is(TokenType.UNIFY)) {
+                next();
+                value = parseExpression();
+            }
+            List<Literal> body = parseOptionalBody();
+            return new Rule(RuleKind.COMPLETE, name, null, value, body, line);
+        }
+
+        /**
+         * Parses "if { ... }", "if expr", "{ ... }" (v0 style) or nothing (constant rule).
+         */
+        private List<Literal> parseOptionalBody() throws IOException {
+            if (peek().isKeyword("if")) {
+                next();
+                if (peek().is(TokenType.LBRACE)) {
+                    return parseBody();
+                }
+                return List.of(parseLiteral());
+            }
+            if (peek().is(TokenType.LBRACE)) {
+                return parseBody();
+            }
+            return List.of();
+        }
+
+        private List<Literal> parseBody() throws IOException {
+            expect(TokenType.LBRACE);
+            List<Literal> literals = new ArrayList<>();
+            skipSeparators();
+            while (!peek().is(TokenType.RBRACE)) {
+                if (peek().is(TokenType.EOF)) {
+                    throw error("Unterminated rule body");
+                }
+                literals.add(parseLiteral());
+                if (!peek().is(TokenType.RBRACE)) {
+                    if (!peek().is(TokenType.NEWLINE) && !peek().is(TokenType.SEMICOLON)) {
+                        throw error("Expected newline or ';' after literal but found '" + peek().text() + "'");
+                    }
+                    skipSeparators();
+                }
+            }
+            expect(TokenType.RBRACE);
+            return List.copyOf(literals);
+        }
+
+        private Literal parseLiteral() throws IOException {
+            if (peek().isKeyword("not")) {
+                next();
+                return new Literal(true, parseExpression());
+            }
+            if (peek().isKeyword("some")) {
+                next();
+                return new Literal(false, parseSome());
+            }
+            return new Literal(false, parseExpression());
+        }
+
+        private Term parseSome() throws IOException {
+            List<Term> terms = new ArrayList<>();
+            terms.add(parsePostfix());
+            while (peek().is(TokenType.COMMA)) {
+                next();
+                terms.add(parsePostfix());
+            }
+            if (peek().isKeyword("in")) {
+                next();
+                Term collection = parseComparison();
+                return switch (terms.size()) {
+                    case 1 -> new SomeIn(null, terms.get(0), collection);
+                    case 2 -> new SomeIn(terms.get(0), terms.get(1), collection);
+                    default -> throw error("'some ... in' supports at most a key and a value");
+                };
+            }
+            List<String> names = new ArrayList<>();
+            for (Term term : terms) {
+                if (!(term instanceof Var var)) {
+                    throw error("'some' declarations must be variables");
+                }
+                names.add(var.name());
+            }
+            return new SomeDecl(List.copyOf(names));
+        }
+
+        // --- expressions, lowest precedence first ---
+
+        private Term parseExpression() throws IOException {
+            Term left = parseMembership();
+            if (peek().is(TokenType.ASSIGN) || peek().is(TokenType.UNIFY)) {
+                String operator = next().text();
+                return new BinaryOp(operator, left, parseMembership());
+            }
+            return left;
+        }
+
+        private Term parseMembership() throws IOException {
+            Term left = parseComparison();
+            while (peek().isKeyword("in")) {
+                next();
+                left = new BinaryOp("in", left, parseComparison());
+            }
+            return left;
+        }
+
+        private Term parseComparison() throws IOException {
+            Term left = parseSetOperation();
+            if (COMPARISON_OPERATORS.contains(peek().text()) && !peek().is(TokenType.STRING)) {
+                String operator = next().text();
+                return new BinaryOp(operator, left, parseSetOperation());
+            }
+            return left;
+        }
+
+        private Term parseSetOperation() throws IOException {
+            Term left = parseAdditive();
+            while (peek().is(TokenType.PIPE) || peek().is(TokenType.AMPERSAND)) {
+                String operator = next().text();
+                left = new BinaryOp(operator, left, parseAdditive());
+            }
+            return left;
+        }
+
+        private Term parseAdditive() throws IOException {
+            Term left = parseMultiplicative();
+            while (peek().is(TokenType.PLUS) || peek().is(TokenType.MINUS)) {
+                String operator = next().text();
+                left = new BinaryOp(operator, left, parseMultiplicative());
+            }
+            return left;
+        }
+
+        private Term parseMultiplicative() throws IOException {
+            Term left = parseUnary();
+            while (peek().is(TokenType.STAR) || peek().is(TokenType.SLASH) || peek().is(TokenType.PERCENT)) {
+                String operator = next().text();
+                left = new BinaryOp(operator, left, parseUnary());
+            }
+            return left;
+        }
+
+        private Term parseUnary() throws IOException {
+            if (peek().is(TokenType.MINUS) && peekAt(1).is(TokenType.NUMBER)) {
+                next();
+                return new Scalar(new BigDecimal(next().text()).negate());
+            }
+            return parsePostfix();
+        }
+
+        /**
+         * Parses a primary term followed by any number of ".field" / "[expr]" selectors,
+         * and turns dotted names followed by "(" into builtin calls.
+         */
+        private Term parsePostfix() throws IOException {
+            Term head = parsePrimary();
+            List<Term> path = new ArrayList<>();
+
+            while (true) {
+                if (peek().is(TokenType.DOT) && peekAt(1).is(TokenType.IDENT)) {
+                    next();
+                    path.add(new Scalar(next().text()));
+                } else if (peek().is(TokenType.LBRACKET)) {
+                    next();
+                    path.add(parseExpression());
+                    expect(TokenType.RBRACKET);
+                } else {
+                    break;
+                }
+            }
+
+            if (peek().is(TokenType.LPAREN) && head instanceof Var var && isDottedPath(path)) {
+                StringBuilder function = new StringBuilder(var.name());
+                path.forEach(p -> function.append('.').append(((Scalar) p).value()));
+                return new Call(function.toString(), parseArguments());
+            }
+
+            return path.isEmpty() ? head : new Ref(head, List.copyOf(path));
+        }
+
+        private List<Term> parseArguments() throws IOException {
+            expect(TokenType.LPAREN);
+            List<Term> args = new ArrayList<>();
+            while (!peek().is(TokenType.RPAREN)) {
+                args.add(parseExpression());
+                if (!peek().is(TokenType.RPAREN)) {
+                    expect(TokenType.COMMA);
+                }
+            }
+            expect(TokenType.RPAREN);
+            return List.copyOf(args);
+        }
+
+        private Term parsePrimary() throws IOException {
+            Token token = next();
+            switch (token.type()) {
+                case STRING:
+                    return new Scalar(token.text());
+                case NUMBER:
+                    return new Scalar(new BigDecimal(token.text()));
+                case LPAREN: {
+                    Term inner = parseExpression();
+                    expect(TokenType.RPAREN);
+                    return inner;
+                }
+                case LBRACKET: {
+                    List<Term> items = parseItems(TokenType.RBRACKET);
+                    return new ArrayTerm(items);
+                }
+                case LBRACE:
+                    return parseBraceLiteral();
+                case IDENT:
+                    return switch (token.text()) {
+                        case "true" -> new Scalar(Boolean.TRUE);
+                        case "false" -> new Scalar(Boolean.FALSE);
+                        case "null" -> new Scalar(null);
+                        default -> new Var(token.text());
+                    };
+                default:
+                    throw error("Unexpected token '" + token.text() + "' at line " + token.line());
+            }
+        }
+
+        private List<Term> parseItems(TokenType closing) throws IOException {
+            List<Term> items = new ArrayList<>();
+            skipNewlines();
+            while (!peek().is(closing)) {
+                items.add(parseExpression());
+                skipNewlines();
+                if (!peek().is(closing)) {
+                    expect(TokenType.COMMA);
+                    skipNewlines();
+                }
+            }
+            expect(closing);
+            return List.copyOf(items);
+        }
+
+        /**
+         * "{" has already been consumed: parses either a set {a, b} or an object {"k": v}.
+         */
+        private Term parseBraceLiteral() throws IOException {
+            skipNewlines();
+            if (peek().is(TokenType.RBRACE)) {
+                next();
+                return new ObjectTerm(List.of());
+            }
+
+            Term first = parseExpression();
+            skipNewlines();
+            if (!peek().is(TokenType.COLON)) {
+                List<Term> items = new ArrayList<>();
+                items.add(first);
+                if (peek().is(TokenType.COMMA)) {
+                    next();
+                    items.addAll(parseItems(TokenType.RBRACE));
+                } else {
+                    expect(TokenType.RBRACE);
+                }
+                return new SetTerm(List.copyOf(items));
+            }
+
+            List<Map.Entry<Term, Term>> entries = new ArrayList<>();
+            next(); // ':'
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(first, parseExpression()));
+            skipNewlines();
+            while (peek().is(TokenType.COMMA)) {
+                next();
+                skipNewlines();
+                if (peek().is(TokenType.RBRACE)) {
+                    break;
+                }
+                Term key = parseExpression();
+                expect(TokenType.COLON);
+                entries.add(new AbstractMap.SimpleImmutableEntry<>(key, parseExpression()));
+                skipNewlines();
+            }
+            expect(TokenType.RBRACE);
+            return new ObjectTerm(List.copyOf(entries));
+        }
+
+        // --- token helpers ---
+
+        private String parseDottedName() throws IOException {
+            StringBuilder name = new StringBuilder(expect(TokenType.IDENT).text());
+            while (peek().is(TokenType.DOT)) {
+                next();
+                name.append('.').append(expect(TokenType.IDENT).text());
+            }
+            return name.toString();
+        }
+
+        private boolean isDottedPath(List<Term> path) {
+            return path.stream().allMatch(p -> p instanceof Scalar s && s.value() instanceof String);
+        }
+
+        private void expectAssignment() throws IOException {
+            if (!peek().is(TokenType.ASSIGN) && !peek().is(TokenType.UNIFY)) {
+                throw error("Expected ':=' but found '" + peek().text() + "'");
+            }
+            next();
+        }
+
+        private void expectKeyword(String keyword) throws IOException {
+            if (!peek().isKeyword(keyword)) {
+                throw error("Expected '" + keyword + "' but found '" + peek().text() + "'");
+            }
+            next();
+        }
+
+        private Token expect(TokenType type) throws IOException {
+            if (!peek().is(type)) {
+                throw error("Expected " + type + " but found '" + peek().text() + "'");
+            }
+            return next();
+        }
+
+        private void skipSeparators() {
+            while (peek().is(TokenType.NEWLINE) || peek().is(TokenType.SEMICOLON)) {
+                pos++;
+            }
+        }
+
+        private void skipNewlines() {
+            while (peek().is(TokenType.NEWLINE)) {
+                pos++;
+            }
+        }
+
+        private Token peek() {
+            return tokens.get(pos);
+        }
+
+        private Token peekAt(int offset) {
+            return tokens.get(Math.min(pos + offset, tokens.size() - 1));
+        }
+
+        private Token next() {
+            Token token = tokens.get(pos);
+            if (!token.is(TokenType.EOF)) {
+                pos++;
+            }
+            return token;
+        }
+
+        private IOException error(String message) {
+            return new IOException(message + " (line " + peek().line() + ")");
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package digital.alf.cells.physicalacesscontrolopa.service;
+
+import digital.alf.cells.acl.AclChangeLog;
+import digital.alf.cells.acl.AclSnapshots;
+import digital.alf.cells.acl.GroupIndex;
+import digital.alf.cells.physicalacesscontrolopa.config.OpaAclProperties;
+import digital.alf.cells.physicalacesscontrolopa.generator.OpaAclGenerator;
+import digital.alf.cells.physicalacesscontrolopa.model.AclEntry;
+import digital.alf.cells.physicalacesscontrolopa.model.OpaEmployeeInfo;
+import digital.alf.cells.physicalacesscontrolopa.model.OpaPolicyData;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Static OPA ACL as a versioned change log, so clients sync by delta instead of re-downloading
+ * the whole ACL ({@link AclChangeLog}).
+ *
+ * Before answering, the log is brought up to date with the policy and the employee directory:
+ * - nothing changed (same policy data, same employee snapshot): nothing to do
+ * - new employee snapshot: employees are matched by id, and only those whose record changed,
+ *   appeared or disappeared are run through the generator; their old entries are removed and
+ *   their new ones added
+ * - policy changed, or the clock reached the next time bound of the policy (see
+ *   {@link AclSnapshots#nextBoundary}): the ACL is regenerated and the difference recorded, so a
+ *   time window opening or closing reaches clients as a delta
+ *
+ * Entries are generated for the grants in force at the current time.
+ *
+ * The policy is looked up per sync; {@link OpaPolicyService} parses it again only when the file
+ * changes.
+ */
+@Service
+@Slf4j
+public class OpaAclChangeService {
+
+    private static final String DEFAULT_POLICY_PATH = "physical-access-control-opa/policy.rego";
+    private static final String DEFAULT_EMPLOYEE_INFO_PATH = "physical-access-control-opa/pip-info-employee-vde-trainings.json";
+
+    private final OpaPolicyService policyService;
+    private final OpaEmployeeDirectory employeeDirectory;
+    private final OpaAclGenerator aclGenerator;
+    private final AclChangeLog<AclEntry> changeLog;
+    private final Clock clock;
+
+    private OpaPolicyData appliedPolicy;
+    private OpaEmployeeDirectory.Snapshot appliedEmployees;
+    private Instant appliedUntil;
+
+    @Autowired
+    public OpaAclChangeService(OpaPolicyService policyService, OpaEmployeeDirectory employeeDirectory,
+                               OpaAclGenerator aclGenerator, OpaAclProperties properties) {
+        this(policyService, employeeDirectory, aclGenerator, properties, Clock.systemUTC());
+    }
+
+    OpaAclChangeService(OpaPolicyService policyService, OpaEmployeeDirectory employeeDirectory,
+                        OpaAclGenerator aclGenerator, OpaAclProperties properties, Clock clock) {
+        this.policyService = policyService;
+        this.employeeDirectory = employeeDirectory;
+        this.aclGenerator = aclGenerator;
+        this.changeLog = new AclChangeLog<>(properties.getChanges().getRetainedVersions());
+        this.clock = clock;
+    }
+
+    /**
+     * Entries added and removed since the given version.
+     *
+     * @throws IOException              if the policy or employee file cannot be read
+     * @throws IllegalArgumentException if since is negative or newer than the current version
+     */
+    public AclChangeLog.Changes<AclEntry> changesSince(long since) throws IOException {
+        sync();
+        return changeLog.changesSince(since);
+    }
+
+    synchronized void sync() throws IOException {
+        OpaPolicyData policy = policyService.load(DEFAULT_POLICY_PATH);
+        OpaEmployeeDirectory.Snapshot employees = employeeDirectory.snapshot(DEFAULT_EMPLOYEE_INFO_PATH);
+        Instant now = Instant.now(clock);
+        boolean boundReached = appliedUntil != null && !now.isBefore(appliedUntil);
+        if (policy.equals(appliedPolicy) && employees == appliedEmployees && !boundReached) {
+            return;
+        }
+
+        long version;
+        if (!policy.equals(appliedPolicy) || boundReached) {
+            version = changeLog.replaceAll(aclGenerator.generateAcl(policy, employees.groupIndex(), now));
+            log.info("OPA ACL change log rebuilt for policy {} at {} (version {})", policy.getPolicyName(), now, version);
+        } else {
+            List<OpaEmployeeInfo> before = new ArrayList<>();
+            List<OpaEmployeeInfo> after = new ArrayList<>();
+            changedEmployees(appliedEmployees.employees(), employees.employees(), before, after);
+            version = changeLog.apply(generateAcl(policy, before, now), generateAcl(policy, after, now));
+            log.info("OPA ACL change log updated for {} changed employees (version {})", after.size(), version);
+        }
+        appliedPolicy = policy;
+        appliedEmployees = employees;
+        appliedUntil = AclSnapshots.nextBoundary(policy.timeBounds(), now);
+    }
+
+    private List<AclEntry> generateAcl(OpaPolicyData policy, List<OpaEmployeeInfo> employees, Instant at) {
+        return aclGenerator.generateAcl(policy, GroupIndex.of(employees, OpaEmployeeInfo::getGroups), at);
+    }
+
+    /**
+     * Collects the old and new records of every employee id whose records differ.
+     */
+    static void changedEmployees(List<OpaEmployeeInfo> previous, List<OpaEmployeeInfo> current,
+                                 List<OpaEmployeeInfo> before, List<OpaEmployeeInfo> after) {
+        Map<String, List<OpaEmployeeInfo>> previousById = byId(previous);
+        Map<String, List<OpaEmployeeInfo>> currentById = byId(current);
+        previousById.forEach((id, records) -> {
+            if (!Objects.equals(records, currentById.get(id))) {
+                before.addAll(records);
+            }
+        });
+        currentById.forEach((id, records) -> {
+            if (!Objects.equals(records, previousById.get(id))) {
+                after.addAll(records);
+            }
+        });
+    }
+
+    private static Map<String, List<OpaEmployeeInfo>> byId(List<OpaEmployeeInfo> employees) {
+        Map<String, List<OpaEmployeeInfo>> byId = new LinkedHashMap<>();
+        for (OpaEmployeeInfo employee : employees) {
+            byId.computeIfAbsent(employee.getId(), id -> new ArrayList<>()).add(employee);
+        }
+        return byId;
+    }
+}
@@ -1,29 +1,23 @@
 package digital.alf.cells.physicalacesscontrolopa.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import digital.alf.cells.physicalacesscontrolopa.model.OpaEvalResult;
-import lombok.RequiredArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
-import org.springframework.stereotype.Service;
+import digital.alf.cells.physicalacesscontrolopa.model.OpaUserInfo;
 
-import java.io.BufferedReader;
-import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
- * Service to execute OPA CLI eval commands and parse the JSON results.
+ * Evaluates user input documents against an OPA policy using the opa binary.
  *
- * Equivalent of KyvernoCliExecutor for the OPA engine.
- * Runs: opa eval -d <policy.rego> --input <userinfo.json> 'data.<packageName>.allow'
+ * Implementations (selected with acl.opa.executor):
+ *   process - {@link OpaEvalProcessExecutor}, one 'opa eval' process per call (default)
+ *   server  - {@link OpaServerExecutor}, a long-lived 'opa run --server' queried over REST
+ *
+ * Both return OpaEvalResult in the shape of the 'opa eval' output.
  */
-@Service
-@Slf4j
-@RequiredArgsConstructor
-public class OpaCliExecutor {
-
-    private final ObjectMapper objectMapper;
+public interface OpaCliExecutor {
 
     /**
      * Evaluates a user input file against an OPA policy.
@@ -31,81 +25,81 @@ public class OpaCliExecutor {
      * @param policyPath   Path to the .rego file (relative to resources directory)
      * @param userInfoPath Path to the user input JSON file (relative to resources directory)
      * @param packageName  OPA package name (e.g. "physical_access_control")
-     * @return OpaEvalResult containing the parsed JSON output of opa eval
+     * @return OpaEvalResult containing the value of data.<packageName>.allow
      * @throws IOException if execution or parsing fails
      */
-    public OpaEvalResult evaluate(String policyPath, String userInfoPath, String packageName) throws IOException {
-        File resourcesDir = getResourcesDirectory();
-
-        String absolutePolicyPath = new File(resourcesDir, policyPath).getAbsolutePath();
-        String absoluteUserInfoPath = new File(resourcesDir, userInfoPath).getAbsolutePath();
-        String query = "data." + packageName + ".allow";
-
-        List<String> command = List.of(
-                "opa", "eval",
-                "-d", absolutePolicyPath,
-                "--input", absoluteUserInfoPath,
-                query
-        );
-
-        log.debug("Executing OPA command: {}", String.join(" ", command));
-
-        ProcessBuilder processBuilder = new ProcessBuilder(command);
-        processBuilder.redirectErrorStream(true);
-        Process process = processBuilder.start();
-
-        StringBuilder output = new StringBuilder();
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                output.append(line).append("\n");
-            }
-        }
+    OpaEvalResult evaluate(String policyPath, String userInfoPath, String packageName) throws IOException;
 
-        try {
-            int exitCode = process.waitFor();
-            log.debug("OPA CLI exit code: {}", exitCode);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new IOException("Process interrupted", e);
-        }
+    /**
+     * Evaluates many users in one round trip.
+     *
+     * The users are sent as one input document keyed by their position in the list
+     * (see {@link #batchInput}) and evaluated by a generated wrapper module
+     * (see {@link #batchWrapperModule}). Use {@link OpaEvalResult#getDecisions()} on the result.
+     *
+     * Keys are positions rather than uids because the same uid may appear in several
+     * user files (one per operation).
+     *
+     * @param policyPath  Path to the .rego file (relative to resources directory)
+     * @param packageName OPA package name (e.g. "physical_access_control")
+     * @param users       Input documents to evaluate
+     * @return OpaEvalResult whose first expression is the position -> allow map
+     * @throws IOException if execution or parsing fails
+     */
+    OpaEvalResult evaluateBatch(String policyPath, String packageName, List<OpaUserInfo> users) throws IOException;
 
-        String jsonOutput = output.toString();
-        log.debug("OPA CLI output: {}", jsonOutput);
+    /**
+     * Version of the data documents policies are evaluated against besides the input, part of
+     * the decision cache key. Executors that keep data between calls bring it up to date first,
+     * so the version is the one the next decisions see.
+     *
+     * @return content hash of the data; empty when policies see no data
+     * @throws IOException if the data cannot be read or pushed
+     */
+    default String dataVersion() throws IOException {
+        return "";
+    }
 
-        try {
-            return objectMapper.readValue(jsonOutput, OpaEvalResult.class);
-        } catch (Exception e) {
-            log.error("Failed to parse OPA output: {}", jsonOutput, e);
-            throw new IOException("Failed to parse OPA output", e);
+    /**
+     * Builds the batch input document:
+     *   { "users": { "0": <OpaUserInfo>, "1": <OpaUserInfo>, ... } }
+     */
+    static Map<String, Object> batchInput(List<OpaUserInfo> users) {
+        Map<String, OpaUserInfo> indexedUsers = new LinkedHashMap<>();
+        for (int i = 0; i < users.size(); i++) {
+            indexedUsers.put(String.valueOf(i), users.get(i));
         }
+        return Map.of("users", indexedUsers);
     }
 
     /**
-     * Gets the resources directory from the classpath.
-     * Mirrors the approach used by KyvernoCliExecutor.
+     * Generates the wrapper module that evaluates the allow rule once per batch entry.
+     *
+     * Example for "physical_access_control":
+     *   package acl_batch.physical_access_control
+     *
+     *   decisions[key] := allowed if {
+     *       some key, user in input.users
+     *       allowed := data.physical_access_control.allow with input as user
+     *   }
      */
-    private File getResourcesDirectory() throws IOException {
-        String classPath = System.getProperty("java.class.path");
-        String[] entries = classPath.split(System.getProperty("path.separator"));
+    static String batchWrapperModule(String packageName) {
+        return """
+                package acl_batch.%s
 
-        for (String entry : entries) {
-            File file = new File(entry);
-            if (file.getPath().contains("src" + File.separator + "main")) {
-                File resourcesDir = new File(file.getParentFile().getParentFile().getParentFile(),
-                        "src" + File.separator + "main" + File.separator + "resources");
-                if (resourcesDir.exists() && resourcesDir.isDirectory()) {
-                    return resourcesDir;
-                }
-            }
-        }
+                import rego.v1
 
-        // Fallback: try current directory
-        File resourcesDir = new File("src/main/resources");
-        if (resourcesDir.exists() && resourcesDir.isDirectory()) {
-            return resourcesDir;
-        }
+                decisions[key] := allowed if {
+                    some key, user in input.users
+                    allowed := data.%s.allow with input as user
+                }
+                """.formatted(packageName, packageName);
+    }
 
-        throw new IOException("Could not locate resources directory");
+    /**
+     * Query that returns the decisions map produced by {@link #batchWrapperModule}.
+     */
+    static String batchQuery(String packageName) {
+        return "data.acl_batch." + packageName + ".decisions";
     }
 }
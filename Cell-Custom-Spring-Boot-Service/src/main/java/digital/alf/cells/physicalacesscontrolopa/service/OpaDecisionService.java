@@ -0,0 +1,150 @@
+package digital.alf.cells.physicalacesscontrolopa.service;
+
+import digital.alf.cells.acl.AccessDecision;
+import digital.alf.cells.acl.DecisionIndex;
+import digital.alf.cells.physicalacesscontrolopa.generator.OpaAclGenerator;
+import digital.alf.cells.physicalacesscontrolopa.model.AccessPredicate;
+import digital.alf.cells.physicalacesscontrolopa.model.OpaPolicyData;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+
+/**
+ * Point decisions for the OPA policy: "may ES-4902 ENTER the Facility at 2025-10-20T08:30:00Z?".
+ *
+ * Answers come from a {@link DecisionIndex} built from the policy's access predicate and the
+ * employee directory snapshot, so they are what the policy decides: outside its time window,
+ * or for resources it does not restrict, everyone is allowed. The index is rebuilt when the
+ * content hash of the policy file changes or the employee directory swaps its snapshot; both
+ * checks are reference comparisons, since {@link OpaPolicyService} returns the same parsed
+ * policy while the hash is unchanged.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class OpaDecisionService {
+
+    private static final String DEFAULT_POLICY_PATH = "physical-access-control-opa/policy.rego";
+    private static final String DEFAULT_EMPLOYEE_INFO_PATH = "physical-access-control-opa/pip-info-employee-vde-trainings.json";
+
+    /** Stands in for operations and resource kinds the policy does not name; equal to none of them. */
+    private static final Object UNNAMED = new Object();
+
+    /**
+     * Index plus the parsed policy and the employee snapshot it was built from.
+     */
+    private record Built(OpaPolicyData policy, OpaEmployeeDirectory.Snapshot source, DecisionIndex index) {
+
+        boolean builtFrom(OpaPolicyData currentPolicy, OpaEmployeeDirectory.Snapshot currentSource) {
+            return policy == currentPolicy && source == currentSource;
+        }
+    }
+
+    private final OpaPolicyService policyService;
+    private final OpaEmployeeDirectory employeeDirectory;
+    private final OpaAclGenerator aclGenerator;
+
+    private volatile Built built;
+
+    /**
+     * Decides a single request against the default policy and employee file.
+     *
+     * @throws IOException if the policy or employee file cannot be read
+     */
+    public AccessDecision decide(String principal, String action, String resource, Instant at) throws IOException {
+        return index().decide(principal, action, resource, at);
+    }
+
+    /**
+     * The current decision index, rebuilt if the policy or the employee snapshot changed since
+     * the last call.
+     */
+    public DecisionIndex index() throws IOException {
+        OpaPolicyData policy = policyService.load(DEFAULT_POLICY_PATH);
+        OpaEmployeeDirectory.Snapshot snapshot = employeeDirectory.snapshot(DEFAULT_EMPLOYEE_INFO_PATH);
+        Built current = built;
+        if (current != null && current.builtFrom(policy, snapshot)) {
+            return current.index();
+        }
+
+        synchronized (this) {
+            current = built;
+            if (current == null || !current.builtFrom(policy, snapshot)) {
+                current = new Built(policy, snapshot, buildIndex(policy, snapshot));
+                built = current;
+                log.info("OPA decision index built for policy {} ({} granted employees, employees sha256 {})",
+                        policy.getPolicyName(), current.index().grantedEmployees(), snapshot.contentHash());
+            }
+            return current.index();
+        }
+    }
+
+    /**
+     * Evaluates the access predicate for every operation and resource kind it names (plus one
+     * value it does not name) at one instant of every interval between its time bounds.
+     * Policies without a predicate grant holders of the required group throughout.
+     */
+    private DecisionIndex buildIndex(OpaPolicyData policy, OpaEmployeeDirectory.Snapshot snapshot) {
+        AccessPredicate predicate = policy.getAccessPredicate() != null
+                ? policy.getAccessPredicate()
+                : AccessPredicate.requiring(policy.getRequiredGroup());
+        SortedSet<Instant> timeBounds = predicate.timeBounds();
+        List<Instant> intervals = DecisionIndex.intervals(timeBounds);
+        Map<AccessPredicate, DecisionIndex.Grant> grants = new HashMap<>();
+
+        DecisionIndex.DecisionIndexBuilder builder = DecisionIndex.builder()
+                .resourceKind(policy.getResourceKind())
+                .resourceDescription(aclGenerator.buildResourceDescription(policy))
+                .validationMessage(policy.getValidationMessage())
+                .timeBounds(timeBounds);
+        for (String operation : namedValues(predicate, AccessPredicate.OPERATION)) {
+            for (String kind : namedValues(predicate, AccessPredicate.RESOURCE_KIND)) {
+                Map<String, Object> attributes = new HashMap<>();
+                attributes.put(AccessPredicate.OPERATION, operation != null ? operation : UNNAMED);
+                attributes.put(AccessPredicate.RESOURCE_KIND, kind != null ? kind : UNNAMED);
+                builder.scope(new DecisionIndex.Scope(operation, kind), intervals.stream()
+                        .map(at -> grants.computeIfAbsent(predicate.restrict(attributes, at), grant -> grant(grant, snapshot)))
+                        .toList());
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * String values the predicate compares the attribute with, plus null for all other values.
+     */
+    private static List<String> namedValues(AccessPredicate predicate, String path) {
+        List<String> values = new ArrayList<>();
+        for (Object value : predicate.attributeValues(path)) {
+            if (value instanceof String named) {
+                values.add(named);
+            }
+        }
+        values.add(null);
+        return values;
+    }
+
+    private DecisionIndex.Grant grant(AccessPredicate restricted, OpaEmployeeDirectory.Snapshot snapshot) {
+        if (restricted.isFalse()) {
+            return DecisionIndex.Grant.NOBODY;
+        }
+        if (restricted.equals(AccessPredicate.TRUE)) {
+            return DecisionIndex.Grant.EVERYONE;
+        }
+        List<String> employeeIds = new ArrayList<>();
+        aclGenerator.forEachGrantedEmployee(restricted, snapshot.groupIndex(), employee -> {
+            if (employee.getId() != null) {
+                employeeIds.add(employee.getId());
+            }
+        });
+        return DecisionIndex.Grant.of(employeeIds);
+    }
+}
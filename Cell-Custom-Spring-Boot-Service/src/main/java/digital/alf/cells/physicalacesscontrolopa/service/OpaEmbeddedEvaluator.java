@@ -0,0 +1,84 @@
+package digital.alf.cells.physicalacesscontrolopa.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import digital.alf.cells.acl.PolicyCache;
+import digital.alf.cells.physicalacesscontrolopa.model.OpaEvalResult;
+import digital.alf.cells.physicalacesscontrolopa.model.OpaUserInfo;
+import digital.alf.cells.physicalacesscontrolopa.parser.RegoParser;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Evaluates OPA policies inside the JVM instead of spawning 'opa eval'.
+ *
+ * Each .rego file is parsed and compiled once into a {@link RegoInterpreter} and cached
+ * by content hash (see {@link PolicyCache}), so an edited policy is compiled again.
+ * Evaluation converts the OpaUserInfo into the same input document the CLI would read from
+ * the user file and queries data.<packageName>.allow.
+ *
+ * The result is wrapped in an OpaEvalResult shaped like the CLI output, so callers can
+ * switch engines without changing how decisions are read.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class OpaEmbeddedEvaluator {
+
+    private final RegoParser regoParser;
+    private final ObjectMapper objectMapper;
+
+    private final PolicyCache<RegoInterpreter> compiledPolicies = new PolicyCache<>();
+
+    /**
+     * Evaluates data.<packageName>.allow for the given user.
+     *
+     * @param policyPath  Path to the .rego file (relative to the classpath)
+     * @param packageName OPA package name (e.g. "physical_access_control")
+     * @param userInfo    OPA input document
+     * @return OpaEvalResult equivalent to the CLI output; empty result if allow is undefined
+     * @throws IOException if the policy cannot be read or compiled
+     */
+    public OpaEvalResult evaluate(String policyPath, String packageName, OpaUserInfo userInfo) throws IOException {
+        return query(policyPath, packageName, "allow", objectMapper.convertValue(userInfo, Map.class));
+    }
+
+    /**
+     * Evaluates data.<packageName>.<ruleName> against an arbitrary input document.
+     */
+    public OpaEvalResult query(String policyPath, String packageName, String ruleName, Object input) throws IOException {
+        RegoInterpreter interpreter = compile(policyPath);
+        String text = "data." + packageName + "." + ruleName;
+
+        if (!interpreter.getPackageName().equals(packageName)) {
+            log.debug("Package {} not defined by {}; {} is undefined", packageName, policyPath, text);
+            return new OpaEvalResult(List.of());
+        }
+
+        Optional<Object> value = interpreter.evaluateRule(ruleName, input);
+        if (value.isEmpty()) {
+            return new OpaEvalResult(List.of());
+        }
+
+        OpaEvalResult.Expression expression = new OpaEvalResult.Expression(
+                value.get(), text, new OpaEvalResult.Location(1, 1));
+        return new OpaEvalResult(List.of(new OpaEvalResult.ResultItem(List.of(expression))));
+    }
+
+    /**
+     * Returns the compiled policy, parsing it on first use of its current content.
+     */
+    public RegoInterpreter compile(String policyPath) throws IOException {
+        return compiledPolicies.get(policyPath, content -> {
+            RegoInterpreter compiled = new RegoInterpreter(regoParser.parse(new ByteArrayInputStream(content)));
+            log.info("Compiled rego policy {} (package {})", policyPath, compiled.getPackageName());
+            return compiled;
+        });
+    }
+}
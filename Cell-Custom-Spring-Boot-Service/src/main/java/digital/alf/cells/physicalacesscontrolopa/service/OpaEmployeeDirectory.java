@@ -0,0 +1,227 @@
+package digital.alf.cells.physicalacesscontrolopa.service;
+
+import digital.alf.cells.acl.ContentHash;
+import digital.alf.cells.acl.GroupIndex;
+import digital.alf.cells.physicalacesscontrolopa.config.OpaAclProperties;
+import digital.alf.cells.physicalacesscontrolopa.model.OpaEmployeeInfo;
+import digital.alf.cells.physicalacesscontrolopa.parser.OpaEmployeeInfoParser;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Parsed employee files, held as immutable snapshots so that ACL generation does not
+ * re-read and re-parse the JSON on every request.
+ *
+ * A file is parsed on first use (the files in acl.opa.employee-directory.preload at startup)
+ * and cached by location. Every acl.opa.employee-directory.reload-interval the loaded files
+ * are checked in the background:
+ *
+ *   last-modified and size unchanged  -> nothing is read
+ *   otherwise                         -> content is read and hashed (SHA-256)
+ *   hash changed                      -> content is parsed and the snapshot swapped atomically
+ *
+ * Readers always get a complete snapshot, either the old or the new one. A file that fails to
+ * parse (e.g. caught mid-write) keeps the previous snapshot and is retried on the next check.
+ *
+ * Every snapshot also carries a {@link GroupIndex}, built once per load, for set-algebra
+ * ACL generation.
+ *
+ * Locations are resolved like Spring resources: plain paths from the classpath, file: URLs
+ * from the file system.
+ */
+@Service
+@Slf4j
+public class OpaEmployeeDirectory implements SmartLifecycle, DisposableBean {
+
+    /**
+     * Parsed content of one employee file.
+     *
+     * @param location    Location the snapshot was loaded from
+     * @param contentHash SHA-256 of the file content (hex)
+     * @param employees   Unmodifiable employee list in file order
+     * @param groupIndex  Group to employee bitmaps over {@code employees}
+     * @param loadedAt    Time the snapshot was parsed
+     */
+    public record Snapshot(
+            String location,
+            String contentHash,
+            List<OpaEmployeeInfo> employees,
+            GroupIndex<OpaEmployeeInfo> groupIndex,
+            Instant loadedAt) {
+    }
+
+    /**
+     * Snapshot plus the file stamp it was read at, used to skip hashing unchanged files.
+     */
+    private record Loaded(Snapshot snapshot, long lastModified, long length) {
+    }
+
+    private final OpaEmployeeInfoParser employeeParser;
+    private final OpaAclProperties.EmployeeDirectory settings;
+    private final ResourceLoader resourceLoader = new DefaultResourceLoader();
+
+    private final Map<String, AtomicReference<Loaded>> snapshots = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService reloader = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "opa-employee-directory");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private ScheduledFuture<?> reload;
+    private volatile boolean running;
+
+    public OpaEmployeeDirectory(OpaEmployeeInfoParser employeeParser, OpaAclProperties properties) {
+        this.employeeParser = employeeParser;
+        this.settings = properties.getEmployeeDirectory();
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        for (String location : settings.getPreload()) {
+            try {
+                Snapshot snapshot = snapshot(location);
+                log.info("Employee directory {} loaded ({} employees)", location, snapshot.employees().size());
+            } catch (IOException e) {
+                // Not fatal: the location is loaded again on first use and the error reported there
+                log.warn("Failed to preload employee directory {}", location, e);
+            }
+        }
+
+        long interval = settings.getReloadInterval().toMillis();
+        if (interval > 0) {
+            reload = reloader.scheduleWithFixedDelay(this::refresh, interval, interval, TimeUnit.MILLISECONDS);
+        }
+        running = true;
+    }
+
+    /**
+     * Cancels the periodic reload. The reload thread lives until the bean is destroyed, so a
+     * later {@link #start()} schedules it again.
+     */
+    @Override
+    public synchronized void stop() {
+        running = false;
+        if (reload != null) {
+            reload.cancel(false);
+            reload = null;
+        }
+    }
+
+    @Override
+    public void destroy() {
+        stop();
+        reloader.shutdownNow();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Returns the employees of the current snapshot, loading the location on first use.
+     */
+    public List<OpaEmployeeInfo> getEmployees(String location) throws IOException {
+        return snapshot(location).employees();
+    }
+
+    /**
+     * Returns the group index of the current snapshot, loading the location on first use.
+     */
+    public GroupIndex<OpaEmployeeInfo> getGroupIndex(String location) throws IOException {
+        return snapshot(location).groupIndex();
+    }
+
+    /**
+     * Returns the current snapshot of the location, loading it on first use.
+     *
+     * @throws IOException if the location cannot be read or parsed on first use
+     */
+    public Snapshot snapshot(String location) throws IOException {
+        AtomicReference<Loaded> current = snapshots.get(location);
+        if (current != null) {
+            return current.get().snapshot();
+        }
+
+        synchronized (snapshots) {
+            current = snapshots.get(location);
+            if (current == null) {
+                current = new AtomicReference<>(load(resourceLoader.getResource(location), location, null));
+                snapshots.put(location, current);
+            }
+        }
+        return current.get().snapshot();
+    }
+
+    /**
+     * Checks all loaded locations once and swaps the snapshots of changed files.
+     */
+    void refresh() {
+        snapshots.forEach((location, current) -> {
+            try {
+                reloadIfChanged(location, current);
+            } catch (Exception e) {
+                log.warn("Reloading employee directory {} failed; keeping snapshot {}",
+                        location, current.get().snapshot().contentHash(), e);
+            }
+        });
+    }
+
+    private void reloadIfChanged(String location, AtomicReference<Loaded> current) throws IOException {
+        Loaded loaded = current.get();
+        Resource resource = resourceLoader.getResource(location);
+        if (resource.lastModified() == loaded.lastModified() && resource.contentLength() == loaded.length()) {
+            return;
+        }
+
+        Loaded reloaded = load(resource, location, loaded);
+        current.set(reloaded);
+        if (reloaded.snapshot() != loaded.snapshot()) {
+            log.info("Employee directory {} reloaded ({} employees, sha256 {})",
+                    location, reloaded.snapshot().employees().size(), reloaded.snapshot().contentHash());
+        }
+    }
+
+    /**
+     * Reads and hashes the content; parses it only when the hash differs from {@code previous}.
+     */
+    private Loaded load(Resource resource, String location, Loaded previous) throws IOException {
+        long lastModified = resource.lastModified();
+        byte[] content;
+        try (InputStream inputStream = resource.getInputStream()) {
+            content = inputStream.readAllBytes();
+        }
+
+        String contentHash = ContentHash.sha256(content);
+        if (previous != null && previous.snapshot().contentHash().equals(contentHash)) {
+            // Touched but not changed: keep the snapshot, remember the new stamp
+            return new Loaded(previous.snapshot(), lastModified, content.length);
+        }
+
+        List<OpaEmployeeInfo> employees = List.copyOf(employeeParser.parse(new ByteArrayInputStream(content)));
+        GroupIndex<OpaEmployeeInfo> groupIndex = GroupIndex.of(employees, OpaEmployeeInfo::getGroups);
+        Snapshot snapshot = new Snapshot(location, contentHash, employees, groupIndex, Instant.now());
+        return new Loaded(snapshot, lastModified, content.length);
+    }
+}
@@ -0,0 +1,161 @@
+package digital.alf.cells.physicalacesscontrolopa.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import digital.alf.cells.acl.AclMetrics;
+import digital.alf.cells.physicalacesscontrolopa.model.OpaEvalResult;
+import digital.alf.cells.physicalacesscontrolopa.model.OpaUserInfo;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Service to execute OPA CLI eval commands and parse the JSON results.
+ *
+ * Equivalent of KyvernoCliExecutor for the OPA engine.
+ * Runs: opa eval -d <policy.rego> --input <userinfo.json> 'data.<packageName>.allow'
+ * or, in batch mode, one 'opa eval' for a whole chunk of users (see {@link #evaluateBatch}).
+ *
+ * Default OpaCliExecutor; selected when acl.opa.executor=process (or unset).
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "acl.opa", name = "executor", havingValue = "process", matchIfMissing = true)
+public class OpaEvalProcessExecutor implements OpaCliExecutor {
+
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public OpaEvalResult evaluate(String policyPath, String userInfoPath, String packageName) throws IOException {
+        File resourcesDir = getResourcesDirectory();
+
+        String absolutePolicyPath = new File(resourcesDir, policyPath).getAbsolutePath();
+        String absoluteUserInfoPath = new File(resourcesDir, userInfoPath).getAbsolutePath();
+        String query = "data." + packageName + ".allow";
+
+        List<String> command = List.of(
+                "opa", "eval",
+                "-d", absolutePolicyPath,
+                "--input", absoluteUserInfoPath,
+                query
+        );
+
+        return run(command);
+    }
+
+    /**
+     * Writes the chunk to a temporary input document and runs a single 'opa eval' with the
+     * policy plus the generated wrapper module (see {@link OpaCliExecutor#batchWrapperModule}).
+     */
+    @Override
+    public OpaEvalResult evaluateBatch(String policyPath, String packageName, List<OpaUserInfo> users) throws IOException {
+        File resourcesDir = getResourcesDirectory();
+        String absolutePolicyPath = new File(resourcesDir, policyPath).getAbsolutePath();
+
+        Path inputFile = Files.createTempFile("opa-batch-input-", ".json");
+        Path wrapperFile = Files.createTempFile("opa-batch-wrapper-", ".rego");
+        try {
+            objectMapper.writeValue(inputFile.toFile(), OpaCliExecutor.batchInput(users));
+            Files.writeString(wrapperFile, OpaCliExecutor.batchWrapperModule(packageName));
+
+            List<String> command = List.of(
+                    "opa", "eval",
+                    "-d", absolutePolicyPath,
+                    "-d", wrapperFile.toAbsolutePath().toString(),
+                    "--input", inputFile.toAbsolutePath().toString(),
+                    OpaCliExecutor.batchQuery(packageName)
+            );
+
+            return run(command);
+        } finally {
+            Files.deleteIfExists(inputFile);
+            Files.deleteIfExists(wrapperFile);
+        }
+    }
+
+    private OpaEvalResult run(List<String> command) throws IOException {
+        log.debug("Executing OPA command: {}", String.join(" ", command));
+
+        ProcessBuilder processBuilder = new ProcessBuilder(command);
+        processBuilder.redirectErrorStream(true);
+        Process process = processBuilder.start();
+        AclMetrics.cliSpawned(AclMetrics.OPA);
+
+        // Output is drained on a separate virtual thread so that this thread blocks only in
+        // waitFor(), which is interruptible: a cancelled evaluation kills the opa process.
+        FutureTask<String> output = new FutureTask<>(() -> {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                StringBuilder lines = new StringBuilder();
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lines.append(line).append("\n");
+                }
+                return lines.toString();
+            }
+        });
+        Thread.ofVirtual().name("opa-eval-output").start(output);
+
+        String jsonOutput;
+        try {
+            int exitCode = process.waitFor();
+            AclMetrics.cliExited(AclMetrics.OPA, exitCode);
+            log.debug("OPA CLI exit code: {}", exitCode);
+            jsonOutput = output.get();
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+            throw new IOException("Process interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to read OPA output", e.getCause());
+        }
+
+        log.debug("OPA CLI output: {}", jsonOutput);
+
+        try {
+            return objectMapper.readValue(jsonOutput, OpaEvalResult.class);
+        } catch (Exception e) {
+            AclMetrics.cliParseFailed(AclMetrics.OPA);
+            log.error("Failed to parse OPA output: {}", jsonOutput, e);
+            throw new IOException("Failed to parse OPA output", e);
+        }
+    }
+
+    /**
+     * Gets the resources directory from the classpath.
+     * Mirrors the approach used by KyvernoCliExecutor.
+     */
+    private File getResourcesDirectory() throws IOException {
+        String classPath = System.getProperty("java.class.path");
+        String[] entries = classPath.split(System.getProperty("path.separator"));
+
+        for (String entry : entries) {
+            File file = new File(entry);
+            if (file.getPath().contains("src" + File.separator + "main")) {
+                File resourcesDir = new File(file.getParentFile().getParentFile().getParentFile(),
+                        "src" + File.separator + "main" + File.separator + "resources");
+                if (resourcesDir.exists() && resourcesDir.isDirectory()) {
+                    return resourcesDir;
+                }
+            }
+        }
+
+        // Fallback: try current directory
+        File resourcesDir = new File("src/main/resources");
+        if (resourcesDir.exists() && resourcesDir.isDirectory()) {
+            return resourcesDir;
+        }
+
+        throw new IOException("Could not locate resources directory");
+    }
+}
@@ -0,0 +1,116 @@
+package digital.alf.cells.physicalacesscontrolopa.service;
+
+import digital.alf.cells.acl.AclMetrics;
+import digital.alf.cells.acl.PolicyCache;
+import digital.alf.cells.physicalacesscontrolopa.model.AccessPredicate;
+import digital.alf.cells.physicalacesscontrolopa.model.OpaPolicyData;
+import digital.alf.cells.physicalacesscontrolopa.model.RegoModule;
+import digital.alf.cells.physicalacesscontrolopa.parser.OpaPolicyParser;
+import digital.alf.cells.physicalacesscontrolopa.parser.RegoParser;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.SortedSet;
+
+/**
+ * OPA rego policies with the access predicate the ACL is generated from.
+ *
+ * The metadata comes from {@link OpaPolicyParser}. The allow rule is also partially evaluated
+ * with the input unknown (see {@link RegoPartialEvaluator}); the residual becomes the access
+ * predicate, and the operations, resource kind, time window and required group it mentions
+ * take precedence over the values found in the AST, which remain the fallback for policies the
+ * partial evaluator cannot handle.
+ *
+ * Policies are cached per classpath path by content hash (see {@link PolicyCache}): a policy
+ * is parsed again only when its file changes, and until then the same instance is returned, so
+ * callers can tell versions apart by reference. Callers must not modify it.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class OpaPolicyService {
+
+    private static final String ALLOW_RULE = "allow";
+
+    private final RegoParser regoParser;
+    private final OpaPolicyParser policyParser;
+
+    private final PolicyCache<OpaPolicyData> policies = new PolicyCache<>();
+
+    /**
+     * The policy at a classpath path, parsed again only when the file changed.
+     *
+     * @throws IOException if the file cannot be read or is not valid rego
+     */
+    public OpaPolicyData load(String policyPath) throws IOException {
+        return policies.get(policyPath, content -> parse(new String(content, StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Parses rego source, uncached.
+     *
+     * @throws IOException if the source is not valid rego
+     */
+    public OpaPolicyData parse(String source) throws IOException {
+        return AclMetrics.timePolicyParse(AclMetrics.OPA, () -> {
+            RegoModule module = regoParser.parse(source);
+            OpaPolicyData policyData = policyParser.extract(module);
+            AccessPredicate residual = partiallyEvaluate(module);
+            if (residual != null) {
+                applyResidual(policyData, residual);
+            }
+            return policyData;
+        });
+    }
+
+    /**
+     * Residual of the allow rule, or null if the policy has no allow rule or is outside the
+     * supported subset.
+     */
+    private static AccessPredicate partiallyEvaluate(RegoModule module) {
+        if (!module.hasRule(ALLOW_RULE)) {
+            return null;
+        }
+        try {
+            return new RegoPartialEvaluator(module).residual(ALLOW_RULE);
+        } catch (IOException e) {
+            log.warn("Cannot partially evaluate policy, falling back to AST extraction: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static void applyResidual(OpaPolicyData policyData, AccessPredicate predicate) {
+        policyData.setAccessPredicate(predicate);
+
+        List<String> operations = predicate.attributeValues(AccessPredicate.OPERATION).stream()
+                .filter(String.class::isInstance)
+                .map(String.class::cast)
+                .toList();
+        if (!operations.isEmpty()) {
+            policyData.setOperations(operations);
+        }
+
+        predicate.attributeValues(AccessPredicate.RESOURCE_KIND).stream()
+                .filter(String.class::isInstance)
+                .map(String.class::cast)
+                .findFirst()
+                .ifPresent(policyData::setResourceKind);
+
+        SortedSet<Instant> bounds = predicate.timeBounds();
+        if (bounds.size() >= 2) {
+            policyData.setTimeWindowStart(bounds.first());
+            policyData.setTimeWindowEnd(bounds.last());
+        }
+
+        // Display name of the grant: the first group a subject must hold for the first operation
+        policyData.grantPredicate(policyData.getOperations().get(0)).clauses().stream()
+                .flatMap(clause -> clause.allOf().stream())
+                .findFirst()
+                .ifPresent(policyData::setRequiredGroup);
+    }
+}
@@ -0,0 +1,442 @@
+package digital.alf.cells.physicalacesscontrolopa.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import digital.alf.cells.acl.AclMetrics;
+import digital.alf.cells.acl.ContentHash;
+import digital.alf.cells.physicalacesscontrolopa.config.OpaAclProperties;
+import digital.alf.cells.physicalacesscontrolopa.model.OpaEvalResult;
+import digital.alf.cells.physicalacesscontrolopa.model.OpaUserInfo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OpaCliExecutor backed by a single long-lived 'opa run --server' child process.
+ *
+ * At startup the child is launched on acl.opa.server.host:port, the configured policies
+ * (and optionally the employee directory as data.employees) are pushed once, and every
+ * decision afterwards is a POST to the REST data API:
+ *   POST /v1/data/physical_access_control/allow   {"input": <user file>}
+ *   ->  {"result": true}
+ *
+ * Compared to {@link OpaEvalProcessExecutor} this removes the per-call process spawn and
+ * policy compile. The JDK HttpClient keeps connections to the child alive and reuses them.
+ *
+ * Pushed modules and data are tracked by content hash: a policy or employee file edited on
+ * the classpath is pushed again before it is next used, so decisions (and the decision cache,
+ * see {@link #dataVersion()}) always follow the current files.
+ *
+ * The child is supervised: when it exits unexpectedly it is restarted after
+ * acl.opa.server.restart-delay and all policies are pushed again. With
+ * acl.opa.server.launch=false no child is started and an existing server is used instead;
+ * its restarts cannot be observed, so after an undefined result the executor asks the server
+ * whether it still has the pushed modules; lost modules are pushed again and the query retried
+ * once (see {@link #queryModules}).
+ *
+ * Selected when acl.opa.executor=server.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(prefix = "acl.opa", name = "executor", havingValue = "server")
+public class OpaServerExecutor implements OpaCliExecutor, SmartLifecycle, DisposableBean {
+
+    /**
+     * Starts the child process; replaced in tests.
+     */
+    @FunctionalInterface
+    interface ProcessLauncher {
+        Process launch(List<String> command) throws IOException;
+    }
+
+    private static final String EMPLOYEE_DATA_PATH = "employees";
+
+    private final ObjectMapper objectMapper;
+    private final OpaAclProperties.Server settings;
+    private final ProcessLauncher launcher;
+    private final HttpClient httpClient;
+    private final URI baseUri;
+
+    /** Content hash of every module pushed to the current server, by policy id. */
+    private final Map<String, String> pushedPolicies = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService supervisor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "opa-server-supervisor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile String pushedEmployeeData;
+    private volatile ScheduledFuture<?> pendingRestart;
+    private volatile Process child;
+    private volatile boolean running;
+
+    @Autowired
+    public OpaServerExecutor(ObjectMapper objectMapper, OpaAclProperties properties) {
+        this(objectMapper, properties, command -> new ProcessBuilder(command).inheritIO().start());
+    }
+
+    OpaServerExecutor(ObjectMapper objectMapper, OpaAclProperties properties, ProcessLauncher launcher) {
+        this.objectMapper = objectMapper;
+        this.settings = properties.getServer();
+        this.launcher = launcher;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(settings.getRequestTimeout())
+                .build();
+        this.baseUri = URI.create("http://" + settings.getHost() + ":" + settings.getPort());
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        try {
+            startServer();
+        } catch (IOException e) {
+            destroyChild();
+            throw new UncheckedIOException("Failed to start OPA server at " + baseUri, e);
+        }
+        running = true;
+        log.info("OPA server ready at {} ({} policies loaded)", baseUri, pushedPolicies.size());
+    }
+
+    /**
+     * Stops the child and cancels a pending restart. The supervisor itself lives until the bean
+     * is destroyed, so a later {@link #start()} is supervised again.
+     */
+    @Override
+    public synchronized void stop() {
+        running = false;
+        ScheduledFuture<?> restart = pendingRestart;
+        if (restart != null) {
+            restart.cancel(false);
+        }
+        destroyChild();
+    }
+
+    @Override
+    public void destroy() {
+        stop();
+        supervisor.shutdownNow();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public OpaEvalResult evaluate(String policyPath, String userInfoPath, String packageName) throws IOException {
+        String userInfoJson;
+        try (InputStream inputStream = new ClassPathResource(userInfoPath).getInputStream()) {
+            userInfoJson = new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+
+        return queryModules(Map.of(policyPath, readPolicy(policyPath)),
+                "data." + packageName + ".allow", "{\"input\":" + userInfoJson + "}");
+    }
+
+    @Override
+    public OpaEvalResult evaluateBatch(String policyPath, String packageName, List<OpaUserInfo> users) throws IOException {
+        Map<String, String> modules = new LinkedHashMap<>();
+        modules.put(policyPath, readPolicy(policyPath));
+        modules.put("acl_batch/" + packageName, OpaCliExecutor.batchWrapperModule(packageName));
+
+        String body = objectMapper.writeValueAsString(Map.of("input", OpaCliExecutor.batchInput(users)));
+        return queryModules(modules, OpaCliExecutor.batchQuery(packageName), body);
+    }
+
+    /**
+     * Content hash of the employee data pushed as data.employees, pushing the current file
+     * first when it changed.
+     */
+    @Override
+    public String dataVersion() throws IOException {
+        return ensureEmployeeData();
+    }
+
+    /**
+     * Launches (if configured) and waits for the server, then pushes policies and data.
+     */
+    private void startServer() throws IOException {
+        pushedPolicies.clear();
+        pushedEmployeeData = null;
+        if (settings.isLaunch()) {
+            List<String> command = List.of(
+                    settings.getBinary(), "run", "--server",
+                    "--addr", settings.getHost() + ":" + settings.getPort(),
+                    "--log-level", "error");
+            log.info("Starting OPA server: {}", String.join(" ", command));
+            Process process = launcher.launch(command);
+            AclMetrics.cliSpawned(AclMetrics.OPA);
+            child = process;
+            process.onExit().thenRun(() -> onChildExit(process));
+        }
+
+        awaitHealthy();
+
+        for (String policyPath : settings.getPolicies()) {
+            ensureModule(policyPath, readPolicy(policyPath));
+        }
+        ensureEmployeeData();
+    }
+
+    /**
+     * PUTs the employee data to data.employees unless its current content was already pushed.
+     *
+     * @return content hash of the pushed data; empty when no employee data is configured
+     */
+    private synchronized String ensureEmployeeData() throws IOException {
+        if (settings.getEmployeeData().isBlank()) {
+            return "";
+        }
+        byte[] data;
+        try (InputStream inputStream = new ClassPathResource(settings.getEmployeeData()).getInputStream()) {
+            data = inputStream.readAllBytes();
+        }
+        String version = ContentHash.sha256(data);
+        if (!version.equals(pushedEmployeeData)) {
+            send(HttpRequest.newBuilder(baseUri.resolve("/v1/data/" + EMPLOYEE_DATA_PATH))
+                    .header("Content-Type", "application/json")
+                    .PUT(HttpRequest.BodyPublishers.ofByteArray(data)));
+            pushedEmployeeData = version;
+            log.info("Pushed {} to data.{}", settings.getEmployeeData(), EMPLOYEE_DATA_PATH);
+        }
+        return version;
+    }
+
+    private void onChildExit(Process process) {
+        AclMetrics.cliExited(AclMetrics.OPA, process.exitValue());
+        if (!running || process != child) {
+            return;
+        }
+        log.warn("OPA server exited with code {}; restarting in {}", process.exitValue(), settings.getRestartDelay());
+        scheduleRestart();
+    }
+
+    private void scheduleRestart() {
+        if (supervisor.isShutdown()) {
+            return;
+        }
+        pendingRestart = supervisor.schedule(this::restart, settings.getRestartDelay().toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void restart() {
+        if (!running) {
+            return;
+        }
+        try {
+            startServer();
+            log.info("OPA server restarted at {}", baseUri);
+        } catch (IOException e) {
+            log.error("Failed to restart OPA server at {}", baseUri, e);
+            Process process = child;
+            if (process != null && process.isAlive()) {
+                // onExit triggers the next attempt
+                process.destroy();
+            } else {
+                scheduleRestart();
+            }
+        }
+    }
+
+    private void awaitHealthy() throws IOException {
+        long deadline = System.nanoTime() + settings.getStartupTimeout().toNanos();
+        HttpRequest request = HttpRequest.newBuilder(baseUri.resolve("/health"))
+                .timeout(settings.getRequestTimeout())
+                .GET()
+                .build();
+
+        while (true) {
+            Process process = child;
+            if (settings.isLaunch() && process != null && !process.isAlive()) {
+                throw new IOException("OPA server exited with code " + process.exitValue() + " during startup");
+            }
+            try {
+                if (httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                log.debug("OPA server not reachable yet: {}", e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for OPA server", e);
+            }
+            if (System.nanoTime() > deadline) {
+                throw new IOException("OPA server did not become healthy within " + settings.getStartupTimeout());
+            }
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for OPA server", e);
+            }
+        }
+    }
+
+    private static String readPolicy(String policyPath) throws IOException {
+        try (InputStream inputStream = new ClassPathResource(policyPath).getInputStream()) {
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Pushes the modules a query needs (see {@link #ensureModule}) and runs the query.
+     *
+     * The server answers an undefined result both for an undefined rule and for a module it
+     * does not have, e.g. after an unsupervised server restarted. After an undefined result the
+     * modules are therefore looked up with GET /v1/policies/{id}. Lost ones and the employee
+     * data are pushed again and the query is retried once; with all modules loaded the
+     * undefined result stands and denies, as with 'opa eval'.
+     *
+     * @param modules Rego modules by policy id, the queried one first
+     * @throws IOException if a push, a lookup or the query fails
+     */
+    private OpaEvalResult queryModules(Map<String, String> modules, String query, String body) throws IOException {
+        for (Map.Entry<String, String> module : modules.entrySet()) {
+            ensureModule(module.getKey(), module.getValue());
+        }
+        OpaEvalResult result = query(query, body);
+        if (!result.getResult().isEmpty()) {
+            return result;
+        }
+
+        List<String> lost = new ArrayList<>();
+        for (String id : modules.keySet()) {
+            if (!isLoaded(id)) {
+                lost.add(id);
+            }
+        }
+        if (lost.isEmpty()) {
+            return result;
+        }
+
+        log.warn("OPA server lost policies {}; pushing them and the employee data again", lost);
+        for (String id : lost) {
+            pushedPolicies.remove(id);
+            ensureModule(id, modules.get(id));
+        }
+        pushedEmployeeData = null;
+        ensureEmployeeData();
+        return query(query, body);
+    }
+
+    /**
+     * Whether the server has a module: GET /v1/policies/{id} answers 404 for unknown ids.
+     */
+    private boolean isLoaded(String id) throws IOException {
+        HttpResponse<String> response = exchange(HttpRequest.newBuilder(baseUri.resolve("/v1/policies/" + id)).GET());
+        if (response.statusCode() == 404) {
+            return false;
+        }
+        checkStatus(response);
+        return true;
+    }
+
+    /**
+     * PUTs a rego module to /v1/policies/{id} unless the same content was already pushed to the
+     * current server.
+     */
+    private void ensureModule(String id, String module) throws IOException {
+        String version = ContentHash.sha256(module);
+        if (version.equals(pushedPolicies.get(id))) {
+            return;
+        }
+        send(HttpRequest.newBuilder(baseUri.resolve("/v1/policies/" + id))
+                .header("Content-Type", "text/plain")
+                .PUT(HttpRequest.BodyPublishers.ofString(module)));
+        pushedPolicies.put(id, version);
+        log.debug("Pushed policy {} to OPA server", id);
+    }
+
+    /**
+     * POSTs the input to the data API and wraps the result like 'opa eval' output.
+     * An absent "result" field means the rule is undefined and yields an empty result.
+     */
+    private OpaEvalResult query(String query, String body) throws IOException {
+        String path = "/v1/" + query.replace('.', '/');
+        String response = send(HttpRequest.newBuilder(baseUri.resolve(path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body)));
+
+        JsonNode result;
+        try {
+            result = objectMapper.readTree(response).get("result");
+        } catch (Exception e) {
+            AclMetrics.cliParseFailed(AclMetrics.OPA);
+            log.error("Failed to parse OPA server response: {}", response, e);
+            throw new IOException("Failed to parse OPA server response", e);
+        }
+        if (result == null) {
+            return new OpaEvalResult(List.of());
+        }
+
+        OpaEvalResult.Expression expression = new OpaEvalResult.Expression(
+                objectMapper.treeToValue(result, Object.class), query, new OpaEvalResult.Location(1, 1));
+        return new OpaEvalResult(List.of(new OpaEvalResult.ResultItem(List.of(expression))));
+    }
+
+    private String send(HttpRequest.Builder builder) throws IOException {
+        HttpResponse<String> response = exchange(builder);
+        checkStatus(response);
+        return response.body();
+    }
+
+    private HttpResponse<String> exchange(HttpRequest.Builder builder) throws IOException {
+        HttpRequest request = builder.timeout(settings.getRequestTimeout()).build();
+        try {
+            return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while calling OPA server", e);
+        }
+    }
+
+    private static void checkStatus(HttpResponse<String> response) throws IOException {
+        if (response.statusCode() / 100 != 2) {
+            HttpRequest request = response.request();
+            throw new IOException("OPA server returned " + response.statusCode() + " for "
+                    + request.method() + " " + request.uri() + ": " + response.body());
+        }
+    }
+
+    private void destroyChild() {
+        Process process = child;
+        child = null;
+        if (process == null || !process.isAlive()) {
+            return;
+        }
+        process.destroy();
+        try {
+            if (!process.waitFor(5, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            process.destroyForcibly();
+        }
+    }
+}
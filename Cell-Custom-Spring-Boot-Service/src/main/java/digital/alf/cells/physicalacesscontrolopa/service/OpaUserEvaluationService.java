@@ -1,32 +1,84 @@
 package digital.alf.cells.physicalacesscontrolopa.service;
 
+import digital.alf.cells.acl.AclMetrics;
+import digital.alf.cells.acl.BoundedFanOut;
+import digital.alf.cells.acl.DecisionCache;
+import digital.alf.cells.acl.EquivalenceClasses;
+import digital.alf.cells.acl.PolicyCache;
+import digital.alf.cells.physicalacesscontrolopa.config.OpaAclProperties;
 import digital.alf.cells.physicalacesscontrolopa.model.OpaEvalResult;
 import digital.alf.cells.physicalacesscontrolopa.model.OpaUserInfo;
+import digital.alf.cells.physicalacesscontrolopa.model.RegoModule;
+import digital.alf.cells.physicalacesscontrolopa.model.RegoModule.Call;
+import digital.alf.cells.physicalacesscontrolopa.model.RegoModule.Ref;
+import digital.alf.cells.physicalacesscontrolopa.model.RegoModule.Scalar;
+import digital.alf.cells.physicalacesscontrolopa.model.RegoModule.SomeIn;
+import digital.alf.cells.physicalacesscontrolopa.model.RegoModule.Term;
+import digital.alf.cells.physicalacesscontrolopa.model.RegoModule.Var;
 import digital.alf.cells.physicalacesscontrolopa.parser.OpaUserInfoParser;
+import digital.alf.cells.physicalacesscontrolopa.parser.RegoParser;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
 import org.springframework.stereotype.Service;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
 
 /**
  * Service to evaluate users from the pip-users directory against an OPA policy.
  *
  * Equivalent of UserEvaluationService for the OPA engine.
  * Iterates over all JSON user files in classpath:physical-access-control-opa/pip-users/,
- * runs opa eval on each, and returns those for whom allow == true.
+ * evaluates each one and returns those for whom allow == true.
+ *
+ * The engine is selected with acl.opa.engine:
+ * - embedded (default): in-process rego evaluation, policy compiled once
+ * - cli: one 'opa eval' process per user file
+ * - cli-batch: one 'opa eval' process per chunk of acl.opa.batch-size users
+ * - wasm: policy compiled to Wasm once, evaluated in-process on pooled instances
+ *
+ * With acl.opa.concurrency != 1 the user files (or chunks) are evaluated on virtual threads,
+ * at most acl.opa.concurrency at a time. A user exceeding acl.opa.user-timeout is skipped;
+ * exceeding acl.opa.request-timeout cancels all outstanding work and fails the evaluation.
+ * Either way the returned list keeps the order of the user files.
+ *
+ * With acl.opa.memoize (default) users are grouped by their decision-relevant input (sorted
+ * groups, operation, resource, admission time bucket) and only one user per group is
+ * evaluated; see {@link EquivalenceClasses}. Engine calls then scale with the number of
+ * distinct group combinations rather than with headcount. Decisions are also kept across
+ * requests in the {@link DecisionCache}, so only users whose input or policy changed since an
+ * earlier request reach the engine. Policies that read the clock (time.now_ns) decide
+ * differently over time for the same input and bypass the decision cache.
+ *
+ * Each evaluation is timed as acl.evaluation and its decisions counted as
+ * acl.evaluation.outcomes (see {@link AclMetrics}).
  */
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class OpaUserEvaluationService {
 
+    private static final String USERS_DIRECTORY = "physical-access-control-opa/pip-users/";
+
     private final OpaUserInfoParser userInfoParser;
     private final OpaCliExecutor cliExecutor;
+    private final OpaEmbeddedEvaluator embeddedEvaluator;
+    private final OpaWasmEvaluator wasmEvaluator;
+    private final OpaAclProperties properties;
+    private final DecisionCache decisionCache;
+    private final RegoParser regoParser;
+
+    private final PolicyCache<PolicyAnalysis> policyAnalyses = new PolicyCache<>();
 
     /**
      * Evaluates all users from the OPA pip-users directory against the given policy.
@@ -34,38 +86,304 @@ public class OpaUserEvaluationService {
      * @param policyPath  Path to the .rego file (relative to resources, e.g. "physical-access-control-opa/policy.rego")
      * @param packageName OPA package name extracted from the rego file (e.g. "physical_access_control")
      * @return List of OpaUserInfo objects for users where allow == true
+     * @throws IOException if the user files cannot be listed or the request deadline passes
      */
     public List<OpaUserInfo> evaluateUsersForAccess(String policyPath, String packageName) throws IOException {
-        List<OpaUserInfo> qualifiedUsers = new ArrayList<>();
+        return AclMetrics.timeEvaluation(AclMetrics.OPA, () -> evaluateUsers(policyPath, packageName));
+    }
 
+    private List<OpaUserInfo> evaluateUsers(String policyPath, String packageName) throws IOException {
         PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
-        Resource[] userResources = resolver.getResources("classpath:physical-access-control-opa/pip-users/*.json");
+        Resource[] userResources = resolver.getResources("classpath:" + USERS_DIRECTORY + "*.json");
 
-        log.info("Found {} OPA user files to evaluate", userResources.length);
+        log.info("Found {} OPA user files to evaluate with engine {} (concurrency {})",
+                userResources.length, properties.getEngine(), properties.effectiveConcurrency());
 
+        List<UserFile> users = new ArrayList<>();
         for (Resource userResource : userResources) {
             try {
-                OpaUserInfo userInfo = userInfoParser.parse(userResource.getInputStream());
-                String username = userInfo.getUsername();
-                String userFilePath = "physical-access-control-opa/pip-users/" + userResource.getFilename();
+                users.add(new UserFile(userInfoParser.parse(userResource.getInputStream()),
+                        USERS_DIRECTORY + userResource.getFilename()));
+            } catch (Exception e) {
+                log.error("Error parsing user file: {}", userResource.getFilename(), e);
+            }
+        }
+
+        PolicyAnalysis analysis = analyze(policyPath);
+        Function<UserFile, Object> signature = properties.isMemoize() && analysis.readsOnlySignatureAttributes()
+                ? user -> signature(user.userInfo())
+                : user -> null;
+        EquivalenceClasses.Evaluator<UserFile, Boolean> engine =
+                properties.getEngine() == OpaAclProperties.Engine.CLI_BATCH
+                        ? uncached -> evaluateInBatches(policyPath, packageName, uncached)
+                        : uncached -> evaluateEach(policyPath, packageName, uncached);
+        String dataVersion = usesCliExecutor() ? cliExecutor.dataVersion() : "";
+        List<Boolean> decisions = EquivalenceClasses.evaluate(users, signature, analysis.readsClock()
+                ? engine
+                : representatives -> decisionCache.evaluate(policyPath, representatives,
+                        user -> cacheInput(packageName, dataVersion, user), engine));
+
+        List<OpaUserInfo> qualifiedUsers = new ArrayList<>();
+        long failed = 0;
+        for (int i = 0; i < users.size(); i++) {
+            OpaUserInfo userInfo = users.get(i).userInfo();
+            if (Boolean.TRUE.equals(decisions.get(i))) {
+                log.info("User {} PASSED OPA evaluation (allow = true)", userInfo.getUsername());
+                qualifiedUsers.add(userInfo);
+            } else {
+                log.info("User {} FAILED OPA evaluation (allow = false)", userInfo.getUsername());
+                if (decisions.get(i) == null) {
+                    failed++;
+                }
+            }
+        }
+        AclMetrics.evaluationOutcomes(AclMetrics.OPA, qualifiedUsers.size(),
+                users.size() - qualifiedUsers.size() - failed, failed);
+        return qualifiedUsers;
+    }
+
+    /**
+     * A parsed user file and its path relative to the classpath (the input of the cli engines).
+     */
+    private record UserFile(OpaUserInfo userInfo, String path) {
+    }
+
+    /**
+     * Decision-relevant attributes of a user: users with equal signatures get the same decision
+     * from any policy accepted by {@link #readsOnlySignatureAttributes(RegoModule)}.
+     */
+    private record Signature(List<String> groups, String operation, OpaUserInfo.Resource resource, Object admissionTime) {
+    }
 
-                log.debug("Evaluating user: {} from file: {}", username, userResource.getFilename());
+    private Signature signature(OpaUserInfo userInfo) {
+        OpaUserInfo.Request request = userInfo.getRequest();
+        if (request == null) {
+            return new Signature(List.of(), null, null, null);
+        }
+        return new Signature(
+                EquivalenceClasses.sorted(request.getUserInfo() != null ? request.getUserInfo().getGroups() : null),
+                request.getOperation(),
+                request.getResource(),
+                admissionTimeBucket(request.getAdmissionTime()));
+    }
 
-                OpaEvalResult result = cliExecutor.evaluate(policyPath, userFilePath, packageName);
+    private Object admissionTimeBucket(String admissionTime) {
+        return DecisionCache.timeBucket(admissionTime, properties.getAdmissionTimeBucket());
+    }
 
-                if (result.isAllow()) {
-                    log.info("User {} PASSED OPA evaluation (allow = true)", username);
-                    qualifiedUsers.add(userInfo);
-                } else {
-                    log.info("User {} FAILED OPA evaluation (allow = false)", username);
+    /**
+     * Decision cache input of a user: the OPA input without the admission time and operation,
+     * which the cache keys on separately. The per-file cli engine reads the raw file, so its
+     * content is part of the input too, as is the version of the data the cli executor
+     * evaluates against (data.employees on an OPA server).
+     */
+    private DecisionCache.Input cacheInput(String packageName, String dataVersion, UserFile user) {
+        OpaUserInfo.Request request = user.userInfo().getRequest();
+        if (request == null) {
+            return new DecisionCache.Input(List.of(packageName, fileContent(user), dataVersion), null, null);
+        }
+        OpaUserInfo.Request timeless = new OpaUserInfo.Request(null, null, request.getResource(), request.getUserInfo());
+        return new DecisionCache.Input(List.of(packageName, new OpaUserInfo(timeless), fileContent(user), dataVersion),
+                request.getOperation(), request.getAdmissionTime());
+    }
+
+    private boolean usesCliExecutor() {
+        return properties.getEngine() == OpaAclProperties.Engine.CLI
+                || properties.getEngine() == OpaAclProperties.Engine.CLI_BATCH;
+    }
+
+    private String fileContent(UserFile user) {
+        if (properties.getEngine() != OpaAclProperties.Engine.CLI) {
+            return "";
+        }
+        try {
+            return decisionCache.contentHash(user.path());
+        } catch (IOException e) {
+            // Unreadable file: key on the path; the cli engine fails on it and nothing is cached
+            return user.path();
+        }
+    }
+
+    /**
+     * What the memoization and the decision cache need to know about a policy.
+     *
+     * @param readsOnlySignatureAttributes see {@link #readsOnlySignatureAttributes(RegoModule)}
+     * @param readsClock                   whether the policy calls time.now_ns
+     */
+    private record PolicyAnalysis(boolean readsOnlySignatureAttributes, boolean readsClock) {
+    }
+
+    /**
+     * Analyzes the policy, once per version of its content. A policy that cannot be analyzed
+     * is evaluated for every user without the decision cache.
+     */
+    private PolicyAnalysis analyze(String policyPath) {
+        try {
+            return policyAnalyses.get(policyPath, content -> {
+                RegoModule module = regoParser.parse(new ByteArrayInputStream(content));
+                PolicyAnalysis analysis = new PolicyAnalysis(readsOnlySignatureAttributes(module), readsClock(module));
+                if (!analysis.readsOnlySignatureAttributes()) {
+                    log.info("Policy {} reads user-specific input; evaluating every user", policyPath);
+                }
+                if (analysis.readsClock()) {
+                    log.info("Policy {} reads the clock; not caching its decisions", policyPath);
                 }
+                return analysis;
+            });
+        } catch (IOException e) {
+            log.warn("Cannot analyze policy {} for memoization, evaluating every user: {}", policyPath, e.getMessage());
+            return new PolicyAnalysis(false, true);
+        }
+    }
 
-            } catch (Exception e) {
-                log.error("Error evaluating user from file: {}", userResource.getFilename(), e);
-                // Continue with next user
+    /**
+     * Whether the policy reads only signature attributes of the input: request.operation,
+     * request.resource, request.admissionTime and request.userInfo.groups (as a whole, so
+     * group order does not matter). Policies that read the username, the uid or the input as
+     * a whole are evaluated per user, as are policies that bind group positions, e.g.
+     * {@code some i, g in input.request.userInfo.groups}.
+     */
+    static boolean readsOnlySignatureAttributes(RegoModule module) {
+        Set<Term> inputRefHeads = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Term> inputVars = new ArrayList<>();
+        boolean[] safe = {true};
+        for (RegoModule.Rule rule : module.rules()) {
+            RegoModule.forEachTerm(rule, term -> {
+                if (term instanceof Ref ref && ref.head() instanceof Var(String head) && head.equals("input")) {
+                    inputRefHeads.add(ref.head());
+                    safe[0] &= isSignaturePath(ref.path());
+                } else if (term instanceof SomeIn(Term key, Term value, Term collection) && bindsPosition(key)) {
+                    // A local variable may hold the groups too
+                    safe[0] &= !(collection instanceof Var || readsInput(collection));
+                } else if (term instanceof Var(String name) && name.equals("input")) {
+                    inputVars.add(term);
+                }
+            });
+        }
+        return safe[0] && inputRefHeads.containsAll(inputVars);
+    }
+
+    /**
+     * Whether the key of a {@code some key, value in collection} binds a variable (not {@code _}).
+     */
+    private static boolean bindsPosition(Term key) {
+        return key != null && !(key instanceof Var(String name) && name.equals("_"));
+    }
+
+    private static boolean readsInput(Term term) {
+        boolean[] input = {false};
+        RegoModule.forEachTerm(term, t -> input[0] |= t instanceof Var(String name) && name.equals("input"));
+        return input[0];
+    }
+
+    /**
+     * Whether the policy calls time.now_ns, so its decisions change without its input changing.
+     */
+    static boolean readsClock(RegoModule module) {
+        boolean[] clock = {false};
+        for (RegoModule.Rule rule : module.rules()) {
+            RegoModule.forEachTerm(rule, term -> clock[0] |= term instanceof Call call && call.function().equals("time.now_ns"));
+        }
+        return clock[0];
+    }
+
+    private static boolean isSignaturePath(List<Term> path) {
+        List<String> names = new ArrayList<>();
+        for (Term element : path) {
+            names.add(element instanceof Scalar(String name) ? name : null);
+        }
+        if (names.size() < 2 || !"request".equals(names.get(0)) || names.get(1) == null) {
+            return false;
+        }
+        return switch (names.get(1)) {
+            case "operation", "resource", "admissionTime" -> true;
+            case "userInfo" -> names.equals(List.of("request", "userInfo", "groups"));
+            default -> false;
+        };
+    }
+
+    /**
+     * Evaluates each user on its own (embedded, wasm or one 'opa eval' per user file).
+     */
+    private List<Boolean> evaluateEach(String policyPath, String packageName, List<UserFile> users) throws IOException {
+        List<Callable<Boolean>> tasks = new ArrayList<>();
+        for (UserFile user : users) {
+            tasks.add(() -> evaluateUser(policyPath, packageName, user));
+        }
+        return runAll(tasks);
+    }
+
+    /**
+     * Evaluates a single user.
+     *
+     * @return whether allow == true; null if the user could not be evaluated (denied, not cached)
+     */
+    private Boolean evaluateUser(String policyPath, String packageName, UserFile user) {
+        try {
+            OpaUserInfo userInfo = user.userInfo();
+            log.debug("Evaluating user: {} from file: {}", userInfo.getUsername(), user.path());
+
+            OpaEvalResult result = switch (properties.getEngine()) {
+                case EMBEDDED -> embeddedEvaluator.evaluate(policyPath, packageName, userInfo);
+                case WASM -> wasmEvaluator.evaluate(policyPath, packageName, userInfo);
+                case CLI, CLI_BATCH -> cliExecutor.evaluate(policyPath, user.path(), packageName);
+            };
+            return result.isAllow();
+
+        } catch (Exception e) {
+            log.error("Error evaluating user from file: {}", user.path(), e);
+            // Continue with next user
+        }
+        return null;
+    }
+
+    /**
+     * Evaluates the users in chunks with one 'opa eval' call per chunk.
+     * A failing chunk is logged and its users denied (null), like a failing user file in per-user mode.
+     */
+    private List<Boolean> evaluateInBatches(String policyPath, String packageName, List<UserFile> users)
+            throws IOException {
+        List<OpaUserInfo> userInfos = users.stream().map(UserFile::userInfo).toList();
+
+        int batchSize = Math.max(1, properties.getBatchSize());
+        List<Callable<List<Boolean>>> tasks = new ArrayList<>();
+        for (int from = 0; from < userInfos.size(); from += batchSize) {
+            List<OpaUserInfo> chunk = userInfos.subList(from, Math.min(from + batchSize, userInfos.size()));
+            int start = from;
+            tasks.add(() -> evaluateChunk(policyPath, packageName, chunk, start));
+        }
+
+        List<Boolean> decisions = new ArrayList<>(users.size());
+        List<List<Boolean>> chunkResults = runAll(tasks);
+        for (int c = 0; c < chunkResults.size(); c++) {
+            List<Boolean> chunkResult = chunkResults.get(c);
+            int chunkSize = Math.min(batchSize, userInfos.size() - c * batchSize);
+            decisions.addAll(chunkResult != null ? chunkResult : Collections.nCopies(chunkSize, null));
+        }
+        return decisions;
+    }
+
+    private List<Boolean> evaluateChunk(String policyPath, String packageName, List<OpaUserInfo> chunk, int start) {
+        try {
+            Map<String, Boolean> decisions = cliExecutor.evaluateBatch(policyPath, packageName, chunk).getDecisions();
+
+            List<Boolean> chunkDecisions = new ArrayList<>(chunk.size());
+            for (int i = 0; i < chunk.size(); i++) {
+                chunkDecisions.add(decisions.getOrDefault(String.valueOf(i), false));
             }
+            return chunkDecisions;
+        } catch (Exception e) {
+            log.error("Error evaluating batch of {} users starting at index {}", chunk.size(), start, e);
+            return Collections.nCopies(chunk.size(), null);
         }
+    }
 
-        return qualifiedUsers;
+    /**
+     * Runs the tasks with the configured concurrency, user timeout and request deadline.
+     * See {@link BoundedFanOut}.
+     */
+    private <T> List<T> runAll(List<Callable<T>> tasks) throws IOException {
+        return BoundedFanOut.runAll(tasks, properties.effectiveConcurrency(),
+                properties.getUserTimeout(), properties.getRequestTimeout());
     }
 }
@@ -0,0 +1,200 @@
+package digital.alf.cells.physicalacesscontrolopa.service;
+
+import digital.alf.cells.acl.AclMetrics;
+import digital.alf.cells.acl.ContentHash;
+import digital.alf.cells.physicalacesscontrolopa.config.OpaAclProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Compiles rego policies to Wasm with 'opa build -t wasm' and caches the modules on disk.
+ *
+ * A module is named by the SHA-256 of the policy source and the entrypoint, so a policy is
+ * compiled once per version: later calls, and later application starts, read the cached file
+ * without running opa. The opa binary is only needed when a policy changes.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class OpaWasmCompiler {
+
+    private static final String BUNDLE_FILE = "bundle.tar.gz";
+    private static final String WASM_ENTRY = "policy.wasm";
+    private static final int TAR_BLOCK = 512;
+
+    private final OpaAclProperties properties;
+
+    /**
+     * Returns the Wasm module for an entrypoint of a policy, compiling it on a cache miss.
+     *
+     * @param policyPath Path to the .rego file (relative to the classpath)
+     * @param entrypoint Rule to export, as a slash-separated path (e.g. "physical_access_control/allow")
+     * @return the module bytes
+     * @throws IOException if the policy cannot be read or 'opa build' fails
+     */
+    public byte[] compile(String policyPath, String entrypoint) throws IOException {
+        byte[] source;
+        try (InputStream inputStream = new ClassPathResource(policyPath).getInputStream()) {
+            source = inputStream.readAllBytes();
+        }
+
+        String key = cacheKey(source, entrypoint);
+        Path cacheDirectory = cacheDirectory();
+        Path cached = cacheDirectory.resolve(key + ".wasm");
+        if (Files.isRegularFile(cached)) {
+            log.debug("Using cached Wasm module {} for {}", cached, policyPath);
+            return Files.readAllBytes(cached);
+        }
+
+        byte[] wasm = build(source, entrypoint);
+
+        // Write then rename so concurrent starts never read a partial module
+        Files.createDirectories(cacheDirectory);
+        Path temp = Files.createTempFile(cacheDirectory, key, ".tmp");
+        try {
+            Files.write(temp, wasm);
+            Files.move(temp, cached, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        log.info("Compiled {} ({}) to Wasm: {} bytes, cached as {}", policyPath, entrypoint, wasm.length, cached);
+        return wasm;
+    }
+
+    Path cacheDirectory() {
+        String configured = properties.getWasm().getCacheDirectory();
+        return configured == null || configured.isBlank()
+                ? Path.of(System.getProperty("java.io.tmpdir"), "opa-wasm")
+                : Path.of(configured);
+    }
+
+    /**
+     * Hex SHA-256 of the policy source and the entrypoint.
+     */
+    static String cacheKey(byte[] source, String entrypoint) {
+        return ContentHash.sha256(source, new byte[]{0}, entrypoint.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private byte[] build(byte[] source, String entrypoint) throws IOException {
+        OpaAclProperties.Wasm settings = properties.getWasm();
+        Path workDirectory = Files.createTempDirectory("opa-wasm-build");
+        try {
+            Files.write(workDirectory.resolve("policy.rego"), source);
+
+            List<String> command = List.of(settings.getBinary(), "build", "-t", "wasm",
+                    "-e", entrypoint, "-o", BUNDLE_FILE, "policy.rego");
+            log.debug("Executing: {}", String.join(" ", command));
+
+            Process process = new ProcessBuilder(command)
+                    .directory(workDirectory.toFile())
+                    .redirectErrorStream(true)
+                    .start();
+            AclMetrics.cliSpawned(AclMetrics.OPA);
+
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            Thread drain = Thread.ofVirtual().start(() -> {
+                try (InputStream inputStream = process.getInputStream()) {
+                    inputStream.transferTo(output);
+                } catch (IOException ignored) {
+                    // process killed; exit code is reported below
+                }
+            });
+
+            long timeoutMillis = settings.getCompileTimeout().toMillis();
+            if (!process.waitFor(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                process.destroyForcibly();
+                throw new IOException("opa build timed out after " + timeoutMillis + " ms");
+            }
+            drain.join();
+
+            AclMetrics.cliExited(AclMetrics.OPA, process.exitValue());
+            if (process.exitValue() != 0) {
+                throw new IOException("opa build failed with exit code " + process.exitValue() + ": "
+                        + output.toString(StandardCharsets.UTF_8).trim());
+            }
+
+            try (InputStream bundle = Files.newInputStream(workDirectory.resolve(BUNDLE_FILE))) {
+                return extractFromTarGz(bundle, WASM_ENTRY);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while running opa build", e);
+        } finally {
+            FileSystemUtils.deleteRecursively(workDirectory);
+        }
+    }
+
+    /**
+     * Reads one regular file from a gzipped tar archive (the format of OPA bundles).
+     *
+     * @param fileName name of the entry; leading "/" or "./" is ignored on both sides
+     * @throws IOException if the archive is malformed or does not contain the file
+     */
+    static byte[] extractFromTarGz(InputStream inputStream, String fileName) throws IOException {
+        String wanted = stripLeadingSlash(fileName);
+        try (InputStream tar = new GZIPInputStream(inputStream)) {
+            byte[] header = new byte[TAR_BLOCK];
+            while (true) {
+                int read = tar.readNBytes(header, 0, TAR_BLOCK);
+                if (read == 0 || header[0] == 0) {
+                    break;
+                }
+                if (read < TAR_BLOCK) {
+                    throw new IOException("Truncated tar header");
+                }
+
+                String name = headerString(header, 0, 100);
+                String prefix = headerString(header, 345, 155);
+                if (!prefix.isEmpty()) {
+                    name = prefix + "/" + name;
+                }
+                long size;
+                try {
+                    size = Long.parseLong(headerString(header, 124, 12).trim(), 8);
+                } catch (NumberFormatException e) {
+                    throw new IOException("Invalid tar entry size for " + name, e);
+                }
+                byte type = header[156];
+
+                if ((type == '0' || type == 0) && stripLeadingSlash(name).equals(wanted)) {
+                    byte[] content = tar.readNBytes(Math.toIntExact(size));
+                    if (content.length < size) {
+                        throw new IOException("Truncated tar entry " + name);
+                    }
+                    return content;
+                }
+                tar.skipNBytes((size + TAR_BLOCK - 1) / TAR_BLOCK * TAR_BLOCK);
+            }
+        }
+        throw new IOException(fileName + " not found in bundle");
+    }
+
+    private static String headerString(byte[] header, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && header[end] != 0) {
+            end++;
+        }
+        return new String(header, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    private static String stripLeadingSlash(String name) {
+        if (name.startsWith("./")) {
+            return name.substring(2);
+        }
+        return name.startsWith("/") ? name.substring(1) : name;
+    }
+}
@@ -0,0 +1,80 @@
+package digital.alf.cells.physicalacesscontrolopa.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import digital.alf.cells.acl.PolicyCache;
+import digital.alf.cells.physicalacesscontrolopa.config.OpaAclProperties;
+import digital.alf.cells.physicalacesscontrolopa.model.OpaEvalResult;
+import digital.alf.cells.physicalacesscontrolopa.model.OpaUserInfo;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Evaluates OPA policies compiled to Wasm, with OPA's own semantics but without a process per call.
+ *
+ * Each (policy, package) is compiled once by {@link OpaWasmCompiler} into an {@link OpaWasmPolicy}
+ * exporting <package>/allow and cached by the policy's content hash (see {@link PolicyCache});
+ * its instance pool holds acl.opa.wasm.pool-size instances (the effective concurrency when 0),
+ * so parallel evaluations of one request do not queue.
+ *
+ * The result is wrapped in an OpaEvalResult shaped like the CLI output, so callers can
+ * switch engines without changing how decisions are read.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class OpaWasmEvaluator {
+
+    private final OpaWasmCompiler compiler;
+    private final ObjectMapper objectMapper;
+    private final OpaAclProperties properties;
+
+    private final Map<String, PolicyCache<OpaWasmPolicy>> policies = new ConcurrentHashMap<>();
+
+    /**
+     * Evaluates data.<packageName>.allow for the given user.
+     *
+     * @param policyPath  Path to the .rego file (relative to the classpath)
+     * @param packageName OPA package name (e.g. "physical_access_control")
+     * @param userInfo    OPA input document
+     * @return OpaEvalResult equivalent to the CLI output; empty result if allow is undefined
+     * @throws IOException if the policy cannot be compiled or evaluated
+     */
+    public OpaEvalResult evaluate(String policyPath, String packageName, OpaUserInfo userInfo) throws IOException {
+        String entrypoint = packageName.replace('.', '/') + "/allow";
+        OpaWasmPolicy policy = load(policyPath, entrypoint);
+
+        JsonNode resultSet = objectMapper.readTree(
+                policy.evaluate(entrypoint, objectMapper.writeValueAsString(userInfo)));
+        if (resultSet.isEmpty()) {
+            return new OpaEvalResult(List.of());
+        }
+
+        Object value = objectMapper.treeToValue(resultSet.get(0).get("result"), Object.class);
+        OpaEvalResult.Expression expression = new OpaEvalResult.Expression(
+                value, "data." + packageName + ".allow", new OpaEvalResult.Location(1, 1));
+        return new OpaEvalResult(List.of(new OpaEvalResult.ResultItem(List.of(expression))));
+    }
+
+    /**
+     * Returns the compiled policy for an entrypoint, compiling and instantiating it on first use
+     * of the policy's current content.
+     */
+    public OpaWasmPolicy load(String policyPath, String entrypoint) throws IOException {
+        PolicyCache<OpaWasmPolicy> versions = policies.computeIfAbsent(entrypoint, e -> new PolicyCache<>());
+        return versions.get(policyPath, content -> {
+            int poolSize = properties.getWasm().getPoolSize() > 0
+                    ? properties.getWasm().getPoolSize()
+                    : properties.effectiveConcurrency();
+            OpaWasmPolicy loaded = new OpaWasmPolicy(compiler.compile(policyPath, entrypoint), poolSize, objectMapper);
+            log.info("Loaded Wasm policy {} ({}), pool of {} instances", policyPath, entrypoint, poolSize);
+            return loaded;
+        });
+    }
+}
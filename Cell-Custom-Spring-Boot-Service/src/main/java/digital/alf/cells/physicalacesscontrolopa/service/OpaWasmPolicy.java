@@ -0,0 +1,314 @@
+package digital.alf.cells.physicalacesscontrolopa.service;
+
+import com.dylibso.chicory.runtime.ByteArrayMemory;
+import com.dylibso.chicory.runtime.ExportFunction;
+import com.dylibso.chicory.runtime.HostFunction;
+import com.dylibso.chicory.runtime.ImportMemory;
+import com.dylibso.chicory.runtime.ImportValues;
+import com.dylibso.chicory.runtime.Instance;
+import com.dylibso.chicory.runtime.Memory;
+import com.dylibso.chicory.wasm.ChicoryException;
+import com.dylibso.chicory.wasm.Parser;
+import com.dylibso.chicory.wasm.WasmModule;
+import com.dylibso.chicory.wasm.types.FunctionType;
+import com.dylibso.chicory.wasm.types.MemoryImport;
+import com.dylibso.chicory.wasm.types.MemoryLimits;
+import com.dylibso.chicory.wasm.types.ValType;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * A policy compiled with 'opa build -t wasm', evaluated in the JVM on a pool of instances.
+ *
+ * Implements the host side of the OPA Wasm ABI (version 1.2+, single-call opa_eval):
+ * - env.memory is provided by the host, sized from the module's import
+ * - opa_abort fails the evaluation, opa_println is logged
+ * - opa_builtin0..4 dispatch to the builtins the module names in its builtins() map; the ones
+ *   {@link RegoInterpreter} supports are available, any other fails the evaluation
+ *
+ * The module is parsed once and shared. Instances are not thread-safe, so each evaluation
+ * borrows one: at most poolSize exist, created on demand and returned after use. An instance
+ * whose evaluation failed is discarded rather than returned, since its heap may be corrupt.
+ */
+@Slf4j
+public final class OpaWasmPolicy {
+
+    private static final String ENV = "env";
+    private static final int PAGE_SIZE = 65536;
+    private static final int MAX_BUILTIN_ARITY = 4;
+    private static final List<String> REQUIRED_EXPORTS = List.of(
+            "opa_eval", "opa_malloc", "opa_json_parse", "opa_json_dump", "opa_heap_ptr_get", "builtins", "entrypoints");
+
+    private final WasmModule module;
+    private final int initialPages;
+    private final ObjectMapper objectMapper;
+    private final Semaphore permits;
+    private final Queue<PolicyInstance> idle = new ConcurrentLinkedQueue<>();
+    private final Map<String, Integer> entrypoints;
+
+    /**
+     * Parses the module and creates its first instance.
+     *
+     * @param wasm     module produced by 'opa build -t wasm'
+     * @param poolSize maximum number of instances, i.e. of concurrent evaluations
+     * @throws IOException if the module is invalid or does not implement the OPA ABI
+     */
+    public OpaWasmPolicy(byte[] wasm, int poolSize, ObjectMapper objectMapper) throws IOException {
+        this.objectMapper = objectMapper;
+        this.permits = new Semaphore(Math.max(1, poolSize));
+        try {
+            this.module = Parser.parse(wasm);
+        } catch (ChicoryException e) {
+            throw new IOException("Invalid Wasm module: " + e.getMessage(), e);
+        }
+
+        this.initialPages = module.importSection().stream()
+                .filter(MemoryImport.class::isInstance)
+                .map(memory -> ((MemoryImport) memory).limits().initialPages())
+                .findFirst()
+                .orElseThrow(() -> new IOException("Wasm module does not import env.memory"));
+
+        List<String> exports = new ArrayList<>();
+        for (int i = 0; i < module.exportSection().exportCount(); i++) {
+            exports.add(module.exportSection().getExport(i).name());
+        }
+        List<String> missing = REQUIRED_EXPORTS.stream().filter(name -> !exports.contains(name)).toList();
+        if (!missing.isEmpty()) {
+            throw new IOException("Wasm module is not an OPA policy (ABI 1.2+), missing exports " + missing);
+        }
+
+        PolicyInstance first;
+        try {
+            first = new PolicyInstance();
+        } catch (RuntimeException e) {
+            throw new IOException("Cannot instantiate Wasm module: " + e.getMessage(), e);
+        }
+        this.entrypoints = first.entrypoints;
+        idle.add(first);
+    }
+
+    /**
+     * Entrypoints compiled into the module, e.g. "physical_access_control/allow", by id.
+     */
+    public Map<String, Integer> entrypoints() {
+        return entrypoints;
+    }
+
+    /**
+     * Evaluates an entrypoint against an input document, with empty data.
+     *
+     * @param entrypoint slash-separated rule path (e.g. "physical_access_control/allow")
+     * @param inputJson  input document as JSON
+     * @return the result set as JSON: [{"result": value}], or [] if the rule is undefined
+     * @throws IOException if the entrypoint does not exist or the evaluation fails
+     */
+    public String evaluate(String entrypoint, String inputJson) throws IOException {
+        Integer entrypointId = entrypoints.get(entrypoint);
+        if (entrypointId == null) {
+            throw new IOException("Entrypoint " + entrypoint + " not compiled into Wasm module; available: "
+                    + entrypoints.keySet());
+        }
+
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a Wasm instance", e);
+        }
+
+        PolicyInstance instance = idle.poll();
+        boolean healthy = false;
+        try {
+            if (instance == null) {
+                instance = new PolicyInstance();
+            }
+            String result = instance.evaluate(entrypointId, inputJson.getBytes(StandardCharsets.UTF_8));
+            healthy = true;
+            return result;
+        } catch (RuntimeException e) {
+            throw new IOException("Wasm evaluation of " + entrypoint + " failed: " + e.getMessage(), e);
+        } finally {
+            if (healthy) {
+                idle.offer(instance);
+            }
+            permits.release();
+        }
+    }
+
+    /**
+     * Calls a builtin by name with JSON operands, returning its JSON result or null if undefined.
+     */
+    private String callBuiltin(String name, List<String> operandsJson) {
+        Integer arity = RegoInterpreter.BUILTINS.get(name);
+        if (arity == null) {
+            throw new IllegalStateException("Builtin " + name + " is not available to Wasm policies");
+        }
+        if (operandsJson.size() != arity) {
+            throw new IllegalStateException("Builtin " + name + " takes " + arity + " arguments, got " + operandsJson.size());
+        }
+        try {
+            List<Object> args = new ArrayList<>();
+            for (String operand : operandsJson) {
+                args.add(fromJson(objectMapper.readValue(operand, Object.class)));
+            }
+            Object result = RegoInterpreter.builtin(name, args);
+            if (result == RegoInterpreter.UNDEFINED) {
+                return null;
+            }
+            // Nanosecond timestamps must not be written in exponent notation
+            return objectMapper.writer()
+                    .with(JsonGenerator.Feature.WRITE_BIGDECIMAL_AS_PLAIN)
+                    .writeValueAsString(RegoInterpreter.toJsonValue(result));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Converts a Jackson value into the interpreter's value model (BigDecimal numbers).
+     */
+    private static Object fromJson(Object value) {
+        if (value instanceof Number number) {
+            return RegoInterpreter.toNumber(number);
+        }
+        if (value instanceof List<?> list) {
+            return list.stream().map(OpaWasmPolicy::fromJson).toList();
+        }
+        if (value instanceof Map<?, ?> map) {
+            Map<Object, Object> result = new LinkedHashMap<>();
+            map.forEach((k, v) -> result.put(k, fromJson(v)));
+            return result;
+        }
+        return value;
+    }
+
+    /**
+     * One module instance with its own memory. Data is set to {} once; the heap above it is
+     * reused by every evaluation, opa_eval resetting it to the pointer it is given.
+     */
+    private final class PolicyInstance {
+
+        private final Memory memory;
+        private final ExportFunction malloc;
+        private final ExportFunction jsonParse;
+        private final ExportFunction jsonDump;
+        private final ExportFunction eval;
+        private final Map<Integer, String> builtins = new HashMap<>();
+        private final Map<String, Integer> entrypoints;
+        private final int dataAddress;
+        private final int heapBase;
+
+        PolicyInstance() {
+            ImportValues imports = ImportValues.builder()
+                    .addMemory(new ImportMemory(ENV, "memory", new ByteArrayMemory(new MemoryLimits(initialPages))))
+                    .addFunction(hostFunctions())
+                    .build();
+            Instance instance = Instance.builder(module).withImportValues(imports).build();
+
+            this.memory = instance.memory();
+            this.malloc = instance.export("opa_malloc");
+            this.jsonParse = instance.export("opa_json_parse");
+            this.jsonDump = instance.export("opa_json_dump");
+            this.eval = instance.export("opa_eval");
+
+            readIdMap(call(instance.export("builtins"))).forEach((name, id) -> builtins.put(id, name));
+            this.entrypoints = Collections.unmodifiableMap(readIdMap(call(instance.export("entrypoints"))));
+            this.dataAddress = writeJson("{}");
+            this.heapBase = call(instance.export("opa_heap_ptr_get"));
+        }
+
+        String evaluate(int entrypointId, byte[] input) {
+            ensureCapacity((long) heapBase + input.length);
+            memory.write(heapBase, input);
+            int resultAddress = call(eval, 0, entrypointId, dataAddress, heapBase, input.length,
+                    heapBase + input.length, 0);
+            return memory.readCString(resultAddress, StandardCharsets.UTF_8);
+        }
+
+        private HostFunction[] hostFunctions() {
+            List<HostFunction> functions = new ArrayList<>();
+            functions.add(new HostFunction(ENV, "opa_abort", FunctionType.of(List.of(ValType.I32), List.of()), (instance, args) -> {
+                throw new IllegalStateException("opa_abort: " + readString((int) args[0]));
+            }));
+            functions.add(new HostFunction(ENV, "opa_println", FunctionType.of(List.of(ValType.I32), List.of()), (instance, args) -> {
+                log.info("opa_println: {}", readString((int) args[0]));
+                return null;
+            }));
+            for (int arity = 0; arity <= MAX_BUILTIN_ARITY; arity++) {
+                // builtin id, reserved context, then one value address per operand
+                List<ValType> params = Collections.nCopies(arity + 2, ValType.I32);
+                functions.add(new HostFunction(ENV, "opa_builtin" + arity, FunctionType.of(params, List.of(ValType.I32)),
+                        (instance, args) -> new long[]{builtin(args)}));
+            }
+            return functions.toArray(HostFunction[]::new);
+        }
+
+        private int builtin(long[] args) {
+            String name = builtins.get((int) args[0]);
+            if (name == null) {
+                throw new IllegalStateException("Unknown builtin id " + args[0]);
+            }
+            List<String> operands = new ArrayList<>();
+            for (int i = 2; i < args.length; i++) {
+                operands.add(dumpJson((int) args[i]));
+            }
+            String result = callBuiltin(name, operands);
+            return result == null ? 0 : writeJson(result);
+        }
+
+        private Map<String, Integer> readIdMap(int valueAddress) {
+            try {
+                return objectMapper.readValue(dumpJson(valueAddress), new TypeReference<Map<String, Integer>>() { });
+            } catch (JsonProcessingException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private String dumpJson(int valueAddress) {
+            return readString(call(jsonDump, valueAddress));
+        }
+
+        private String readString(int address) {
+            return memory.readCString(address, StandardCharsets.UTF_8);
+        }
+
+        private int writeJson(String json) {
+            byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+            int address = call(malloc, bytes.length);
+            memory.write(address, bytes);
+            int valueAddress = call(jsonParse, address, bytes.length);
+            if (valueAddress == 0) {
+                throw new IllegalStateException("opa_json_parse rejected " + json);
+            }
+            return valueAddress;
+        }
+
+        private void ensureCapacity(long bytes) {
+            int required = Math.toIntExact((bytes + PAGE_SIZE - 1) / PAGE_SIZE);
+            int pages = memory.pages();
+            if (required > pages && memory.grow(required - pages) < 0) {
+                throw new IllegalStateException("Cannot grow Wasm memory to " + required + " pages");
+            }
+        }
+    }
+
+    private static int call(ExportFunction function, long... args) {
+        return (int) function.apply(args)[0];
+    }
+}
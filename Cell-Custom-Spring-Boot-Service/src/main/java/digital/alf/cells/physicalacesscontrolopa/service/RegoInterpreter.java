@@ -0,0 +1,600 @@
+package digital.alf.cells.physicalacesscontrolopa.service;
+
+import digital.alf.cells.physicalacesscontrolopa.model.RegoModule;
+import digital.alf.cells.physicalacesscontrolopa.model.RegoModule.*;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Evaluates a parsed {@link RegoModule} against an input document inside the JVM.
+ *
+ * Semantics follow OPA for the supported subset:
+ * - a complete rule takes the value of its first definition whose body succeeds,
+ *   otherwise its default value, otherwise it is undefined
+ * - a partial set rule ("contains") collects the key of every successful body
+ * - a literal succeeds when its expression is defined and not false;
+ *   "not expr" succeeds when expr has no successful evaluation
+ * - references to missing input fields are undefined (and make the literal fail)
+ *
+ * Numbers are represented as normalized BigDecimal, sets as LinkedHashSet,
+ * objects as LinkedHashMap. Instances are immutable and thread-safe; every call to
+ * {@link #evaluateRule(String, Object)} uses its own memo table.
+ */
+public final class RegoInterpreter {
+
+    static final Object UNDEFINED = new Object();
+    private static final BigDecimal NANOS_PER_SECOND = BigDecimal.valueOf(1_000_000_000L);
+
+    /**
+     * Supported builtins and their number of arguments.
+     */
+    static final Map<String, Integer> BUILTINS = Map.of(
+            "time.parse_rfc3339_ns", 1, "time.now_ns", 0, "count", 1, "startswith", 2, "endswith", 2,
+            "contains", 2, "lower", 1, "upper", 1, "concat", 2, "object.get", 3);
+
+    private final RegoModule module;
+    private final Map<String, List<Rule>> rulesByName = new HashMap<>();
+    private final Map<String, Rule> defaults = new HashMap<>();
+    private final List<String> packagePath;
+
+    /**
+     * Compiles the module: indexes rules by name and validates builtin usage.
+     *
+     * @throws IOException if the module uses a builtin function that is not supported, or
+     *                     calls one with the wrong number of arguments
+     */
+    public RegoInterpreter(RegoModule module) throws IOException {
+        this.module = module;
+        this.packagePath = List.of(module.packageName().split("\\."));
+        for (Rule rule : module.rules()) {
+            if (rule.kind() == RuleKind.DEFAULT) {
+                defaults.put(rule.name(), rule);
+            } else {
+                rulesByName.computeIfAbsent(rule.name(), k -> new ArrayList<>()).add(rule);
+            }
+            for (Literal literal : rule.body()) {
+                validateCalls(literal.expr());
+            }
+            validateCalls(rule.value());
+            validateCalls(rule.key());
+        }
+    }
+
+    public RegoModule getModule() {
+        return module;
+    }
+
+    public String getPackageName() {
+        return module.packageName();
+    }
+
+    /**
+     * Evaluates a rule of this module.
+     *
+     * @param ruleName Name of the rule (e.g. "allow")
+     * @param input    Input document (Maps, Lists, Strings, Numbers, Booleans)
+     * @return the rule value, or empty if the rule is undefined for this input
+     */
+    public Optional<Object> evaluateRule(String ruleName, Object input) {
+        Object value = new Evaluation(normalize(input)).rule(ruleName);
+        return value == UNDEFINED ? Optional.empty() : Optional.of(toJsonValue(value));
+    }
+
+    /**
+     * Converts interpreter values back to JSON-friendly Java types (sets become lists).
+     */
+    static Object toJsonValue(Object value) {
+        if (value instanceof Set<?> set) {
+            return set.stream().map(RegoInterpreter::toJsonValue).toList();
+        }
+        if (value instanceof List<?> list) {
+            return list.stream().map(RegoInterpreter::toJsonValue).toList();
+        }
+        if (value instanceof Map<?, ?> map) {
+            Map<Object, Object> result = new LinkedHashMap<>();
+            map.forEach((k, v) -> result.put(k, toJsonValue(v)));
+            return result;
+        }
+        return value;
+    }
+
+    private static Object normalize(Object value) {
+        if (value instanceof Number number) {
+            return toNumber(number);
+        }
+        if (value instanceof List<?> list) {
+            List<Object> result = new ArrayList<>(list.size());
+            for (Object item : list) {
+                result.add(normalize(item));
+            }
+            return result;
+        }
+        if (value instanceof Map<?, ?> map) {
+            Map<Object, Object> result = new LinkedHashMap<>();
+            map.forEach((k, v) -> result.put(k, normalize(v)));
+            return result;
+        }
+        return value;
+    }
+
+    static BigDecimal toNumber(Number number) {
+        BigDecimal decimal = number instanceof BigDecimal bd ? bd : new BigDecimal(number.toString());
+        return decimal.signum() == 0 ? BigDecimal.ZERO : decimal.stripTrailingZeros();
+    }
+
+    private void validateCalls(Term term) throws IOException {
+        if (term == null) {
+            return;
+        }
+        switch (term) {
+            case Call call -> {
+                Integer arity = BUILTINS.get(call.function());
+                if (arity == null) {
+                    throw new IOException("Unsupported rego builtin: " + call.function());
+                }
+                if (call.args().size() != arity) {
+                    throw new IOException("Rego builtin " + call.function() + " takes " + arity
+                            + " arguments, got " + call.args().size());
+                }
+                for (Term arg : call.args()) {
+                    validateCalls(arg);
+                }
+            }
+            case BinaryOp op -> {
+                validateCalls(op.left());
+                validateCalls(op.right());
+            }
+            case Ref ref -> {
+                validateCalls(ref.head());
+                for (Term p : ref.path()) {
+                    validateCalls(p);
+                }
+            }
+            case ArrayTerm array -> {
+                for (Term t : array.items()) validateCalls(t);
+            }
+            case SetTerm set -> {
+                for (Term t : set.items()) validateCalls(t);
+            }
+            case ObjectTerm object -> {
+                for (Map.Entry<Term, Term> e : object.entries()) {
+                    validateCalls(e.getKey());
+                    validateCalls(e.getValue());
+                }
+            }
+            case SomeIn some -> validateCalls(some.collection());
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * State of a single query: input document plus memoized rule values.
+     */
+    private final class Evaluation {
+
+        private final Object input;
+        private final Map<String, Object> memo = new HashMap<>();
+        private final Set<String> inProgress = new HashSet<>();
+
+        Evaluation(Object input) {
+            this.input = input;
+        }
+
+        Object rule(String name) {
+            if (memo.containsKey(name)) {
+                return memo.get(name);
+            }
+            if (!inProgress.add(name)) {
+                return UNDEFINED; // recursive rule reference
+            }
+            Object value = computeRule(name);
+            inProgress.remove(name);
+            memo.put(name, value);
+            return value;
+        }
+
+        private Object computeRule(String name) {
+            List<Rule> definitions = rulesByName.getOrDefault(name, List.of());
+
+            if (!definitions.isEmpty() && definitions.get(0).kind() == RuleKind.PARTIAL_SET) {
+                Set<Object> members = new LinkedHashSet<>();
+                for (Rule rule : definitions) {
+                    evalBody(rule.body(), 0, Map.of(), env -> {
+                        Object member = eval(rule.key(), env);
+                        if (member != UNDEFINED) {
+                            members.add(member);
+                        }
+                        return false; // collect every solution
+                    });
+                }
+                return members;
+            }
+
+            for (Rule rule : definitions) {
+                Object[] result = {UNDEFINED};
+                evalBody(rule.body(), 0, Map.of(), env -> {
+                    result[0] = eval(rule.value(), env);
+                    return result[0] != UNDEFINED;
+                });
+                if (result[0] != UNDEFINED) {
+                    return result[0];
+                }
+            }
+
+            Rule defaultRule = defaults.get(name);
+            return defaultRule != null ? eval(defaultRule.value(), Map.of()) : UNDEFINED;
+        }
+
+        /**
+         * Evaluates body literals left to right with backtracking.
+         *
+         * @param onSolution invoked with the bindings of every successful evaluation;
+         *                   returning true stops the search
+         * @return true if the search was stopped by onSolution
+         */
+        private boolean evalBody(List<Literal> body, int index, Map<String, Object> env,
+                                 Predicate<Map<String, Object>> onSolution) {
+            if (index == body.size()) {
+                return onSolution.test(env);
+            }
+            Literal literal = body.get(index);
+
+            if (literal.negated()) {
+                boolean satisfied = evalLiteral(literal.expr(), env, e -> true);
+                return !satisfied && evalBody(body, index + 1, env, onSolution);
+            }
+            return evalLiteral(literal.expr(), env, e -> evalBody(body, index + 1, e, onSolution));
+        }
+
+        private boolean evalLiteral(Term expr, Map<String, Object> env, Predicate<Map<String, Object>> next) {
+            switch (expr) {
+                case SomeDecl ignored -> {
+                    return next.test(env);
+                }
+                case SomeIn some -> {
+                    return evalSomeIn(some, env, next);
+                }
+                case BinaryOp op when op.operator().equals(":=") || op.operator().equals("=") -> {
+                    return evalUnify(op.left(), op.right(), env, next);
+                }
+                default -> {
+                    Object value = eval(expr, env);
+                    return value != UNDEFINED && !Boolean.FALSE.equals(value) && next.test(env);
+                }
+            }
+        }
+
+        private boolean evalSomeIn(SomeIn some, Map<String, Object> env, Predicate<Map<String, Object>> next) {
+            Object collection = eval(some.collection(), env);
+            if (collection instanceof List<?> list) {
+                for (int i = 0; i < list.size(); i++) {
+                    if (bindPair(some, BigDecimal.valueOf(i), list.get(i), env, next)) return true;
+                }
+            } else if (collection instanceof Set<?> set) {
+                for (Object member : set) {
+                    if (bindPair(some, member, member, env, next)) return true;
+                }
+            } else if (collection instanceof Map<?, ?> map) {
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    if (bindPair(some, entry.getKey(), entry.getValue(), env, next)) return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean bindPair(SomeIn some, Object key, Object value, Map<String, Object> env,
+                                 Predicate<Map<String, Object>> next) {
+            Map<String, Object> bound = env;
+            if (some.key() != null) {
+                bound = bind(some.key(), key, bound);
+                if (bound == null) return false;
+            }
+            bound = bind(some.value(), value, bound);
+            return bound != null && next.test(bound);
+        }
+
+        private boolean evalUnify(Term left, Term right, Map<String, Object> env, Predicate<Map<String, Object>> next) {
+            if (left instanceof Var var && !isBound(var, env)) {
+                Object value = eval(right, env);
+                return value != UNDEFINED && next.test(with(env, var.name(), value));
+            }
+            if (right instanceof Var var && !isBound(var, env)) {
+                Object value = eval(left, env);
+                return value != UNDEFINED && next.test(with(env, var.name(), value));
+            }
+            Object l = eval(left, env);
+            Object r = eval(right, env);
+            return l != UNDEFINED && r != UNDEFINED && l.equals(r) && next.test(env);
+        }
+
+        /**
+         * Binds a term to a value: unbound variables are assigned, anything else must be equal.
+         * Returns the extended environment, or null if the value does not match.
+         */
+        private Map<String, Object> bind(Term term, Object value, Map<String, Object> env) {
+            if (term instanceof Var var) {
+                if (var.name().equals("_")) {
+                    return env;
+                }
+                if (!env.containsKey(var.name())) {
+                    return with(env, var.name(), value);
+                }
+            }
+            Object expected = eval(term, env);
+            return expected != UNDEFINED && expected.equals(value) ? env : null;
+        }
+
+        private boolean isBound(Var var, Map<String, Object> env) {
+            return env.containsKey(var.name());
+        }
+
+        private Map<String, Object> with(Map<String, Object> env, String name, Object value) {
+            Map<String, Object> extended = new HashMap<>(env);
+            extended.put(name, value);
+            return extended;
+        }
+
+        // --- term evaluation ---
+
+        private Object eval(Term term, Map<String, Object> env) {
+            return switch (term) {
+                case Scalar scalar -> scalar.value() instanceof Number n ? toNumber(n) : scalar.value();
+                case Var var -> resolveVar(var.name(), env);
+                case Ref ref -> evalRef(ref, env);
+                case ArrayTerm array -> {
+                    List<Object> items = new ArrayList<>(array.items().size());
+                    for (Term item : array.items()) {
+                        Object value = eval(item, env);
+                        if (value == UNDEFINED) yield UNDEFINED;
+                        items.add(value);
+                    }
+                    yield items;
+                }
+                case SetTerm set -> {
+                    Set<Object> items = new LinkedHashSet<>();
+                    for (Term item : set.items()) {
+                        Object value = eval(item, env);
+                        if (value == UNDEFINED) yield UNDEFINED;
+                        items.add(value);
+                    }
+                    yield items;
+                }
+                case ObjectTerm object -> {
+                    Map<Object, Object> entries = new LinkedHashMap<>();
+                    for (Map.Entry<Term, Term> entry : object.entries()) {
+                        Object key = eval(entry.getKey(), env);
+                        Object value = eval(entry.getValue(), env);
+                        if (key == UNDEFINED || value == UNDEFINED) yield UNDEFINED;
+                        entries.put(key, value);
+                    }
+                    yield entries;
+                }
+                case Call call -> evalCall(call, env);
+                case BinaryOp op -> evalBinary(op, env);
+                case SomeIn ignored -> UNDEFINED;
+                case SomeDecl ignored -> Boolean.TRUE;
+            };
+        }
+
+        private Object resolveVar(String name, Map<String, Object> env) {
+            if (env.containsKey(name)) {
+                return env.get(name);
+            }
+            if (name.equals("input")) {
+                return input;
+            }
+            if (rulesByName.containsKey(name) || defaults.containsKey(name)) {
+                return rule(name);
+            }
+            return UNDEFINED;
+        }
+
+        private Object evalRef(Ref ref, Map<String, Object> env) {
+            List<Term> path = ref.path();
+            Object current;
+            int start = 0;
+
+            if (ref.head() instanceof Var var && var.name().equals("data") && !env.containsKey("data")) {
+                // data.<package path>.<rule>[.<selectors>]
+                if (path.size() <= packagePath.size()) {
+                    return UNDEFINED;
+                }
+                for (int i = 0; i < packagePath.size(); i++) {
+                    if (!packagePath.get(i).equals(eval(path.get(i), env))) {
+                        return UNDEFINED;
+                    }
+                }
+                Object ruleName = eval(path.get(packagePath.size()), env);
+                if (!(ruleName instanceof String name)) {
+                    return UNDEFINED;
+                }
+                current = resolveVar(name, Map.of());
+                start = packagePath.size() + 1;
+            } else {
+                current = eval(ref.head(), env);
+            }
+
+            for (int i = start; i < path.size() && current != UNDEFINED; i++) {
+                Object key = eval(path.get(i), env);
+                current = select(current, key);
+            }
+            return current;
+        }
+
+        private Object select(Object collection, Object key) {
+            if (key == UNDEFINED) {
+                return UNDEFINED;
+            }
+            if (collection instanceof Map<?, ?> map) {
+                return map.containsKey(key) ? map.get(key) : UNDEFINED;
+            }
+            if (collection instanceof List<?> list && key instanceof BigDecimal index) {
+                int i = index.intValue();
+                return i >= 0 && i < list.size() ? list.get(i) : UNDEFINED;
+            }
+            if (collection instanceof Set<?> set) {
+                return set.contains(key) ? key : UNDEFINED;
+            }
+            return UNDEFINED;
+        }
+
+        private Object evalBinary(BinaryOp op, Map<String, Object> env) {
+            Object left = eval(op.left(), env);
+            Object right = eval(op.right(), env);
+            if (left == UNDEFINED || right == UNDEFINED) {
+                return UNDEFINED;
+            }
+            return binary(op.operator(), left, right);
+        }
+
+        private Object evalCall(Call call, Map<String, Object> env) {
+            List<Object> args = new ArrayList<>(call.args().size());
+            for (Term arg : call.args()) {
+                Object value = eval(arg, env);
+                if (value == UNDEFINED) {
+                    return UNDEFINED;
+                }
+                args.add(value);
+            }
+            return builtin(call.function(), args);
+        }
+    }
+
+    /**
+     * Applies an infix operator to two defined values; UNDEFINED if it does not apply to them.
+     */
+    static Object binary(String operator, Object left, Object right) {
+        return switch (operator) {
+            case "==", "=" -> left.equals(right);
+            case "!=" -> !left.equals(right);
+            case "<", "<=", ">", ">=" -> compare(operator, left, right);
+            case "in" -> contains(right, left);
+            case "+", "-", "*", "/", "%" -> arithmetic(operator, left, right);
+            case "|", "&" -> setOperation(operator, left, right);
+            default -> UNDEFINED;
+        };
+    }
+
+    private static Object compare(String operator, Object left, Object right) {
+        int cmp;
+        if (left instanceof BigDecimal l && right instanceof BigDecimal r) {
+            cmp = l.compareTo(r);
+        } else if (left instanceof String l && right instanceof String r) {
+            cmp = l.compareTo(r);
+        } else {
+            return UNDEFINED;
+        }
+        return switch (operator) {
+            case "<" -> cmp < 0;
+            case "<=" -> cmp <= 0;
+            case ">" -> cmp > 0;
+            default -> cmp >= 0;
+        };
+    }
+
+    private static Object contains(Object collection, Object element) {
+        if (collection instanceof Collection<?> c) {
+            return c.contains(element);
+        }
+        if (collection instanceof Map<?, ?> map) {
+            return map.containsValue(element);
+        }
+        return false;
+    }
+
+    private static Object arithmetic(String operator, Object left, Object right) {
+        if (!(left instanceof BigDecimal l) || !(right instanceof BigDecimal r)) {
+            return UNDEFINED;
+        }
+        if ((operator.equals("/") || operator.equals("%")) && r.signum() == 0) {
+            return UNDEFINED;
+        }
+        BigDecimal result = switch (operator) {
+            case "+" -> l.add(r);
+            case "-" -> l.subtract(r);
+            case "*" -> l.multiply(r);
+            case "/" -> l.divide(r, java.math.MathContext.DECIMAL128);
+            default -> l.remainder(r);
+        };
+        return toNumber(result);
+    }
+
+    private static Object setOperation(String operator, Object left, Object right) {
+        if (!(left instanceof Set<?> l) || !(right instanceof Set<?> r)) {
+            return UNDEFINED;
+        }
+        Set<Object> result = new LinkedHashSet<>(l);
+        if (operator.equals("|")) {
+            result.addAll(r);
+        } else {
+            result.retainAll(r);
+        }
+        return result;
+    }
+
+    /**
+     * Calls a supported builtin with defined arguments; UNDEFINED if it does not apply to them.
+     * The number of arguments must match {@link #BUILTINS}.
+     */
+    static Object builtin(String function, List<Object> args) {
+        return switch (function) {
+            case "time.parse_rfc3339_ns" -> args.get(0) instanceof String s ? parseRfc3339Nanos(s) : UNDEFINED;
+            case "time.now_ns" -> toNanos(Instant.now());
+            case "count" -> {
+                Object arg = args.get(0);
+                if (arg instanceof Collection<?> c) yield BigDecimal.valueOf(c.size());
+                if (arg instanceof Map<?, ?> m) yield BigDecimal.valueOf(m.size());
+                if (arg instanceof String s) yield BigDecimal.valueOf(s.codePointCount(0, s.length()));
+                yield UNDEFINED;
+            }
+            case "startswith" -> stringArgs(args) ? ((String) args.get(0)).startsWith((String) args.get(1)) : UNDEFINED;
+            case "endswith" -> stringArgs(args) ? ((String) args.get(0)).endsWith((String) args.get(1)) : UNDEFINED;
+            case "contains" -> stringArgs(args) ? ((String) args.get(0)).contains((String) args.get(1)) : UNDEFINED;
+            case "lower" -> args.get(0) instanceof String s ? s.toLowerCase(Locale.ROOT) : UNDEFINED;
+            case "upper" -> args.get(0) instanceof String s ? s.toUpperCase(Locale.ROOT) : UNDEFINED;
+            case "concat" -> {
+                if (!(args.get(0) instanceof String delimiter) || !(args.get(1) instanceof Collection<?> parts)) {
+                    yield UNDEFINED;
+                }
+                StringJoiner joiner = new StringJoiner(delimiter);
+                for (Object part : parts) {
+                    if (!(part instanceof String s)) yield UNDEFINED;
+                    joiner.add(s);
+                }
+                yield joiner.toString();
+            }
+            case "object.get" -> {
+                if (args.get(0) instanceof Map<?, ?> map && map.containsKey(args.get(1))) {
+                    yield map.get(args.get(1));
+                }
+                yield args.get(2);
+            }
+            default -> UNDEFINED;
+        };
+    }
+
+    private static boolean stringArgs(List<Object> args) {
+        return args.size() == 2 && args.get(0) instanceof String && args.get(1) instanceof String;
+    }
+
+    private static Object parseRfc3339Nanos(String value) {
+        try {
+            return toNanos(OffsetDateTime.parse(value).toInstant());
+        } catch (DateTimeParseException e) {
+            return UNDEFINED;
+        }
+    }
+
+    static BigDecimal toNanos(Instant instant) {
+        return toNumber(BigDecimal.valueOf(instant.getEpochSecond())
+                .multiply(NANOS_PER_SECOND)
+                .add(BigDecimal.valueOf(instant.getNano())));
+    }
+}
@@ -0,0 +1,622 @@
+package digital.alf.cells.physicalacesscontrolopa.service;
+
+import digital.alf.cells.physicalacesscontrolopa.model.AccessPredicate;
+import digital.alf.cells.physicalacesscontrolopa.model.AccessPredicate.AttributeEquals;
+import digital.alf.cells.physicalacesscontrolopa.model.AccessPredicate.Clause;
+import digital.alf.cells.physicalacesscontrolopa.model.AccessPredicate.Constraint;
+import digital.alf.cells.physicalacesscontrolopa.model.AccessPredicate.GroupMember;
+import digital.alf.cells.physicalacesscontrolopa.model.AccessPredicate.TimeBound;
+import digital.alf.cells.physicalacesscontrolopa.model.RegoModule;
+import digital.alf.cells.physicalacesscontrolopa.model.RegoModule.*;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Partially evaluates a rule of a parsed {@link RegoModule} with the input document unknown,
+ * the in-process counterpart of 'opa eval --partial --unknowns input'.
+ *
+ * The result is not a value but the residual condition under which the rule is true, as an
+ * {@link AccessPredicate}:
+ * - "g" in input.request.userInfo.groups               -> group constraint
+ * - time.parse_rfc3339_ns(input.x) compared with a constant -> time bound
+ * - input.x == constant / input.x != constant            -> attribute constraint
+ * - input.x in constant collection                      -> one attribute constraint per member
+ * Everything that does not depend on the input (constants, helper rules, builtin calls on
+ * constants) is evaluated right away with the {@link RegoInterpreter} semantics; rule
+ * references and "not" are inlined and the result is normalized to DNF.
+ *
+ * Constructs that cannot be expressed that way (iterating over the groups, arithmetic on
+ * input fields, time.now_ns, rule values that depend on the input, ...) are rejected with an
+ * IOException rather than approximated, so a returned predicate is exact.
+ */
+public final class RegoPartialEvaluator {
+
+    private static final List<String> GROUPS_PATH = List.of("request", "userInfo", "groups");
+    private static final Set<String> COMPARISONS = Set.of("==", "!=", "<", "<=", ">", ">=");
+    private static final int MAX_CLAUSES = 4096;
+
+    private static final List<Set<Constraint>> TRUE = List.of(Set.of());
+    private static final List<Set<Constraint>> FALSE = List.of();
+
+    private final Map<String, List<Rule>> rulesByName = new HashMap<>();
+    private final Map<String, Rule> defaults = new HashMap<>();
+    private final List<String> packagePath;
+
+    public RegoPartialEvaluator(RegoModule module) {
+        this.packagePath = List.of(module.packageName().split("\\."));
+        for (Rule rule : module.rules()) {
+            if (rule.kind() == RuleKind.DEFAULT) {
+                defaults.put(rule.name(), rule);
+            } else {
+                rulesByName.computeIfAbsent(rule.name(), k -> new ArrayList<>()).add(rule);
+            }
+        }
+    }
+
+    /**
+     * Condition on the input under which the rule is true (defined and not false).
+     *
+     * @param ruleName Name of the rule (e.g. "allow")
+     * @throws IOException if the rule uses a construct the residual cannot express
+     */
+    public AccessPredicate residual(String ruleName) throws IOException {
+        List<Set<Constraint>> dnf = new Evaluation().ruleCondition(ruleName);
+        return new AccessPredicate(dnf.stream().map(clause -> new Clause(new ArrayList<>(clause))).toList());
+    }
+
+    /** A reference into the unknown input document. */
+    private record InputRef(List<String> path) {
+    }
+
+    /** time.parse_rfc3339_ns applied to an input reference, in nanoseconds. */
+    private record InputTime(List<String> path) {
+    }
+
+    /** Variable bindings of one way through a rule body, and the condition for taking it. */
+    private record Solution(Map<String, Object> env, List<Set<Constraint>> condition) {
+    }
+
+    private final class Evaluation {
+
+        private final Map<String, List<Set<Constraint>>> conditions = new HashMap<>();
+        private final Map<String, Object> values = new HashMap<>();
+        private final Set<String> inProgress = new HashSet<>();
+
+        List<Set<Constraint>> ruleCondition(String name) throws IOException {
+            List<Set<Constraint>> cached = conditions.get(name);
+            if (cached != null) {
+                return cached;
+            }
+            enter(name);
+            List<Set<Constraint>> condition = computeRuleCondition(name);
+            inProgress.remove(name);
+            conditions.put(name, condition);
+            return condition;
+        }
+
+        private List<Set<Constraint>> computeRuleCondition(String name) throws IOException {
+            List<Rule> definitions = rulesByName.getOrDefault(name, List.of());
+            if (!definitions.isEmpty() && definitions.get(0).kind() == RuleKind.PARTIAL_SET) {
+                return TRUE; // a set rule is always defined
+            }
+
+            List<Set<Constraint>> anyBody = FALSE;
+            List<Set<Constraint>> truthy = FALSE;
+            for (Rule rule : definitions) {
+                for (Solution solution : solve(rule.body())) {
+                    anyBody = or(anyBody, solution.condition());
+                    truthy = or(truthy, and(solution.condition(), truthiness(value(rule.value(), solution.env()))));
+                }
+            }
+
+            Rule defaultRule = defaults.get(name);
+            if (defaultRule != null && truthiness(value(defaultRule.value(), Map.of())) == TRUE) {
+                return or(not(anyBody), truthy);
+            }
+            return truthy;
+        }
+
+        private Object ruleValue(String name) throws IOException {
+            if (values.containsKey(name)) {
+                return values.get(name);
+            }
+            enter(name);
+            Object value = computeRuleValue(name);
+            inProgress.remove(name);
+            values.put(name, value);
+            return value;
+        }
+
+        private Object computeRuleValue(String name) throws IOException {
+            List<Rule> definitions = rulesByName.getOrDefault(name, List.of());
+
+            if (!definitions.isEmpty() && definitions.get(0).kind() == RuleKind.PARTIAL_SET) {
+                Set<Object> members = new LinkedHashSet<>();
+                for (Rule rule : definitions) {
+                    for (Solution solution : solve(rule.body())) {
+                        requireUnconditional(name, solution);
+                        Object member = value(rule.key(), solution.env());
+                        if (member != RegoInterpreter.UNDEFINED) {
+                            members.add(requireKnown(member));
+                        }
+                    }
+                }
+                return members;
+            }
+
+            for (Rule rule : definitions) {
+                List<Solution> solutions = solve(rule.body());
+                if (!solutions.isEmpty()) {
+                    requireUnconditional(name, solutions.get(0));
+                    return value(rule.value(), solutions.get(0).env());
+                }
+            }
+
+            Rule defaultRule = defaults.get(name);
+            return defaultRule != null ? value(defaultRule.value(), Map.of()) : RegoInterpreter.UNDEFINED;
+        }
+
+        private void enter(String name) throws IOException {
+            if (!inProgress.add(name)) {
+                throw new IOException("Cannot partially evaluate recursive rule " + name);
+            }
+        }
+
+        private void requireUnconditional(String name, Solution solution) throws IOException {
+            if (solution.condition() != TRUE) {
+                throw new IOException("Value of rule " + name + " depends on the input");
+            }
+        }
+
+        // --- bodies ---
+
+        private List<Solution> solve(List<Literal> body) throws IOException {
+            List<Solution> solutions = List.of(new Solution(Map.of(), TRUE));
+            for (Literal literal : body) {
+                List<Solution> next = new ArrayList<>();
+                for (Solution solution : solutions) {
+                    if (literal.negated()) {
+                        List<Set<Constraint>> inner = FALSE;
+                        for (Solution s : literal(literal.expr(), solution.env())) {
+                            inner = or(inner, s.condition());
+                        }
+                        add(next, solution.env(), and(solution.condition(), not(inner)));
+                    } else {
+                        for (Solution s : literal(literal.expr(), solution.env())) {
+                            add(next, s.env(), and(solution.condition(), s.condition()));
+                        }
+                    }
+                }
+                solutions = next;
+            }
+            return solutions;
+        }
+
+        private void add(List<Solution> solutions, Map<String, Object> env, List<Set<Constraint>> condition) {
+            if (condition != FALSE) {
+                solutions.add(new Solution(env, condition));
+            }
+        }
+
+        private List<Solution> literal(Term expr, Map<String, Object> env) throws IOException {
+            switch (expr) {
+                case SomeDecl ignored -> {
+                    return List.of(new Solution(env, TRUE));
+                }
+                case SomeIn some -> {
+                    return someIn(some, env);
+                }
+                case BinaryOp op when op.operator().equals(":=") || op.operator().equals("=") -> {
+                    if (op.left() instanceof Var var && !env.containsKey(var.name()) && !var.name().equals("_")) {
+                        return bind(env, var.name(), value(op.right(), env));
+                    }
+                    if (op.right() instanceof Var var && !env.containsKey(var.name()) && !var.name().equals("_")) {
+                        return bind(env, var.name(), value(op.left(), env));
+                    }
+                    return conditional(env, compare("==", value(op.left(), env), value(op.right(), env)));
+                }
+                default -> {
+                    return conditional(env, condition(expr, env));
+                }
+            }
+        }
+
+        private List<Solution> bind(Map<String, Object> env, String name, Object value) {
+            return value == RegoInterpreter.UNDEFINED ? List.of() : List.of(new Solution(with(env, name, value), TRUE));
+        }
+
+        private List<Solution> conditional(Map<String, Object> env, List<Set<Constraint>> condition) {
+            return condition == FALSE ? List.of() : List.of(new Solution(env, condition));
+        }
+
+        private List<Solution> someIn(SomeIn some, Map<String, Object> env) throws IOException {
+            Object collection = value(some.collection(), env);
+            List<Map.Entry<Object, Object>> pairs = new ArrayList<>();
+            switch (requireKnown(collection)) {
+                case List<?> list -> {
+                    for (int i = 0; i < list.size(); i++) pairs.add(Map.entry(BigDecimal.valueOf(i), list.get(i)));
+                }
+                case Set<?> set -> {
+                    for (Object member : set) pairs.add(Map.entry(member, member));
+                }
+                case Map<?, ?> map -> {
+                    for (Map.Entry<?, ?> entry : map.entrySet()) pairs.add(Map.entry(entry.getKey(), entry.getValue()));
+                }
+                default -> {
+                    return List.of();
+                }
+            }
+
+            List<Solution> solutions = new ArrayList<>();
+            for (Map.Entry<Object, Object> pair : pairs) {
+                Map<String, Object> bound = env;
+                if (some.key() != null) {
+                    bound = match(some.key(), pair.getKey(), bound);
+                }
+                if (bound != null) {
+                    bound = match(some.value(), pair.getValue(), bound);
+                }
+                if (bound != null) {
+                    solutions.add(new Solution(bound, TRUE));
+                }
+            }
+            return solutions;
+        }
+
+        private Map<String, Object> match(Term term, Object value, Map<String, Object> env) throws IOException {
+            if (term instanceof Var var) {
+                if (var.name().equals("_")) {
+                    return env;
+                }
+                if (!env.containsKey(var.name())) {
+                    return with(env, var.name(), value);
+                }
+            }
+            return requireKnown(value(term, env)).equals(value) ? env : null;
+        }
+
+        private Map<String, Object> with(Map<String, Object> env, String name, Object value) {
+            Map<String, Object> extended = new HashMap<>(env);
+            extended.put(name, value);
+            return extended;
+        }
+
+        // --- conditions ---
+
+        private List<Set<Constraint>> condition(Term expr, Map<String, Object> env) throws IOException {
+            if (expr instanceof BinaryOp op && (COMPARISONS.contains(op.operator()) || op.operator().equals("in"))) {
+                return compare(op.operator(), value(op.left(), env), value(op.right(), env));
+            }
+            String rule = ruleReference(expr, env);
+            if (rule != null) {
+                return ruleCondition(rule);
+            }
+            return truthiness(value(expr, env));
+        }
+
+        /**
+         * Name of the rule a bare reference such as "deny" or data.pkg.deny points to, if any.
+         */
+        private String ruleReference(Term expr, Map<String, Object> env) throws IOException {
+            if (expr instanceof Var var && !env.containsKey(var.name()) && isRule(var.name())) {
+                return var.name();
+            }
+            if (expr instanceof Ref ref && ref.head() instanceof Var var && var.name().equals("data")
+                    && !env.containsKey("data") && ref.path().size() == packagePath.size() + 1) {
+                Object name = dataRuleName(ref, env);
+                return name instanceof String s && isRule(s) ? s : null;
+            }
+            return null;
+        }
+
+        private List<Set<Constraint>> compare(String operator, Object left, Object right) throws IOException {
+            if (left == RegoInterpreter.UNDEFINED || right == RegoInterpreter.UNDEFINED) {
+                return FALSE;
+            }
+            if (isKnown(left) && isKnown(right)) {
+                return truthiness(RegoInterpreter.binary(operator, left, right));
+            }
+
+            if (operator.equals("in") && right instanceof InputRef ref && ref.path().equals(GROUPS_PATH)) {
+                return left instanceof String group ? atom(new GroupMember(group, true)) : FALSE;
+            }
+            if (operator.equals("in") && left instanceof InputRef ref && right instanceof Collection<?> members
+                    && !startsWith(ref.path(), GROUPS_PATH)) {
+                List<Set<Constraint>> anyOf = FALSE;
+                for (Object member : members) {
+                    anyOf = or(anyOf, compare("==", ref, member));
+                }
+                return anyOf;
+            }
+            if (left instanceof InputTime || right instanceof InputTime) {
+                boolean timeOnLeft = left instanceof InputTime;
+                InputTime time = (InputTime) (timeOnLeft ? left : right);
+                Object other = timeOnLeft ? right : left;
+                if (COMPARISONS.contains(operator) && other instanceof BigDecimal nanos) {
+                    return atom(new TimeBound(dotted(time.path()), timeOnLeft ? operator : flip(operator), toInstant(nanos)));
+                }
+            }
+            if ((operator.equals("==") || operator.equals("!=")) && (left instanceof InputRef || right instanceof InputRef)) {
+                InputRef ref = (InputRef) (left instanceof InputRef ? left : right);
+                Object other = left instanceof InputRef ? right : left;
+                boolean scalar = other instanceof String || other instanceof BigDecimal || other instanceof Boolean;
+                if (scalar && !startsWith(ref.path(), GROUPS_PATH)) {
+                    return atom(new AttributeEquals(dotted(ref.path()), other, operator.equals("==")));
+                }
+            }
+            throw new IOException("Cannot partially evaluate " + describe(left) + " " + operator + " " + describe(right));
+        }
+
+        private List<Set<Constraint>> truthiness(Object value) throws IOException {
+            if (value == RegoInterpreter.UNDEFINED || Boolean.FALSE.equals(requireKnown(value))) {
+                return FALSE;
+            }
+            return TRUE;
+        }
+
+        // --- values ---
+
+        private Object value(Term term, Map<String, Object> env) throws IOException {
+            return switch (term) {
+                case Scalar scalar -> scalar.value() instanceof Number n ? RegoInterpreter.toNumber(n) : scalar.value();
+                case Var var -> variable(var.name(), env);
+                case Ref ref -> ref(ref, env);
+                case ArrayTerm array -> {
+                    List<Object> items = new ArrayList<>(array.items().size());
+                    for (Term item : array.items()) {
+                        Object value = value(item, env);
+                        if (value == RegoInterpreter.UNDEFINED) yield RegoInterpreter.UNDEFINED;
+                        items.add(requireKnown(value));
+                    }
+                    yield items;
+                }
+                case SetTerm set -> {
+                    Set<Object> items = new LinkedHashSet<>();
+                    for (Term item : set.items()) {
+                        Object value = value(item, env);
+                        if (value == RegoInterpreter.UNDEFINED) yield RegoInterpreter.UNDEFINED;
+                        items.add(requireKnown(value));
+                    }
+                    yield items;
+                }
+                case ObjectTerm object -> {
+                    Map<Object, Object> entries = new LinkedHashMap<>();
+                    for (Map.Entry<Term, Term> entry : object.entries()) {
+                        Object key = value(entry.getKey(), env);
+                        Object value = value(entry.getValue(), env);
+                        if (key == RegoInterpreter.UNDEFINED || value == RegoInterpreter.UNDEFINED) yield RegoInterpreter.UNDEFINED;
+                        entries.put(requireKnown(key), requireKnown(value));
+                    }
+                    yield entries;
+                }
+                case Call call -> call(call, env);
+                case BinaryOp op -> {
+                    Object left = value(op.left(), env);
+                    Object right = value(op.right(), env);
+                    if (left == RegoInterpreter.UNDEFINED || right == RegoInterpreter.UNDEFINED) yield RegoInterpreter.UNDEFINED;
+                    yield RegoInterpreter.binary(op.operator(), requireKnown(left), requireKnown(right));
+                }
+                case SomeIn ignored -> throw new IOException("'some ... in' is only supported as a body literal");
+                case SomeDecl ignored -> Boolean.TRUE;
+            };
+        }
+
+        private Object variable(String name, Map<String, Object> env) throws IOException {
+            if (env.containsKey(name)) {
+                return env.get(name);
+            }
+            if (name.equals("input")) {
+                return new InputRef(List.of());
+            }
+            if (isRule(name)) {
+                return ruleValue(name);
+            }
+            throw new IOException("Cannot partially evaluate unbound variable " + name);
+        }
+
+        private Object ref(Ref ref, Map<String, Object> env) throws IOException {
+            List<Term> path = ref.path();
+            Object current;
+            int start = 0;
+
+            if (ref.head() instanceof Var var && var.name().equals("data") && !env.containsKey("data")) {
+                if (path.size() <= packagePath.size() || !(dataRuleName(ref, env) instanceof String name)) {
+                    return RegoInterpreter.UNDEFINED;
+                }
+                current = isRule(name) ? ruleValue(name) : RegoInterpreter.UNDEFINED;
+                start = packagePath.size() + 1;
+            } else {
+                current = value(ref.head(), env);
+            }
+
+            for (int i = start; i < path.size() && current != RegoInterpreter.UNDEFINED; i++) {
+                Object key = requireKnown(value(path.get(i), env));
+                if (current instanceof InputRef input) {
+                    if (!(key instanceof String field)) {
+                        throw new IOException("Cannot partially evaluate non-string input selector " + key);
+                    }
+                    List<String> extended = new ArrayList<>(input.path());
+                    extended.add(field);
+                    current = new InputRef(List.copyOf(extended));
+                } else {
+                    current = select(requireKnown(current), key);
+                }
+            }
+            return current;
+        }
+
+        private Object dataRuleName(Ref ref, Map<String, Object> env) throws IOException {
+            for (int i = 0; i < packagePath.size(); i++) {
+                if (!packagePath.get(i).equals(value(ref.path().get(i), env))) {
+                    return null;
+                }
+            }
+            return value(ref.path().get(packagePath.size()), env);
+        }
+
+        private Object select(Object collection, Object key) {
+            if (collection instanceof Map<?, ?> map) {
+                return map.containsKey(key) ? map.get(key) : RegoInterpreter.UNDEFINED;
+            }
+            if (collection instanceof List<?> list && key instanceof BigDecimal index) {
+                int i = index.intValue();
+                return i >= 0 && i < list.size() ? list.get(i) : RegoInterpreter.UNDEFINED;
+            }
+            if (collection instanceof Set<?> set) {
+                return set.contains(key) ? key : RegoInterpreter.UNDEFINED;
+            }
+            return RegoInterpreter.UNDEFINED;
+        }
+
+        private Object call(Call call, Map<String, Object> env) throws IOException {
+            if (call.function().equals("time.now_ns")) {
+                throw new IOException("Cannot partially evaluate time.now_ns(); compare input.request.admissionTime instead");
+            }
+            List<Object> args = new ArrayList<>(call.args().size());
+            for (Term arg : call.args()) {
+                Object value = value(arg, env);
+                if (value == RegoInterpreter.UNDEFINED) {
+                    return RegoInterpreter.UNDEFINED;
+                }
+                args.add(value);
+            }
+            if (call.function().equals("time.parse_rfc3339_ns") && args.get(0) instanceof InputRef ref) {
+                return new InputTime(ref.path());
+            }
+            for (Object arg : args) {
+                requireKnown(arg);
+            }
+            return RegoInterpreter.builtin(call.function(), args);
+        }
+
+        private boolean isRule(String name) {
+            return rulesByName.containsKey(name) || defaults.containsKey(name);
+        }
+
+        private Object requireKnown(Object value) throws IOException {
+            if (!isKnown(value)) {
+                throw new IOException("Cannot partially evaluate use of " + describe(value));
+            }
+            return value;
+        }
+    }
+
+    // --- DNF ---
+
+    private static boolean isKnown(Object value) {
+        return !(value instanceof InputRef) && !(value instanceof InputTime);
+    }
+
+    private static String describe(Object value) {
+        return switch (value) {
+            case InputRef ref -> "input." + dotted(ref.path());
+            case InputTime time -> "time.parse_rfc3339_ns(input." + dotted(time.path()) + ")";
+            default -> String.valueOf(value);
+        };
+    }
+
+    private static String dotted(List<String> path) {
+        return String.join(".", path);
+    }
+
+    private static boolean startsWith(List<String> path, List<String> prefix) {
+        return path.size() >= prefix.size() && path.subList(0, prefix.size()).equals(prefix);
+    }
+
+    private static String flip(String operator) {
+        return switch (operator) {
+            case "<" -> ">";
+            case "<=" -> ">=";
+            case ">" -> "<";
+            case ">=" -> "<=";
+            default -> operator;
+        };
+    }
+
+    private static Instant toInstant(BigDecimal nanos) throws IOException {
+        try {
+            return Instant.ofEpochSecond(0, nanos.longValueExact());
+        } catch (ArithmeticException e) {
+            throw new IOException("Time bound out of range: " + nanos, e);
+        }
+    }
+
+    private static List<Set<Constraint>> atom(Constraint constraint) {
+        return List.of(Set.of(constraint));
+    }
+
+    private static List<Set<Constraint>> or(List<Set<Constraint>> left, List<Set<Constraint>> right) throws IOException {
+        if (left == FALSE) return right;
+        if (right == FALSE) return left;
+        List<Set<Constraint>> clauses = new ArrayList<>(left);
+        clauses.addAll(right);
+        return normalize(clauses);
+    }
+
+    private static List<Set<Constraint>> and(List<Set<Constraint>> left, List<Set<Constraint>> right) throws IOException {
+        if (left == TRUE) return right;
+        if (right == TRUE) return left;
+        List<Set<Constraint>> clauses = new ArrayList<>();
+        for (Set<Constraint> l : left) {
+            for (Set<Constraint> r : right) {
+                Set<Constraint> merged = new LinkedHashSet<>(l);
+                merged.addAll(r);
+                clauses.add(merged);
+            }
+        }
+        return normalize(clauses);
+    }
+
+    /**
+     * De Morgan: not (c1 or c2 ...) = (not c1) and (not c2) ..., where not c is the disjunction
+     * of its negated constraints.
+     */
+    private static List<Set<Constraint>> not(List<Set<Constraint>> dnf) throws IOException {
+        List<Set<Constraint>> result = TRUE;
+        for (Set<Constraint> clause : dnf) {
+            List<Set<Constraint>> negated = new ArrayList<>();
+            for (Constraint constraint : clause) {
+                negated.add(Set.of(constraint.negate()));
+            }
+            result = and(result, negated.isEmpty() ? FALSE : normalize(negated));
+            if (result == FALSE) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Drops contradictory clauses and clauses subsumed by a smaller one; returns the TRUE or
+     * FALSE constants when the result is trivially true or false.
+     */
+    private static List<Set<Constraint>> normalize(List<Set<Constraint>> clauses) throws IOException {
+        List<Set<Constraint>> consistent = new ArrayList<>();
+        for (Set<Constraint> clause : clauses) {
+            if (clause.isEmpty()) {
+                return TRUE;
+            }
+            if (clause.stream().noneMatch(c -> clause.contains(c.negate()))) {
+                consistent.add(clause);
+            }
+        }
+        if (consistent.isEmpty()) {
+            return FALSE;
+        }
+        if (consistent.size() > MAX_CLAUSES) {
+            throw new IOException("Residual exceeds " + MAX_CLAUSES + " clauses");
+        }
+
+        consistent.sort(Comparator.comparingInt(Set::size));
+        List<Set<Constraint>> result = new ArrayList<>();
+        for (Set<Constraint> clause : consistent) {
+            if (result.stream().noneMatch(clause::containsAll)) {
+                result.add(clause);
+            }
+        }
+        return List.copyOf(result);
+    }
+}
@@ -0,0 +1,86 @@
+package digital.alf.cells.acl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for AclChangeLog.
+ */
+class AclChangeLogTest {
+
+    @Test
+    void changesSince_zero_returnsAllEntriesAsAdded() {
+        AclChangeLog<String> log = new AclChangeLog<>(10);
+        log.replaceAll(List.of("anya", "david"));
+
+        AclChangeLog.Changes<String> changes = log.changesSince(0);
+
+        assertEquals(1, changes.version());
+        assertFalse(changes.reset());
+        assertEquals(List.of("anya", "david"), changes.added());
+        assertEquals(List.of(), changes.removed());
+    }
+
+    @Test
+    void changesSince_version_returnsOnlyDelta() {
+        AclChangeLog<String> log = new AclChangeLog<>(10);
+        long synced = log.replaceAll(List.of("anya", "david"));
+        log.replaceAll(List.of("anya", "ben"));
+
+        AclChangeLog.Changes<String> changes = log.changesSince(synced);
+
+        assertEquals(List.of("ben"), changes.added());
+        assertEquals(List.of("david"), changes.removed());
+        assertEquals(List.of(), log.changesSince(log.version()).added());
+    }
+
+    @Test
+    void changesSince_entryAddedAndRemovedAgain_isNetted() {
+        AclChangeLog<String> log = new AclChangeLog<>(10);
+        long synced = log.apply(List.of(), List.of("anya"));
+        log.apply(List.of(), List.of("ben"));
+        log.apply(List.of("ben", "anya"), List.of());
+        log.apply(List.of(), List.of("anya"));
+
+        AclChangeLog.Changes<String> changes = log.changesSince(synced);
+
+        assertEquals(List.of(), changes.added());
+        assertEquals(List.of(), changes.removed());
+        assertEquals(4, changes.version());
+    }
+
+    @Test
+    void apply_noEffectiveChange_keepsVersion() {
+        AclChangeLog<String> log = new AclChangeLog<>(10);
+        log.apply(List.of(), List.of("anya"));
+
+        assertEquals(1, log.apply(List.of("anya"), List.of("anya")));
+        assertEquals(1, log.apply(List.of("ben"), List.of()));
+        assertEquals(1, log.replaceAll(List.of("anya")));
+    }
+
+    @Test
+    void changesSince_olderThanHistory_returnsReset() {
+        AclChangeLog<String> log = new AclChangeLog<>(2);
+        log.apply(List.of(), List.of("anya"));
+        log.apply(List.of(), List.of("ben"));
+        log.apply(List.of("anya"), List.of("david"));
+
+        AclChangeLog.Changes<String> changes = log.changesSince(0);
+
+        assertTrue(changes.reset());
+        assertEquals(List.of("ben", "david"), changes.added());
+        assertFalse(log.changesSince(1).reset());
+    }
+
+    @Test
+    void changesSince_unknownVersion_throws() {
+        AclChangeLog<String> log = new AclChangeLog<>(10);
+
+        assertThrows(IllegalArgumentException.class, () -> log.changesSince(1));
+        assertThrows(IllegalArgumentException.class, () -> log.changesSince(-1));
+    }
+}
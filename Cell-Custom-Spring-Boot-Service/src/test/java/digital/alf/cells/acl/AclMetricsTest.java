@@ -0,0 +1,105 @@
+package digital.alf.cells.acl;
+
+import digital.alf.cells.physicalacesscontrolopa.parser.OpaPolicyParser;
+import digital.alf.cells.physicalacesscontrolopa.parser.RegoParser;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for AclMetrics.
+ *
+ * A simple registry is added to the global registry for each test. Gauges are identified by
+ * name and tags across the JVM, so the gauge tests use tags no other test registers.
+ */
+class AclMetricsTest {
+
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        Metrics.addRegistry(registry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        Metrics.removeRegistry(registry);
+    }
+
+    @Test
+    void timeGeneration_recordsSuccessAndFailure() {
+        assertEquals(List.of("<ES-4902:Anya Sharma>"),
+                AclMetrics.timeGeneration(AclMetrics.OPA, AclMetrics.STATIC, () -> List.of("<ES-4902:Anya Sharma>")));
+        assertThrows(IOException.class, () -> AclMetrics.timeGeneration(AclMetrics.OPA, AclMetrics.STATIC, () -> {
+            throw new IOException("opa not found");
+        }));
+
+        Timer timer = registry.get("acl.generation").tag("engine", "opa").tag("kind", "static").timer();
+        assertEquals(2, timer.count(), "failed generations are timed too");
+    }
+
+    @Test
+    void policyParse_timedPerEngine() throws IOException {
+        try (InputStream inputStream = new ClassPathResource("physical-access-control-opa/policy.rego").getInputStream()) {
+            new OpaPolicyParser(new RegoParser()).parse(inputStream);
+        }
+
+        assertEquals(1, registry.get("acl.policy.parse").tag("engine", "opa").timer().count());
+    }
+
+    @Test
+    void evaluationOutcomes_countedPerOutcome() {
+        AclMetrics.evaluationOutcomes(AclMetrics.KYVERNO, 3, 5, 1);
+        AclMetrics.evaluationOutcomes(AclMetrics.KYVERNO, 1, 0, 0);
+
+        assertEquals(4, registry.get("acl.evaluation.outcomes").tag("engine", "kyverno").tag("outcome", "allow").counter().count());
+        assertEquals(5, registry.get("acl.evaluation.outcomes").tag("engine", "kyverno").tag("outcome", "deny").counter().count());
+        assertEquals(1, registry.get("acl.evaluation.outcomes").tag("engine", "kyverno").tag("outcome", "error").counter().count());
+    }
+
+    @Test
+    void cliExited_taggedWithExitCode() {
+        AclMetrics.cliSpawned(AclMetrics.OPA);
+        AclMetrics.cliExited(AclMetrics.OPA, 1);
+
+        assertEquals(1, registry.get("acl.cli.spawns").tag("engine", "opa").counter().count());
+        assertEquals(1, registry.get("acl.cli.exits").tag("engine", "opa").tag("code", "1").counter().count());
+    }
+
+    @Test
+    void snapshotAge_nanUntilComputed() throws IOException {
+        Clock clock = Clock.fixed(Instant.parse("2025-10-20T08:00:00Z"), ZoneOffset.UTC);
+        AclSnapshots<String, String> snapshots = AclSnapshots.create("AclMetricsTest", () -> "source",
+                (source, at) -> new AclSnapshots.Generated<>(List.of("entry"), List.of()), clock);
+
+        assertTrue(Double.isNaN(registry.get("acl.snapshot.age").tag("snapshot", "AclMetricsTest").gauge().value()));
+
+        snapshots.refresh(false);
+        assertEquals(0.0, registry.get("acl.snapshot.age").tag("snapshot", "AclMetricsTest").gauge().value());
+        assertEquals(90.0, AclMetrics.ageSeconds(snapshots,
+                Clock.fixed(Instant.parse("2025-10-20T08:01:30Z"), ZoneOffset.UTC)));
+    }
+
+    @Test
+    void employeeCount_followsTheCount() {
+        AtomicInteger count = AclMetrics.employeeCount("AclMetricsTest", new AtomicInteger());
+        count.set(15000);
+
+        assertEquals(15000.0, registry.get("acl.employees").tag("engine", "AclMetricsTest").gauge().value());
+    }
+}
@@ -0,0 +1,118 @@
+package digital.alf.cells.acl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for AclPrecomputeScheduler and AclPrecomputeHealthIndicator.
+ *
+ * The scheduler is not started (its periodic tasks would race the test); refreshAll is called
+ * directly instead.
+ */
+class AclPrecomputeSchedulerTest {
+
+    private final AtomicInteger staticRuns = new AtomicInteger();
+    private final AtomicInteger dynamicRuns = new AtomicInteger();
+    private final AtomicBoolean dynamicFails = new AtomicBoolean(true);
+
+    private AclSnapshots<String, String> staticAcl;
+    private AclSnapshots<String, String> dynamicAcl;
+    private AclPrecomputeProperties properties;
+    private AclPrecomputeScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        staticAcl = AclSnapshots.create("static", () -> "policy@v1", (source, at) -> {
+            staticRuns.incrementAndGet();
+            return new AclSnapshots.Generated<>(List.of("<ES-4902:Anya Sharma>"), List.of());
+        }, Clock.systemUTC());
+        dynamicAcl = AclSnapshots.create("dynamic", () -> "policy@v1", (source, at) -> {
+            dynamicRuns.incrementAndGet();
+            if (dynamicFails.get()) {
+                throw new IOException("opa not found");
+            }
+            return new AclSnapshots.Generated<>(List.of("<DL-1020:David Lee>"), List.of());
+        }, Clock.systemUTC());
+        properties = new AclPrecomputeProperties();
+        scheduler = new AclPrecomputeScheduler(properties, List.of(() -> List.of(staticAcl, dynamicAcl)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.destroy();
+    }
+
+    @Test
+    void refreshAll_failureOfOneSnapshot_doesNotBlockOthers() {
+        scheduler.refreshAll(true);
+
+        assertTrue(staticAcl.isReady());
+        assertFalse(dynamicAcl.isReady());
+        assertFalse(scheduler.isReady());
+    }
+
+    @Test
+    void refreshAll_retriesMissingSnapshotsOnNextCheck() throws IOException {
+        scheduler.refreshAll(true);
+        dynamicFails.set(false);
+        scheduler.refreshAll(false);
+
+        assertTrue(scheduler.isReady());
+        assertEquals(List.of("<DL-1020:David Lee>"), dynamicAcl.entries());
+        assertEquals(1, staticRuns.get(), "unchanged inputs are not recomputed on a check");
+        assertEquals(2, dynamicRuns.get());
+    }
+
+    @Test
+    void health_outOfServiceUntilEverySnapshotExists() {
+        AclPrecomputeHealthIndicator indicator = new AclPrecomputeHealthIndicator(scheduler);
+
+        scheduler.refreshAll(true);
+        Health pending = indicator.health();
+        dynamicFails.set(false);
+        scheduler.refreshAll(false);
+        Health ready = indicator.health();
+
+        assertEquals(Status.OUT_OF_SERVICE, pending.getStatus());
+        assertEquals("pending", pending.getDetails().get("dynamic"));
+        assertEquals(Status.UP, ready.getStatus());
+    }
+
+    @Test
+    void start_afterStop_computesAgain() throws InterruptedException {
+        scheduler.start();
+        awaitStaticRuns(1);
+        scheduler.stop();
+        scheduler.start();
+        awaitStaticRuns(2);
+
+        assertEquals(2, staticRuns.get());
+        assertTrue(scheduler.isRunning());
+    }
+
+    private void awaitStaticRuns(int runs) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (staticRuns.get() < runs && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void isReady_disabled_alwaysReady() {
+        properties.setEnabled(false);
+
+        assertTrue(scheduler.isReady());
+    }
+}
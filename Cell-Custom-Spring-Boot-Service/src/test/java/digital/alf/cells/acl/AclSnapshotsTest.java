@@ -0,0 +1,160 @@
+package digital.alf.cells.acl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Unit tests for AclSnapshots.
+ *
+ * The clock is moved by hand and the scheduler is a mock, so boundary recomputation is
+ * driven by the requests alone.
+ */
+class AclSnapshotsTest {
+
+    private static final Instant WINDOW_START = Instant.parse("2025-10-20T08:00:00Z");
+    private static final Instant WINDOW_END = Instant.parse("2025-10-20T19:00:00Z");
+
+    /**
+     * Clock the test moves by hand.
+     */
+    private static class TestClock extends Clock {
+
+        private Instant now;
+
+        TestClock(Instant now) {
+            this.now = now;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    private TestClock clock;
+    private ScheduledExecutorService scheduler;
+    private Object source;
+    private List<Instant> generatedAt;
+    private AclSnapshots<Object, String> snapshots;
+
+    @BeforeEach
+    void setUp() {
+        clock = new TestClock(Instant.parse("2025-10-20T07:00:00Z"));
+        source = new Object();
+        generatedAt = new ArrayList<>();
+        scheduler = mock(ScheduledExecutorService.class);
+        snapshots = AclSnapshots.create("test", () -> source, (s, at) -> {
+            generatedAt.add(at);
+            boolean inWindow = !at.isBefore(WINDOW_START) && !at.isAfter(WINDOW_END);
+            return new AclSnapshots.Generated<>(inWindow ? List.of("trained") : List.of("trained", "untrained"),
+                    List.of(WINDOW_START, WINDOW_END));
+        }, clock, scheduler);
+    }
+
+    @Test
+    void entries_betweenBoundaries_servedFromSnapshot() throws IOException {
+        assertEquals(List.of("trained", "untrained"), snapshots.entries());
+        clock.now = Instant.parse("2025-10-20T07:59:59Z");
+        assertEquals(List.of("trained", "untrained"), snapshots.entries());
+
+        assertEquals(1, generatedAt.size());
+        assertEquals(WINDOW_START, snapshots.snapshot().validUntil());
+        verify(scheduler).schedule(any(Runnable.class), eq(3_600_000_000_000L), eq(TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    void entries_boundaryPassed_recomputed() throws IOException {
+        snapshots.entries();
+
+        clock.now = WINDOW_START;
+        assertEquals(List.of("trained"), snapshots.entries());
+        clock.now = WINDOW_END;
+        assertEquals(List.of("trained"), snapshots.entries());
+        clock.now = WINDOW_END.plusSeconds(1);
+        assertEquals(List.of("trained", "untrained"), snapshots.entries());
+
+        assertEquals(List.of(Instant.parse("2025-10-20T07:00:00Z"), WINDOW_START, WINDOW_END, WINDOW_END.plusSeconds(1)),
+                generatedAt);
+        assertNull(snapshots.snapshot().validUntil(), "no boundary after the window");
+    }
+
+    @Test
+    void entries_sourceChanged_recomputed() throws IOException {
+        snapshots.entries();
+        source = new Object();
+        snapshots.entries();
+
+        assertEquals(2, generatedAt.size());
+    }
+
+    @Test
+    void entries_sourceEqualButNotSame_servedFromSnapshot() throws IOException {
+        source = "policy@v1";
+        snapshots.entries();
+        source = new String("policy@v1");
+        snapshots.entries();
+
+        assertEquals(1, generatedAt.size());
+    }
+
+    @Test
+    void entries_publishedInBackground_neverComputes() throws IOException {
+        snapshots.publishInBackground();
+
+        assertThrows(AclNotReadyException.class, () -> snapshots.entries());
+        assertTrue(generatedAt.isEmpty());
+
+        assertTrue(snapshots.refresh(false));
+        source = new Object();
+        assertEquals(List.of("trained", "untrained"), snapshots.entries(), "stale snapshot served until refreshed");
+        assertEquals(1, generatedAt.size());
+    }
+
+    @Test
+    void refresh_recomputesOnlyStaleSnapshotsUnlessForced() throws IOException {
+        snapshots.publishInBackground();
+        assertFalse(snapshots.isReady());
+        snapshots.refresh(false);
+        assertTrue(snapshots.isReady());
+
+        assertFalse(snapshots.refresh(false));
+        source = new Object();
+        assertTrue(snapshots.refresh(false));
+        assertTrue(snapshots.refresh(true));
+
+        assertEquals(3, generatedAt.size());
+    }
+
+    @Test
+    void nextBoundary_countsInstantJustAfterBound() {
+        assertEquals(WINDOW_END.plusNanos(1), AclSnapshots.nextBoundary(List.of(WINDOW_START, WINDOW_END), WINDOW_END));
+        assertEquals(WINDOW_START, AclSnapshots.nextBoundary(List.of(WINDOW_END, WINDOW_START), WINDOW_START.minusSeconds(1)));
+        assertNull(AclSnapshots.nextBoundary(List.of(), WINDOW_START));
+    }
+}
@@ -0,0 +1,90 @@
+package digital.alf.cells.acl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkDecisionsTest {
+
+    private static final Instant NOW = Instant.parse("2025-10-20T08:30:00Z");
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    private static final DecisionIndex.Grant TRAINED = DecisionIndex.Grant.of(List.of("ES-4902", "DL-1020"));
+    private static final DecisionIndex.Grant EVERYONE = DecisionIndex.Grant.EVERYONE;
+
+    private final DecisionIndex index = DecisionIndex.builder()
+            .resourceKind("Facility")
+            .timeBounds(List.of(Instant.parse("2024-10-20T08:00:00Z"), Instant.parse("2026-10-20T19:00:00Z")))
+            .scope(new DecisionIndex.Scope(null, "Facility"), List.of(EVERYONE, TRAINED, TRAINED, TRAINED, EVERYONE))
+            .scope(new DecisionIndex.Scope(null, null), List.of(EVERYONE, EVERYONE, EVERYONE, EVERYONE, EVERYONE))
+            .validationMessage("Training required")
+            .build();
+
+    private static InputStream body(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private List<AccessDecision> decide(String content) throws IOException {
+        List<AccessDecision> decisions = new ArrayList<>();
+        BulkDecisions.decide(index, body(content), objectMapper, NOW).forEach(decisions::add);
+        return decisions;
+    }
+
+    @Test
+    void decide_jsonArray_resultsInInputOrder() throws IOException {
+        List<AccessDecision> decisions = decide("""
+                [{"principal":"ES-4902","action":"ENTER","resource":"Facility"},
+                 {"principal":"BC-3115","action":"ENTER","resource":"Facility"},
+                 {"principal":"DL-1020","action":"ENTER","resource":"Facility"}]
+                """);
+
+        assertEquals(3, decisions.size());
+        assertTrue(decisions.get(0).isAllow());
+        assertFalse(decisions.get(1).isAllow());
+        assertEquals("Training required", decisions.get(1).getMessage());
+        assertEquals("DL-1020", decisions.get(2).getPrincipal());
+    }
+
+    @Test
+    void decide_ndjson_usesOwnAtOrDefault() throws IOException {
+        List<AccessDecision> decisions = decide("""
+                {"principal":"BC-3115","action":"ENTER","resource":"Facility"}
+                {"principal":"BC-3115","action":"ENTER","resource":"Facility","at":"2027-01-01T00:00:00Z"}
+                """);
+
+        assertEquals(2, decisions.size());
+        assertEquals(NOW, decisions.get(0).getAt());
+        assertFalse(decisions.get(0).isAllow());
+        assertTrue(decisions.get(1).isAllow(), "the window has ended");
+    }
+
+    @Test
+    void read_emptyBodyOrArray_readsNothing() throws IOException {
+        assertEquals(0, BulkDecisions.read(body(""), objectMapper, request -> fail()));
+        assertEquals(0, BulkDecisions.read(body("[]"), objectMapper, request -> fail()));
+    }
+
+    @Test
+    void read_invalidBody_throwsIOException() {
+        assertThrows(IOException.class, () -> BulkDecisions.read(body("[1, 2]"), objectMapper, request -> { }));
+        assertThrows(IOException.class, () -> BulkDecisions.read(body("[{\"principal\":\"ES-4902\"}"), objectMapper, request -> { }));
+        assertThrows(IOException.class, () -> BulkDecisions.read(body("{\"principal\":\"ES-4902\"}]"), objectMapper, request -> { }));
+    }
+
+    @Test
+    void decide_malformedStart_throwsBeforeStreaming() {
+        assertThrows(JsonProcessingException.class, () -> BulkDecisions.decide(index, body("{principal}"), objectMapper, NOW));
+        assertThrows(JsonProcessingException.class, () -> BulkDecisions.decide(index, body("[\"ES-4902\"]"), objectMapper, NOW));
+    }
+}
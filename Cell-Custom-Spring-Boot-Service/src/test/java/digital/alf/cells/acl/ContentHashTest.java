@@ -0,0 +1,24 @@
+package digital.alf.cells.acl;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ContentHash.
+ */
+class ContentHashTest {
+
+    @Test
+    void sha256_knownVector() {
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", ContentHash.sha256("abc"));
+    }
+
+    @Test
+    void sha256_partsDigestedInOrder() {
+        assertEquals(ContentHash.sha256("abc"),
+                ContentHash.sha256("a".getBytes(StandardCharsets.UTF_8), "bc".getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,142 @@
+package digital.alf.cells.acl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for DecisionCache.
+ *
+ * The policy is written next to the test classes so it can be changed between requests.
+ */
+class DecisionCacheTest {
+
+    private static final String POLICY = "decision-cache-test-policy.rego";
+
+    private DecisionCacheProperties properties;
+    private DecisionCache cache;
+    private Path policyFile;
+    private List<List<String>> evaluatedBatches;
+
+    @BeforeEach
+    void setUp() throws IOException, URISyntaxException {
+        properties = new DecisionCacheProperties();
+        cache = new DecisionCache(properties);
+        policyFile = Path.of(DecisionCacheTest.class.getResource("/").toURI()).resolve(POLICY);
+        Files.writeString(policyFile, "package p\nallow := true\n");
+        evaluatedBatches = new ArrayList<>();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(policyFile);
+    }
+
+    private List<Boolean> evaluate(List<String> users) throws IOException {
+        return cache.evaluate(POLICY, users,
+                user -> new DecisionCache.Input(Map.of("user", user), "ENTER", "2025-10-20T08:30:00Z"),
+                uncached -> {
+                    evaluatedBatches.add(uncached);
+                    return uncached.stream().map(user -> user.startsWith("fail") ? null : user.startsWith("a")).toList();
+                });
+    }
+
+    @Test
+    void evaluate_secondRequest_evaluatesOnlyNewInputs() throws IOException {
+        assertEquals(List.of(true, false), evaluate(List.of("anya", "ben")));
+        assertEquals(List.of(false, true, true), evaluate(List.of("ben", "anya", "alex")));
+
+        assertEquals(List.of(List.of("anya", "ben"), List.of("alex")), evaluatedBatches);
+        assertEquals(2, cache.stats().hitCount());
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    void evaluate_failedDecision_isNotCached() throws IOException {
+        assertEquals(Arrays.asList(true, null), evaluate(List.of("anya", "fail")));
+        evaluate(List.of("anya", "fail"));
+
+        assertEquals(List.of(List.of("anya", "fail"), List.of("fail")), evaluatedBatches);
+    }
+
+    @Test
+    void evaluate_policyChanged_invalidatesDecisions() throws IOException {
+        evaluate(List.of("anya", "ben"));
+        Files.writeString(policyFile, "package p\nallow := false\n");
+
+        evaluate(List.of("anya"));
+
+        assertEquals(List.of(List.of("anya", "ben"), List.of("anya")), evaluatedBatches);
+        assertEquals(1, cache.size(), "decisions of the old policy version are dropped");
+    }
+
+    @Test
+    void evaluate_inputKeyOrder_doesNotMatter() throws IOException {
+        Map<String, Object> first = new LinkedHashMap<>();
+        first.put("a", 1);
+        first.put("b", List.of("x"));
+        Map<String, Object> second = new LinkedHashMap<>();
+        second.put("b", List.of("x"));
+        second.put("a", 1);
+
+        List<Map<String, Object>> evaluated = new ArrayList<>();
+        for (Map<String, Object> input : List.of(first, second)) {
+            cache.evaluate(POLICY, List.of(input), i -> new DecisionCache.Input(i, "ENTER", null), uncached -> {
+                evaluated.addAll(uncached);
+                return List.of(true);
+            });
+        }
+
+        assertEquals(List.of(first), evaluated);
+    }
+
+    @Test
+    void evaluate_disabled_evaluatesEverything() throws IOException {
+        properties.setEnabled(false);
+
+        evaluate(List.of("anya"));
+        evaluate(List.of("anya"));
+
+        assertEquals(List.of(List.of("anya"), List.of("anya")), evaluatedBatches);
+    }
+
+    @Test
+    void timeBucket_groupsTimesWithinBucket() {
+        Duration hour = Duration.ofHours(1);
+
+        assertEquals(DecisionCache.timeBucket("2025-10-20T08:05:00Z", hour),
+                DecisionCache.timeBucket("2025-10-20T08:55:00Z", hour));
+        assertNotEquals(DecisionCache.timeBucket("2025-10-20T08:55:00Z", hour),
+                DecisionCache.timeBucket("2025-10-20T09:05:00Z", hour));
+        assertEquals("2025-10-20T08:05:00Z", DecisionCache.timeBucket("2025-10-20T08:05:00Z", Duration.ZERO));
+    }
+
+    @Test
+    void bindTo_publishesCacheMetrics() throws IOException {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        cache.bindTo(registry);
+
+        evaluate(List.of("anya"));
+        evaluate(List.of("anya"));
+
+        assertEquals(1.0, registry.get("cache.gets").tag("cache", "acl.decisions").tag("result", "hit")
+                .functionCounter().count());
+        assertEquals(1.0, registry.get("cache.gets").tag("cache", "acl.decisions").tag("result", "miss")
+                .functionCounter().count());
+        assertNotNull(registry.get("cache.evictions").tag("cache", "acl.decisions").functionCounter());
+    }
+}
@@ -0,0 +1,108 @@
+package digital.alf.cells.acl;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DecisionIndexTest {
+
+    private static final Instant WINDOW_START = Instant.parse("2024-10-20T08:00:00Z");
+    private static final Instant WINDOW_END = Instant.parse("2026-10-20T19:00:00Z");
+    private static final Instant IN_WINDOW = Instant.parse("2025-10-20T08:30:00Z");
+
+    private static final DecisionIndex.Grant TRAINED = DecisionIndex.Grant.of(List.of("ES-4902", "DL-1020"));
+    private static final DecisionIndex.Grant EVERYONE = DecisionIndex.Grant.EVERYONE;
+    private static final DecisionIndex.Grant NOBODY = DecisionIndex.Grant.NOBODY;
+
+    // ENTER on a Facility needs training inside the window (bounds included); EXIT on a Facility
+    // is never allowed; anything on another resource kind is always allowed.
+    private final DecisionIndex index = DecisionIndex.builder()
+            .resourceKind("Facility")
+            .resourceDescription("Facility [location='production-room']")
+            .timeBounds(List.of(WINDOW_START, WINDOW_END))
+            .scope(new DecisionIndex.Scope("ENTER", "Facility"), List.of(EVERYONE, TRAINED, TRAINED, TRAINED, EVERYONE))
+            .scope(new DecisionIndex.Scope(null, "Facility"), List.of(NOBODY, NOBODY, NOBODY, NOBODY, NOBODY))
+            .scope(new DecisionIndex.Scope("ENTER", null), List.of(EVERYONE, EVERYONE, EVERYONE, EVERYONE, EVERYONE))
+            .scope(new DecisionIndex.Scope(null, null), List.of(EVERYONE, EVERYONE, EVERYONE, EVERYONE, EVERYONE))
+            .validationMessage("Training required")
+            .build();
+
+    @Test
+    void decide_grantedEmployee_allows() {
+        AccessDecision decision = index.decide("ES-4902", "ENTER", "Facility", IN_WINDOW);
+
+        assertTrue(decision.isAllow());
+        assertNull(decision.getMessage());
+        assertEquals("ES-4902", decision.getPrincipal());
+        assertEquals(IN_WINDOW, decision.getAt());
+    }
+
+    @Test
+    void decide_aclPrincipalAndResourceForms_allow() {
+        assertTrue(index.decide("<DL-1020:David Lee>", "ENTER", "Facility", IN_WINDOW).isAllow());
+        assertTrue(index.decide("ES-4902", "ENTER", "Facility/production-room", IN_WINDOW).isAllow());
+        assertTrue(index.decide("ES-4902", "ENTER", "Facility [location='production-room']", IN_WINDOW).isAllow());
+    }
+
+    @Test
+    void decide_notGranted_deniesWithValidationMessage() {
+        AccessDecision decision = index.decide("BC-3115", "ENTER", "Facility", IN_WINDOW);
+
+        assertFalse(decision.isAllow());
+        assertEquals("Training required", decision.getMessage());
+        assertFalse(index.decide(null, "ENTER", "Facility", IN_WINDOW).isAllow());
+    }
+
+    @Test
+    void decide_unnamedActionOrResource_usesItsScope() {
+        assertFalse(index.decide("ES-4902", "EXIT", "Facility", IN_WINDOW).isAllow());
+        assertTrue(index.decide("BC-3115", "ENTER", "Office", IN_WINDOW).isAllow());
+        assertTrue(index.decide("BC-3115", "ENTER", "FacilityX/room", IN_WINDOW).isAllow());
+        assertTrue(index.decide("BC-3115", "EXIT", "Office", IN_WINDOW).isAllow());
+    }
+
+    @Test
+    void decide_picksIntervalByTime() {
+        assertTrue(index.decide("BC-3115", "ENTER", "Facility", WINDOW_START.minusSeconds(1)).isAllow());
+        assertFalse(index.decide("BC-3115", "ENTER", "Facility", WINDOW_START).isAllow());
+        assertFalse(index.decide("BC-3115", "ENTER", "Facility", WINDOW_END).isAllow());
+        assertTrue(index.decide("BC-3115", "ENTER", "Facility", WINDOW_END.plusSeconds(1)).isAllow());
+    }
+
+    @Test
+    void intervals_oneInstantPerInterval() {
+        List<Instant> instants = DecisionIndex.intervals(List.of(WINDOW_END, WINDOW_START));
+
+        assertEquals(5, instants.size());
+        assertTrue(instants.get(0).isBefore(WINDOW_START));
+        assertEquals(WINDOW_START, instants.get(1));
+        assertTrue(instants.get(2).isAfter(WINDOW_START) && instants.get(2).isBefore(WINDOW_END));
+        assertEquals(WINDOW_END, instants.get(3));
+        assertTrue(instants.get(4).isAfter(WINDOW_END));
+        assertEquals(1, DecisionIndex.intervals(List.of()).size());
+    }
+
+    @Test
+    void builder_grantsNotMatchingIntervals_throws() {
+        DecisionIndex.DecisionIndexBuilder builder = DecisionIndex.builder()
+                .timeBounds(List.of(WINDOW_START))
+                .scope(new DecisionIndex.Scope(null, null), List.of(EVERYONE));
+
+        assertThrows(IllegalArgumentException.class, builder::build);
+    }
+
+    @Test
+    void grantedEmployees_countsDistinctIds() {
+        assertEquals(2, index.grantedEmployees());
+    }
+
+    @Test
+    void employeeId_stripsAclPrincipalFormat() {
+        assertEquals("ES-4902", DecisionIndex.employeeId("<ES-4902:Anya Sharma>"));
+        assertEquals("ES-4902", DecisionIndex.employeeId("<ES-4902>"));
+        assertEquals("ES-4902", DecisionIndex.employeeId("ES-4902"));
+    }
+}
@@ -0,0 +1,59 @@
+package digital.alf.cells.acl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GroupDictionaryTest {
+
+    private final GroupDictionary dictionary = new GroupDictionary();
+
+    @Test
+    void intern_assignsDenseStableIds() {
+        assertEquals(0, dictionary.intern("employee-group"));
+        assertEquals(1, dictionary.intern("training-vde-available-group"));
+        assertEquals(0, dictionary.intern("employee-group"));
+
+        assertEquals(2, dictionary.size());
+        assertEquals("training-vde-available-group", dictionary.nameOf(1));
+        assertEquals(1, dictionary.idOf("training-vde-available-group").getAsInt());
+        assertTrue(dictionary.idOf("unknown").isEmpty());
+    }
+
+    @Test
+    void maskOf_onlyTrueMemberships() {
+        Map<String, Boolean> groups = new LinkedHashMap<>();
+        groups.put("employee-group", true);
+        groups.put("training-vde-available-group", false);
+
+        GroupMask mask = dictionary.maskOf(groups);
+
+        assertEquals(1, mask.cardinality());
+        assertTrue(mask.containsAll(dictionary.requireAll("employee-group").orElseThrow()));
+        assertFalse(mask.containsAll(dictionary.requireAll("training-vde-available-group").orElseThrow()));
+        assertSame(GroupMask.EMPTY, dictionary.maskOf(null));
+    }
+
+    @Test
+    void requireAll_nullName_isUnsatisfiable() {
+        assertEquals(Optional.empty(), dictionary.requireAll("employee-group", null));
+    }
+
+    @Test
+    void maskOf_moreThan64Groups_matches() {
+        Map<String, Boolean> groups = new LinkedHashMap<>();
+        for (int i = 0; i < 100; i++) {
+            groups.put("group-" + i, true);
+        }
+
+        GroupMask mask = dictionary.maskOf(groups);
+
+        assertEquals(100, mask.cardinality());
+        assertTrue(mask.containsAll(dictionary.requireAll("group-3", "group-99").orElseThrow()));
+        assertFalse(mask.containsAll(dictionary.requireAll("group-99", "group-100").orElseThrow()));
+    }
+}
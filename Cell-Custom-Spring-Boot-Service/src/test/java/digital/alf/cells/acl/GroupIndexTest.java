@@ -0,0 +1,99 @@
+package digital.alf.cells.acl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GroupIndexTest {
+
+    private record Employee(String id, Map<String, Boolean> groups) {
+    }
+
+    private GroupIndex<Employee> index;
+
+    @BeforeEach
+    void setUp() {
+        index = GroupIndex.of(List.of(
+                new Employee("ES-4902", Map.of("employee-group", true, "training-vde-available-group", true)),
+                new Employee("BC-3115", Map.of("employee-group", true, "training-vde-available-group", false)),
+                new Employee("CD-7788", Map.of("training-vde-available-group", true)),
+                new Employee("DL-1020", Map.of("employee-group", true, "training-vde-available-group", true, "suspended-group", true)),
+                new Employee("ER-5501", null)
+        ), Employee::groups);
+    }
+
+    private List<String> ids(RoaringBitmap selection) {
+        List<String> ids = new ArrayList<>();
+        index.forEach(selection, employee -> ids.add(employee.id()));
+        return ids;
+    }
+
+    @Test
+    void select_intersection_inListOrder() {
+        RoaringBitmap selection = index.select(List.of("employee-group", "training-vde-available-group"), List.of());
+
+        assertEquals(List.of("ES-4902", "DL-1020"), ids(selection));
+    }
+
+    @Test
+    void select_andNot_removesExcludedGroup() {
+        RoaringBitmap selection = index.select(
+                List.of("employee-group", "training-vde-available-group"), List.of("suspended-group", "unknown-group"));
+
+        assertEquals(List.of("ES-4902"), ids(selection));
+    }
+
+    @Test
+    void select_unknownOrNullGroup_selectsNobody() {
+        assertTrue(index.select(List.of("employee-group", "unknown-group"), List.of()).isEmpty());
+        assertTrue(index.select(Arrays.asList("employee-group", null), List.of()).isEmpty());
+    }
+
+    @Test
+    void select_noRequirement_selectsEverybody() {
+        assertEquals(5, index.select(List.of(), List.of()).getCardinality());
+        assertEquals(4, index.select(List.of(), List.of("suspended-group")).getCardinality());
+    }
+
+    @Test
+    void count_matchesSelect() {
+        assertEquals(3, index.count(List.of("employee-group"), List.of()));
+        assertEquals(2, index.count(List.of("employee-group", "training-vde-available-group"), List.of()));
+        assertEquals(1, index.count(List.of("employee-group", "training-vde-available-group"), List.of("suspended-group")));
+        assertEquals(0, index.count(Arrays.asList("employee-group", null), List.of()));
+        assertEquals(5, index.count(List.of(), List.of()));
+        assertEquals(0, index.cardinality("unknown-group"));
+    }
+
+    @Test
+    void select_doesNotModifyIndex() {
+        index.select(List.of("employee-group"), List.of("training-vde-available-group")).add(4);
+
+        assertEquals(3, index.cardinality("employee-group"));
+    }
+
+    @Test
+    void of_largeDirectory_countsWithoutMaterialising() {
+        List<Employee> employees = new ArrayList<>();
+        for (int i = 0; i < 200_000; i++) {
+            Map<String, Boolean> groups = new HashMap<>();
+            groups.put("employee-group", true);
+            groups.put("training-vde-available-group", i % 2 == 0);
+            groups.put("suspended-group", i % 1000 == 0);
+            employees.add(new Employee("E-" + i, groups));
+        }
+
+        GroupIndex<Employee> large = GroupIndex.of(employees, Employee::groups);
+
+        assertEquals(100_000, large.count(List.of("employee-group", "training-vde-available-group"), List.of()));
+        assertEquals(99_800, large.count(List.of("employee-group", "training-vde-available-group"), List.of("suspended-group")));
+    }
+}
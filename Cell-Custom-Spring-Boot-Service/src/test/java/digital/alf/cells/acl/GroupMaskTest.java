@@ -0,0 +1,66 @@
+package digital.alf.cells.acl;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GroupMaskTest {
+
+    @Test
+    void containsAll_subset_true() {
+        GroupMask employee = GroupMask.of(0, 3, 7);
+
+        assertTrue(employee.containsAll(GroupMask.of(0, 7)));
+        assertTrue(employee.containsAll(GroupMask.EMPTY));
+    }
+
+    @Test
+    void containsAll_missingGroup_false() {
+        assertFalse(GroupMask.of(0, 3).containsAll(GroupMask.of(0, 5)));
+        assertFalse(GroupMask.EMPTY.containsAll(GroupMask.of(1)));
+    }
+
+    @Test
+    void containsAll_idsPast64_useOverflow() {
+        GroupMask employee = GroupMask.of(1, 63, 64, 130);
+
+        assertTrue(employee.containsAll(GroupMask.of(63, 130)));
+        assertTrue(employee.containsAll(GroupMask.of(64)));
+        assertFalse(employee.containsAll(GroupMask.of(65)));
+        assertFalse(GroupMask.of(1, 63).containsAll(GroupMask.of(1, 64)));
+    }
+
+    @Test
+    void intersects_sharedGroup() {
+        assertTrue(GroupMask.of(1, 5).intersects(GroupMask.of(5, 9)));
+        assertTrue(GroupMask.of(1, 80).intersects(GroupMask.of(80)));
+        assertFalse(GroupMask.of(1, 80).intersects(GroupMask.of(2, 81)));
+        assertFalse(GroupMask.of(1).intersects(GroupMask.EMPTY));
+    }
+
+    @Test
+    void contains_andCardinality() {
+        GroupMask mask = GroupMask.of(2, 70);
+
+        assertTrue(mask.contains(2));
+        assertTrue(mask.contains(70));
+        assertFalse(mask.contains(3));
+        assertFalse(mask.contains(-1));
+        assertEquals(2, mask.cardinality());
+        assertFalse(mask.isEmpty());
+        assertTrue(GroupMask.of().isEmpty());
+    }
+
+    @Test
+    void equals_sameIds_equal() {
+        assertEquals(GroupMask.of(1, 100), GroupMask.of(100, 1));
+        assertEquals(GroupMask.of(1, 100).hashCode(), GroupMask.of(100, 1).hashCode());
+        assertNotEquals(GroupMask.of(1), GroupMask.of(1, 100));
+        assertEquals("GroupMask{1, 100}", GroupMask.of(1, 100).toString());
+    }
+
+    @Test
+    void builder_negativeId_throws() {
+        assertThrows(IllegalArgumentException.class, () -> GroupMask.builder().add(-1));
+    }
+}
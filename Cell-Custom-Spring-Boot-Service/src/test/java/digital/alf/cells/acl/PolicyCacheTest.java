@@ -0,0 +1,71 @@
+package digital.alf.cells.acl;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for PolicyCache.
+ *
+ * The policy is written next to the test classes, which are on the classpath, so it can be
+ * edited between lookups.
+ */
+class PolicyCacheTest {
+
+    private static final String POLICY = "policy-cache-test.rego";
+
+    private Path policyFile;
+    private final PolicyCache<String> cache = new PolicyCache<>();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() throws URISyntaxException {
+        policyFile = Path.of(PolicyCacheTest.class.getProtectionDomain().getCodeSource().getLocation().toURI())
+                .resolve(POLICY);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(policyFile);
+    }
+
+    private String load(byte[] content) {
+        loads.incrementAndGet();
+        return new String(content, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void get_unchangedContent_loadsOnce() throws IOException {
+        Files.writeString(policyFile, "package v1");
+
+        assertEquals("package v1", cache.get(POLICY, this::load));
+        assertEquals("package v1", cache.get(POLICY, this::load));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void get_changedContent_loadsNewVersion() throws IOException {
+        Files.writeString(policyFile, "package v1");
+        cache.get(POLICY, this::load);
+
+        Files.writeString(policyFile, "package v2");
+
+        assertEquals("package v2", cache.get(POLICY, this::load));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void get_missingPolicy_throwsIOException() {
+        assertThrows(IOException.class, () -> cache.get("no-such-policy.rego", this::load));
+        assertEquals(0, loads.get());
+    }
+}
@@ -0,0 +1,107 @@
+package digital.alf.cells.acl;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for SingleFlight.
+ */
+class SingleFlightTest {
+
+    private final SingleFlight<String, List<String>> singleFlight = new SingleFlight<>();
+
+    /**
+     * Starts a first caller whose computation blocks until released, then submits the other
+     * callers with an equal key.
+     */
+    private List<Future<List<String>>> runConcurrently(ExecutorService executor, String key, int callers,
+                                                       SingleFlight.Computation<List<String>> computation,
+                                                       CountDownLatch release) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        Future<List<String>> first = executor.submit(() -> singleFlight.run(key, () -> {
+            started.countDown();
+            try {
+                assertTrue(release.await(5, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+            return computation.compute();
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        List<Future<List<String>>> futures = new ArrayList<>(List.of(first));
+        for (int i = 1; i < callers; i++) {
+            futures.add(executor.submit(() -> singleFlight.run(key, computation)));
+        }
+        return futures;
+    }
+
+    @Test
+    void run_concurrentEqualKeys_computeOnce() throws Exception {
+        AtomicInteger computations = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<List<String>>> futures = runConcurrently(executor, "policy@v1", 10, () -> {
+                computations.incrementAndGet();
+                return List.of("<ES-4902:Anya Sharma>");
+            }, release);
+
+            // Give the joining callers time to attach before the computation finishes
+            Thread.sleep(200);
+            release.countDown();
+            for (Future<List<String>> future : futures) {
+                assertEquals(List.of("<ES-4902:Anya Sharma>"), future.get(5, TimeUnit.SECONDS));
+            }
+        }
+
+        assertEquals(1, computations.get(), "joining callers share the in-flight result");
+        assertEquals(0, singleFlight.inFlight());
+    }
+
+    @Test
+    void run_failure_reportedToEveryCaller() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<List<String>>> futures = runConcurrently(executor, "policy@v1", 3, () -> {
+                throw new IOException("opa not found");
+            }, release);
+
+            Thread.sleep(200);
+            release.countDown();
+            for (Future<List<String>> future : futures) {
+                ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+                assertInstanceOf(IOException.class, e.getCause());
+            }
+        }
+        assertEquals(0, singleFlight.inFlight());
+    }
+
+    @Test
+    void run_sequentialCalls_computeEachTime() throws IOException {
+        AtomicInteger computations = new AtomicInteger();
+
+        singleFlight.run("policy@v1", () -> List.of(String.valueOf(computations.incrementAndGet())));
+        List<String> second = singleFlight.run("policy@v1", () -> List.of(String.valueOf(computations.incrementAndGet())));
+
+        assertEquals(List.of("2"), second, "nothing is cached after a computation finishes");
+    }
+
+    @Test
+    void run_differentKeys_doNotShare() throws IOException {
+        assertEquals(List.of("a"), singleFlight.run("policy@v1", () -> List.of("a")));
+        assertEquals(List.of("b"), singleFlight.run("policy@v2", () -> List.of("b")));
+    }
+}
@@ -1,14 +1,20 @@
 package digital.alf.cells.physicalacesscontrol;
 
+import digital.alf.cells.acl.GroupIndex;
 import digital.alf.cells.physicalacesscontrol.generator.AclGenerator;
 import digital.alf.cells.physicalacesscontrol.model.AclEntry;
+import digital.alf.cells.physicalacesscontrol.model.EmployeeInfo;
+import digital.alf.cells.physicalacesscontrol.model.KyvernoPolicyData;
 import digital.alf.cells.physicalacesscontrol.parser.EmployeeInfoParser;
 import digital.alf.cells.physicalacesscontrol.parser.KyvernoPolicyParser;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -21,8 +27,8 @@ class PolicyToAclStrategyTest {
 
     @Test
     void testConvertPolicyToAcl() throws IOException {
-        // Execute the algorithm
-        List<AclEntry> aclEntries = policyToAclStrategy.convertPolicyToAcl();
+        // Execute the algorithm inside the policy time window
+        List<AclEntry> aclEntries = policyToAclStrategy.convertPolicyToAcl(Instant.parse("2025-10-20T08:30:00Z"));
 
         // Verify results
         assertNotNull(aclEntries, "ACL entries should not be null");
@@ -71,7 +77,7 @@ class PolicyToAclStrategyTest {
 
     @Test
     void testFormattedOutput() throws IOException {
-        List<AclEntry> aclEntries = policyToAclStrategy.convertPolicyToAcl();
+        List<AclEntry> aclEntries = policyToAclStrategy.convertPolicyToAcl(Instant.parse("2025-10-20T08:30:00Z"));
         String formatted = policyToAclStrategy.formatAclOutput(aclEntries);
 
         assertNotNull(formatted, "Formatted output should not be null");
@@ -79,4 +85,33 @@ class PolicyToAclStrategyTest {
         assertTrue(formatted.contains("ES-4902:Anya Sharma"), "Should contain Anya Sharma");
         assertTrue(formatted.contains("DL-1020:David Lee"), "Should contain David Lee");
     }
+
+    @Autowired
+    private AclGenerator aclGenerator;
+
+    @Autowired
+    private KyvernoPolicyParser policyParser;
+
+    @Autowired
+    private EmployeeInfoParser employeeParser;
+
+    @Test
+    void testAclAtTime_outsideWindowGrantsEveryone() throws IOException {
+        KyvernoPolicyData policyData;
+        try (InputStream inputStream = new ClassPathResource("physical-access-control/pip-abac-policy1.yml").getInputStream()) {
+            policyData = policyParser.parse(inputStream);
+        }
+        GroupIndex<EmployeeInfo> employees;
+        try (InputStream inputStream = new ClassPathResource("physical-access-control/pip-info-employee-vde-trainings.yml").getInputStream()) {
+            employees = GroupIndex.of(employeeParser.parse(inputStream), EmployeeInfo::getGroups);
+        }
+
+        List<AclEntry> inWindow = aclGenerator.generateAcl(policyData, employees, Instant.parse("2025-10-20T08:30:00Z"));
+        assertEquals(aclGenerator.generateAcl(policyData, employees), inWindow);
+
+        // time_between excludes its bounds: at the end of the window the rule no longer runs
+        List<AclEntry> atEnd = aclGenerator.generateAcl(policyData, employees, Instant.parse("2026-10-20T19:00:00Z"));
+        assertEquals(employees.size(), atEnd.stream().map(AclEntry::getPrincipal).distinct().count());
+        assertTrue(atEnd.get(0).getCondition().startsWith("Any subject"));
+    }
 }
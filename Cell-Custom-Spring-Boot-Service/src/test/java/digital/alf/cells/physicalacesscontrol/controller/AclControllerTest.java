@@ -0,0 +1,164 @@
+package digital.alf.cells.physicalacesscontrol.controller;
+
+import digital.alf.cells.acl.AccessDecision;
+import digital.alf.cells.acl.DecisionIndex;
+import digital.alf.cells.physicalacesscontrol.PolicyToAclStrategy;
+import digital.alf.cells.physicalacesscontrol.service.KyvernoDecisionService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.MockMvcPrint;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// Result printing reads the response headers while streaming bodies are still being written
+@AutoConfigureMockMvc(print = MockMvcPrint.NONE)
+@WebMvcTest(AclController.class)
+class AclControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private PolicyToAclStrategy policyToAclStrategy;
+
+    @MockitoBean
+    private KyvernoDecisionService decisionService;
+
+    // --- GET /api/acl/decision ---
+
+    @Test
+    @WithMockUser
+    void decision_denied_returnsDecisionWithMessage() throws Exception {
+        Instant at = Instant.parse("2025-10-20T08:30:00Z");
+        when(decisionService.decide("BC-3115", "ENTER", "Facility", at)).thenReturn(AccessDecision.builder()
+                .principal("BC-3115").action("ENTER").resource("Facility").at(at)
+                .allow(false).message("training required")
+                .build());
+
+        mockMvc.perform(get("/api/acl/decision")
+                        .param("principal", "BC-3115")
+                        .param("action", "ENTER")
+                        .param("resource", "Facility")
+                        .param("at", "2025-10-20T08:30:00Z")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.allow").value(false))
+                .andExpect(jsonPath("$.message").value("training required"));
+    }
+
+    @Test
+    @WithMockUser
+    void decision_withoutAt_decidesForNow() throws Exception {
+        when(decisionService.decide(eq("ES-4902"), eq("ENTER"), eq("Facility"), any()))
+                .thenReturn(AccessDecision.builder().principal("ES-4902").allow(true).build());
+
+        mockMvc.perform(get("/api/acl/decision")
+                        .param("principal", "ES-4902")
+                        .param("action", "ENTER")
+                        .param("resource", "Facility")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.allow").value(true));
+    }
+
+    @Test
+    @WithMockUser
+    void decision_missingParameter_returns400() throws Exception {
+        mockMvc.perform(get("/api/acl/decision")
+                        .param("principal", "ES-4902")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser
+    void decision_serviceThrowsIOException_returns500() throws Exception {
+        when(decisionService.decide(any(), any(), any(), any())).thenThrow(new IOException("policy missing"));
+
+        mockMvc.perform(get("/api/acl/decision")
+                        .param("principal", "ES-4902")
+                        .param("action", "ENTER")
+                        .param("resource", "Facility")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isInternalServerError());
+    }
+
+    // --- POST /api/acl/decisions ---
+
+    private DecisionIndex decisionIndex() {
+        return DecisionIndex.builder()
+                .resourceKind("Facility")
+                .scope(new DecisionIndex.Scope(null, "Facility"), List.of(DecisionIndex.Grant.of(List.of("ES-4902"))))
+                .scope(new DecisionIndex.Scope(null, null), List.of(DecisionIndex.Grant.EVERYONE))
+                .validationMessage("training required")
+                .build();
+    }
+
+    @Test
+    @WithMockUser
+    void decisions_jsonArrayIn_jsonArrayOut() throws Exception {
+        when(decisionService.index()).thenReturn(decisionIndex());
+
+        MvcResult result = mockMvc.perform(post("/api/acl/decisions")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .content("""
+                                [{"principal":"BC-3115","action":"ENTER","resource":"Facility"},
+                                 {"principal":"BC-3115","action":"ENTER","resource":"Office"}]
+                                """))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].allow").value(false))
+                .andExpect(jsonPath("$[1].allow").value(true));
+    }
+
+    @Test
+    @WithMockUser
+    void decisions_malformedBody_returns400() throws Exception {
+        when(decisionService.index()).thenReturn(decisionIndex());
+
+        mockMvc.perform(post("/api/acl/decisions")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .accept(MediaType.APPLICATION_NDJSON)
+                        .content("not json"))
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser
+    void decisions_indexUnavailable_returns500() throws Exception {
+        when(decisionService.index()).thenThrow(new IOException("policy missing"));
+
+        mockMvc.perform(post("/api/acl/decisions")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isInternalServerError());
+    }
+}
@@ -0,0 +1,70 @@
+package digital.alf.cells.physicalacesscontrol.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DecisionMatrixTest {
+
+    private KyvernoUserInfo user(String uid, String username) {
+        KyvernoUserInfo.RequestInfo requestInfo = new KyvernoUserInfo.RequestInfo(
+                List.of(), List.of(), new KyvernoUserInfo.UserInfo(username, uid, List.of("employee-group")));
+        return KyvernoUserInfo.builder().requestInfo(requestInfo).build();
+    }
+
+    @Test
+    void allow_setsOnlyThatPair() {
+        DecisionMatrix matrix = new DecisionMatrix(
+                List.of(user("ES-4902", "Anya Sharma"), user("BC-3115", "Ben Carter")), List.of("ENTER", "UPDATE"));
+
+        matrix.allow(1, 0);
+
+        assertTrue(matrix.isAllowed(1, 0));
+        assertFalse(matrix.isAllowed(0, 0));
+        assertFalse(matrix.isAllowed(1, 1));
+        assertEquals(1, matrix.countAllowed());
+    }
+
+    @Test
+    void allowedUsers_returnsUsersInOrder() {
+        KyvernoUserInfo anya = user("ES-4902", "Anya Sharma");
+        KyvernoUserInfo ben = user("BC-3115", "Ben Carter");
+        KyvernoUserInfo david = user("DL-1020", "David Lee");
+        DecisionMatrix matrix = new DecisionMatrix(List.of(anya, ben, david), List.of("ENTER", "UPDATE"));
+
+        matrix.allow(2, 0);
+        matrix.allow(0, 0);
+        matrix.allow(0, 1);
+
+        assertEquals(List.of(anya, david), matrix.allowedUsers(0));
+        assertEquals(List.of(anya), matrix.allowedUsers(1));
+    }
+
+    @Test
+    void usersAllowedForAnyOperation_deduplicatesByUserId() {
+        KyvernoUserInfo anyaEnter = user("ES-4902", "Anya Sharma");
+        KyvernoUserInfo anyaUpdate = user("ES-4902", "Anya Sharma");
+        KyvernoUserInfo david = user("DL-1020", "David Lee");
+        DecisionMatrix matrix = new DecisionMatrix(List.of(anyaEnter, anyaUpdate, david), List.of("ENTER", "UPDATE"));
+
+        matrix.allow(0, 0);
+        matrix.allow(1, 1);
+        matrix.allow(2, 1);
+
+        List<KyvernoUserInfo> merged = matrix.usersAllowedForAnyOperation();
+
+        assertEquals(2, merged.size());
+        assertSame(anyaEnter, merged.get(0));
+        assertSame(david, merged.get(1));
+    }
+
+    @Test
+    void allow_outOfRange_throws() {
+        DecisionMatrix matrix = new DecisionMatrix(List.of(user("ES-4902", "Anya Sharma")), List.of("ENTER"));
+
+        assertThrows(IndexOutOfBoundsException.class, () -> matrix.allow(1, 0));
+        assertThrows(IndexOutOfBoundsException.class, () -> matrix.isAllowed(0, 1));
+    }
+}
@@ -0,0 +1,68 @@
+package digital.alf.cells.physicalacesscontrol.parser;
+
+import digital.alf.cells.physicalacesscontrol.model.KyvernoUserInfo;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KyvernoUserInfoParserTest {
+
+    private final KyvernoUserInfoParser parser = new KyvernoUserInfoParser();
+
+    private InputStream yaml(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void parse_requestInfoFormat_readsUsernameAndGroups() {
+        KyvernoUserInfo userInfo = parser.parse(yaml("""
+                apiVersion: cli.kyverno.io/v1alpha1
+                kind: UserInfo
+                requestInfo:
+                  userInfo:
+                    username: Anya Sharma
+                    groups:
+                      - employee-group
+                """));
+
+        assertEquals("Anya Sharma", userInfo.getUserId());
+        assertEquals("Anya Sharma", userInfo.getUsername());
+        assertEquals(List.of("employee-group"), userInfo.getUserGroups());
+    }
+
+    @Test
+    void parse_topLevelUserInfo_readsUidAsUserId() {
+        KyvernoUserInfo userInfo = parser.parse(yaml("""
+                apiVersion: cli.kyverno.io/v1alpha1
+                kind: UserInfo
+                userInfo:
+                  username: Anya Sharma
+                  uid: ES-4902
+                  groups:
+                    - employee-group
+                    - training-vde-available-group
+                """));
+
+        assertEquals("ES-4902", userInfo.getUserId());
+        assertEquals("Anya Sharma", userInfo.getUsername());
+        assertEquals(List.of("employee-group", "training-vde-available-group"), userInfo.getUserGroups());
+    }
+
+    @Test
+    void parse_pipUserFile_hasUserId() throws IOException {
+        try (InputStream inputStream = new ClassPathResource(
+                "physical-access-control/pip-users/pip-userinfo-ben-carter.yml").getInputStream()) {
+            KyvernoUserInfo userInfo = parser.parse(inputStream);
+
+            assertNotNull(userInfo.getUserId());
+            assertFalse(userInfo.getUserGroups().isEmpty());
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package digital.alf.cells.physicalacesscontrol.service;
+
+import digital.alf.cells.acl.AccessDecision;
+import digital.alf.cells.acl.DecisionIndex;
+import digital.alf.cells.physicalacesscontrol.generator.AclGenerator;
+import digital.alf.cells.physicalacesscontrol.parser.EmployeeInfoParser;
+import digital.alf.cells.physicalacesscontrol.parser.KyvernoPolicyParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for KyvernoDecisionService against the bundled pip-abac-policy1.yml and employee YAML.
+ */
+class KyvernoDecisionServiceTest {
+
+    private static final Instant IN_WINDOW = Instant.parse("2025-10-20T08:30:00Z");
+
+    private KyvernoDecisionService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new KyvernoDecisionService(new KyvernoPolicyParser(), new EmployeeInfoParser(), new AclGenerator(null));
+    }
+
+    @Test
+    void decide_trainedEmployee_allows() throws IOException {
+        AccessDecision decision = service.decide("<ES-4902:Anya Sharma>", "ENTER", "Facility", IN_WINDOW);
+
+        assertTrue(decision.isAllow());
+        assertNull(decision.getMessage());
+    }
+
+    @Test
+    void decide_untrainedEmployee_deniesWithValidationMessage() throws IOException {
+        AccessDecision decision = service.decide("BC-3115", "ENTER", "Facility", IN_WINDOW);
+
+        assertFalse(decision.isAllow());
+        assertTrue(decision.getMessage().contains("training-vde-available"));
+    }
+
+    @Test
+    void decide_outsideTimeWindow_allows() throws IOException {
+        assertTrue(service.decide("BC-3115", "ENTER", "Facility", Instant.parse("2027-01-01T00:00:00Z")).isAllow());
+        assertTrue(service.decide("BC-3115", "ENTER", "Facility", Instant.parse("2024-10-20T07:59:59Z")).isAllow());
+    }
+
+    @Test
+    void decide_windowBoundsExclusive() throws IOException {
+        // time_between excludes its bounds, so the rule is skipped at exactly start and end
+        assertTrue(service.decide("BC-3115", "ENTER", "Facility", Instant.parse("2024-10-20T08:00:00Z")).isAllow());
+        assertTrue(service.decide("BC-3115", "ENTER", "Facility", Instant.parse("2026-10-20T19:00:00Z")).isAllow());
+        assertFalse(service.decide("BC-3115", "ENTER", "Facility", Instant.parse("2026-10-20T18:59:59Z")).isAllow());
+    }
+
+    @Test
+    void decide_otherResourceKind_allows() throws IOException {
+        assertTrue(service.decide("BC-3115", "ENTER", "Office", IN_WINDOW).isAllow());
+    }
+
+    @Test
+    void decide_matchListsNoOperations_ruleAppliesToAll() throws IOException {
+        assertFalse(service.decide("BC-3115", "EXIT", "Facility", IN_WINDOW).isAllow());
+        assertTrue(service.decide("DL-1020", "EXIT", "Facility/production-room", IN_WINDOW).isAllow());
+    }
+
+    @Test
+    void index_builtOnce() throws IOException {
+        DecisionIndex first = service.index();
+
+        assertSame(first, service.index());
+        assertEquals(2, first.grantedEmployees());
+    }
+}
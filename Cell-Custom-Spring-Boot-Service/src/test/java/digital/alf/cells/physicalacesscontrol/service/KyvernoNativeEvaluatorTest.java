@@ -0,0 +1,188 @@
+package digital.alf.cells.physicalacesscontrol.service;
+
+import digital.alf.cells.physicalacesscontrol.model.KyvernoClusterReport;
+import digital.alf.cells.physicalacesscontrol.model.KyvernoPolicyData;
+import digital.alf.cells.physicalacesscontrol.model.KyvernoPolicyRule;
+import digital.alf.cells.physicalacesscontrol.model.KyvernoUserInfo;
+import digital.alf.cells.physicalacesscontrol.parser.KyvernoPolicyParser;
+import digital.alf.cells.physicalacesscontrol.parser.KyvernoUserInfoParser;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for KyvernoNativeEvaluator and KyvernoConditionEngine.
+ *
+ * Uses the real policy, resource and user files from src/main/resources; the expected
+ * decisions are the ones 'kyverno apply' reports for them.
+ */
+class KyvernoNativeEvaluatorTest {
+
+    private static final String POLICY = "physical-access-control/pip-abac-policy1.yml";
+    private static final String RESOURCE = "physical-access-control/pip-resources/pip-resource-room.yml";
+    private static final String USERS = "physical-access-control/pip-users/";
+    private static final String IN_WINDOW = "2025-10-20T08:30:00Z";
+
+    private final KyvernoNativeEvaluator evaluator = new KyvernoNativeEvaluator(new KyvernoPolicyParser());
+
+    private KyvernoUserInfo user(String file) throws IOException {
+        try (InputStream inputStream = new ClassPathResource(USERS + file).getInputStream()) {
+            return new KyvernoUserInfoParser().parse(inputStream);
+        }
+    }
+
+    private static KyvernoConditionEngine engine(KyvernoPolicyRule.Conditions deny) throws IOException {
+        KyvernoPolicyRule rule = new KyvernoPolicyRule(
+                "test-rule",
+                new KyvernoPolicyRule.Match(List.of(), List.of()),
+                new KyvernoPolicyRule.Match(List.of(), List.of()),
+                KyvernoPolicyRule.Conditions.NONE,
+                deny,
+                "denied");
+        return new KyvernoConditionEngine(KyvernoPolicyData.builder().policyName("test").rules(List.of(rule)).build());
+    }
+
+    private static KyvernoPolicyRule.Conditions any(Object key, String operator, Object value) {
+        return new KyvernoPolicyRule.Conditions(
+                List.of(new KyvernoPolicyRule.Condition(key, operator, value)), List.of());
+    }
+
+    private static Map<String, Object> context(List<String> groups) {
+        return Map.of("request", Map.of(
+                "operation", "ENTER",
+                "userInfo", Map.of("username", "Test User", "groups", groups),
+                "object", Map.of("kind", "Facility", "metadata", Map.of("name", "door"))));
+    }
+
+    @Test
+    void evaluate_realPolicy_passesOnlyUsersWithTraining() throws IOException {
+        assertTrue(evaluator.evaluate(POLICY, RESOURCE, user("pip-userinfo-anya-sharma.yml"), "ENTER", IN_WINDOW).hasPassed());
+        assertTrue(evaluator.evaluate(POLICY, RESOURCE, user("pip-userinfo-david-lee.yml"), "ENTER", IN_WINDOW).hasPassed());
+        assertFalse(evaluator.evaluate(POLICY, RESOURCE, user("pip-userinfo-ben-carter.yml"), "ENTER", IN_WINDOW).hasPassed());
+        assertFalse(evaluator.evaluate(POLICY, RESOURCE, user("pip-userinfo-chloe-davis.yml"), "ENTER", IN_WINDOW).hasPassed());
+        assertFalse(evaluator.evaluate(POLICY, RESOURCE, user("pip-userinfo-eve-rodriguez.yml"), "ENTER", IN_WINDOW).hasPassed());
+    }
+
+    @Test
+    void evaluate_failingUser_reportsValidationMessage() throws IOException {
+        KyvernoClusterReport report = evaluator.evaluate(
+                POLICY, RESOURCE, user("pip-userinfo-ben-carter.yml"), "ENTER", IN_WINDOW);
+
+        assertEquals(1, report.getSummary().getFail());
+        KyvernoClusterReport.Result result = report.getResults().get(0);
+        assertEquals("fail", result.getResult());
+        assertEquals("abac-enroll-restriction-time-bound", result.getPolicy());
+        assertEquals("deny-enroll-without-training-vde", result.getRule());
+        assertTrue(result.getMessage().startsWith("ATTENTION"));
+        assertEquals("main-entrance-door", result.getResources().get(0).getName());
+    }
+
+    @Test
+    void evaluate_outsideTimeWindow_skipsRule() throws IOException {
+        KyvernoClusterReport report = evaluator.evaluate(
+                POLICY, RESOURCE, user("pip-userinfo-ben-carter.yml"), "ENTER", "2027-01-01T00:00:00Z");
+
+        assertTrue(report.hasPassed());
+        assertEquals(1, report.getSummary().getSkip());
+        assertEquals("skip", report.getResults().get(0).getResult());
+    }
+
+    @Test
+    void evaluate_otherKind_producesNoResult() throws IOException {
+        KyvernoConditionEngine engine = evaluator.compile(POLICY);
+        Map<String, Object> context = KyvernoNativeEvaluator.buildContext(
+                Map.of("kind", "Pod", "metadata", Map.of("name", "web")),
+                user("pip-userinfo-ben-carter.yml"), "ENTER", IN_WINDOW);
+
+        KyvernoClusterReport report = engine.evaluate(context);
+
+        assertTrue(report.getResults().isEmpty());
+        assertTrue(report.hasPassed());
+    }
+
+    @Test
+    void compile_cachesPolicyByContent() throws IOException {
+        assertSame(evaluator.compile(POLICY), evaluator.compile(POLICY));
+    }
+
+    @Test
+    void conditions_setOperators() throws IOException {
+        List<String> groups = List.of("employee-group", "training-group");
+        String userGroups = "{{ request.userInfo.groups }}";
+
+        assertFalse(engine(any("training-group", "NotIn", userGroups)).evaluate(context(groups)).hasFailed());
+        assertTrue(engine(any("visitor-group", "NotIn", userGroups)).evaluate(context(groups)).hasFailed());
+        assertTrue(engine(any("training-group", "In", userGroups)).evaluate(context(groups)).hasFailed());
+        assertTrue(engine(any(List.of("visitor-group", "training-group"), "AnyIn", userGroups))
+                .evaluate(context(groups)).hasFailed());
+        assertFalse(engine(any(List.of("visitor-group", "training-group"), "AllIn", userGroups))
+                .evaluate(context(groups)).hasFailed());
+        assertTrue(engine(any(List.of("visitor-group", "training-group"), "AnyNotIn", userGroups))
+                .evaluate(context(groups)).hasFailed());
+        assertFalse(engine(any(List.of("visitor-group", "training-group"), "AllNotIn", userGroups))
+                .evaluate(context(groups)).hasFailed());
+        assertTrue(engine(any(userGroups, "AnyIn", List.of("training-*"))).evaluate(context(groups)).hasFailed());
+    }
+
+    @Test
+    void conditions_equalsNormalizesTypes() throws IOException {
+        assertTrue(engine(any("{{ request.operation }}", "Equals", "ENTER")).evaluate(context(List.of())).hasFailed());
+        assertFalse(engine(any("{{ request.operation }}", "NotEquals", "ENTER")).evaluate(context(List.of())).hasFailed());
+        assertTrue(engine(any("true", "Equals", true)).evaluate(context(List.of())).hasFailed());
+        assertTrue(engine(any(1, "Equals", "1.0")).evaluate(context(List.of())).hasFailed());
+        assertTrue(engine(any("op-{{ request.operation }}", "Equals", "op-ENTER")).evaluate(context(List.of())).hasFailed());
+    }
+
+    @Test
+    void conditions_nestedTemplateInFunctionArgument() throws IOException {
+        String key = "{{ time_before('{{ request.time.admissionTime }}', '2025-01-01T00:00:00Z') }}";
+        Map<String, Object> early = Map.of("request", Map.of("time", Map.of("admissionTime", "2024-06-01T00:00:00Z")));
+        Map<String, Object> late = Map.of("request", Map.of("time", Map.of("admissionTime", "2025-06-01T00:00:00Z")));
+
+        KyvernoConditionEngine engine = engine(any(key, "Equals", true));
+
+        assertTrue(engine.evaluate(early).hasFailed());
+        assertFalse(engine.evaluate(late).hasFailed());
+    }
+
+    @Test
+    void readsClock_onlyForTimeNowUtc() throws IOException {
+        assertFalse(evaluator.compile(POLICY).readsClock());
+        assertFalse(engine(any("{{ request.operation }}", "Equals", "ENTER")).readsClock());
+        assertTrue(engine(any("{{ time_before('{{ time_now_utc() }}', '2025-01-01T00:00:00Z') }}", "Equals", true))
+                .readsClock());
+    }
+
+    @Test
+    void readsUserIdentity_fromConditionsAndSubjects() throws IOException {
+        assertFalse(evaluator.compile(POLICY).readsUserIdentity());
+        assertFalse(engine(any("admins", "AnyIn", "{{ request.userInfo.groups }}")).readsUserIdentity());
+        assertTrue(engine(any("{{ request.userInfo.username }}", "Equals", "Anya Sharma")).readsUserIdentity());
+        assertTrue(engine(any("{{ request.userInfo }}", "NotEquals", "")).readsUserIdentity());
+        assertTrue(engine(any("{{ serviceAccountName }}", "Equals", "builder")).readsUserIdentity());
+        // Group order matters to Equals, but memoization sorts the groups
+        assertTrue(engine(any("{{ request.userInfo.groups }}", "Equals", List.of("admins", "staff"))).readsUserIdentity());
+
+        KyvernoPolicyRule.ResourceFilter userSubject = new KyvernoPolicyRule.ResourceFilter(
+                List.of("Facility"), List.of(), List.of(), Map.of(), List.of(new KyvernoPolicyRule.Subject("User", "Anya Sharma")));
+        KyvernoPolicyRule rule = new KyvernoPolicyRule("test-rule",
+                new KyvernoPolicyRule.Match(List.of(userSubject), List.of()),
+                new KyvernoPolicyRule.Match(List.of(), List.of()),
+                KyvernoPolicyRule.Conditions.NONE, KyvernoPolicyRule.Conditions.NONE, "denied");
+        assertTrue(new KyvernoConditionEngine(KyvernoPolicyData.builder().policyName("test").rules(List.of(rule)).build())
+                .readsUserIdentity());
+    }
+
+    @Test
+    void compile_unsupportedFunctionOrOperator_throws() {
+        assertThrows(IOException.class, () -> engine(any("{{ base64_decode('x') }}", "Equals", "x")));
+        assertThrows(IOException.class, () -> engine(any("x", "GreaterThan", 1)));
+        assertThrows(IOException.class, () -> engine(any("{{ request.operation", "Equals", "x")));
+    }
+}
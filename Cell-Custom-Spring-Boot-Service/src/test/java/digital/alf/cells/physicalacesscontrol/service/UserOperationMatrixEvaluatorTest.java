@@ -0,0 +1,144 @@
+package digital.alf.cells.physicalacesscontrol.service;
+
+import digital.alf.cells.acl.DecisionCache;
+import digital.alf.cells.acl.DecisionCacheProperties;
+import digital.alf.cells.physicalacesscontrol.config.KyvernoAclProperties;
+import digital.alf.cells.physicalacesscontrol.model.DecisionMatrix;
+import digital.alf.cells.physicalacesscontrol.model.KyvernoClusterReport;
+import digital.alf.cells.physicalacesscontrol.parser.KyvernoPolicyParser;
+import digital.alf.cells.physicalacesscontrol.parser.KyvernoUserInfoParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for UserOperationMatrixEvaluator.
+ *
+ * User files are parsed with the real KyvernoUserInfoParser from src/main/resources;
+ * KyvernoCliExecutor is mocked.
+ */
+@ExtendWith(MockitoExtension.class)
+class UserOperationMatrixEvaluatorTest {
+
+    private static final String POLICY = "physical-access-control/pip-abac-policy1.yml";
+    private static final String RESOURCE = "physical-access-control/pip-resources/pip-resource-room.yml";
+    private static final String TIME = "2025-10-20T08:30:00Z";
+
+    @Mock
+    private KyvernoCliExecutor cliExecutor;
+
+    @Mock
+    private KyvernoNativeEvaluator nativeEvaluator;
+
+    private KyvernoAclProperties properties;
+
+    private UserOperationMatrixEvaluator evaluator;
+
+    @BeforeEach
+    void setUp() {
+        properties = new KyvernoAclProperties();
+        properties.setConcurrency(4);
+        properties.setEngine(KyvernoAclProperties.Engine.CLI);
+        // Mocks decide per user file; memoization is covered by its own test
+        properties.setMemoize(false);
+        DecisionCacheProperties cacheProperties = new DecisionCacheProperties();
+        cacheProperties.setEnabled(false);
+        evaluator = new UserOperationMatrixEvaluator(new KyvernoUserInfoParser(), cliExecutor, nativeEvaluator, properties,
+                new DecisionCache(cacheProperties), new KyvernoPolicyParser());
+    }
+
+    private KyvernoClusterReport report(String result) {
+        KyvernoClusterReport.Result item = new KyvernoClusterReport.Result();
+        item.setResult(result);
+        KyvernoClusterReport report = new KyvernoClusterReport();
+        report.setResults(List.of(item));
+        return report;
+    }
+
+    @Test
+    void evaluate_schedulesEveryUserOperationPair() throws IOException {
+        when(cliExecutor.evaluate(anyString(), anyString(), anyString(), anyString(), anyString()))
+                .thenReturn(report("pass"));
+
+        DecisionMatrix matrix = evaluator.evaluate(POLICY, RESOURCE, List.of("ENTER", "UPDATE"), TIME);
+
+        assertEquals(5, matrix.getUsers().size());
+        assertEquals(10, matrix.countAllowed());
+        verify(cliExecutor, times(10)).evaluate(anyString(), anyString(), anyString(), anyString(), anyString());
+    }
+
+    @Test
+    void evaluate_setsBitsPerUserAndOperation() throws IOException {
+        when(cliExecutor.evaluate(anyString(), anyString(), anyString(), anyString(), anyString()))
+                .thenAnswer(invocation -> {
+                    String userFile = invocation.getArgument(2);
+                    String operation = invocation.getArgument(3);
+                    boolean pass = userFile.endsWith("anya-sharma.yml")
+                            || (userFile.endsWith("david-lee.yml") && operation.equals("ENTER"));
+                    return report(pass ? "pass" : "fail");
+                });
+
+        DecisionMatrix matrix = evaluator.evaluate(POLICY, RESOURCE, List.of("ENTER", "UPDATE"), TIME);
+
+        List<String> enter = matrix.allowedUsers(0).stream().map(u -> u.getUsername()).toList();
+        List<String> update = matrix.allowedUsers(1).stream().map(u -> u.getUsername()).toList();
+        assertEquals(List.of("Anya Sharma", "David Lee"), enter);
+        assertEquals(List.of("Anya Sharma"), update);
+        assertEquals(2, matrix.usersAllowedForAnyOperation().size());
+    }
+
+    @Test
+    void evaluate_failingPairCountsAsDenied() throws IOException {
+        AtomicInteger calls = new AtomicInteger();
+        when(cliExecutor.evaluate(anyString(), anyString(), anyString(), anyString(), anyString()))
+                .thenAnswer(invocation -> {
+                    if (calls.incrementAndGet() == 1) {
+                        throw new IOException("kyverno not found");
+                    }
+                    return report("pass");
+                });
+
+        DecisionMatrix matrix = evaluator.evaluate(POLICY, RESOURCE, List.of("ENTER"), TIME);
+
+        assertEquals(4, matrix.countAllowed());
+    }
+
+    @Test
+    void evaluate_sequentialMode_givesSameMatrix() throws IOException {
+        properties.setConcurrency(1);
+        when(cliExecutor.evaluate(anyString(), anyString(), anyString(), anyString(), eq(TIME)))
+                .thenAnswer(invocation -> report(
+                        ((String) invocation.getArgument(2)).endsWith("ben-carter.yml") ? "fail" : "pass"));
+
+        DecisionMatrix matrix = evaluator.evaluate(POLICY, RESOURCE, List.of("ENTER", "UPDATE"), TIME);
+
+        assertEquals(8, matrix.countAllowed());
+        assertTrue(matrix.allowedUsers(0).stream().noneMatch(u -> "Ben Carter".equals(u.getUsername())));
+    }
+
+    @Test
+    void evaluate_memoized_evaluatesOneUserPerGroupSet() throws IOException {
+        properties.setMemoize(true);
+        when(cliExecutor.evaluate(anyString(), anyString(), anyString(), anyString(), anyString()))
+                .thenAnswer(invocation -> report(
+                        ((String) invocation.getArgument(2)).endsWith("anya-sharma.yml") ? "pass" : "fail"));
+
+        DecisionMatrix matrix = evaluator.evaluate(POLICY, RESOURCE, List.of("ENTER", "UPDATE"), TIME);
+
+        // {employee, training} and {employee}: two classes x two operations
+        verify(cliExecutor, times(4)).evaluate(anyString(), anyString(), anyString(), anyString(), anyString());
+        List<String> enter = matrix.allowedUsers(0).stream().map(u -> u.getUsername()).toList();
+        assertEquals(List.of("Anya Sharma", "David Lee"), enter);
+        assertEquals(4, matrix.countAllowed());
+    }
+}
@@ -1,42 +1,43 @@
 package digital.alf.cells.physicalacesscontrolopa;
 
+import digital.alf.cells.acl.GroupIndex;
 import digital.alf.cells.physicalacesscontrolopa.generator.OpaAclGenerator;
 import digital.alf.cells.physicalacesscontrolopa.model.AclEntry;
 import digital.alf.cells.physicalacesscontrolopa.model.OpaEmployeeInfo;
 import digital.alf.cells.physicalacesscontrolopa.model.OpaPolicyData;
-import digital.alf.cells.physicalacesscontrolopa.parser.OpaEmployeeInfoParser;
-import digital.alf.cells.physicalacesscontrolopa.parser.OpaPolicyParser;
+import digital.alf.cells.physicalacesscontrolopa.service.OpaEmployeeDirectory;
+import digital.alf.cells.physicalacesscontrolopa.service.OpaPolicyService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
 /**
  * Unit tests for OpaPolicyToAclStrategy.
  *
- * Parsers and generator are mocked. ClassPathResource opens the actual files
- * from src/main/resources (which are on the test classpath), and the mocked
- * parsers return pre-built test data.
+ * Policy service, employee directory and generator are mocked and return pre-built test
+ * data.
  */
 @ExtendWith(MockitoExtension.class)
 class OpaPolicyToAclStrategyTest {
 
     @Mock
-    private OpaPolicyParser policyParser;
+    private OpaPolicyService policyService;
 
     @Mock
-    private OpaEmployeeInfoParser employeeParser;
+    private OpaEmployeeDirectory employeeDirectory;
 
     @Mock
     private OpaAclGenerator aclGenerator;
@@ -44,12 +45,12 @@ class OpaPolicyToAclStrategyTest {
     private OpaPolicyToAclStrategy strategy;
 
     private OpaPolicyData samplePolicy;
-    private List<OpaEmployeeInfo> sampleEmployees;
+    private GroupIndex<OpaEmployeeInfo> sampleEmployees;
     private List<AclEntry> sampleEntries;
 
     @BeforeEach
     void setUp() {
-        strategy = new OpaPolicyToAclStrategy(policyParser, employeeParser, aclGenerator);
+        strategy = new OpaPolicyToAclStrategy(policyService, employeeDirectory, aclGenerator);
 
         samplePolicy = OpaPolicyData.builder()
                 .policyName("test-policy")
@@ -61,10 +62,10 @@ class OpaPolicyToAclStrategyTest {
                 .timeWindowEnd(Instant.parse("2026-10-20T19:00:00Z"))
                 .build();
 
-        sampleEmployees = List.of(
+        sampleEmployees = GroupIndex.of(List.of(
                 new OpaEmployeeInfo("ES-4902", "Anya Sharma", Map.of("training-vde-available-group", true)),
                 new OpaEmployeeInfo("DL-1020", "David Lee",   Map.of("training-vde-available-group", true))
-        );
+        ), OpaEmployeeInfo::getGroups);
 
         sampleEntries = List.of(
                 AclEntry.builder().principal("<ES-4902:Anya Sharma>").action("ENTER").resource("Facility").condition("test").build(),
@@ -74,24 +75,24 @@ class OpaPolicyToAclStrategyTest {
 
     @Test
     void convertPolicyToAcl_delegatesToParsersAndGenerator() throws IOException {
-        when(policyParser.parse(any(InputStream.class))).thenReturn(samplePolicy);
-        when(employeeParser.parse(any(InputStream.class))).thenReturn(sampleEmployees);
-        when(aclGenerator.generateAcl(samplePolicy, sampleEmployees)).thenReturn(sampleEntries);
+        when(policyService.load(anyString())).thenReturn(samplePolicy);
+        when(employeeDirectory.getGroupIndex(anyString())).thenReturn(sampleEmployees);
+        when(aclGenerator.generateAcl(eq(samplePolicy), eq(sampleEmployees), any(Instant.class))).thenReturn(sampleEntries);
 
         List<AclEntry> result = strategy.convertPolicyToAcl();
 
         assertNotNull(result);
         assertEquals(2, result.size());
-        verify(policyParser).parse(any(InputStream.class));
-        verify(employeeParser).parse(any(InputStream.class));
-        verify(aclGenerator).generateAcl(samplePolicy, sampleEmployees);
+        verify(policyService).load("physical-access-control-opa/policy.rego");
+        verify(employeeDirectory).getGroupIndex("physical-access-control-opa/pip-info-employee-vde-trainings.json");
+        verify(aclGenerator).generateAcl(eq(samplePolicy), eq(sampleEmployees), any(Instant.class));
     }
 
     @Test
     void convertPolicyToAcl_returnsGeneratorResult() throws IOException {
-        when(policyParser.parse(any(InputStream.class))).thenReturn(samplePolicy);
-        when(employeeParser.parse(any(InputStream.class))).thenReturn(sampleEmployees);
-        when(aclGenerator.generateAcl(any(), any())).thenReturn(sampleEntries);
+        when(policyService.load(anyString())).thenReturn(samplePolicy);
+        when(employeeDirectory.getGroupIndex(anyString())).thenReturn(sampleEmployees);
+        when(aclGenerator.generateAcl(any(), ArgumentMatchers.<GroupIndex<OpaEmployeeInfo>>any(), any(Instant.class))).thenReturn(sampleEntries);
 
         List<AclEntry> result = strategy.convertPolicyToAcl();
 
@@ -100,9 +101,9 @@ class OpaPolicyToAclStrategyTest {
 
     @Test
     void convertPolicyToAcl_emptyEntries_returnsEmptyList() throws IOException {
-        when(policyParser.parse(any(InputStream.class))).thenReturn(samplePolicy);
-        when(employeeParser.parse(any(InputStream.class))).thenReturn(List.of());
-        when(aclGenerator.generateAcl(any(), any())).thenReturn(List.of());
+        when(policyService.load(anyString())).thenReturn(samplePolicy);
+        when(employeeDirectory.getGroupIndex(anyString())).thenReturn(GroupIndex.of(List.of(), OpaEmployeeInfo::getGroups));
+        when(aclGenerator.generateAcl(any(), ArgumentMatchers.<GroupIndex<OpaEmployeeInfo>>any(), any(Instant.class))).thenReturn(List.of());
 
         List<AclEntry> result = strategy.convertPolicyToAcl();
 
@@ -111,11 +112,29 @@ class OpaPolicyToAclStrategyTest {
 
     @Test
     void convertPolicyToAcl_parserThrows_propagatesIOException() throws IOException {
-        when(policyParser.parse(any(InputStream.class))).thenThrow(new IOException("parse failed"));
+        when(policyService.load(anyString())).thenThrow(new IOException("parse failed"));
 
         assertThrows(IOException.class, () -> strategy.convertPolicyToAcl());
     }
 
+    @Test
+    void currentAcl_servedFromSnapshotUntilEmployeeSnapshotChanges() throws IOException {
+        OpaEmployeeDirectory.Snapshot first = new OpaEmployeeDirectory.Snapshot(
+                "employees", "hash-1", List.of(), sampleEmployees, Instant.now());
+        OpaEmployeeDirectory.Snapshot second = new OpaEmployeeDirectory.Snapshot(
+                "employees", "hash-2", List.of(), sampleEmployees, Instant.now());
+        when(policyService.load(anyString())).thenReturn(samplePolicy);
+        when(employeeDirectory.snapshot(anyString())).thenReturn(first, first, second);
+        when(aclGenerator.generateAcl(eq(samplePolicy), eq(sampleEmployees), any(Instant.class))).thenReturn(sampleEntries);
+
+        assertEquals(sampleEntries, strategy.currentAcl());
+        assertEquals(sampleEntries, strategy.currentAcl());
+        verify(aclGenerator, times(1)).generateAcl(eq(samplePolicy), eq(sampleEmployees), any(Instant.class));
+
+        assertEquals(sampleEntries, strategy.currentAcl());
+        verify(aclGenerator, times(2)).generateAcl(eq(samplePolicy), eq(sampleEmployees), any(Instant.class));
+    }
+
     // --- formatAclOutput ---
 
     @Test
@@ -1,31 +1,57 @@
 package digital.alf.cells.physicalacesscontrolopa.controller;
 
+import digital.alf.cells.acl.AccessDecision;
+import digital.alf.cells.acl.AclChangeLog;
+import digital.alf.cells.acl.AclNotReadyException;
+import digital.alf.cells.acl.AclStream;
+import digital.alf.cells.acl.DecisionIndex;
 import digital.alf.cells.physicalacesscontrolopa.OpaPolicyToAclStrategy;
 import digital.alf.cells.physicalacesscontrolopa.model.AclEntry;
+import digital.alf.cells.physicalacesscontrolopa.service.OpaAclChangeService;
+import digital.alf.cells.physicalacesscontrolopa.service.OpaDecisionService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.MockMvcPrint;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
-import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.io.IOException;
+import java.time.Instant;
 import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
+// Result printing reads the response headers while streaming bodies are still being written
+@AutoConfigureMockMvc(print = MockMvcPrint.NONE)
 @WebMvcTest(OpaAclController.class)
 class OpaAclControllerTest {
 
     @Autowired
     private MockMvc mockMvc;
 
-    @MockBean
+    @MockitoBean
     private OpaPolicyToAclStrategy opaPolicyToAclStrategy;
 
+    @MockitoBean
+    private OpaDecisionService decisionService;
+
+    @MockitoBean
+    private OpaAclChangeService changeService;
+
     private List<AclEntry> twoEntries() {
         return List.of(
                 AclEntry.builder().principal("<ES-4902:Anya Sharma>").action("ENTER").resource("Facility").condition("has training-vde").build(),
@@ -38,7 +64,7 @@ class OpaAclControllerTest {
     @Test
     @WithMockUser
     void generateAcl_success_returns200WithJsonBody() throws Exception {
-        when(opaPolicyToAclStrategy.convertPolicyToAcl()).thenReturn(twoEntries());
+        when(opaPolicyToAclStrategy.currentAcl()).thenReturn(twoEntries());
 
         mockMvc.perform(get("/api/acl/opa/generate").accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
@@ -53,7 +79,7 @@ class OpaAclControllerTest {
     @Test
     @WithMockUser
     void generateAcl_emptyResult_returns200WithEmptyArray() throws Exception {
-        when(opaPolicyToAclStrategy.convertPolicyToAcl()).thenReturn(List.of());
+        when(opaPolicyToAclStrategy.currentAcl()).thenReturn(List.of());
 
         mockMvc.perform(get("/api/acl/opa/generate").accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
@@ -63,12 +89,21 @@ class OpaAclControllerTest {
     @Test
     @WithMockUser
     void generateAcl_serviceThrowsIOException_returns500() throws Exception {
-        when(opaPolicyToAclStrategy.convertPolicyToAcl()).thenThrow(new IOException("file not found"));
+        when(opaPolicyToAclStrategy.currentAcl()).thenThrow(new IOException("file not found"));
 
         mockMvc.perform(get("/api/acl/opa/generate").accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isInternalServerError());
     }
 
+    @Test
+    @WithMockUser
+    void generateAcl_snapshotNotComputedYet_returns503() throws Exception {
+        when(opaPolicyToAclStrategy.currentAcl()).thenThrow(new AclNotReadyException("OPA"));
+
+        mockMvc.perform(get("/api/acl/opa/generate").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isServiceUnavailable());
+    }
+
     @Test
     void generateAcl_unauthenticated_returns401() throws Exception {
         mockMvc.perform(get("/api/acl/opa/generate").accept(MediaType.APPLICATION_JSON))
@@ -80,7 +115,7 @@ class OpaAclControllerTest {
     @Test
     @WithMockUser
     void generateFormattedAcl_success_returns200WithText() throws Exception {
-        when(opaPolicyToAclStrategy.convertPolicyToAcl()).thenReturn(twoEntries());
+        when(opaPolicyToAclStrategy.currentAcl()).thenReturn(twoEntries());
         when(opaPolicyToAclStrategy.formatAclOutput(twoEntries()))
                 .thenReturn("ACCESS CONTROL LIST\nEntry #1\n");
 
@@ -91,7 +126,7 @@ class OpaAclControllerTest {
     @Test
     @WithMockUser
     void generateFormattedAcl_serviceThrowsIOException_returns500() throws Exception {
-        when(opaPolicyToAclStrategy.convertPolicyToAcl()).thenThrow(new IOException("fail"));
+        when(opaPolicyToAclStrategy.currentAcl()).thenThrow(new IOException("fail"));
 
         mockMvc.perform(get("/api/acl/opa/generate/formatted"))
                 .andExpect(status().isInternalServerError());
@@ -102,7 +137,7 @@ class OpaAclControllerTest {
     @Test
     @WithMockUser
     void generateAclDynamic_success_returns200WithJsonBody() throws Exception {
-        when(opaPolicyToAclStrategy.convertPolicyToAclWithDynamicEvaluation()).thenReturn(twoEntries());
+        when(opaPolicyToAclStrategy.currentDynamicAcl()).thenReturn(twoEntries());
 
         mockMvc.perform(get("/api/acl/opa/generate/dynamic").accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
@@ -112,18 +147,27 @@ class OpaAclControllerTest {
     @Test
     @WithMockUser
     void generateAclDynamic_serviceThrowsIOException_returns500() throws Exception {
-        when(opaPolicyToAclStrategy.convertPolicyToAclWithDynamicEvaluation()).thenThrow(new IOException("opa not found"));
+        when(opaPolicyToAclStrategy.currentDynamicAcl()).thenThrow(new IOException("opa not found"));
 
         mockMvc.perform(get("/api/acl/opa/generate/dynamic").accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isInternalServerError());
     }
 
+    @Test
+    @WithMockUser
+    void generateAclDynamic_snapshotNotComputedYet_returns503() throws Exception {
+        when(opaPolicyToAclStrategy.currentDynamicAcl()).thenThrow(new AclNotReadyException("OPA dynamic"));
+
+        mockMvc.perform(get("/api/acl/opa/generate/dynamic").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isServiceUnavailable());
+    }
+
     // --- GET /api/acl/opa/generate/dynamic/formatted ---
 
     @Test
     @WithMockUser
     void generateFormattedAclDynamic_success_returns200() throws Exception {
-        when(opaPolicyToAclStrategy.convertPolicyToAclWithDynamicEvaluation()).thenReturn(twoEntries());
+        when(opaPolicyToAclStrategy.currentDynamicAcl()).thenReturn(twoEntries());
         when(opaPolicyToAclStrategy.formatAclOutput(twoEntries())).thenReturn("formatted output");
 
         mockMvc.perform(get("/api/acl/opa/generate/dynamic/formatted"))
@@ -133,9 +177,279 @@ class OpaAclControllerTest {
     @Test
     @WithMockUser
     void generateFormattedAclDynamic_serviceThrowsIOException_returns500() throws Exception {
-        when(opaPolicyToAclStrategy.convertPolicyToAclWithDynamicEvaluation()).thenThrow(new IOException("fail"));
+        when(opaPolicyToAclStrategy.currentDynamicAcl()).thenThrow(new IOException("fail"));
 
         mockMvc.perform(get("/api/acl/opa/generate/dynamic/formatted"))
                 .andExpect(status().isInternalServerError());
     }
+
+    // --- GET /api/acl/opa/generate/stream ---
+
+    private AclStream<AclEntry> streamOf(List<AclEntry> entries) {
+        return sink -> entries.forEach(sink);
+    }
+
+    @Test
+    @WithMockUser
+    void streamAcl_ndjson_writesOneEntryPerLine() throws Exception {
+        when(opaPolicyToAclStrategy.streamPolicyToAcl()).thenReturn(streamOf(twoEntries()));
+
+        MvcResult result = mockMvc.perform(get("/api/acl/opa/generate/stream").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(body.endsWith("\n"));
+        assertTrue(lines[0].startsWith("{") && lines[0].contains("\"principal\":\"<ES-4902:Anya Sharma>\""));
+        assertTrue(lines[1].contains("\"principal\":\"<DL-1020:David Lee>\""));
+    }
+
+    @Test
+    @WithMockUser
+    void streamAcl_json_writesSameArrayAsGenerate() throws Exception {
+        when(opaPolicyToAclStrategy.streamPolicyToAcl()).thenReturn(streamOf(twoEntries()));
+
+        MvcResult result = mockMvc.perform(get("/api/acl/opa/generate/stream").accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].principal").value("<ES-4902:Anya Sharma>"))
+                .andExpect(jsonPath("$[1].action").value("ENTER"));
+    }
+
+    @Test
+    @WithMockUser
+    void streamAcl_emptyResult_writesEmptyArray() throws Exception {
+        when(opaPolicyToAclStrategy.streamPolicyToAcl()).thenReturn(streamOf(List.of()));
+
+        MvcResult result = mockMvc.perform(get("/api/acl/opa/generate/stream").accept(MediaType.APPLICATION_JSON))
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string("[]"));
+    }
+
+    @Test
+    @WithMockUser
+    void streamAcl_serviceThrowsIOException_returns500() throws Exception {
+        when(opaPolicyToAclStrategy.streamPolicyToAcl()).thenThrow(new IOException("file not found"));
+
+        mockMvc.perform(get("/api/acl/opa/generate/stream").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(status().isInternalServerError());
+    }
+
+    @Test
+    @WithMockUser
+    void streamAclDynamic_ndjson_writesEntries() throws Exception {
+        when(opaPolicyToAclStrategy.streamPolicyToAclWithDynamicEvaluation()).thenReturn(streamOf(twoEntries()));
+
+        MvcResult result = mockMvc.perform(get("/api/acl/opa/generate/dynamic/stream").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertEquals(2, body.lines().count());
+    }
+
+    @Test
+    void streamAcl_unauthenticated_returns401() throws Exception {
+        mockMvc.perform(get("/api/acl/opa/generate/stream").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isUnauthorized());
+    }
+
+    // --- GET /api/acl/opa/changes ---
+
+    @Test
+    @WithMockUser
+    void changes_returnsAddedAndRemovedSinceVersion() throws Exception {
+        when(changeService.changesSince(3)).thenReturn(new AclChangeLog.Changes<>(3, 5, false,
+                List.of(twoEntries().get(1)), List.of(twoEntries().get(0))));
+
+        mockMvc.perform(get("/api/acl/opa/changes").param("since", "3").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.version").value(5))
+                .andExpect(jsonPath("$.reset").value(false))
+                .andExpect(jsonPath("$.added[0].principal").value("<DL-1020:David Lee>"))
+                .andExpect(jsonPath("$.removed[0].principal").value("<ES-4902:Anya Sharma>"));
+    }
+
+    @Test
+    @WithMockUser
+    void changes_unknownVersion_returns400() throws Exception {
+        when(changeService.changesSince(99)).thenThrow(new IllegalArgumentException("Version 99 is not between 0 and 5"));
+
+        mockMvc.perform(get("/api/acl/opa/changes").param("since", "99").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    // --- GET /api/acl/opa/decision ---
+
+    @Test
+    @WithMockUser
+    void decision_returnsAllowAndMessage() throws Exception {
+        Instant at = Instant.parse("2025-10-20T08:30:00Z");
+        when(decisionService.decide("BC-3115", "ENTER", "Facility", at)).thenReturn(AccessDecision.builder()
+                .principal("BC-3115").action("ENTER").resource("Facility").at(at)
+                .allow(false).message("training required").build());
+
+        mockMvc.perform(get("/api/acl/opa/decision")
+                        .param("principal", "BC-3115")
+                        .param("action", "ENTER")
+                        .param("resource", "Facility")
+                        .param("at", "2025-10-20T08:30:00Z")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.allow").value(false))
+                .andExpect(jsonPath("$.message").value("training required"))
+                .andExpect(jsonPath("$.at").value("2025-10-20T08:30:00Z"));
+    }
+
+    @Test
+    @WithMockUser
+    void decision_withoutAt_usesCurrentTime() throws Exception {
+        when(decisionService.decide(eq("ES-4902"), eq("ENTER"), eq("Facility"), any(Instant.class)))
+                .thenReturn(AccessDecision.builder().principal("ES-4902").allow(true).build());
+
+        mockMvc.perform(get("/api/acl/opa/decision")
+                        .param("principal", "ES-4902")
+                        .param("action", "ENTER")
+                        .param("resource", "Facility")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.allow").value(true));
+    }
+
+    @Test
+    @WithMockUser
+    void decision_missingParameter_returns400() throws Exception {
+        mockMvc.perform(get("/api/acl/opa/decision")
+                        .param("principal", "ES-4902")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @WithMockUser
+    void decision_serviceThrowsIOException_returns500() throws Exception {
+        when(decisionService.decide(any(), any(), any(), any())).thenThrow(new IOException("policy missing"));
+
+        mockMvc.perform(get("/api/acl/opa/decision")
+                        .param("principal", "ES-4902")
+                        .param("action", "ENTER")
+                        .param("resource", "Facility")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isInternalServerError());
+    }
+
+    // --- POST /api/acl/opa/decisions ---
+
+    private DecisionIndex decisionIndex() {
+        return DecisionIndex.builder()
+                .resourceKind("Facility")
+                .scope(new DecisionIndex.Scope("ENTER", "Facility"), List.of(DecisionIndex.Grant.of(List.of("ES-4902", "DL-1020"))))
+                .scope(new DecisionIndex.Scope(null, "Facility"), List.of(DecisionIndex.Grant.NOBODY))
+                .scope(new DecisionIndex.Scope("ENTER", null), List.of(DecisionIndex.Grant.EVERYONE))
+                .scope(new DecisionIndex.Scope(null, null), List.of(DecisionIndex.Grant.EVERYONE))
+                .validationMessage("training required")
+                .build();
+    }
+
+    @Test
+    @WithMockUser
+    void decisions_ndjsonIn_ndjsonOutInInputOrder() throws Exception {
+        when(decisionService.index()).thenReturn(decisionIndex());
+
+        MvcResult result = mockMvc.perform(post("/api/acl/opa/decisions")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .accept(MediaType.APPLICATION_NDJSON)
+                        .content("""
+                                {"principal":"BC-3115","action":"ENTER","resource":"Facility"}
+                                {"principal":"ES-4902","action":"ENTER","resource":"Facility"}
+                                """))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].contains("\"principal\":\"BC-3115\"") && lines[0].contains("\"allow\":false"));
+        assertTrue(lines[1].contains("\"principal\":\"ES-4902\"") && lines[1].contains("\"allow\":true"));
+    }
+
+    @Test
+    @WithMockUser
+    void decisions_jsonArrayIn_jsonArrayOut() throws Exception {
+        when(decisionService.index()).thenReturn(decisionIndex());
+
+        MvcResult result = mockMvc.perform(post("/api/acl/opa/decisions")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .content("""
+                                [{"principal":"<DL-1020:David Lee>","action":"ENTER","resource":"Facility"},
+                                 {"principal":"DL-1020","action":"EXIT","resource":"Facility"}]
+                                """))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].allow").value(true))
+                .andExpect(jsonPath("$[1].allow").value(false));
+    }
+
+    @Test
+    @WithMockUser
+    void decisions_indexUnavailable_returns500() throws Exception {
+        when(decisionService.index()).thenThrow(new IOException("policy missing"));
+
+        mockMvc.perform(post("/api/acl/opa/decisions")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isInternalServerError());
+    }
+
+    @Test
+    @WithMockUser
+    void decisions_malformedBody_returns400BeforeStreaming() throws Exception {
+        when(decisionService.index()).thenReturn(decisionIndex());
+
+        mockMvc.perform(post("/api/acl/opa/decisions")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .content("[{\"principal\": ES-4902}]"))
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(post("/api/acl/opa/decisions")
+                        .with(csrf())
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .accept(MediaType.APPLICATION_NDJSON)
+                        .content("\"ES-4902\"\n"))
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isBadRequest());
+    }
 }
@@ -1,5 +1,11 @@
 package digital.alf.cells.physicalacesscontrolopa.generator;
 
+import digital.alf.cells.acl.GroupIndex;
+import digital.alf.cells.physicalacesscontrolopa.model.AccessPredicate;
+import digital.alf.cells.physicalacesscontrolopa.model.AccessPredicate.AttributeEquals;
+import digital.alf.cells.physicalacesscontrolopa.model.AccessPredicate.Clause;
+import digital.alf.cells.physicalacesscontrolopa.model.AccessPredicate.GroupMember;
+import digital.alf.cells.physicalacesscontrolopa.model.AccessPredicate.TimeBound;
 import digital.alf.cells.physicalacesscontrolopa.model.AclEntry;
 import digital.alf.cells.physicalacesscontrolopa.model.OpaEmployeeInfo;
 import digital.alf.cells.physicalacesscontrolopa.model.OpaPolicyData;
@@ -13,6 +19,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.io.IOException;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -137,6 +144,130 @@ class OpaAclGeneratorTest {
         assertTrue(condition.contains("2026-10-20T19:00:00Z"));
     }
 
+    @Test
+    void generateAcl_sink_receivesSameEntriesInOrder() {
+        OpaPolicyData multiOpPolicy = OpaPolicyData.builder()
+                .operations(List.of("ENTER", "EXIT"))
+                .resourceKind("Facility")
+                .requiredGroup("training-vde-available-group")
+                .build();
+        List<OpaEmployeeInfo> employees = List.of(
+                new OpaEmployeeInfo("ES-4902", "Anya Sharma", Map.of("training-vde-available-group", true)),
+                new OpaEmployeeInfo("BC-3115", "Ben Carter", Map.of("training-vde-available-group", false)),
+                new OpaEmployeeInfo("DL-1020", "David Lee", Map.of("training-vde-available-group", true))
+        );
+        List<AclEntry> streamed = new ArrayList<>();
+
+        generator.generateAcl(multiOpPolicy, employees, streamed::add);
+
+        assertEquals(generator.generateAcl(multiOpPolicy, employees), streamed);
+        assertEquals("<ES-4902:Anya Sharma>", streamed.get(0).getPrincipal());
+        assertEquals("EXIT", streamed.get(1).getAction());
+        assertEquals("<DL-1020:David Lee>", streamed.get(2).getPrincipal());
+    }
+
+    @Test
+    void generateAcl_groupsSetAfterConstruction_matchedByMask() {
+        OpaEmployeeInfo employee = new OpaEmployeeInfo();
+        employee.setId("ES-4902");
+        employee.setName("Anya Sharma");
+        employee.setGroups(Map.of("employee-group", true, "training-vde-available-group", true));
+
+        List<AclEntry> entries = generator.generateAcl(policyData, List.of(employee));
+
+        assertEquals(1, entries.size());
+    }
+
+    @Test
+    void generateAcl_groupIndex_sameEntriesAsList() {
+        OpaPolicyData multiOpPolicy = OpaPolicyData.builder()
+                .operations(List.of("ENTER", "EXIT"))
+                .resourceKind("Facility")
+                .requiredGroup("training-vde-available-group")
+                .build();
+        List<OpaEmployeeInfo> employees = List.of(
+                new OpaEmployeeInfo("ES-4902", "Anya Sharma", Map.of("training-vde-available-group", true)),
+                new OpaEmployeeInfo("BC-3115", "Ben Carter", Map.of("training-vde-available-group", false)),
+                new OpaEmployeeInfo("DL-1020", "David Lee", Map.of("training-vde-available-group", true))
+        );
+        GroupIndex<OpaEmployeeInfo> index = GroupIndex.of(employees, OpaEmployeeInfo::getGroups);
+
+        assertEquals(generator.generateAcl(multiOpPolicy, employees), generator.generateAcl(multiOpPolicy, index));
+        assertEquals(2, generator.countGrantedEmployees(multiOpPolicy, index));
+    }
+
+    @Test
+    void generateAcl_noRequiredGroup_grantsNobody() {
+        OpaPolicyData noGroupPolicy = OpaPolicyData.builder()
+                .operations(List.of("ENTER"))
+                .resourceKind("Facility")
+                .build();
+        List<OpaEmployeeInfo> employees = List.of(
+                new OpaEmployeeInfo("ES-4902", "Anya Sharma", Map.of("training-vde-available-group", true))
+        );
+
+        assertTrue(generator.generateAcl(noGroupPolicy, employees).isEmpty());
+    }
+
+    @Test
+    void generateAcl_accessPredicate_grantsUnionOfClausesOnBothPaths() {
+        AccessPredicate predicate = new AccessPredicate(List.of(
+                new Clause(List.of(new AttributeEquals("request.resource.kind", "Facility", false))),
+                new Clause(List.of(new GroupMember("admins", true))),
+                new Clause(List.of(new GroupMember("training-vde-available-group", true), new GroupMember("suspended", false)))
+        ));
+        OpaPolicyData predicatePolicy = OpaPolicyData.builder()
+                .operations(List.of("ENTER"))
+                .resourceKind("Facility")
+                .accessPredicate(predicate)
+                .build();
+        List<OpaEmployeeInfo> employees = List.of(
+                new OpaEmployeeInfo("ES-4902", "Anya Sharma", Map.of("training-vde-available-group", true)),
+                new OpaEmployeeInfo("BC-3115", "Ben Carter", Map.of("admins", true)),
+                new OpaEmployeeInfo("DL-1020", "David Lee", Map.of("training-vde-available-group", true, "suspended", true)),
+                new OpaEmployeeInfo("MK-7781", "Mia Kim", Map.of("employee-group", true))
+        );
+        GroupIndex<OpaEmployeeInfo> index = GroupIndex.of(employees, OpaEmployeeInfo::getGroups);
+
+        List<AclEntry> entries = generator.generateAcl(predicatePolicy, employees);
+
+        assertEquals(List.of("<ES-4902:Anya Sharma>", "<BC-3115:Ben Carter>"),
+                entries.stream().map(AclEntry::getPrincipal).toList());
+        assertEquals("Subject must hold group 'admins' OR Subject must hold group 'training-vde-available-group' AND NOT 'suspended'",
+                entries.get(0).getCondition());
+        assertEquals(entries, generator.generateAcl(predicatePolicy, index));
+        assertEquals(2, generator.countGrantedEmployees(predicatePolicy, index));
+    }
+
+    @Test
+    void generateAcl_at_grantsInForceAtThatTime() {
+        Instant start = Instant.parse("2024-10-20T08:00:00Z");
+        Instant end = Instant.parse("2026-10-20T19:00:00Z");
+        // allow if not deny: outside the window, or with training
+        AccessPredicate predicate = new AccessPredicate(List.of(
+                new Clause(List.of(new TimeBound("request.admissionTime", "<", start))),
+                new Clause(List.of(new TimeBound("request.admissionTime", ">", end))),
+                new Clause(List.of(new GroupMember("training-vde-available-group", true)))
+        ));
+        OpaPolicyData windowPolicy = OpaPolicyData.builder()
+                .operations(List.of("ENTER"))
+                .resourceKind("Facility")
+                .timeWindowStart(start)
+                .timeWindowEnd(end)
+                .accessPredicate(predicate)
+                .build();
+        GroupIndex<OpaEmployeeInfo> index = GroupIndex.of(List.of(
+                new OpaEmployeeInfo("ES-4902", "Anya Sharma", Map.of("training-vde-available-group", true)),
+                new OpaEmployeeInfo("BC-3115", "Ben Carter", Map.of("employee-group", true))
+        ), OpaEmployeeInfo::getGroups);
+
+        assertEquals(1, generator.generateAcl(windowPolicy, index, Instant.parse("2025-10-20T08:30:00Z")).size());
+        assertEquals(1, generator.generateAcl(windowPolicy, index, end).size());
+        assertEquals(2, generator.generateAcl(windowPolicy, index, end.plusSeconds(1)).size());
+        assertEquals(2, generator.generateAcl(windowPolicy, index, start.minusSeconds(1)).size());
+        assertEquals(generator.generateAcl(windowPolicy, index), generator.generateAcl(windowPolicy, index, (Instant) null));
+    }
+
     // --- generateAclWithDynamicEvaluation ---
 
     @Test
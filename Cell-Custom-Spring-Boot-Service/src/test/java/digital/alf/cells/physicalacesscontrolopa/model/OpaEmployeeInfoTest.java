@@ -2,6 +2,7 @@ package digital.alf.cells.physicalacesscontrolopa.model;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.HashMap;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -40,4 +41,16 @@ class OpaEmployeeInfoTest {
         OpaEmployeeInfo emp = new OpaEmployeeInfo("BC-3115", "Ben Carter", Map.of());
         assertFalse(emp.hasGroup("training-vde-available-group"));
     }
+
+    @Test
+    void setGroups_storesCopy_maskCannotGoStale() {
+        Map<String, Boolean> groups = new HashMap<>(Map.of("employee-group", true));
+        OpaEmployeeInfo emp = new OpaEmployeeInfo("BC-3115", "Ben Carter", groups);
+
+        groups.put("training-vde-available-group", true);
+
+        assertFalse(emp.hasGroup("training-vde-available-group"));
+        assertThrows(UnsupportedOperationException.class,
+                () -> emp.getGroups().put("training-vde-available-group", true));
+    }
 }
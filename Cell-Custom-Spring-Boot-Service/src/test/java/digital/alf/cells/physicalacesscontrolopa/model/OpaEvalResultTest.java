@@ -3,6 +3,7 @@ package digital.alf.cells.physicalacesscontrolopa.model;
 import org.junit.jupiter.api.Test;
 
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -75,4 +76,31 @@ class OpaEvalResultTest {
         OpaEvalResult result = new OpaEvalResult(List.of(item));
         assertFalse(result.isAllow());
     }
+
+    @Test
+    void getDecisions_mapValue_returnsBooleanPerKey() {
+        OpaEvalResult.Expression expr = new OpaEvalResult.Expression(
+                Map.of("0", true, "1", false, "2", "true"), "data.acl_batch.decisions", null);
+        OpaEvalResult result = new OpaEvalResult(List.of(new OpaEvalResult.ResultItem(List.of(expr))));
+
+        Map<String, Boolean> decisions = result.getDecisions();
+
+        assertEquals(3, decisions.size());
+        assertTrue(decisions.get("0"));
+        assertFalse(decisions.get("1"));
+        assertFalse(decisions.get("2"));
+    }
+
+    @Test
+    void getDecisions_undefinedResult_returnsEmptyMap() {
+        assertTrue(new OpaEvalResult(List.of()).getDecisions().isEmpty());
+        assertTrue(new OpaEvalResult(null).getDecisions().isEmpty());
+    }
+
+    @Test
+    void getDecisions_nonMapValue_returnsEmptyMap() {
+        OpaEvalResult.Expression expr = new OpaEvalResult.Expression(Boolean.TRUE, "data.acl_batch.decisions", null);
+        OpaEvalResult result = new OpaEvalResult(List.of(new OpaEvalResult.ResultItem(List.of(expr))));
+        assertTrue(result.getDecisions().isEmpty());
+    }
 }
@@ -9,7 +9,9 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -109,4 +111,87 @@ class OpaEmployeeInfoParserTest {
 
         assertTrue(result.isEmpty());
     }
+
+    @Test
+    void parse_consumer_emitsEmployeesInFileOrder() throws IOException {
+        String content = """
+                {
+                  "employees": [
+                    { "id": "ES-4902", "name": "Anya Sharma", "groups": { "employee-group": true } },
+                    { "name": "Ben Carter", "id": "BC-3115", "groups": { "employee-group": true } }
+                  ]
+                }
+                """;
+        List<String> ids = new ArrayList<>();
+
+        long count = parser.parse(json(content), employee -> ids.add(employee.getId()));
+
+        assertEquals(2, count);
+        assertEquals(List.of("ES-4902", "BC-3115"), ids);
+    }
+
+    @Test
+    void parse_unknownFields_areSkipped() throws IOException {
+        String content = """
+                {
+                  "_comment": "converted",
+                  "meta": { "source": ["a", "b"], "nested": { "employees": [] } },
+                  "employees": [
+                    { "id": "ES-4902", "badge": { "colour": "blue" }, "name": "Anya Sharma", "tags": [1, 2],
+                      "groups": { "employee-group": true, "extra": { "x": 1 }, "visitor-group": null } }
+                  ],
+                  "trailer": 42
+                }
+                """;
+
+        List<OpaEmployeeInfo> result = parser.parse(json(content));
+
+        assertEquals(1, result.size());
+        OpaEmployeeInfo emp = result.get(0);
+        assertEquals("ES-4902", emp.getId());
+        assertEquals("Anya Sharma", emp.getName());
+        assertEquals(Map.of("employee-group", true), emp.getGroups());
+    }
+
+    @Test
+    void parse_missingGroups_leavesGroupsNull() throws IOException {
+        OpaEmployeeInfo emp = parser.parse(json("""
+                { "employees": [ { "id": "ES-4902", "name": "Anya Sharma" } ] }
+                """)).get(0);
+
+        assertNull(emp.getGroups());
+        assertFalse(emp.hasGroup("employee-group"));
+    }
+
+    @Test
+    void parse_notAnObject_throwsIOException() {
+        assertThrows(IOException.class, () -> parser.parse(json("[1, 2, 3]")));
+        assertThrows(IOException.class, () -> parser.parse(json("{ \"employees\": { } }")));
+        assertThrows(IOException.class, () -> parser.parse(json("{ \"employees\": [ { \"id\": ")));
+    }
+
+    @Test
+    void parse_largeGeneratedDirectory_streamsEveryRecord() throws IOException {
+        int employees = 50_000;
+        StringBuilder content = new StringBuilder("{\"employees\":[");
+        for (int i = 0; i < employees; i++) {
+            if (i > 0) {
+                content.append(',');
+            }
+            content.append("{\"id\":\"E-").append(i).append("\",\"name\":\"Employee ").append(i)
+                    .append("\",\"groups\":{\"employee-group\":true,\"training-vde-available-group\":")
+                    .append(i % 2 == 0).append("}}");
+        }
+        content.append("]}");
+        int[] trained = new int[1];
+
+        long count = parser.parse(json(content.toString()), employee -> {
+            if (employee.hasGroup("training-vde-available-group")) {
+                trained[0]++;
+            }
+        });
+
+        assertEquals(employees, count);
+        assertEquals(employees / 2, trained[0]);
+    }
 }
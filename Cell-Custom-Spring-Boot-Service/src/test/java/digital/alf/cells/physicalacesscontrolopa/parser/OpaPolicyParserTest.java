@@ -19,7 +19,7 @@ class OpaPolicyParserTest {
 
     @BeforeEach
     void setUp() {
-        parser = new OpaPolicyParser();
+        parser = new OpaPolicyParser(new RegoParser());
     }
 
     private InputStream rego(String content) {
@@ -65,10 +65,21 @@ class OpaPolicyParserTest {
     }
 
     @Test
-    void parse_extractsOperationFromComment() throws IOException {
-        OpaPolicyData data = parser.parse(rego(SAMPLE_REGO));
-        assertNotNull(data.getOperations());
-        assertTrue(data.getOperations().contains("ENTER"));
+    void parse_operationsMentionedOnlyInComments_ignored() throws IOException {
+        String rego = """
+                # Policy: comment-ops
+                # Restricts the EXIT and DELETE operations
+                package some_policy
+
+                deny if {
+                    input.request.operation == "ENTER" # not UPDATE
+                }
+                """;
+
+        OpaPolicyData data = parser.parse(rego(rego));
+
+        assertEquals(List.of("ENTER"), data.getOperations());
+        assertEquals("comment-ops", data.getPolicyName());
     }
 
     @Test
@@ -116,32 +127,55 @@ class OpaPolicyParserTest {
     }
 
     @Test
-    void parse_multipleOperationsInComment_extractsAll() throws IOException {
-        // Each operation must appear on its own comment line because the regex anchors on '#'
+    void parse_operationsInConstantSet_extractsAllInOrder() throws IOException {
         String rego = """
-                # Policy: multi-op
-                # Restricts the ENTER operation
-                # Also restricts the EXIT operation
                 package some_policy
+                import rego.v1
+
+                guarded_operations := {"ENTER", "EXIT"}
+
+                deny if {
+                    input.request.operation in guarded_operations
+                }
+
+                deny if {
+                    input.request.operation == "ENTER"
+                }
                 """;
 
         OpaPolicyData data = parser.parse(rego(rego));
 
-        assertTrue(data.getOperations().contains("ENTER"));
-        assertTrue(data.getOperations().contains("EXIT"));
+        assertEquals(List.of("ENTER", "EXIT"), data.getOperations());
     }
 
     @Test
-    void parse_duplicateOperationInComment_deduplicates() throws IOException {
-        String rego = """
-                # Restricts the ENTER operation
-                # Also restricts ENTER for another reason
-                package some_policy
-                """;
+    void parse_manyRulesAndGroups_usesEarliestAndLatestBound() throws IOException {
+        StringBuilder rego = new StringBuilder("package many\nimport rego.v1\n\n");
+        for (int i = 0; i < 200; i++) {
+            rego.append("deny if {\n")
+                    .append("    input.request.resource.kind == \"Room\"\n")
+                    .append("    not \"group-").append(i).append("\" in input.request.userInfo.groups\n")
+                    .append("    time.parse_rfc3339_ns(input.request.admissionTime) < time.parse_rfc3339_ns(\"")
+                    .append(2000 + i).append("-01-01T00:00:00Z\")\n")
+                    .append("}\n\n");
+        }
 
-        OpaPolicyData data = parser.parse(rego(rego));
+        OpaPolicyData data = parser.parse(rego(rego.toString()));
+
+        assertEquals("Room", data.getResourceKind());
+        assertEquals("group-0", data.getRequiredGroup());
+        assertEquals(Instant.parse("2000-01-01T00:00:00Z"), data.getTimeWindowStart());
+        assertEquals(Instant.parse("2199-01-01T00:00:00Z"), data.getTimeWindowEnd());
+    }
 
-        assertEquals(1, data.getOperations().stream().filter("ENTER"::equals).count());
+    @Test
+    void parse_invalidRego_throwsIOException() {
+        assertThrows(IOException.class, () -> parser.parse(rego("""
+                package broken
+                allow if {
+                    input.request.operation == "ENTER
+                }
+                """)));
     }
 
     @Test
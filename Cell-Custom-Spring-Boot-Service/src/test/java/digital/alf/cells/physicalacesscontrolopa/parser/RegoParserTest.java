@@ -0,0 +1,187 @@
+package digital.alf.cells.physicalacesscontrolopa.parser;
+
+import digital.alf.cells.physicalacesscontrolopa.model.RegoModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RegoParserTest {
+
+    private RegoParser parser;
+
+    @BeforeEach
+    void setUp() {
+        parser = new RegoParser();
+    }
+
+    @Test
+    void parse_packageAndImports() throws IOException {
+        RegoModule module = parser.parse("""
+                package physical_access_control
+                import rego.v1
+                """);
+
+        assertEquals("physical_access_control", module.packageName());
+        assertEquals(List.of("rego.v1"), module.imports());
+        assertTrue(module.rules().isEmpty());
+    }
+
+    @Test
+    void parse_defaultRule() throws IOException {
+        RegoModule module = parser.parse("""
+                package p
+                default allow := false
+                """);
+
+        RegoModule.Rule rule = module.rules().get(0);
+        assertEquals(RegoModule.RuleKind.DEFAULT, rule.kind());
+        assertEquals("allow", rule.name());
+        assertEquals(new RegoModule.Scalar(Boolean.FALSE), rule.value());
+    }
+
+    @Test
+    void parse_completeRuleWithNegatedLiteral() throws IOException {
+        RegoModule module = parser.parse("""
+                package p
+                allow if {
+                    not deny
+                }
+                """);
+
+        RegoModule.Rule rule = module.rules().get(0);
+        assertEquals(RegoModule.RuleKind.COMPLETE, rule.kind());
+        assertEquals(1, rule.body().size());
+        assertTrue(rule.body().get(0).negated());
+        assertEquals(new RegoModule.Var("deny"), rule.body().get(0).expr());
+    }
+
+    @Test
+    void parse_membershipAndRefs() throws IOException {
+        RegoModule module = parser.parse("""
+                package p
+                deny if {
+                    not "training-vde-available-group" in input.request.userInfo.groups
+                }
+                """);
+
+        RegoModule.Literal literal = module.rules().get(0).body().get(0);
+        RegoModule.BinaryOp op = assertInstanceOf(RegoModule.BinaryOp.class, literal.expr());
+        assertEquals("in", op.operator());
+        assertEquals(new RegoModule.Scalar("training-vde-available-group"), op.left());
+        RegoModule.Ref ref = assertInstanceOf(RegoModule.Ref.class, op.right());
+        assertEquals(new RegoModule.Var("input"), ref.head());
+        assertEquals(3, ref.path().size());
+    }
+
+    @Test
+    void parse_builtinCallAndAssignment() throws IOException {
+        RegoModule module = parser.parse("""
+                package p
+                w if {
+                    t := time.parse_rfc3339_ns("2024-10-20T08:00:00Z")
+                    t >= 0
+                }
+                """);
+
+        List<RegoModule.Literal> body = module.rules().get(0).body();
+        RegoModule.BinaryOp assign = assertInstanceOf(RegoModule.BinaryOp.class, body.get(0).expr());
+        assertEquals(":=", assign.operator());
+        RegoModule.Call call = assertInstanceOf(RegoModule.Call.class, assign.right());
+        assertEquals("time.parse_rfc3339_ns", call.function());
+        assertEquals(">=", ((RegoModule.BinaryOp) body.get(1).expr()).operator());
+    }
+
+    @Test
+    void parse_partialSetRule() throws IOException {
+        RegoModule module = parser.parse("""
+                package p
+                violation contains msg if {
+                    deny
+                    msg := "denied"
+                }
+                """);
+
+        RegoModule.Rule rule = module.rules().get(0);
+        assertEquals(RegoModule.RuleKind.PARTIAL_SET, rule.kind());
+        assertEquals(new RegoModule.Var("msg"), rule.key());
+        assertEquals(2, rule.body().size());
+    }
+
+    @Test
+    void parse_someInAndCollections() throws IOException {
+        RegoModule module = parser.parse("""
+                package p
+                ok if {
+                    some g in {"a", "b"}
+                    some i, x in [1, 2]
+                    obj := {"k": g}
+                }
+                """);
+
+        List<RegoModule.Literal> body = module.rules().get(0).body();
+        RegoModule.SomeIn first = assertInstanceOf(RegoModule.SomeIn.class, body.get(0).expr());
+        assertNull(first.key());
+        assertInstanceOf(RegoModule.SetTerm.class, first.collection());
+        RegoModule.SomeIn second = assertInstanceOf(RegoModule.SomeIn.class, body.get(1).expr());
+        assertEquals(new RegoModule.Var("i"), second.key());
+        RegoModule.BinaryOp assign = (RegoModule.BinaryOp) body.get(2).expr();
+        assertInstanceOf(RegoModule.ObjectTerm.class, assign.right());
+    }
+
+    @Test
+    void parse_semicolonSeparatedBody() throws IOException {
+        RegoModule module = parser.parse("""
+                package p
+                allow if { input.a == 1; input.b == 2 }
+                """);
+
+        assertEquals(2, module.rules().get(0).body().size());
+    }
+
+    @Test
+    void parse_missingPackage_throwsIOException() {
+        assertThrows(IOException.class, () -> parser.parse("allow if { true }"));
+    }
+
+    @Test
+    void parse_unterminatedBody_throwsIOException() {
+        assertThrows(IOException.class, () -> parser.parse("""
+                package p
+                allow if {
+                    true
+                """));
+    }
+
+    @Test
+    void parse_unicodeEscape() throws IOException {
+        RegoModule module = parser.parse("package p\nmsg := \"caf\\u00e9\"");
+
+        assertEquals(new RegoModule.Scalar("caf\u00e9"), module.rules().get(0).value());
+    }
+
+    @Test
+    void parse_truncatedOrInvalidUnicodeEscape_throwsIOException() {
+        assertThrows(IOException.class, () -> parser.parse("package p\nmsg := \"\\u12"));
+        assertThrows(IOException.class, () -> parser.parse("package p\nmsg := \"\\u12zz\""));
+    }
+
+    @Test
+    void parse_realPolicyFile_parsesAllRules() throws IOException {
+        try (InputStream is = getClass().getClassLoader()
+                .getResourceAsStream("physical-access-control-opa/policy.rego")) {
+            assertNotNull(is, "policy.rego must be on the test classpath");
+            RegoModule module = parser.parse(is);
+
+            assertEquals("physical_access_control", module.packageName());
+            assertTrue(module.hasRule("allow"));
+            assertTrue(module.hasRule("deny"));
+            assertTrue(module.hasRule("time_within_window"));
+            assertTrue(module.hasRule("violation"));
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package digital.alf.cells.physicalacesscontrolopa.service;
+
+import digital.alf.cells.acl.AclChangeLog;
+import digital.alf.cells.acl.GroupIndex;
+import digital.alf.cells.physicalacesscontrolopa.config.OpaAclProperties;
+import digital.alf.cells.physicalacesscontrolopa.generator.OpaAclGenerator;
+import digital.alf.cells.physicalacesscontrolopa.model.AccessPredicate;
+import digital.alf.cells.physicalacesscontrolopa.model.AccessPredicate.Clause;
+import digital.alf.cells.physicalacesscontrolopa.model.AccessPredicate.GroupMember;
+import digital.alf.cells.physicalacesscontrolopa.model.AccessPredicate.TimeBound;
+import digital.alf.cells.physicalacesscontrolopa.model.AclEntry;
+import digital.alf.cells.physicalacesscontrolopa.model.OpaEmployeeInfo;
+import digital.alf.cells.physicalacesscontrolopa.model.OpaPolicyData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for OpaAclChangeService.
+ *
+ * Policy service and employee directory are mocked; the generator is real.
+ */
+@ExtendWith(MockitoExtension.class)
+class OpaAclChangeServiceTest {
+
+    private static final String GROUP = "training-vde-available-group";
+
+    @Mock
+    private OpaPolicyService policyService;
+
+    @Mock
+    private OpaEmployeeDirectory employeeDirectory;
+
+    private OpaAclGenerator aclGenerator;
+    private OpaAclChangeService service;
+    private OpaPolicyData policy;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        aclGenerator = spy(new OpaAclGenerator(null));
+        service = new OpaAclChangeService(policyService, employeeDirectory, aclGenerator, new OpaAclProperties());
+        policy = OpaPolicyData.builder()
+                .packageName("physical_access_control")
+                .operations(List.of("ENTER"))
+                .resourceKind("Facility")
+                .requiredGroup(GROUP)
+                .build();
+        when(policyService.load(anyString())).thenAnswer(invocation -> policy);
+    }
+
+    private static OpaEmployeeDirectory.Snapshot snapshot(OpaEmployeeInfo... employees) {
+        List<OpaEmployeeInfo> list = List.of(employees);
+        return new OpaEmployeeDirectory.Snapshot("employees", "hash", list,
+                GroupIndex.of(list, OpaEmployeeInfo::getGroups), Instant.now());
+    }
+
+    private static OpaEmployeeInfo employee(String id, String name, boolean trained) {
+        return new OpaEmployeeInfo(id, name, Map.of(GROUP, trained));
+    }
+
+    @Test
+    void changesSince_employeeGainsGroup_returnsOnlyTheirEntry() throws IOException {
+        when(employeeDirectory.snapshot(anyString())).thenReturn(
+                snapshot(employee("ES-4902", "Anya Sharma", true), employee("BC-3115", "Ben Carter", false)),
+                snapshot(employee("ES-4902", "Anya Sharma", true), employee("BC-3115", "Ben Carter", true)));
+
+        AclChangeLog.Changes<AclEntry> initial = service.changesSince(0);
+        AclChangeLog.Changes<AclEntry> delta = service.changesSince(initial.version());
+
+        assertEquals(List.of("<ES-4902:Anya Sharma>"), initial.added().stream().map(AclEntry::getPrincipal).toList());
+        assertEquals(List.of("<BC-3115:Ben Carter>"), delta.added().stream().map(AclEntry::getPrincipal).toList());
+        assertEquals(List.of(), delta.removed());
+        assertEquals(initial.version() + 1, delta.version());
+        // Only the changed employee is run through the generator again
+        verify(aclGenerator).generateAcl(eq(policy), argThat((GroupIndex<OpaEmployeeInfo> index) ->
+                index.size() == 1 && index.get(0).equals(employee("BC-3115", "Ben Carter", true))), any(Instant.class));
+    }
+
+    @Test
+    void changesSince_employeeRemoved_returnsRemovedEntry() throws IOException {
+        when(employeeDirectory.snapshot(anyString())).thenReturn(
+                snapshot(employee("ES-4902", "Anya Sharma", true), employee("DL-1020", "David Lee", true)),
+                snapshot(employee("ES-4902", "Anya Sharma", true)));
+
+        long version = service.changesSince(0).version();
+        AclChangeLog.Changes<AclEntry> delta = service.changesSince(version);
+
+        assertEquals(List.of(), delta.added());
+        assertEquals(List.of("<DL-1020:David Lee>"), delta.removed().stream().map(AclEntry::getPrincipal).toList());
+    }
+
+    @Test
+    void changesSince_nothingChanged_keepsVersion() throws IOException {
+        OpaEmployeeDirectory.Snapshot employees = snapshot(employee("ES-4902", "Anya Sharma", true));
+        when(employeeDirectory.snapshot(anyString())).thenReturn(employees);
+
+        long version = service.changesSince(0).version();
+        AclChangeLog.Changes<AclEntry> again = service.changesSince(version);
+
+        assertEquals(version, again.version());
+        assertTrue(again.added().isEmpty());
+    }
+
+    @Test
+    void changesSince_timeWindowCloses_returnsNewlyGrantedEntries() throws IOException {
+        Instant end = Instant.parse("2026-10-20T19:00:00Z");
+        // allow if not deny: after the window, or with training
+        policy = OpaPolicyData.builder()
+                .packageName("physical_access_control")
+                .operations(List.of("ENTER"))
+                .resourceKind("Facility")
+                .timeWindowEnd(end)
+                .accessPredicate(new AccessPredicate(List.of(
+                        new Clause(List.of(new TimeBound("request.admissionTime", ">", end))),
+                        new Clause(List.of(new GroupMember(GROUP, true))))))
+                .build();
+        Clock clock = mock(Clock.class);
+        when(clock.instant()).thenReturn(end.minusSeconds(60), end.minusSeconds(30), end.plusSeconds(1));
+        service = new OpaAclChangeService(policyService, employeeDirectory, aclGenerator, new OpaAclProperties(), clock);
+        when(employeeDirectory.snapshot(anyString())).thenReturn(
+                snapshot(employee("ES-4902", "Anya Sharma", true), employee("BC-3115", "Ben Carter", false)));
+
+        AclChangeLog.Changes<AclEntry> initial = service.changesSince(0);
+        long insideWindow = service.changesSince(initial.version()).version();
+        AclChangeLog.Changes<AclEntry> afterWindow = service.changesSince(insideWindow);
+
+        assertEquals(List.of("<ES-4902:Anya Sharma>"), initial.added().stream().map(AclEntry::getPrincipal).toList());
+        assertEquals(initial.version(), insideWindow);
+        assertTrue(afterWindow.added().stream().anyMatch(entry -> entry.getPrincipal().equals("<BC-3115:Ben Carter>")));
+        assertEquals(insideWindow + 1, afterWindow.version());
+    }
+}
@@ -0,0 +1,93 @@
+package digital.alf.cells.physicalacesscontrolopa.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import digital.alf.cells.acl.AccessDecision;
+import digital.alf.cells.acl.DecisionIndex;
+import digital.alf.cells.physicalacesscontrolopa.config.OpaAclProperties;
+import digital.alf.cells.physicalacesscontrolopa.generator.OpaAclGenerator;
+import digital.alf.cells.physicalacesscontrolopa.parser.OpaEmployeeInfoParser;
+import digital.alf.cells.physicalacesscontrolopa.parser.OpaPolicyParser;
+import digital.alf.cells.physicalacesscontrolopa.parser.RegoParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for OpaDecisionService against the bundled policy.rego and employee JSON.
+ */
+class OpaDecisionServiceTest {
+
+    private static final Instant IN_WINDOW = Instant.parse("2025-10-20T08:30:00Z");
+
+    private OpaDecisionService service;
+
+    @BeforeEach
+    void setUp() {
+        OpaAclProperties properties = new OpaAclProperties();
+        properties.getEmployeeDirectory().setPreload(List.of());
+        properties.getEmployeeDirectory().setReloadInterval(Duration.ZERO);
+        OpaEmployeeDirectory directory = new OpaEmployeeDirectory(new OpaEmployeeInfoParser(new ObjectMapper()), properties);
+
+        RegoParser regoParser = new RegoParser();
+        OpaPolicyService policyService = new OpaPolicyService(regoParser, new OpaPolicyParser(regoParser));
+
+        service = new OpaDecisionService(policyService, directory, new OpaAclGenerator(null));
+    }
+
+    @Test
+    void decide_trainedEmployee_allows() throws IOException {
+        AccessDecision decision = service.decide("ES-4902", "ENTER", "Facility", IN_WINDOW);
+
+        assertTrue(decision.isAllow());
+        assertNull(decision.getMessage());
+    }
+
+    @Test
+    void decide_untrainedEmployee_deniesWithViolationMessage() throws IOException {
+        AccessDecision decision = service.decide("BC-3115", "ENTER", "Facility", IN_WINDOW);
+
+        assertFalse(decision.isAllow());
+        assertTrue(decision.getMessage().contains("training-vde-available-group"));
+    }
+
+    @Test
+    void decide_outsideTimeWindow_allows() throws IOException {
+        // allow if not deny, and deny needs the window: before and after it everyone may enter
+        assertTrue(service.decide("BC-3115", "ENTER", "Facility", Instant.parse("2027-01-01T00:00:00Z")).isAllow());
+        assertTrue(service.decide("BC-3115", "ENTER", "Facility", Instant.parse("2024-10-20T07:59:59Z")).isAllow());
+        assertTrue(service.decide("ES-4902", "ENTER", "Facility", Instant.parse("2027-01-01T00:00:00Z")).isAllow());
+    }
+
+    @Test
+    void decide_windowBoundsInclusive() throws IOException {
+        assertFalse(service.decide("BC-3115", "ENTER", "Facility", Instant.parse("2024-10-20T08:00:00Z")).isAllow());
+        assertFalse(service.decide("BC-3115", "ENTER", "Facility", Instant.parse("2026-10-20T19:00:00Z")).isAllow());
+    }
+
+    @Test
+    void decide_otherResourceKindOrAction_followsPolicy() throws IOException {
+        assertTrue(service.decide("BC-3115", "ENTER", "Office", IN_WINDOW).isAllow());
+        assertFalse(service.decide("BC-3115", "EXIT", "Facility", IN_WINDOW).isAllow(), "deny does not look at the operation");
+        assertTrue(service.decide("ES-4902", "EXIT", "Facility", IN_WINDOW).isAllow());
+    }
+
+    @Test
+    void decide_principalOutsideDirectory_onlyAllowedWhereEveryoneIs() throws IOException {
+        assertFalse(service.decide("XX-0000", "ENTER", "Facility", IN_WINDOW).isAllow());
+        assertTrue(service.decide("XX-0000", "ENTER", "Office", IN_WINDOW).isAllow());
+    }
+
+    @Test
+    void index_reusedWhileSnapshotUnchanged() throws IOException {
+        DecisionIndex first = service.index();
+
+        assertSame(first, service.index());
+        assertTrue(first.grantedEmployees() > 0);
+    }
+}
@@ -0,0 +1,152 @@
+package digital.alf.cells.physicalacesscontrolopa.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import digital.alf.cells.physicalacesscontrolopa.model.OpaEvalResult;
+import digital.alf.cells.physicalacesscontrolopa.model.OpaUserInfo;
+import digital.alf.cells.physicalacesscontrolopa.parser.RegoParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Evaluates the real policy.rego and pip-users files in-process and checks the
+ * decisions documented in each file's "_expected_result".
+ */
+class OpaEmbeddedEvaluatorTest {
+
+    private static final String POLICY_PATH = "physical-access-control-opa/policy.rego";
+    private static final String PACKAGE_NAME = "physical_access_control";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private OpaEmbeddedEvaluator evaluator;
+
+    @BeforeEach
+    void setUp() {
+        evaluator = new OpaEmbeddedEvaluator(new RegoParser(), objectMapper);
+    }
+
+    private OpaUserInfo loadUser(String fileName) throws IOException {
+        try (InputStream is = getClass().getClassLoader()
+                .getResourceAsStream("physical-access-control-opa/pip-users/" + fileName)) {
+            return objectMapper.readValue(is, OpaUserInfo.class);
+        }
+    }
+
+    private OpaUserInfo buildUser(String admissionTime, String kind, List<String> groups) {
+        OpaUserInfo.Resource resource = new OpaUserInfo.Resource("v1", kind, null);
+        OpaUserInfo.UserInfo info = new OpaUserInfo.UserInfo("Test User", "TU-0001", groups);
+        return new OpaUserInfo(new OpaUserInfo.Request(admissionTime, "ENTER", resource, info));
+    }
+
+    @Test
+    void evaluate_userWithTraining_allows() throws IOException {
+        OpaEvalResult result = evaluator.evaluate(POLICY_PATH, PACKAGE_NAME, loadUser("pip-userinfo-anya-sharma.json"));
+
+        assertTrue(result.isAllow());
+        assertEquals("data.physical_access_control.allow", result.getResult().get(0).getExpressions().get(0).getText());
+    }
+
+    @Test
+    void evaluate_userWithoutTraining_denies() throws IOException {
+        OpaEvalResult result = evaluator.evaluate(POLICY_PATH, PACKAGE_NAME, loadUser("pip-userinfo-ben-carter.json"));
+
+        assertFalse(result.isAllow());
+        assertEquals(Boolean.FALSE, result.getResult().get(0).getExpressions().get(0).getValue());
+    }
+
+    @Test
+    void evaluate_outsideTimeWindow_allowsWithoutTraining() throws IOException {
+        OpaUserInfo user = buildUser("2023-01-01T00:00:00Z", "Facility", List.of("employee-group"));
+
+        assertTrue(evaluator.evaluate(POLICY_PATH, PACKAGE_NAME, user).isAllow());
+    }
+
+    @Test
+    void evaluate_otherResourceKind_allowsWithoutTraining() throws IOException {
+        OpaUserInfo user = buildUser("2025-10-20T08:30:00Z", "Office", List.of("employee-group"));
+
+        assertTrue(evaluator.evaluate(POLICY_PATH, PACKAGE_NAME, user).isAllow());
+    }
+
+    @Test
+    void evaluate_missingAdmissionTime_allows() throws IOException {
+        // time_within_window is undefined, so deny cannot fire
+        OpaUserInfo user = buildUser(null, "Facility", List.of("employee-group"));
+
+        assertTrue(evaluator.evaluate(POLICY_PATH, PACKAGE_NAME, user).isAllow());
+    }
+
+    @Test
+    void evaluate_unknownPackage_returnsEmptyResult() throws IOException {
+        OpaEvalResult result = evaluator.evaluate(POLICY_PATH, "other_package", loadUser("pip-userinfo-anya-sharma.json"));
+
+        assertFalse(result.isAllow());
+        assertTrue(result.getResult().isEmpty());
+    }
+
+    @Test
+    void query_violationForDeniedUser_returnsMessage() throws IOException {
+        Map<?, ?> input = objectMapper.convertValue(loadUser("pip-userinfo-ben-carter.json"), Map.class);
+
+        OpaEvalResult result = evaluator.query(POLICY_PATH, PACKAGE_NAME, "violation", input);
+
+        List<?> messages = assertInstanceOf(List.class, result.getResult().get(0).getExpressions().get(0).getValue());
+        assertEquals(1, messages.size());
+        assertTrue(((String) messages.get(0)).startsWith("ATTENTION"));
+    }
+
+    @Test
+    void compile_isCachedPerPolicyPath() throws IOException {
+        assertSame(evaluator.compile(POLICY_PATH), evaluator.compile(POLICY_PATH));
+    }
+
+    @Test
+    void compile_unknownPolicy_throwsIOException() {
+        assertThrows(IOException.class, () -> evaluator.compile("physical-access-control-opa/missing.rego"));
+    }
+
+    @Test
+    void interpreter_someInIteratesCollections() throws IOException {
+        RegoInterpreter interpreter = new RegoInterpreter(new RegoParser().parse("""
+                package p
+                privileged contains g if {
+                    some g in input.groups
+                    startswith(g, "admin-")
+                }
+                """));
+
+        Object value = interpreter.evaluateRule("privileged",
+                Map.of("groups", List.of("admin-a", "employee-group", "admin-b"))).orElseThrow();
+
+        assertEquals(List.of("admin-a", "admin-b"), value);
+    }
+
+    @Test
+    void interpreter_unsupportedBuiltin_throwsIOException() {
+        assertThrows(IOException.class, () -> new RegoInterpreter(new RegoParser().parse("""
+                package p
+                allow if { http.send({}) }
+                """)));
+    }
+
+    @Test
+    void interpreter_builtinWithWrongArity_throwsIOException() {
+        IOException e = assertThrows(IOException.class, () -> new RegoInterpreter(new RegoParser().parse("""
+                package p
+                allow if { count() == 0 }
+                """)));
+        assertEquals("Rego builtin count takes 1 arguments, got 0", e.getMessage());
+        e = assertThrows(IOException.class, () -> new RegoInterpreter(new RegoParser().parse("""
+                package p
+                allow if { object.get(input, "groups") }
+                """)));
+        assertEquals("Rego builtin object.get takes 3 arguments, got 2", e.getMessage());
+    }
+}
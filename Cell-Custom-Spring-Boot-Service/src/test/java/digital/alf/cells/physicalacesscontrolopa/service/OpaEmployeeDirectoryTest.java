@@ -0,0 +1,158 @@
+package digital.alf.cells.physicalacesscontrolopa.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import digital.alf.cells.physicalacesscontrolopa.config.OpaAclProperties;
+import digital.alf.cells.physicalacesscontrolopa.parser.OpaEmployeeInfoParser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for OpaEmployeeDirectory.
+ *
+ * Employee files are written to a temp directory and loaded through file: URLs;
+ * refresh() is called directly instead of waiting for the background reloader.
+ */
+class OpaEmployeeDirectoryTest {
+
+    private static final String DEFAULT_EMPLOYEES = "physical-access-control-opa/pip-info-employee-vde-trainings.json";
+
+    @TempDir
+    Path tempDir;
+
+    private OpaAclProperties properties;
+    private OpaEmployeeDirectory directory;
+    private Path file;
+    private String location;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        properties = new OpaAclProperties();
+        properties.getEmployeeDirectory().setPreload(List.of());
+        properties.getEmployeeDirectory().setReloadInterval(Duration.ZERO);
+        directory = new OpaEmployeeDirectory(new OpaEmployeeInfoParser(new ObjectMapper()), properties);
+
+        file = tempDir.resolve("employees.json");
+        location = file.toUri().toString();
+        write(employees("ES-4902"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        directory.destroy();
+    }
+
+    private static String employees(String... ids) {
+        StringBuilder json = new StringBuilder("{\"employees\":[");
+        for (int i = 0; i < ids.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":\"").append(ids[i]).append("\",\"name\":\"Employee ").append(ids[i])
+                    .append("\",\"groups\":{\"employee-group\":true}}");
+        }
+        return json.append("]}").toString();
+    }
+
+    /**
+     * Writes the file and moves its mtime forward so that filesystems with coarse
+     * timestamps still see a change.
+     */
+    private void write(String content) throws IOException {
+        FileTime previous = Files.exists(file) ? Files.getLastModifiedTime(file) : FileTime.from(Instant.EPOCH);
+        Files.writeString(file, content);
+        Files.setLastModifiedTime(file, FileTime.from(previous.toInstant().plusSeconds(10)));
+    }
+
+    @Test
+    void snapshot_parsesOnceAndCaches() throws IOException {
+        OpaEmployeeDirectory.Snapshot first = directory.snapshot(location);
+
+        assertEquals(1, first.employees().size());
+        assertEquals("ES-4902", first.employees().get(0).getId());
+        assertSame(first, directory.snapshot(location));
+        assertThrows(UnsupportedOperationException.class, () -> first.employees().clear());
+    }
+
+    @Test
+    void refresh_changedContent_swapsSnapshot() throws IOException {
+        OpaEmployeeDirectory.Snapshot before = directory.snapshot(location);
+
+        write(employees("ES-4902", "DL-1020"));
+        directory.refresh();
+
+        OpaEmployeeDirectory.Snapshot after = directory.snapshot(location);
+        assertNotSame(before, after);
+        assertEquals(2, after.employees().size());
+        assertNotEquals(before.contentHash(), after.contentHash());
+        // The old snapshot is untouched for readers still holding it
+        assertEquals(1, before.employees().size());
+    }
+
+    @Test
+    void refresh_touchedButUnchanged_keepsSnapshot() throws IOException {
+        OpaEmployeeDirectory.Snapshot before = directory.snapshot(location);
+
+        write(employees("ES-4902"));
+        directory.refresh();
+
+        assertSame(before, directory.snapshot(location));
+    }
+
+    @Test
+    void refresh_invalidContent_keepsPreviousSnapshot() throws IOException {
+        OpaEmployeeDirectory.Snapshot before = directory.snapshot(location);
+
+        write("{\"employees\": [");
+        directory.refresh();
+        assertSame(before, directory.snapshot(location));
+
+        write(employees("DL-1020"));
+        directory.refresh();
+        assertEquals("DL-1020", directory.getEmployees(location).get(0).getId());
+    }
+
+    @Test
+    void snapshot_missingLocation_throwsIOException() {
+        assertThrows(IOException.class, () -> directory.snapshot(tempDir.resolve("missing.json").toUri().toString()));
+    }
+
+    @Test
+    void start_preloadsClasspathFile() throws IOException {
+        properties.getEmployeeDirectory().setPreload(List.of(DEFAULT_EMPLOYEES));
+
+        directory.start();
+
+        assertTrue(directory.isRunning());
+        assertFalse(directory.getEmployees(DEFAULT_EMPLOYEES).isEmpty());
+    }
+
+    @Test
+    void start_withReloadInterval_reloadsInBackground() throws Exception {
+        properties.getEmployeeDirectory().setReloadInterval(Duration.ofMillis(20));
+        directory.snapshot(location);
+        // A stopped directory can be started again
+        directory.start();
+        directory.stop();
+        directory.start();
+
+        write(employees("ES-4902", "DL-1020", "BC-3115"));
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (directory.getEmployees(location).size() != 3 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(3, directory.getEmployees(location).size());
+    }
+}
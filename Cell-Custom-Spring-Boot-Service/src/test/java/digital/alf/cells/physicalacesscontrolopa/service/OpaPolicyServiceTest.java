@@ -0,0 +1,98 @@
+package digital.alf.cells.physicalacesscontrolopa.service;
+
+import digital.alf.cells.physicalacesscontrolopa.model.AccessPredicate;
+import digital.alf.cells.physicalacesscontrolopa.model.OpaPolicyData;
+import digital.alf.cells.physicalacesscontrolopa.parser.OpaPolicyParser;
+import digital.alf.cells.physicalacesscontrolopa.parser.RegoParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class OpaPolicyServiceTest {
+
+    private static final String POLICY = "physical-access-control-opa/policy.rego";
+
+    private RegoParser regoParser;
+    private OpaPolicyService service;
+
+    @BeforeEach
+    void setUp() {
+        regoParser = spy(new RegoParser());
+        service = new OpaPolicyService(regoParser, new OpaPolicyParser(regoParser));
+    }
+
+    @Test
+    void load_realPolicyFile_attachesResidualOfAllow() throws IOException {
+        OpaPolicyData data = service.load(POLICY);
+
+        assertNotNull(data.getAccessPredicate());
+        assertEquals(4, data.getAccessPredicate().clauses().size());
+        assertEquals(Instant.parse("2024-10-20T08:00:00Z"), data.getTimeWindowStart());
+        assertEquals(Instant.parse("2026-10-20T19:00:00Z"), data.getTimeWindowEnd());
+        assertEquals(AccessPredicate.requiring("training-vde-available-group"), data.grantPredicate("ENTER"));
+    }
+
+    @Test
+    void load_unchangedFile_parsesOnceAndReturnsSameInstance() throws IOException {
+        OpaPolicyData first = service.load(POLICY);
+        OpaPolicyData second = service.load(POLICY);
+
+        assertSame(first, second);
+        verify(regoParser, times(1)).parse(anyString());
+    }
+
+    @Test
+    void parse_groupsAndKindOnlyInCode_takenFromResidual() throws IOException {
+        String rego = """
+                package lab_access
+                import rego.v1
+
+                required := "lab-safety-group"
+
+                allow if {
+                    input.request.operation == "EXIT"
+                    input.request.resource.kind == "Lab"
+                    required in input.request.userInfo.groups
+                }
+                """;
+
+        OpaPolicyData data = service.parse(rego);
+
+        assertEquals(List.of("EXIT"), data.getOperations());
+        assertEquals("Lab", data.getResourceKind());
+        assertEquals("lab-safety-group", data.getRequiredGroup());
+    }
+
+    @Test
+    void parse_unsupportedPolicy_fallsBackToPatterns() throws IOException {
+        String rego = """
+                package some_policy
+                import rego.v1
+
+                deny if {
+                    input.request.resource.kind == "Facility"
+                    not "training-vde-available-group" in input.request.userInfo.groups
+                }
+
+                allow if {
+                    not deny
+                    time.now_ns() > 0
+                }
+                """;
+
+        OpaPolicyData data = service.parse(rego);
+
+        assertNull(data.getAccessPredicate());
+        assertEquals("training-vde-available-group", data.getRequiredGroup());
+        assertEquals(AccessPredicate.requiring("training-vde-available-group"), data.grantPredicate("ENTER"));
+    }
+}
@@ -0,0 +1,276 @@
+package digital.alf.cells.physicalacesscontrolopa.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import digital.alf.cells.acl.ContentHash;
+import digital.alf.cells.physicalacesscontrolopa.config.OpaAclProperties;
+import digital.alf.cells.physicalacesscontrolopa.model.OpaEvalResult;
+import digital.alf.cells.physicalacesscontrolopa.model.OpaUserInfo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for OpaServerExecutor.
+ *
+ * A com.sun.net.httpserver stand-in plays the OPA REST API, so the opa binary is not needed.
+ * Supervision is tested with a launcher that starts short-lived 'sleep' processes.
+ */
+class OpaServerExecutorTest {
+
+    private static final String POLICY = "physical-access-control-opa/policy.rego";
+    private static final String ANYA = "physical-access-control-opa/pip-users/pip-userinfo-anya-sharma.json";
+    private static final String BEN = "physical-access-control-opa/pip-users/pip-userinfo-ben-carter.json";
+
+    private HttpServer standIn;
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    // Modules the stand-in holds; cleared to simulate a restart of an unsupervised server
+    private final Set<String> loadedModules = ConcurrentHashMap.newKeySet();
+    private OpaAclProperties properties;
+    private OpaServerExecutor executor;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        standIn = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        standIn.createContext("/", this::handle);
+        standIn.start();
+
+        properties = new OpaAclProperties();
+        properties.setExecutor(OpaAclProperties.Executor.SERVER);
+        properties.getServer().setPort(standIn.getAddress().getPort());
+        properties.getServer().setLaunch(false);
+        properties.getServer().setStartupTimeout(Duration.ofSeconds(2));
+        properties.getServer().setRestartDelay(Duration.ofMillis(50));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (executor != null) {
+            executor.stop();
+        }
+        standIn.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        String path = exchange.getRequestURI().getPath();
+        requests.add(exchange.getRequestMethod() + " " + path);
+
+        String response = "{}";
+        if (exchange.getRequestMethod().equals("PUT") && path.startsWith("/v1/policies/")) {
+            loadedModules.add(path.substring("/v1/policies/".length()));
+        } else if (exchange.getRequestMethod().equals("GET") && path.startsWith("/v1/policies/")
+                && !loadedModules.contains(path.substring("/v1/policies/".length()))) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        } else if (path.equals("/v1/data/physical_access_control/allow")) {
+            if (loadedModules.contains(POLICY)) {
+                response = body.contains("ES-4902") ? "{\"result\":true}" : "{\"result\":false}";
+            }
+        } else if (path.equals("/v1/data/acl_batch/physical_access_control/decisions")) {
+            response = "{\"result\":{\"0\":true,\"1\":false}}";
+        } else if (path.startsWith("/v1/data/broken")) {
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+            return;
+        }
+
+        byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(bytes);
+        }
+    }
+
+    private OpaServerExecutor startExecutor() {
+        executor = new OpaServerExecutor(new ObjectMapper(), properties,
+                command -> { throw new IOException("launch disabled"); });
+        executor.start();
+        return executor;
+    }
+
+    @Test
+    void start_pushesConfiguredPoliciesOnce() throws IOException {
+        startExecutor();
+
+        executor.evaluate(POLICY, ANYA, "physical_access_control");
+        executor.evaluate(POLICY, BEN, "physical_access_control");
+
+        assertTrue(executor.isRunning());
+        assertEquals(1, requests.stream().filter(r -> r.equals("PUT /v1/policies/" + POLICY)).count());
+    }
+
+    @Test
+    void start_pushesEmployeeDataWhenConfigured() {
+        properties.getServer().setEmployeeData("physical-access-control-opa/pip-info-employee-vde-trainings.json");
+
+        startExecutor();
+
+        assertTrue(requests.contains("PUT /v1/data/employees"));
+    }
+
+    @Test
+    void dataVersion_isEmployeeDataHash_pushedOnce() throws IOException {
+        String employees = "physical-access-control-opa/pip-info-employee-vde-trainings.json";
+        properties.getServer().setEmployeeData(employees);
+        startExecutor();
+
+        String version = executor.dataVersion();
+
+        try (InputStream inputStream = new ClassPathResource(employees).getInputStream()) {
+            assertEquals(ContentHash.sha256(inputStream.readAllBytes()), version);
+        }
+        assertEquals(version, executor.dataVersion());
+        assertEquals(1, requests.stream().filter(r -> r.equals("PUT /v1/data/employees")).count());
+    }
+
+    @Test
+    void evaluate_returnsAllowFromDataApi() throws IOException {
+        startExecutor();
+
+        OpaEvalResult anya = executor.evaluate(POLICY, ANYA, "physical_access_control");
+        OpaEvalResult ben = executor.evaluate(POLICY, BEN, "physical_access_control");
+
+        assertTrue(anya.isAllow());
+        assertFalse(ben.isAllow());
+        assertEquals("data.physical_access_control.allow",
+                anya.getResult().get(0).getExpressions().get(0).getText());
+    }
+
+    @Test
+    void evaluate_undefinedResultWithPolicyLoaded_deniesWithoutPushingAgain() throws IOException {
+        startExecutor();
+
+        // The stand-in answers {} for packages it does not know, like OPA for an undefined rule
+        OpaEvalResult result = executor.evaluate(POLICY, ANYA, "other_package");
+
+        assertFalse(result.isAllow());
+        assertTrue(result.getResult().isEmpty());
+        assertTrue(requests.contains("GET /v1/policies/" + POLICY));
+        assertEquals(1, requests.stream().filter(r -> r.equals("PUT /v1/policies/" + POLICY)).count());
+        assertEquals(1, requests.stream().filter(r -> r.equals("POST /v1/data/other_package/allow")).count());
+    }
+
+    @Test
+    void evaluate_unsupervisedServerRestarted_pushesPolicyAgain() throws IOException {
+        properties.getServer().setEmployeeData("physical-access-control-opa/pip-info-employee-vde-trainings.json");
+        startExecutor();
+        assertTrue(executor.evaluate(POLICY, ANYA, "physical_access_control").isAllow());
+
+        loadedModules.clear();
+
+        assertTrue(executor.evaluate(POLICY, ANYA, "physical_access_control").isAllow());
+        assertEquals(2, requests.stream().filter(r -> r.equals("PUT /v1/policies/" + POLICY)).count());
+        assertEquals(2, requests.stream().filter(r -> r.equals("PUT /v1/data/employees")).count());
+    }
+
+    @Test
+    void evaluate_serverError_throwsIOException() {
+        startExecutor();
+
+        assertThrows(IOException.class, () -> executor.evaluate(POLICY, ANYA, "broken"));
+    }
+
+    @Test
+    void evaluateBatch_pushesWrapperAndReturnsDecisions() throws IOException {
+        startExecutor();
+        OpaUserInfo user = new OpaUserInfo(new OpaUserInfo.Request("2025-10-20T08:30:00Z", "ENTER", null,
+                new OpaUserInfo.UserInfo("Anya Sharma", "ES-4902", List.of("employee-group"))));
+
+        OpaEvalResult result = executor.evaluateBatch(POLICY, "physical_access_control", List.of(user, user));
+        executor.evaluateBatch(POLICY, "physical_access_control", List.of(user));
+
+        assertEquals(Map.of("0", true, "1", false), result.getDecisions());
+        assertEquals(1, requests.stream()
+                .filter(r -> r.equals("PUT /v1/policies/acl_batch/physical_access_control")).count());
+    }
+
+    @Test
+    void start_serverUnreachable_throws() {
+        standIn.stop(0);
+        properties.getServer().setStartupTimeout(Duration.ofMillis(300));
+
+        assertThrows(UncheckedIOException.class, this::startExecutor);
+    }
+
+    @Test
+    void supervisor_restartsCrashedChildAndPushesPoliciesAgain() throws Exception {
+        properties.getServer().setLaunch(true);
+        AtomicInteger launches = new AtomicInteger();
+        executor = new OpaServerExecutor(new ObjectMapper(), properties, command -> {
+            launches.incrementAndGet();
+            // Every child exits shortly after startup, simulating a crash
+            return new ProcessBuilder("sleep", launches.get() == 1 ? "0.5" : "0.2").start();
+        });
+
+        executor.start();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (launches.get() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        executor.stop();
+
+        assertTrue(launches.get() >= 3, "expected restarts, got " + launches.get() + " launches");
+        assertTrue(requests.stream().filter(r -> r.equals("PUT /v1/policies/" + POLICY)).count() >= 2);
+        assertFalse(executor.isRunning());
+    }
+
+    @Test
+    void start_afterStop_isSupervisedAgain() throws Exception {
+        properties.getServer().setLaunch(true);
+        AtomicInteger launches = new AtomicInteger();
+        executor = new OpaServerExecutor(new ObjectMapper(), properties, command -> {
+            launches.incrementAndGet();
+            // The child of the second start crashes shortly after startup
+            return new ProcessBuilder("sleep", launches.get() == 2 ? "0.5" : "30").start();
+        });
+
+        executor.start();
+        executor.stop();
+        executor.start();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (launches.get() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        executor.destroy();
+
+        assertEquals(3, launches.get());
+    }
+
+    @Test
+    void stop_doesNotRestartChild() throws Exception {
+        properties.getServer().setLaunch(true);
+        AtomicInteger launches = new AtomicInteger();
+        executor = new OpaServerExecutor(new ObjectMapper(), properties, command -> {
+            launches.incrementAndGet();
+            return new ProcessBuilder("sleep", "30").start();
+        });
+
+        executor.start();
+        executor.stop();
+        Thread.sleep(200);
+
+        assertEquals(1, launches.get());
+    }
+}
@@ -1,8 +1,13 @@
 package digital.alf.cells.physicalacesscontrolopa.service;
 
+import digital.alf.cells.acl.DecisionCache;
+import digital.alf.cells.acl.DecisionCacheProperties;
+import digital.alf.cells.physicalacesscontrolopa.config.OpaAclProperties;
 import digital.alf.cells.physicalacesscontrolopa.model.OpaEvalResult;
 import digital.alf.cells.physicalacesscontrolopa.model.OpaUserInfo;
 import digital.alf.cells.physicalacesscontrolopa.parser.OpaUserInfoParser;
+import digital.alf.cells.physicalacesscontrolopa.parser.RegoParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -11,7 +16,11 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.time.Duration;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -22,7 +31,7 @@ import static org.mockito.Mockito.*;
  *
  * PathMatchingResourcePatternResolver is created internally, so it resolves
  * real classpath resources (the 5 user files from src/main/resources).
- * OpaUserInfoParser and OpaCliExecutor are mocked.
+ * OpaUserInfoParser, OpaCliExecutor, OpaEmbeddedEvaluator and OpaWasmEvaluator are mocked.
  */
 @ExtendWith(MockitoExtension.class)
 class OpaUserEvaluationServiceTest {
@@ -33,11 +42,32 @@ class OpaUserEvaluationServiceTest {
     @Mock
     private OpaCliExecutor cliExecutor;
 
+    @Mock
+    private OpaEmbeddedEvaluator embeddedEvaluator;
+
+    @Mock
+    private OpaWasmEvaluator wasmEvaluator;
+
+    private OpaAclProperties properties;
+
+    private DecisionCacheProperties cacheProperties;
+
     private OpaUserEvaluationService service;
 
     @BeforeEach
     void setUp() {
-        service = new OpaUserEvaluationService(userInfoParser, cliExecutor);
+        properties = new OpaAclProperties();
+        properties.setEngine(OpaAclProperties.Engine.CLI);
+        // Mocks decide per user file; memoization is covered by its own tests
+        properties.setMemoize(false);
+        cacheProperties = new DecisionCacheProperties();
+        cacheProperties.setEnabled(false);
+        service = newService();
+    }
+
+    private OpaUserEvaluationService newService() {
+        return new OpaUserEvaluationService(userInfoParser, cliExecutor, embeddedEvaluator, wasmEvaluator, properties,
+                new DecisionCache(cacheProperties), new RegoParser());
     }
 
     private OpaUserInfo buildUserInfo(String uid, String username) {
@@ -121,4 +151,285 @@ class OpaUserEvaluationServiceTest {
 
         verify(cliExecutor, atLeast(1)).evaluate(anyString(), anyString(), eq("physical_access_control"));
     }
+
+    @Test
+    void evaluateUsersForAccess_embeddedEngine_doesNotCallCli() throws IOException {
+        properties.setEngine(OpaAclProperties.Engine.EMBEDDED);
+        OpaUserInfo user = buildUserInfo("ES-4902", "Anya Sharma");
+        when(userInfoParser.parse(any(InputStream.class))).thenReturn(user);
+        when(embeddedEvaluator.evaluate(anyString(), eq("physical_access_control"), eq(user)))
+                .thenReturn(allowResult());
+
+        List<OpaUserInfo> result = service.evaluateUsersForAccess(
+                "physical-access-control-opa/policy.rego", "physical_access_control");
+
+        assertFalse(result.isEmpty());
+        verifyNoInteractions(cliExecutor);
+    }
+
+    @Test
+    void evaluateUsersForAccess_wasmEngine_usesWasmEvaluator() throws IOException {
+        properties.setEngine(OpaAclProperties.Engine.WASM);
+        OpaUserInfo user = buildUserInfo("ES-4902", "Anya Sharma");
+        when(userInfoParser.parse(any(InputStream.class))).thenReturn(user);
+        when(wasmEvaluator.evaluate(anyString(), eq("physical_access_control"), eq(user)))
+                .thenReturn(allowResult());
+
+        List<OpaUserInfo> result = service.evaluateUsersForAccess(
+                "physical-access-control-opa/policy.rego", "physical_access_control");
+
+        assertFalse(result.isEmpty());
+        verifyNoInteractions(cliExecutor, embeddedEvaluator);
+    }
+
+    @Test
+    void evaluateUsersForAccess_cliBatchEngine_evaluatesInChunks() throws IOException {
+        properties.setEngine(OpaAclProperties.Engine.CLI_BATCH);
+        properties.setBatchSize(2);
+        OpaUserInfo anya = buildUserInfo("ES-4902", "Anya Sharma");
+        OpaUserInfo ben = buildUserInfo("BC-3115", "Ben Carter");
+        when(userInfoParser.parse(any(InputStream.class))).thenReturn(anya, ben, anya, ben, anya);
+        when(cliExecutor.evaluateBatch(anyString(), eq("physical_access_control"), anyList()))
+                .thenAnswer(invocation -> {
+                    List<OpaUserInfo> chunk = invocation.getArgument(2);
+                    Map<String, Boolean> value = new LinkedHashMap<>();
+                    for (int i = 0; i < chunk.size(); i++) {
+                        value.put(String.valueOf(i), "ES-4902".equals(chunk.get(i).getUserId()));
+                    }
+                    OpaEvalResult.Expression expr = new OpaEvalResult.Expression(value, "data.acl_batch.decisions", null);
+                    return new OpaEvalResult(List.of(new OpaEvalResult.ResultItem(List.of(expr))));
+                });
+
+        List<OpaUserInfo> result = service.evaluateUsersForAccess(
+                "physical-access-control-opa/policy.rego", "physical_access_control");
+
+        assertEquals(3, result.size());
+        assertTrue(result.stream().allMatch(u -> "Anya Sharma".equals(u.getUsername())));
+        verify(cliExecutor, times(3)).evaluateBatch(anyString(), anyString(), anyList());
+        verify(cliExecutor, never()).evaluate(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    void evaluateUsersForAccess_cliBatchEngine_failedChunkIsSkipped() throws IOException {
+        properties.setEngine(OpaAclProperties.Engine.CLI_BATCH);
+        OpaUserInfo anya = buildUserInfo("ES-4902", "Anya Sharma");
+        when(userInfoParser.parse(any(InputStream.class))).thenReturn(anya);
+        when(cliExecutor.evaluateBatch(anyString(), anyString(), anyList()))
+                .thenThrow(new IOException("opa not found"));
+
+        List<OpaUserInfo> result = service.evaluateUsersForAccess(
+                "physical-access-control-opa/policy.rego", "physical_access_control");
+
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    void evaluateUsersForAccess_concurrent_keepsFileOrder() throws IOException {
+        properties.setEngine(OpaAclProperties.Engine.EMBEDDED);
+        properties.setConcurrency(5);
+        OpaUserInfoParser realParser = new OpaUserInfoParser(new ObjectMapper());
+        when(userInfoParser.parse(any(InputStream.class)))
+                .thenAnswer(invocation -> realParser.parse(invocation.getArgument(0)));
+        // Earlier files finish last
+        List<String> fileOrder = List.of("Anya Sharma", "Ben Carter", "Chloe Davis", "David Lee", "Eve Rodriguez");
+        when(embeddedEvaluator.evaluate(anyString(), anyString(), any(OpaUserInfo.class)))
+                .thenAnswer(invocation -> {
+                    OpaUserInfo user = invocation.getArgument(2);
+                    Thread.sleep(50L * (fileOrder.size() - fileOrder.indexOf(user.getUsername())));
+                    return allowResult();
+                });
+
+        List<OpaUserInfo> result = service.evaluateUsersForAccess(
+                "physical-access-control-opa/policy.rego", "physical_access_control");
+
+        assertEquals(fileOrder, result.stream().map(OpaUserInfo::getUsername).toList());
+    }
+
+    @Test
+    void evaluateUsersForAccess_concurrent_respectsConcurrencyLimit() throws IOException {
+        properties.setEngine(OpaAclProperties.Engine.EMBEDDED);
+        properties.setConcurrency(2);
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        when(userInfoParser.parse(any(InputStream.class))).thenReturn(buildUserInfo("ES-4902", "Anya Sharma"));
+        when(embeddedEvaluator.evaluate(anyString(), anyString(), any(OpaUserInfo.class)))
+                .thenAnswer(invocation -> {
+                    maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                    Thread.sleep(50);
+                    active.decrementAndGet();
+                    return allowResult();
+                });
+
+        List<OpaUserInfo> result = service.evaluateUsersForAccess(
+                "physical-access-control-opa/policy.rego", "physical_access_control");
+
+        assertEquals(5, result.size());
+        assertTrue(maxActive.get() <= 2, "max concurrent evaluations was " + maxActive.get());
+    }
+
+    @Test
+    void evaluateUsersForAccess_concurrent_userTimeoutSkipsUser() throws IOException {
+        properties.setEngine(OpaAclProperties.Engine.EMBEDDED);
+        properties.setConcurrency(4);
+        properties.setUserTimeout(Duration.ofSeconds(2));
+        OpaUserInfoParser realParser = new OpaUserInfoParser(new ObjectMapper());
+        when(userInfoParser.parse(any(InputStream.class)))
+                .thenAnswer(invocation -> realParser.parse(invocation.getArgument(0)));
+        when(embeddedEvaluator.evaluate(anyString(), anyString(), any(OpaUserInfo.class)))
+                .thenAnswer(invocation -> {
+                    OpaUserInfo user = invocation.getArgument(2);
+                    if ("Ben Carter".equals(user.getUsername())) {
+                        Thread.sleep(10_000);
+                    }
+                    return allowResult();
+                });
+
+        List<OpaUserInfo> result = service.evaluateUsersForAccess(
+                "physical-access-control-opa/policy.rego", "physical_access_control");
+
+        assertEquals(4, result.size());
+        assertTrue(result.stream().noneMatch(u -> "Ben Carter".equals(u.getUsername())));
+    }
+
+    @Test
+    void evaluateUsersForAccess_concurrent_requestDeadlineCancelsOutstandingWork() throws Exception {
+        properties.setEngine(OpaAclProperties.Engine.EMBEDDED);
+        properties.setConcurrency(2);
+        properties.setRequestTimeout(Duration.ofMillis(200));
+        AtomicInteger interrupted = new AtomicInteger();
+        when(userInfoParser.parse(any(InputStream.class))).thenReturn(buildUserInfo("ES-4902", "Anya Sharma"));
+        when(embeddedEvaluator.evaluate(anyString(), anyString(), any(OpaUserInfo.class)))
+                .thenAnswer(invocation -> {
+                    try {
+                        Thread.sleep(10_000);
+                    } catch (InterruptedException e) {
+                        interrupted.incrementAndGet();
+                        throw e;
+                    }
+                    return allowResult();
+                });
+
+        long start = System.nanoTime();
+        assertThrows(IOException.class, () -> service.evaluateUsersForAccess(
+                "physical-access-control-opa/policy.rego", "physical_access_control"));
+
+        assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 5_000);
+        long deadline = System.currentTimeMillis() + 2_000;
+        while (interrupted.get() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(2, interrupted.get(), "both running evaluations should be interrupted");
+    }
+
+    @Test
+    void evaluateUsersForAccess_memoized_evaluatesOneUserPerSignature() throws IOException {
+        properties.setEngine(OpaAclProperties.Engine.EMBEDDED);
+        properties.setMemoize(true);
+        OpaUserInfoParser realParser = new OpaUserInfoParser(new ObjectMapper());
+        when(userInfoParser.parse(any(InputStream.class)))
+                .thenAnswer(invocation -> realParser.parse(invocation.getArgument(0)));
+        when(embeddedEvaluator.evaluate(anyString(), anyString(), any(OpaUserInfo.class)))
+                .thenAnswer(invocation -> {
+                    OpaUserInfo user = invocation.getArgument(2);
+                    return user.getRequest().getUserInfo().getGroups().contains("training-vde-available-group")
+                            ? allowResult() : denyResult();
+                });
+
+        List<OpaUserInfo> result = service.evaluateUsersForAccess(
+                "physical-access-control-opa/policy.rego", "physical_access_control");
+
+        // Five users, two distinct group sets with identical request attributes
+        verify(embeddedEvaluator, times(2)).evaluate(anyString(), anyString(), any(OpaUserInfo.class));
+        assertEquals(List.of("Anya Sharma", "David Lee"), result.stream().map(OpaUserInfo::getUsername).toList());
+    }
+
+    @Test
+    void evaluateUsersForAccess_decisionCache_reusesDecisionsAcrossRequests() throws IOException {
+        properties.setEngine(OpaAclProperties.Engine.EMBEDDED);
+        cacheProperties.setEnabled(true);
+        service = newService();
+        OpaUserInfoParser realParser = new OpaUserInfoParser(new ObjectMapper());
+        when(userInfoParser.parse(any(InputStream.class)))
+                .thenAnswer(invocation -> realParser.parse(invocation.getArgument(0)));
+        when(embeddedEvaluator.evaluate(anyString(), anyString(), any(OpaUserInfo.class)))
+                .thenAnswer(invocation -> {
+                    OpaUserInfo user = invocation.getArgument(2);
+                    if (user.getUsername().equals("Ben Carter")) {
+                        throw new IOException("evaluation failed");
+                    }
+                    return allowResult();
+                });
+
+        List<OpaUserInfo> first = service.evaluateUsersForAccess(
+                "physical-access-control-opa/policy.rego", "physical_access_control");
+        List<OpaUserInfo> second = service.evaluateUsersForAccess(
+                "physical-access-control-opa/policy.rego", "physical_access_control");
+
+        // Five users on the first request; only the failed user is evaluated again
+        verify(embeddedEvaluator, times(6)).evaluate(anyString(), anyString(), any(OpaUserInfo.class));
+        assertEquals(4, first.size());
+        assertEquals(first, second);
+    }
+
+    @Test
+    void readsOnlySignatureAttributes_userSpecificInput_rejected() throws IOException {
+        RegoParser regoParser = new RegoParser();
+
+        assertTrue(OpaUserEvaluationService.readsOnlySignatureAttributes(regoParser.parse("""
+                package p
+                import rego.v1
+                allow if {
+                    input.request.resource.kind == "Facility"
+                    "admins" in input.request.userInfo.groups
+                }
+                """)));
+        assertFalse(OpaUserEvaluationService.readsOnlySignatureAttributes(regoParser.parse("""
+                package p
+                import rego.v1
+                allow if input.request.userInfo.username == "Anya Sharma"
+                """)));
+        assertFalse(OpaUserEvaluationService.readsOnlySignatureAttributes(regoParser.parse("""
+                package p
+                import rego.v1
+                allow if input.request.userInfo.groups[0] == "admins"
+                """)));
+        assertFalse(OpaUserEvaluationService.readsOnlySignatureAttributes(regoParser.parse("""
+                package p
+                import rego.v1
+                allow if count(input) > 0
+                """)));
+        assertTrue(OpaUserEvaluationService.readsOnlySignatureAttributes(regoParser.parse("""
+                package p
+                import rego.v1
+                allow if {
+                    some _, g in input.request.userInfo.groups
+                    g == "admins"
+                }
+                """)));
+        assertFalse(OpaUserEvaluationService.readsOnlySignatureAttributes(regoParser.parse("""
+                package p
+                import rego.v1
+                allow if {
+                    some i, g in input.request.userInfo.groups
+                    i == 0
+                    g == "admins"
+                }
+                """)));
+    }
+
+    @Test
+    void readsClock_timeNowCall_detected() throws IOException {
+        RegoParser regoParser = new RegoParser();
+
+        assertTrue(OpaUserEvaluationService.readsClock(regoParser.parse("""
+                package p
+                import rego.v1
+                allow if time.now_ns() < time.parse_rfc3339_ns("2026-10-20T19:00:00Z")
+                """)));
+        assertFalse(OpaUserEvaluationService.readsClock(regoParser.parse("""
+                package p
+                import rego.v1
+                allow if time.parse_rfc3339_ns(input.request.admissionTime) < time.parse_rfc3339_ns("2026-10-20T19:00:00Z")
+                """)));
+    }
 }
@@ -0,0 +1,150 @@
+package digital.alf.cells.physicalacesscontrolopa.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import digital.alf.cells.physicalacesscontrolopa.config.OpaAclProperties;
+import digital.alf.cells.physicalacesscontrolopa.model.OpaEvalResult;
+import digital.alf.cells.physicalacesscontrolopa.model.OpaUserInfo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Unit tests for OpaWasmCompiler and OpaWasmPolicy.
+ *
+ * Compiling requires the opa binary; the end-to-end test is skipped when it is not on the PATH.
+ */
+class OpaWasmCompilerTest {
+
+    private static final String POLICY = "physical-access-control-opa/policy.rego";
+    private static final String ENTRYPOINT = "physical_access_control/allow";
+
+    @TempDir
+    Path cacheDirectory;
+
+    private OpaAclProperties properties;
+    private OpaWasmCompiler compiler;
+
+    @BeforeEach
+    void setUp() {
+        properties = new OpaAclProperties();
+        properties.getWasm().setCacheDirectory(cacheDirectory.toString());
+        compiler = new OpaWasmCompiler(properties);
+    }
+
+    private static byte[] policySource() throws IOException {
+        try (InputStream is = OpaWasmCompilerTest.class.getClassLoader().getResourceAsStream(POLICY)) {
+            return is.readAllBytes();
+        }
+    }
+
+    private static byte[] tarGz(String name, byte[] content, String otherName) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            writeEntry(gzip, otherName, "{}".getBytes(StandardCharsets.UTF_8));
+            writeEntry(gzip, name, content);
+            gzip.write(new byte[1024]);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeEntry(GZIPOutputStream tar, String name, byte[] content) throws IOException {
+        byte[] header = new byte[512];
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(nameBytes, 0, header, 0, nameBytes.length);
+        byte[] size = String.format("%011o", content.length).getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(size, 0, header, 124, size.length);
+        header[156] = '0';
+        tar.write(header);
+        tar.write(content);
+        tar.write(new byte[(512 - content.length % 512) % 512]);
+    }
+
+    private static boolean opaAvailable() {
+        try {
+            return new ProcessBuilder("opa", "version").start().waitFor() == 0;
+        } catch (IOException | InterruptedException e) {
+            return false;
+        }
+    }
+
+    @Test
+    void extractFromTarGz_findsEntryWithLeadingSlash() throws IOException {
+        byte[] wasm = new byte[1000];
+        wasm[0] = 0x00;
+        wasm[1] = 'a';
+        wasm[999] = 7;
+
+        byte[] extracted = OpaWasmCompiler.extractFromTarGz(
+                new ByteArrayInputStream(tarGz("/policy.wasm", wasm, "/data.json")), "policy.wasm");
+
+        assertArrayEquals(wasm, extracted);
+    }
+
+    @Test
+    void extractFromTarGz_missingEntry_throwsIOException() {
+        IOException e = assertThrows(IOException.class, () -> OpaWasmCompiler.extractFromTarGz(
+                new ByteArrayInputStream(tarGz("/data.json", new byte[10], "/.manifest")), "policy.wasm"));
+
+        assertTrue(e.getMessage().contains("policy.wasm"));
+    }
+
+    @Test
+    void cacheKey_dependsOnSourceAndEntrypoint() {
+        byte[] source = "package p".getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(OpaWasmCompiler.cacheKey(source, "p/allow"), OpaWasmCompiler.cacheKey(source, "p/allow"));
+        assertNotEquals(OpaWasmCompiler.cacheKey(source, "p/allow"), OpaWasmCompiler.cacheKey(source, "p/deny"));
+        assertNotEquals(OpaWasmCompiler.cacheKey(source, "p/allow"),
+                OpaWasmCompiler.cacheKey("package q".getBytes(StandardCharsets.UTF_8), "p/allow"));
+    }
+
+    @Test
+    void compile_cachedModule_doesNotRunOpa() throws IOException {
+        properties.getWasm().setBinary("/nonexistent/opa");
+        byte[] module = {0x00, 'a', 's', 'm', 0x01, 0x00, 0x00, 0x00};
+        Files.write(cacheDirectory.resolve(OpaWasmCompiler.cacheKey(policySource(), ENTRYPOINT) + ".wasm"), module);
+
+        assertArrayEquals(module, compiler.compile(POLICY, ENTRYPOINT));
+    }
+
+    @Test
+    void compile_cacheMissWithoutOpa_throwsIOException() {
+        properties.getWasm().setBinary("/nonexistent/opa");
+
+        assertThrows(IOException.class, () -> compiler.compile(POLICY, ENTRYPOINT));
+    }
+
+    @Test
+    void policy_notAnOpaModule_throwsIOException() {
+        byte[] emptyModule = {0x00, 'a', 's', 'm', 0x01, 0x00, 0x00, 0x00};
+
+        assertThrows(IOException.class, () -> new OpaWasmPolicy(emptyModule, 1, new ObjectMapper()));
+        assertThrows(IOException.class, () -> new OpaWasmPolicy(new byte[]{1, 2, 3}, 1, new ObjectMapper()));
+    }
+
+    @Test
+    void evaluate_compiledPolicy_matchesOpaDecisions() throws IOException {
+        assumeTrue(opaAvailable(), "opa binary not on PATH");
+        OpaWasmEvaluator evaluator = new OpaWasmEvaluator(compiler, new ObjectMapper(), properties);
+
+        OpaUserInfo.Request request = new OpaUserInfo.Request("2025-10-20T08:30:00Z", "ENTER", null,
+                new OpaUserInfo.UserInfo("Anya Sharma", "ES-4902", List.of("training-vde-available-group")));
+        OpaEvalResult allowed = evaluator.evaluate(POLICY, "physical_access_control", new OpaUserInfo(request));
+        assertTrue(allowed.isAllow());
+
+        assertTrue(Files.list(cacheDirectory).anyMatch(path -> path.toString().endsWith(".wasm")));
+    }
+}
@@ -0,0 +1,182 @@
+package digital.alf.cells.physicalacesscontrolopa.service;
+
+import digital.alf.cells.physicalacesscontrolopa.model.AccessPredicate;
+import digital.alf.cells.physicalacesscontrolopa.model.AccessPredicate.AttributeEquals;
+import digital.alf.cells.physicalacesscontrolopa.model.AccessPredicate.Clause;
+import digital.alf.cells.physicalacesscontrolopa.model.AccessPredicate.GroupMember;
+import digital.alf.cells.physicalacesscontrolopa.model.AccessPredicate.TimeBound;
+import digital.alf.cells.physicalacesscontrolopa.parser.RegoParser;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RegoPartialEvaluatorTest {
+
+    private static final Instant IN_WINDOW = Instant.parse("2025-10-20T08:30:00Z");
+
+    private final RegoParser regoParser = new RegoParser();
+
+    private AccessPredicate residual(String rego) throws IOException {
+        return new RegoPartialEvaluator(regoParser.parse(rego)).residual("allow");
+    }
+
+    private static Set<Clause> clauses(AccessPredicate predicate) {
+        return Set.copyOf(predicate.clauses());
+    }
+
+    private static Clause clause(AccessPredicate.Constraint... constraints) {
+        return new Clause(List.of(constraints));
+    }
+
+    @Test
+    void residual_realPolicy_negatesDenyIntoFourClauses() throws IOException {
+        AccessPredicate predicate;
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream("physical-access-control-opa/policy.rego")) {
+            predicate = new RegoPartialEvaluator(regoParser.parse(is)).residual("allow");
+        }
+
+        assertEquals(Set.of(
+                clause(new AttributeEquals("request.resource.kind", "Facility", false)),
+                clause(new TimeBound("request.admissionTime", "<", Instant.parse("2024-10-20T08:00:00Z"))),
+                clause(new TimeBound("request.admissionTime", ">", Instant.parse("2026-10-20T19:00:00Z"))),
+                clause(new GroupMember("training-vde-available-group", true))
+        ), clauses(predicate));
+    }
+
+    @Test
+    void residual_realPolicy_restrictedToFacilityInWindow_requiresTraining() throws IOException {
+        AccessPredicate predicate;
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream("physical-access-control-opa/policy.rego")) {
+            predicate = new RegoPartialEvaluator(regoParser.parse(is)).residual("allow");
+        }
+
+        AccessPredicate facility = predicate.restrict(Map.of("request.resource.kind", "Facility"), IN_WINDOW);
+        assertEquals(AccessPredicate.requiring("training-vde-available-group"), facility);
+
+        assertEquals(AccessPredicate.TRUE, predicate.restrict(Map.of("request.resource.kind", "Room"), IN_WINDOW));
+        assertEquals(AccessPredicate.TRUE, predicate.restrict(
+                Map.of("request.resource.kind", "Facility"), Instant.parse("2027-01-01T00:00:00Z")));
+    }
+
+    @Test
+    void residual_groupAlternativesAndExclusions_becomeClauses() throws IOException {
+        AccessPredicate predicate = residual("""
+                package p
+                import rego.v1
+
+                default allow := false
+
+                allow if {
+                    "admins" in input.request.userInfo.groups
+                }
+
+                allow if {
+                    some g in ["staff", "contractors"]
+                    g in input.request.userInfo.groups
+                    not "suspended" in input.request.userInfo.groups
+                }
+                """);
+
+        assertEquals(Set.of(
+                clause(new GroupMember("admins", true)),
+                clause(new GroupMember("staff", true), new GroupMember("suspended", false)),
+                clause(new GroupMember("contractors", true), new GroupMember("suspended", false))
+        ), clauses(predicate));
+    }
+
+    @Test
+    void residual_helperRulesAndConstants_evaluatedAway() throws IOException {
+        AccessPredicate predicate = residual("""
+                package p
+                import rego.v1
+
+                required_group := lower("LAB-ACCESS")
+                operations := {"ENTER", "EXIT"}
+
+                allow if {
+                    input.request.operation in operations
+                    required_group in input.request.userInfo.groups
+                }
+                """);
+
+        assertEquals(List.of("ENTER", "EXIT"), predicate.attributeValues("request.operation"));
+        assertEquals(AccessPredicate.requiring("lab-access"),
+                predicate.restrict(Map.of("request.operation", "EXIT"), null));
+    }
+
+    @Test
+    void residual_operationComparedWithConstants_becomesAttributeConstraint() throws IOException {
+        AccessPredicate predicate = residual("""
+                package p
+                import rego.v1
+
+                allow if {
+                    input.request.operation == "EXIT"
+                    "lab-access" in input.request.userInfo.groups
+                }
+                """);
+
+        assertEquals(List.of("EXIT"), predicate.attributeValues("request.operation"));
+        assertEquals(AccessPredicate.requiring("lab-access"),
+                predicate.restrict(Map.of("request.operation", "EXIT"), null));
+        assertTrue(predicate.restrict(Map.of("request.operation", "ENTER"), null).isFalse());
+    }
+
+    @Test
+    void residual_defaultTrue_negatesDenyingDefinitions() throws IOException {
+        AccessPredicate predicate = residual("""
+                package p
+                import rego.v1
+
+                default allow := true
+
+                allow := false if {
+                    "banned" in input.request.userInfo.groups
+                }
+                """);
+
+        assertEquals(Set.of(clause(new GroupMember("banned", false))), clauses(predicate));
+    }
+
+    @Test
+    void residual_noAllowRule_isFalse() throws IOException {
+        assertTrue(residual("""
+                package p
+                default allow := false
+                """).isFalse());
+    }
+
+    @Test
+    void residual_iterationOverGroups_rejected() {
+        IOException e = assertThrows(IOException.class, () -> residual("""
+                package p
+                import rego.v1
+
+                allow if {
+                    some g in input.request.userInfo.groups
+                    startswith(g, "admin-")
+                }
+                """));
+
+        assertTrue(e.getMessage().contains("input.request.userInfo.groups"));
+    }
+
+    @Test
+    void residual_timeNow_rejected() {
+        assertThrows(IOException.class, () -> residual("""
+                package p
+                import rego.v1
+
+                allow if {
+                    time.now_ns() < time.parse_rfc3339_ns("2030-01-01T00:00:00Z")
+                }
+                """));
+    }
+}